@@ -0,0 +1,77 @@
+package group.rohlik.grocerymanager.configuration;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.core.registry.EntryRemovedEvent;
+import io.github.resilience4j.core.registry.EntryReplacedEvent;
+import io.github.resilience4j.core.registry.RegistryEventConsumer;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Admission control of the API endpoints. Product writes, order writes and reads each get a semaphore bulkhead
+ * and a rate limiter (configured under {@code resilience4j.bulkhead} and {@code resilience4j.ratelimiter}),
+ * neither of them waits for a permit, so an overloaded endpoint class is answered with 503 right away
+ * instead of queueing for a database connection. The bulkheads of the write paths are sized so that a burst
+ * of product updates cannot take the connections order creation needs.
+ * <p>
+ * Resilience4j publishes the available permits, the calls rejected by each bulkhead and rate limiter
+ * are counted as {@code gm.admission.rejected}.
+ *
+ * @author Tomas Kramec
+ */
+@Configuration
+public class AdmissionControlConfiguration {
+
+    public static final String PRODUCT_WRITE = "product-write";
+    public static final String ORDER_WRITE = "order-write";
+    public static final String READ = "read";
+
+    private static final String REJECTED_METRIC = "gm.admission.rejected";
+
+    @Bean
+    public RegistryEventConsumer<Bulkhead> bulkheadRejectionCounter(MeterRegistry meterRegistry) {
+        return new RejectionCounter<>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<Bulkhead> event) {
+                var bulkhead = event.getAddedEntry();
+                var rejected = rejectedCounter(meterRegistry, "bulkhead", bulkhead.getName());
+                bulkhead.getEventPublisher().onCallRejected(rejection -> rejected.increment());
+            }
+        };
+    }
+
+    @Bean
+    public RegistryEventConsumer<RateLimiter> rateLimiterRejectionCounter(MeterRegistry meterRegistry) {
+        return new RejectionCounter<>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<RateLimiter> event) {
+                var rateLimiter = event.getAddedEntry();
+                var rejected = rejectedCounter(meterRegistry, "ratelimiter", rateLimiter.getName());
+                rateLimiter.getEventPublisher().onFailure(rejection -> rejected.increment());
+            }
+        };
+    }
+
+    private static Counter rejectedCounter(final MeterRegistry meterRegistry, final String type, final String name) {
+        return Counter.builder(REJECTED_METRIC)
+                .description("Requests rejected by admission control")
+                .tag("type", type)
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    private abstract static class RejectionCounter<E> implements RegistryEventConsumer<E> {
+
+        @Override
+        public void onEntryRemovedEvent(EntryRemovedEvent<E> event) {
+        }
+
+        @Override
+        public void onEntryReplacedEvent(EntryReplacedEvent<E> event) {
+        }
+    }
+}
@@ -1,8 +1,20 @@
 package group.rohlik.grocerymanager.configuration;
 
+import group.rohlik.grocerymanager.property.AsyncReadProperties;
 import group.rohlik.grocerymanager.property.CacheProperties;
+import group.rohlik.grocerymanager.property.CatalogueSnapshotProperties;
 import group.rohlik.grocerymanager.property.DatabaseTransactionRetryProperties;
 import group.rohlik.grocerymanager.property.ExpireOrderScheduleProperties;
+import group.rohlik.grocerymanager.property.IdempotencyProperties;
+import group.rohlik.grocerymanager.property.LoggingProperties;
+import group.rohlik.grocerymanager.property.OrderArchiveProperties;
+import group.rohlik.grocerymanager.property.OrderOutboxProperties;
+import group.rohlik.grocerymanager.property.ProductIdIndexProperties;
+import group.rohlik.grocerymanager.property.ProductStockProperties;
+import group.rohlik.grocerymanager.property.ReadDataSourceProperties;
+import group.rohlik.grocerymanager.property.ReservationHoldProperties;
+import group.rohlik.grocerymanager.property.StockStreamProperties;
+import group.rohlik.grocerymanager.property.WarmUpProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -12,7 +24,19 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @EnableConfigurationProperties({
         ExpireOrderScheduleProperties.class,
         CacheProperties.class,
-        DatabaseTransactionRetryProperties.class
+        DatabaseTransactionRetryProperties.class,
+        LoggingProperties.class,
+        OrderOutboxProperties.class,
+        StockStreamProperties.class,
+        AsyncReadProperties.class,
+        ProductIdIndexProperties.class,
+        CatalogueSnapshotProperties.class,
+        OrderArchiveProperties.class,
+        ReadDataSourceProperties.class,
+        IdempotencyProperties.class,
+        ReservationHoldProperties.class,
+        ProductStockProperties.class,
+        WarmUpProperties.class
 })
 public class ApplicationConfiguration {
 }
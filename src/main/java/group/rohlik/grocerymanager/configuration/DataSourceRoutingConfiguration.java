@@ -0,0 +1,76 @@
+package group.rohlik.grocerymanager.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import group.rohlik.grocerymanager.property.ReadDataSourceProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Objects;
+
+/**
+ * Routes read-only transactions to a separate connection pool, so that catalogue browsing cannot take
+ * the connections of the lock-heavy write path. The read pool points at a replica or, when no url is set,
+ * is a separately sized pool on the primary database.
+ * <p>
+ * The routing is done by {@link LazyConnectionDataSourceProxy}: the transaction manager marks the connection
+ * of a {@code @Transactional(readOnly = true)} transaction read-only before its first statement and the proxy
+ * then takes the physical connection from the read pool. Read-only methods joining a read-write transaction
+ * stay on its primary connection. Replaces the auto-configured data source, the primary pool is still configured
+ * by {@code spring.datasource.*}. Wait times of both pools are published as {@code hikaricp.connections.acquire}
+ * tagged by the pool name.
+ *
+ * @author Tomas Kramec
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "grocery-manager.datasource.read", value = "enabled", havingValue = "true")
+@Slf4j
+public class DataSourceRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties, MeterRegistry meterRegistry) {
+        var dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        // bound here, the routing proxy below opens the pool before the auto-configured pool metrics would be bound
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource readDataSource(DataSourceProperties dataSourceProperties,
+                                           ReadDataSourceProperties readDataSourceProperties,
+                                           MeterRegistry meterRegistry) {
+        var dataSource = new HikariDataSource();
+        dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        dataSource.setJdbcUrl(Objects.requireNonNullElse(readDataSourceProperties.getUrl(),
+                dataSourceProperties.determineUrl()));
+        dataSource.setUsername(Objects.requireNonNullElse(readDataSourceProperties.getUsername(),
+                dataSourceProperties.determineUsername()));
+        dataSource.setPassword(Objects.requireNonNullElse(readDataSourceProperties.getPassword(),
+                dataSourceProperties.determinePassword()));
+        dataSource.setPoolName(readDataSourceProperties.getPoolName());
+        dataSource.setMaximumPoolSize(readDataSourceProperties.getMaximumPoolSize());
+        dataSource.setMinimumIdle(readDataSourceProperties.getMinimumIdle());
+        dataSource.setConnectionTimeout(readDataSourceProperties.getConnectionTimeout().toMillis());
+        dataSource.setReadOnly(true);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        log.info("Read-only transactions routed to pool {} at {}", dataSource.getPoolName(), dataSource.getJdbcUrl());
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource readDataSource) {
+        var dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(readDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,29 @@
+package group.rohlik.grocerymanager.configuration;
+
+import group.rohlik.grocerymanager.logging.LogSampler;
+import group.rohlik.grocerymanager.logging.SampledStatusAtLeastStrategy;
+import group.rohlik.grocerymanager.property.LoggingProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zalando.logbook.Strategy;
+
+/**
+ * Configuration of the hot path logging: sampled stock logs and HTTP exchange logging.
+ *
+ * @author Tomas Kramec
+ */
+@Configuration
+public class LoggingConfiguration {
+
+    @Bean
+    public LogSampler stockLogSampler(LoggingProperties loggingProperties) {
+        var stock = loggingProperties.getStock();
+        return new LogSampler(stock.isSampled(), stock.getMaxPerInterval(), stock.getInterval());
+    }
+
+    @Bean
+    public Strategy logbookStrategy(LoggingProperties loggingProperties) {
+        var http = loggingProperties.getHttp();
+        return new SampledStatusAtLeastStrategy(http.getMinimumStatus(), http.getSampleRate());
+    }
+}
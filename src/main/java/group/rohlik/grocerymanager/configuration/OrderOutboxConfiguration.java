@@ -0,0 +1,31 @@
+package group.rohlik.grocerymanager.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.event.FileOrderEventSink;
+import group.rohlik.grocerymanager.event.IOrderEventSink;
+import group.rohlik.grocerymanager.event.LoggingOrderEventSink;
+import group.rohlik.grocerymanager.property.OrderOutboxProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the sink, to which the order events from the transactional outbox are relayed.
+ *
+ * @author Tomas Kramec
+ */
+@Configuration
+@Slf4j
+public class OrderOutboxConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public IOrderEventSink orderEventSink(OrderOutboxProperties orderOutboxProperties, ObjectMapper objectMapper) {
+        log.info("Order event sink: {}", orderOutboxProperties.getSink());
+        return switch (orderOutboxProperties.getSink()) {
+            case LOG -> new LoggingOrderEventSink();
+            case FILE -> new FileOrderEventSink(orderOutboxProperties.getFile(), objectMapper);
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package group.rohlik.grocerymanager.configuration;
+
+import group.rohlik.grocerymanager.property.ProductStockProperties;
+import group.rohlik.grocerymanager.service.IStockLocationStrategy;
+import group.rohlik.grocerymanager.service.MostStockLocationStrategy;
+import group.rohlik.grocerymanager.service.NearestStockLocationStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the strategy, which picks the warehouse locations of the partitioned products.
+ *
+ * @author Tomas Kramec
+ */
+@Configuration
+@Slf4j
+public class ProductStockConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public IStockLocationStrategy stockLocationStrategy(ProductStockProperties productStockProperties) {
+        log.info("Stock location strategy: {}", productStockProperties.getStrategy());
+        return switch (productStockProperties.getStrategy()) {
+            case NEAREST -> new NearestStockLocationStrategy(productStockProperties.getLocations());
+            case MOST_STOCK -> new MostStockLocationStrategy();
+        };
+    }
+}
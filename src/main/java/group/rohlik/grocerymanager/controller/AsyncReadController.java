@@ -0,0 +1,100 @@
+package group.rohlik.grocerymanager.controller;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.service.IAsyncReadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controller serving the read-heavy product and order endpoints asynchronously.
+ * The request thread is released while the value is read, cached values are returned immediately.
+ * Write operations stay on {@link ProductController} and {@link OrderController}.
+ *
+ * @author Tomas Kramec
+ */
+@RestController
+@RequestMapping("/api/v1/async")
+@Validated
+@CrossOrigin(origins = "*")
+@Tag(name = "Async reads", description = "Non-blocking read operations of products and orders")
+@Slf4j
+@RequiredArgsConstructor
+public class AsyncReadController {
+
+    private final IAsyncReadService asyncReadService;
+
+    @GetMapping("/products")
+    @JsonView(View.Read.class)
+    @Operation(summary = "Get all products", description = "Non-blocking variant of `GET /api/v1/products`.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "200",
+                            description = "List of products retrieved successfully"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "503",
+                            description = "Service Unavailable: Read was not finished in time"
+                    )
+            }
+    )
+    public CompletableFuture<ResponseEntity<List<ProductTO>>> getAllProducts(@RequestParam(required = false, defaultValue = "true") boolean onlyActive) {
+        return asyncReadService.getAllProducts(onlyActive).thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/products/{code}")
+    @JsonView(View.Read.class)
+    @Operation(summary = "Get product by code", description = "Non-blocking variant of `GET /api/v1/products/{code}`. " +
+            "Cached products are returned without touching the database.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "200",
+                            description = "Product retrieved successfully"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "404",
+                            description = "Product not found"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "503",
+                            description = "Service Unavailable: Read was not finished in time"
+                    )
+            }
+    )
+    public CompletableFuture<ResponseEntity<ProductTO>> getProductByCode(@PathVariable String code) {
+        return asyncReadService.getProductByCode(code).thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/orders/{code}")
+    @JsonView(View.Read.class)
+    @Operation(summary = "Get order by code", description = "Retrieve a specific order with its items by its code.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "200",
+                            description = "Order retrieved successfully"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "404",
+                            description = "Order not found"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "503",
+                            description = "Service Unavailable: Read was not finished in time"
+                    )
+            }
+    )
+    public CompletableFuture<ResponseEntity<OrderTO>> getOrderByCode(@PathVariable UUID code) {
+        return asyncReadService.getOrderByCode(code).thenApply(ResponseEntity::ok);
+    }
+}
@@ -2,10 +2,14 @@ package group.rohlik.grocerymanager.controller;
 
 import group.rohlik.grocerymanager.dto.ErrorTO;
 import group.rohlik.grocerymanager.exception.*;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -17,12 +21,15 @@ import org.springframework.web.servlet.mvc.support.DefaultHandlerExceptionResolv
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 
 @RestControllerAdvice
 @Slf4j
 public class GlobalExceptionResolver extends DefaultHandlerExceptionResolver {
 
     private static final int MAX_MESSAGE_DETAIL_LENGTH = 2000;
+    // the rate limiters refresh their permits every second and a bulkhead permit is held by a single request
+    private static final int ADMISSION_RETRY_AFTER_SECONDS = 1;
 
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(HttpMessageNotReadableException.class)
@@ -76,6 +83,16 @@ public class GlobalExceptionResolver extends DefaultHandlerExceptionResolver {
                 .build();
     }
 
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ErrorTO handleIllegalArgumentException(IllegalArgumentException ex) {
+        return ErrorTO.builder()
+                .status(HttpStatus.BAD_REQUEST.value())
+                .error("Invalid request")
+                .message(ex.getMessage())
+                .build();
+    }
+
     @ResponseStatus(HttpStatus.CONFLICT)
     @ExceptionHandler(ConcurrencyFailureException.class)
     public ErrorTO handleConcurrencyFailureException(ConcurrencyFailureException ex) {
@@ -117,6 +134,16 @@ public class GlobalExceptionResolver extends DefaultHandlerExceptionResolver {
                 .build();
     }
 
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    @ExceptionHandler(ProductVersionMismatchException.class)
+    public ErrorTO handleProductVersionMismatchException(ProductVersionMismatchException ex) {
+        return ErrorTO.builder()
+                .status(HttpStatus.PRECONDITION_FAILED.value())
+                .error("Product was modified")
+                .message(ex.getMessage())
+                .build();
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(InsufficientStockException.class)
     public ErrorTO handleInsufficientStockException(InsufficientStockException ex) {
@@ -157,6 +184,59 @@ public class GlobalExceptionResolver extends DefaultHandlerExceptionResolver {
                 .build();
     }
 
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(ReservationHoldNotFoundException.class)
+    public ErrorTO handleReservationHoldNotFoundException(ReservationHoldNotFoundException ex) {
+        return ErrorTO.builder()
+                .status(HttpStatus.NOT_FOUND.value())
+                .error("Reservation hold not found")
+                .message(ex.getMessage())
+                .build();
+    }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ErrorTO handleIdempotencyKeyInProgressException(IdempotencyKeyInProgressException ex) {
+        return ErrorTO.builder()
+                .status(HttpStatus.CONFLICT.value())
+                .error("Request in progress")
+                .message(ex.getMessage())
+                .build();
+    }
+
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ErrorTO handleIdempotencyKeyReuseException(IdempotencyKeyReuseException ex) {
+        return ErrorTO.builder()
+                .status(HttpStatus.UNPROCESSABLE_ENTITY.value())
+                .error("Idempotency key reused")
+                .message(ex.getMessage())
+                .build();
+    }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(TimeoutException.class)
+    public ErrorTO handleTimeoutException(TimeoutException ex) {
+        log.warn("Request timed out: {}", ex.getMessage());
+        return ErrorTO.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("Service Unavailable")
+                .message("The request could not be processed in time. Please try again later.")
+                .build();
+    }
+
+    @ExceptionHandler({BulkheadFullException.class, RequestNotPermitted.class})
+    public ResponseEntity<ErrorTO> handleAdmissionRejected(Exception ex) {
+        log.debug("Request rejected: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ADMISSION_RETRY_AFTER_SECONDS))
+                .body(ErrorTO.builder()
+                        .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                        .error("Service Unavailable")
+                        .message("The service is overloaded. Please try again later.")
+                        .build());
+    }
+
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler(Exception.class)
     public ErrorTO handleGenericException(Exception ex) {
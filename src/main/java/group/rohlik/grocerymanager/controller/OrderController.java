@@ -1,12 +1,17 @@
 package group.rohlik.grocerymanager.controller;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import group.rohlik.grocerymanager.configuration.AdmissionControlConfiguration;
 import group.rohlik.grocerymanager.dto.OrderTO;
 import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.service.IIdempotencyService;
 import group.rohlik.grocerymanager.service.IOrderService;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -19,6 +24,8 @@ import java.util.UUID;
 /**
  * Controller for managing orders in the grocery manager application.
  * This controller provides endpoints to create, pay, and cancel orders.
+ * Each of them accepts an optional Idempotency-Key header, a request retried with the same key
+ * returns the response of the first one instead of being executed again.
  *
  * @author Tomas Kramec
  */
@@ -31,7 +38,10 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class OrderController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final IOrderService orderService;
+    private final IIdempotencyService idempotencyService;
 
     @PostMapping
     @JsonView(View.Read.class)
@@ -53,9 +63,17 @@ public class OrderController {
             }
     )
     @Validated(View.Create.class)
-    public ResponseEntity<OrderTO> createOrder(@JsonView(View.Create.class) @Valid @RequestBody OrderTO orderTO) {
+    @Bulkhead(name = AdmissionControlConfiguration.ORDER_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.ORDER_WRITE)
+    public ResponseEntity<OrderTO> createOrder(@JsonView(View.Create.class) @Valid @RequestBody OrderTO orderTO,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                               @Size(max = 255) String idempotencyKey) {
+        var order = idempotencyKey == null
+                ? orderService.createOrder(orderTO)
+                : idempotencyService.execute("create", idempotencyKey, orderTO, OrderTO.class,
+                () -> orderService.createOrder(orderTO));
         return ResponseEntity.status(HttpStatus.CREATED)
-                .body(orderService.createOrder(orderTO));
+                .body(order);
     }
 
     @PostMapping("/{code}/pay")
@@ -77,8 +95,16 @@ public class OrderController {
                     )
             }
     )
-    public ResponseEntity<OrderTO> payOrder(@PathVariable UUID code) {
-        return ResponseEntity.ok(orderService.payOrder(code));
+    @Bulkhead(name = AdmissionControlConfiguration.ORDER_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.ORDER_WRITE)
+    public ResponseEntity<OrderTO> payOrder(@PathVariable UUID code,
+                                            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                            @Size(max = 255) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(orderService.payOrder(code));
+        }
+        return ResponseEntity.ok(idempotencyService.execute("pay:" + code, idempotencyKey, code, OrderTO.class,
+                () -> orderService.payOrder(code)));
     }
 
     @PostMapping("/{code}/cancel")
@@ -100,7 +126,15 @@ public class OrderController {
                     )
             }
     )
-    public ResponseEntity<OrderTO> cancelOrder(@PathVariable UUID code) {
-        return ResponseEntity.ok(orderService.cancelOrder(code));
+    @Bulkhead(name = AdmissionControlConfiguration.ORDER_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.ORDER_WRITE)
+    public ResponseEntity<OrderTO> cancelOrder(@PathVariable UUID code,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                               @Size(max = 255) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(orderService.cancelOrder(code));
+        }
+        return ResponseEntity.ok(idempotencyService.execute("cancel:" + code, idempotencyKey, code, OrderTO.class,
+                () -> orderService.cancelOrder(code)));
     }
 }
@@ -1,19 +1,38 @@
 package group.rohlik.grocerymanager.controller;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.configuration.AdmissionControlConfiguration;
+import group.rohlik.grocerymanager.converter.CborJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.converter.SmileJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.dto.ProductStockTO;
 import group.rohlik.grocerymanager.dto.ProductTO;
 import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.exception.ProductVersionMismatchException;
 import group.rohlik.grocerymanager.service.IProductService;
+import group.rohlik.grocerymanager.util.ETagUtil;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -31,40 +50,82 @@ import java.util.List;
 public class ProductController {
 
     private final IProductService productService;
+    private final ObjectMapper objectMapper;
+    private final CborJackson2HttpMessageConverter cborConverter;
+    private final SmileJackson2HttpMessageConverter smileConverter;
 
-    @GetMapping
-    @JsonView(View.Read.class)
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            SmileJackson2HttpMessageConverter.APPLICATION_SMILE_VALUE})
     @Operation(summary = "Get all products", description = "Retrieve a list of all products sorted by name." +
             "By default, only active (non-archived) products are returned. " +
-            "If the `onlyActive` parameter is set to false, archived products are also included in the response.",
+            "If the `onlyActive` parameter is set to false, archived products are also included in the response. " +
+            "Products are streamed to the response as they are read from the database.",
             responses = {
                     @io.swagger.v3.oas.annotations.responses.ApiResponse(
                             responseCode = "200",
-                            description = "List of products retrieved successfully"
+                            description = "List of products retrieved successfully",
+                            content = {
+                                    @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                            array = @ArraySchema(schema = @Schema(implementation = ProductTO.class))),
+                                    @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE,
+                                            array = @ArraySchema(schema = @Schema(implementation = ProductTO.class))),
+                                    @Content(mediaType = SmileJackson2HttpMessageConverter.APPLICATION_SMILE_VALUE,
+                                            array = @ArraySchema(schema = @Schema(implementation = ProductTO.class)))
+                            }
                     )
             }
     )
-    public ResponseEntity<List<ProductTO>> getAllProducts(@RequestParam(required = false, defaultValue = "true") boolean onlyActive) {
-        return ResponseEntity.ok(productService.getAllProducts(onlyActive));
+    @Bulkhead(name = AdmissionControlConfiguration.READ)
+    @RateLimiter(name = AdmissionControlConfiguration.READ)
+    public void getAllProducts(@RequestParam(required = false, defaultValue = "true") boolean onlyActive,
+                               @RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) String accept,
+                               HttpServletResponse response) throws IOException {
+        var mediaType = selectMediaType(accept);
+        response.setContentType(mediaType.toString());
+        var generator = getObjectMapper(mediaType).getFactory().createGenerator(response.getOutputStream());
+        productService.writeAllProducts(onlyActive, generator);
+        // closed only on success, a failed listing must not be completed into a valid but truncated array
+        generator.close();
     }
 
     @GetMapping("/{code}")
     @JsonView(View.Read.class)
     @Operation(summary = "Get product by code", description = "Retrieve a specific product by its code. " +
-            "Archived products can also be retrieved by their code.",
+            "Archived products can also be retrieved by their code. " +
+            "The response carries an `ETag` derived from the product version. If the `If-None-Match` header " +
+            "contains the current tag, 304 Not Modified is returned without a body. The tag is the same for " +
+            "every format, so the response varies by `Accept`.",
             responses = {
                     @io.swagger.v3.oas.annotations.responses.ApiResponse(
                             responseCode = "200",
                             description = "Product retrieved successfully"
                     ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "304",
+                            description = "Product not modified"
+                    ),
                     @io.swagger.v3.oas.annotations.responses.ApiResponse(
                             responseCode = "404",
                             description = "Product not found"
                     )
             }
     )
-    public ResponseEntity<ProductTO> getProductByCode(@PathVariable String code) {
-        return ResponseEntity.ok(productService.getProductByCode(code));
+    @Bulkhead(name = AdmissionControlConfiguration.READ)
+    @RateLimiter(name = AdmissionControlConfiguration.READ)
+    public ResponseEntity<ProductTO> getProductByCode(@PathVariable String code, WebRequest webRequest,
+                                                      HttpServletResponse response) {
+        // served from the product cache, an unchanged product is answered without touching the database
+        var product = productService.getProductByCode(code);
+        var eTag = getETag(product);
+        if (eTag == null) {
+            return ResponseEntity.ok(product);
+        }
+        // JSON, CBOR and Smile share the tag, a cache must not answer one format with another
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(product);
     }
 
     @PostMapping
@@ -88,6 +149,8 @@ public class ProductController {
             }
     )
     @Validated(View.Create.class)
+    @Bulkhead(name = AdmissionControlConfiguration.PRODUCT_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.PRODUCT_WRITE)
     public ResponseEntity<ProductTO> createProduct(@JsonView(View.Create.class) @Valid @RequestBody ProductTO productTO) {
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(productService.createProduct(productTO));
@@ -96,7 +159,9 @@ public class ProductController {
     @PutMapping("/{code}")
     @JsonView(View.Read.class)
     @Operation(summary = "Update product", description = "Update an existing product. " +
-            "Only active (non-archived) products can be updated.",
+            "Only active (non-archived) products can be updated. " +
+            "With the `If-Match` header, the product is updated only if its current `ETag` is listed, " +
+            "otherwise 412 Precondition Failed is returned.",
             responses = {
                     @io.swagger.v3.oas.annotations.responses.ApiResponse(
                             responseCode = "200",
@@ -109,14 +174,75 @@ public class ProductController {
                     @io.swagger.v3.oas.annotations.responses.ApiResponse(
                             responseCode = "404",
                             description = "Product not found"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "412",
+                            description = "Precondition Failed: Product was modified"
                     )
             }
     )
     @Validated(View.Update.class)
+    @Bulkhead(name = AdmissionControlConfiguration.PRODUCT_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.PRODUCT_WRITE)
     public ResponseEntity<ProductTO> updateProduct(@PathVariable String code,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                                    @JsonView(View.Update.class) @Valid @RequestBody ProductTO productTO) {
         productTO.setCode(code);
-        return ResponseEntity.ok(productService.updateProduct(productTO));
+        if (ifMatch != null && !ETagUtil.ANY.equals(ifMatch.trim())) {
+            productTO.setVersion(ETagUtil.parseVersion(ifMatch, code)
+                    .orElseThrow(() -> new ProductVersionMismatchException("No entity tag of product " + code + " in If-Match")));
+        }
+        var product = productService.updateProduct(productTO);
+        var eTag = getETag(product);
+        return eTag == null ? ResponseEntity.ok(product)
+                : ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(product);
+    }
+
+    @GetMapping("/{code}/stock")
+    @Operation(summary = "Get stock locations", description = "Retrieve the stock quantities of a product " +
+            "per warehouse location. The list is empty if the stock of the product is not partitioned.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "200",
+                            description = "Stock quantities per location sorted by location code"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "404",
+                            description = "Product not found"
+                    )
+            }
+    )
+    @Bulkhead(name = AdmissionControlConfiguration.READ)
+    @RateLimiter(name = AdmissionControlConfiguration.READ)
+    public ResponseEntity<List<ProductStockTO>> getStockLocations(@PathVariable String code) {
+        return ResponseEntity.ok(productService.getStockLocations(code));
+    }
+
+    @PutMapping("/{code}/stock")
+    @Operation(summary = "Update stock locations", description = "Partition the stock of an active product " +
+            "into warehouse locations or replace its locations, locations which are not listed are removed. " +
+            "The stock quantity of the product becomes the sum of the locations, reservations take the stock " +
+            "from the locations and the stock quantity of a product update is ignored from then on.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "200",
+                            description = "Stock locations updated successfully"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request: Invalid or repeated locations"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "404",
+                            description = "Product not found"
+                    )
+            }
+    )
+    @Bulkhead(name = AdmissionControlConfiguration.PRODUCT_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.PRODUCT_WRITE)
+    public ResponseEntity<List<ProductStockTO>> updateStockLocations(
+            @PathVariable String code, @RequestBody @NotEmpty List<@Valid ProductStockTO> locations) {
+        return ResponseEntity.ok(productService.updateStockLocations(code, locations));
     }
 
     @DeleteMapping("/{code}")
@@ -138,6 +264,8 @@ public class ProductController {
                             description = "Conflict: Product cannot be deleted due to active orders"
                     )
             })
+    @Bulkhead(name = AdmissionControlConfiguration.PRODUCT_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.PRODUCT_WRITE)
     public ResponseEntity<Void> deleteProduct(@PathVariable String code) {
         productService.deleteProduct(code);
         return ResponseEntity.noContent().build();
@@ -157,6 +285,8 @@ public class ProductController {
                     )
             }
     )
+    @Bulkhead(name = AdmissionControlConfiguration.READ)
+    @RateLimiter(name = AdmissionControlConfiguration.READ)
     public ResponseEntity<Boolean> hasActiveOrders(@PathVariable String code) {
         return ResponseEntity.ok(productService.hasProductActiveOrders(code));
     }
@@ -175,8 +305,41 @@ public class ProductController {
                     )
             }
     )
+    @Bulkhead(name = AdmissionControlConfiguration.READ)
+    @RateLimiter(name = AdmissionControlConfiguration.READ)
     public ResponseEntity<Boolean> hasFinishedOrders(@PathVariable String code) {
         return ResponseEntity.ok(productService.hasProductFinishedOrders(code));
     }
 
+
+    private static String getETag(final ProductTO product) {
+        return product.getVersion() == null ? null : ETagUtil.toETag(product.getCode(), product.getVersion());
+    }
+
+    /**
+     * Selects the most preferred accepted format, the streamed listing bypasses the message converters.
+     */
+    private static MediaType selectMediaType(final String accept) {
+        var mediaTypes = MediaType.parseMediaTypes(accept);
+        MimeTypeUtils.sortBySpecificity(mediaTypes);
+        for (var mediaType : mediaTypes) {
+            for (var supported : List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR,
+                    SmileJackson2HttpMessageConverter.APPLICATION_SMILE)) {
+                if (mediaType.includes(supported)) {
+                    return supported;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private ObjectMapper getObjectMapper(final MediaType mediaType) {
+        if (MediaType.APPLICATION_CBOR.equals(mediaType)) {
+            return cborConverter.getObjectMapper();
+        }
+        if (SmileJackson2HttpMessageConverter.APPLICATION_SMILE.equals(mediaType)) {
+            return smileConverter.getObjectMapper();
+        }
+        return objectMapper;
+    }
 }
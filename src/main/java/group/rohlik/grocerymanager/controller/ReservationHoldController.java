@@ -0,0 +1,122 @@
+package group.rohlik.grocerymanager.controller;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import group.rohlik.grocerymanager.configuration.AdmissionControlConfiguration;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ReservationHoldTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.service.IIdempotencyService;
+import group.rohlik.grocerymanager.service.IOrderService;
+import group.rohlik.grocerymanager.service.IReservationHoldService;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+import static group.rohlik.grocerymanager.controller.OrderController.IDEMPOTENCY_KEY_HEADER;
+
+/**
+ * Controller for the short-lived stock reservations of storefront carts.
+ * This controller provides endpoints to create and drop a hold and to convert it into an order.
+ *
+ * @author Tomas Kramec
+ */
+@RestController
+@RequestMapping("/api/v1/holds")
+@Validated
+@CrossOrigin(origins = "*")
+@Tag(name = "Reservation holds", description = "Short-lived stock reservations of carts")
+@Slf4j
+@RequiredArgsConstructor
+public class ReservationHoldController {
+
+    private final IReservationHoldService reservationHoldService;
+    private final IOrderService orderService;
+    private final IIdempotencyService idempotencyService;
+
+    @PostMapping
+    @JsonView(View.Read.class)
+    @Operation(summary = "Create hold", description = "Hold stock quantities of the products for a limited time." +
+            " The stock is released when the hold is dropped or expires.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "201",
+                            description = "Hold created successfully and stock quantities reserved"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request: Invalid hold data or insufficient stock"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "404",
+                            description = "Not Found: Product from hold not found"
+                    )
+            }
+    )
+    @Validated(View.Create.class)
+    @Bulkhead(name = AdmissionControlConfiguration.ORDER_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.ORDER_WRITE)
+    public ResponseEntity<ReservationHoldTO> createHold(
+            @JsonView(View.Create.class) @Valid @RequestBody ReservationHoldTO holdTO) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(reservationHoldService.createHold(holdTO));
+    }
+
+    @DeleteMapping("/{code}")
+    @Operation(summary = "Drop hold", description = "Drop a hold and release its stock.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "204",
+                            description = "Hold dropped successfully and stock released"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "404",
+                            description = "Hold not found"
+                    )
+            }
+    )
+    @Bulkhead(name = AdmissionControlConfiguration.ORDER_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.ORDER_WRITE)
+    public ResponseEntity<Void> dropHold(@PathVariable UUID code) {
+        reservationHoldService.dropHold(code);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{code}/order")
+    @JsonView(View.Read.class)
+    @Operation(summary = "Convert hold into order", description = "Create a new order in state PENDING" +
+            " of the held products. The held stock is taken over by the order and the hold is deleted.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "201",
+                            description = "Order created successfully from the hold"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "404",
+                            description = "Not Found: Hold not found or expired, or a held product not found"
+                    )
+            }
+    )
+    @Bulkhead(name = AdmissionControlConfiguration.ORDER_WRITE)
+    @RateLimiter(name = AdmissionControlConfiguration.ORDER_WRITE)
+    public ResponseEntity<OrderTO> createOrderFromHold(@PathVariable UUID code,
+                                                       @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                                       @Size(max = 255) String idempotencyKey) {
+        var order = idempotencyKey == null
+                ? orderService.createOrderFromHold(code)
+                : idempotencyService.execute("hold-order:" + code, idempotencyKey, code, OrderTO.class,
+                () -> orderService.createOrderFromHold(code));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(order);
+    }
+}
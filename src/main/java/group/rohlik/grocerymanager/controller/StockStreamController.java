@@ -0,0 +1,59 @@
+package group.rohlik.grocerymanager.controller;
+
+import group.rohlik.grocerymanager.property.StockStreamProperties;
+import group.rohlik.grocerymanager.service.IStockStreamService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+
+/**
+ * Controller streaming stock changes of products to storefront clients as Server-Sent Events.
+ *
+ * @author Tomas Kramec
+ */
+@RestController
+@RequestMapping("/api/v1/stock")
+@Validated
+@CrossOrigin(origins = "*")
+@Tag(name = "Stock", description = "Stock change notifications")
+@Slf4j
+@RequiredArgsConstructor
+public class StockStreamController {
+
+    public static final String STOCK_EVENT_NAME = "stock";
+
+    private final IStockStreamService stockStreamService;
+    private final StockStreamProperties stockStreamProperties;
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream stock changes", description = "Subscribe to the stock changes of the given products. " +
+            "Changes of a product are coalesced over a short interval and pushed as `stock` events " +
+            "carrying the summed delta and the current stock quantity.",
+            responses = {
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "200",
+                            description = "Stream of stock changes"
+                    ),
+                    @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request: Missing product codes"
+                    )
+            }
+    )
+    public SseEmitter streamStockChanges(@RequestParam Set<String> codes) {
+        var emitter = new SseEmitter(stockStreamProperties.getTimeout().toMillis());
+        var subscription = stockStreamService.subscribe(codes, deltas ->
+                emitter.send(SseEmitter.event().name(STOCK_EVENT_NAME).data(deltas, MediaType.APPLICATION_JSON)));
+        emitter.onCompletion(() -> stockStreamService.unsubscribe(subscription));
+        emitter.onTimeout(() -> stockStreamService.unsubscribe(subscription));
+        emitter.onError(ex -> stockStreamService.unsubscribe(subscription));
+        return emitter;
+    }
+}
@@ -0,0 +1,21 @@
+package group.rohlik.grocerymanager.converter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code application/cbor} message converter for service-to-service callers.
+ * Uses the same Jackson configuration as the JSON converter, so {@code @JsonView} and the other
+ * serialization settings apply the same way.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+public class CborJackson2HttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+    public CborJackson2HttpMessageConverter(final Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        super(objectMapperBuilder.factory(new CBORFactory()).build());
+    }
+}
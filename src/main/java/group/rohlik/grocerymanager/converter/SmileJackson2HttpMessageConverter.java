@@ -0,0 +1,25 @@
+package group.rohlik.grocerymanager.converter;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code application/x-jackson-smile} message converter for service-to-service callers.
+ * Uses the same Jackson configuration as the JSON converter, so {@code @JsonView} and the other
+ * serialization settings apply the same way.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+public class SmileJackson2HttpMessageConverter extends MappingJackson2SmileHttpMessageConverter {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    public SmileJackson2HttpMessageConverter(final Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        super(objectMapperBuilder.factory(new SmileFactory()).build());
+    }
+}
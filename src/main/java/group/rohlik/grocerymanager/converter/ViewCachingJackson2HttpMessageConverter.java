@@ -0,0 +1,116 @@
+package group.rohlik.grocerymanager.converter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConversionException;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonInputMessage;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.TypeUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON message converter which keeps a pre-built {@link ObjectWriter}/{@link ObjectReader} per (type, view) pair.
+ * The default converter creates a new view-bound writer or reader on every request and resolves the root
+ * (de)serializer again. Here both are resolved once, when the pair is seen for the first time.
+ * <p>
+ * Only UTF-8 payloads bound to a {@code @JsonView} without filters take the cached path,
+ * everything else is handled by {@link MappingJackson2HttpMessageConverter}.
+ * Replaces the converter auto-configured by Spring Boot.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+public class ViewCachingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final Map<ViewKey, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final Map<ViewKey, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public ViewCachingJackson2HttpMessageConverter(final ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public Object read(final Type type, @Nullable final Class<?> contextClass, final HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        var contentType = inputMessage.getHeaders().getContentType();
+        if (!(inputMessage instanceof MappingJacksonInputMessage jacksonInputMessage)
+                || jacksonInputMessage.getDeserializationView() == null
+                || !isUtf8(contentType)) {
+            return super.read(type, contextClass, inputMessage);
+        }
+
+        var javaType = getJavaType(type, contextClass);
+        var reader = getReader(javaType, jacksonInputMessage.getDeserializationView());
+        try {
+            return reader.readValue(StreamUtils.nonClosing(inputMessage.getBody()));
+        } catch (InvalidDefinitionException ex) {
+            throw new HttpMessageConversionException("Type definition error: " + ex.getType(), ex);
+        } catch (JsonProcessingException ex) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + ex.getOriginalMessage(), ex, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(final Object object, @Nullable final Type type, final HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        var contentType = outputMessage.getHeaders().getContentType();
+        if (!(object instanceof MappingJacksonValue jacksonValue)
+                || jacksonValue.getSerializationView() == null
+                || jacksonValue.getFilters() != null
+                || !isUtf8(contentType)
+                || (contentType != null && contentType.isCompatibleWith(MediaType.TEXT_EVENT_STREAM))) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+
+        var value = jacksonValue.getValue();
+        // a declared container type keeps its element type, otherwise the runtime class is used like in the default converter
+        var javaType = type != null && TypeUtils.isAssignable(type, value.getClass()) && getJavaType(type, null).isContainerType()
+                ? getJavaType(type, null)
+                : getObjectMapper().constructType(value.getClass());
+        var writer = getWriter(javaType, jacksonValue.getSerializationView());
+        try {
+            writer.writeValue(StreamUtils.nonClosing(outputMessage.getBody()), value);
+        } catch (InvalidDefinitionException ex) {
+            throw new HttpMessageConversionException("Type definition error: " + ex.getType(), ex);
+        } catch (JsonProcessingException ex) {
+            throw new HttpMessageNotWritableException("Could not write JSON: " + ex.getOriginalMessage(), ex);
+        }
+    }
+
+    ObjectWriter getWriter(final JavaType javaType, final Class<?> view) {
+        return writers.computeIfAbsent(new ViewKey(javaType, view),
+                key -> customizeWriter(getObjectMapper().writerWithView(view).forType(javaType), javaType, null));
+    }
+
+    ObjectReader getReader(final JavaType javaType, final Class<?> view) {
+        return readers.computeIfAbsent(new ViewKey(javaType, view),
+                key -> customizeReader(getObjectMapper().readerWithView(view).forType(javaType), javaType));
+    }
+
+    private static boolean isUtf8(@Nullable final MediaType contentType) {
+        return contentType == null || contentType.getCharset() == null
+                || StandardCharsets.UTF_8.equals(contentType.getCharset());
+    }
+
+    private record ViewKey(JavaType javaType, Class<?> view) {
+    }
+}
@@ -0,0 +1,28 @@
+package group.rohlik.grocerymanager.dto;
+
+import group.rohlik.grocerymanager.model.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only projection of an order without its items, holding the columns needed to change its status
+ * and to answer with the {@link View.Read} view of {@link OrderTO}.
+ * Selected directly by JPQL constructor expression, so no entity is managed and dirty-checked for it.
+ *
+ * @author Tomas Kramec
+ */
+public record OrderStateRow(Long id, UUID code, OrderStatus status, Long version, BigDecimal totalAmount,
+                            LocalDateTime expiresAt) {
+
+    /**
+     * Returns the row as it is after its status was changed by a conditional update, which increments the version.
+     *
+     * @param newStatus the status the order was changed to
+     * @return the changed row
+     */
+    public OrderStateRow withStatus(final OrderStatus newStatus) {
+        return new OrderStateRow(id, code, newStatus, version + 1, totalAmount, expiresAt);
+    }
+}
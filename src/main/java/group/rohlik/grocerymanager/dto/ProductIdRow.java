@@ -0,0 +1,9 @@
+package group.rohlik.grocerymanager.dto;
+
+/**
+ * Primary key and code of an active product, selected by JPQL constructor expression to build the product id index.
+ *
+ * @author Tomas Kramec
+ */
+public record ProductIdRow(Long id, String code) {
+}
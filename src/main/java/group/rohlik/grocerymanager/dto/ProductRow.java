@@ -0,0 +1,13 @@
+package group.rohlik.grocerymanager.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only projection of a product holding exactly the columns of the {@link View.Read} view of {@link ProductTO}.
+ * Selected directly by JPQL constructor expression, so no entity is managed for it.
+ *
+ * @author Tomas Kramec
+ */
+public record ProductRow(String code, String name, Integer stockQuantity, int stockBuckets, BigDecimal pricePerUnit,
+                         boolean archived) {
+}
@@ -0,0 +1,12 @@
+package group.rohlik.grocerymanager.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of a product with its version, selected by JPQL constructor expression to load the catalogue snapshot.
+ *
+ * @author Tomas Kramec
+ */
+public record ProductSnapshotRow(String code, String name, Integer stockQuantity, int stockBuckets, BigDecimal pricePerUnit,
+                                 boolean archived, Long version) {
+}
@@ -0,0 +1,10 @@
+package group.rohlik.grocerymanager.dto;
+
+/**
+ * Stock of a product in one location, selected by JPQL constructor expression without locking the row.
+ * Reservations pick the locations to lock from these rows.
+ *
+ * @author Tomas Kramec
+ */
+public record ProductStockRow(Long id, String locationCode, int quantity) {
+}
@@ -0,0 +1,30 @@
+package group.rohlik.grocerymanager.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stock quantity of a product in one warehouse location.
+ *
+ * @author Tomas Kramec
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductStockTO {
+
+    @NotBlank(message = "Location code is required")
+    @Size(max = 32, message = "Location code must be at most 32 characters")
+    private String locationCode;
+
+    @NotNull(message = "Stock quantity is required")
+    @Min(value = 0, message = "Stock quantity must be non-negative")
+    private Integer quantity;
+}
@@ -1,5 +1,6 @@
 package group.rohlik.grocerymanager.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonView;
 import jakarta.validation.constraints.*;
@@ -36,6 +37,11 @@ public class ProductTO {
     @JsonView(View.Update.class)
     private Integer stockQuantity;
 
+    @Min(value = 0, message = "Number of stock buckets must be non-negative", groups = View.Update.class)
+    @Max(value = 64, message = "Number of stock buckets must be at most 64", groups = View.Update.class)
+    @JsonView(View.Update.class)
+    private Integer stockBuckets; // zero turns the sharding off, an update without it keeps the current buckets
+
     @NotNull(message = "Price per unit is required", groups = View.Update.class)
     @DecimalMin(value = "0.01", message = "Price per unit must be at least 0.01", groups = View.Update.class)
     @Digits(integer = 15, fraction = 2, message = "Price per unit format is invalid", groups = View.Update.class)
@@ -45,4 +51,7 @@ public class ProductTO {
     @JsonView(View.Read.class)
     private boolean archived = false;
 
+    @JsonIgnore // exposed as ETag header, expected version of an update comes from If-Match
+    private Long version;
+
 }
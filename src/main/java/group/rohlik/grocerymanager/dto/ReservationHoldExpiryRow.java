@@ -0,0 +1,12 @@
+package group.rohlik.grocerymanager.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Code and expiry of a reservation hold, selected by JPQL constructor expression to build the hold expiry index.
+ *
+ * @author Tomas Kramec
+ */
+public record ReservationHoldExpiryRow(UUID code, LocalDateTime expiresAt) {
+}
@@ -0,0 +1,46 @@
+package group.rohlik.grocerymanager.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonView;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author Tomas Kramec
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonView(View.Read.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReservationHoldTO {
+
+    @JsonView(View.Read.class)
+    private UUID code;
+    @JsonView(View.Read.class)
+    private LocalDateTime expiresAt;
+
+    /**
+     * Lifetime of the hold in seconds, the configured default when not set.
+     */
+    @Min(value = 1, message = "Hold ttl must be at least 1 second", groups = View.Create.class)
+    @JsonView(View.Create.class)
+    private Integer ttlSeconds;
+
+    @Valid
+    @NotEmpty(message = "Hold must contain at least one item", groups = View.Create.class)
+    @JsonView(View.Create.class)
+    @Builder.Default
+    private List<OrderItemTO> items = new ArrayList<>();
+}
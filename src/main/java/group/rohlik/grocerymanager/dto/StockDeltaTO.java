@@ -0,0 +1,36 @@
+package group.rohlik.grocerymanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Change of the stock quantity of a product, pushed to the stock stream subscribers.
+ * Changes within one coalescing interval are merged into a single delta.
+ *
+ * @author Tomas Kramec
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockDeltaTO {
+
+    private String code;
+
+    /**
+     * Sum of the stock changes since the previous delta of the product.
+     */
+    private int delta;
+
+    /**
+     * Stock quantity after the last change.
+     */
+    private int stockQuantity;
+
+    /**
+     * Version of the product after the last change.
+     */
+    private long version;
+}
@@ -0,0 +1,36 @@
+package group.rohlik.grocerymanager.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sink which appends the relayed events as JSON lines to a file.
+ *
+ * @author Tomas Kramec
+ */
+public class FileOrderEventSink implements IOrderEventSink {
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+
+    public FileOrderEventSink(final Path file, final ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void publish(final List<OrderEvent> events) throws IOException {
+        var lines = new StringBuilder();
+        for (OrderEvent event : events) {
+            lines.append(objectMapper.writeValueAsString(event)).append('\n');
+        }
+        Files.writeString(file, lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+}
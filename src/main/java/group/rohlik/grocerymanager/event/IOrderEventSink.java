@@ -0,0 +1,22 @@
+package group.rohlik.grocerymanager.event;
+
+import java.util.List;
+
+/**
+ * Destination of the order lifecycle events relayed from the transactional outbox.
+ * Implementations must either deliver the whole batch or throw an exception,
+ * in which case the same batch is delivered again in the next relay run (at-least-once delivery).
+ *
+ * @author Tomas Kramec
+ */
+public interface IOrderEventSink {
+
+    /**
+     * Publishes the batch of events. Events are ordered by the time they were stored in the outbox,
+     * so the events of a single order are always in the order of its status changes.
+     *
+     * @param events the events to be published
+     * @throws Exception if the batch could not be delivered
+     */
+    void publish(List<OrderEvent> events) throws Exception;
+}
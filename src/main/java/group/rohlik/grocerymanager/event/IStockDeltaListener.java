@@ -0,0 +1,22 @@
+package group.rohlik.grocerymanager.event;
+
+import group.rohlik.grocerymanager.dto.StockDeltaTO;
+
+import java.util.List;
+
+/**
+ * Receiver of coalesced stock deltas of a stock stream subscription.
+ *
+ * @author Tomas Kramec
+ */
+@FunctionalInterface
+public interface IStockDeltaListener {
+
+    /**
+     * Delivers the stock deltas to the subscriber. An exception closes the subscription.
+     *
+     * @param deltas the stock deltas, at most one per product
+     * @throws Exception if the deltas could not be delivered
+     */
+    void onDeltas(List<StockDeltaTO> deltas) throws Exception;
+}
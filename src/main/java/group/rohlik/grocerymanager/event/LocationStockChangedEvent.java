@@ -0,0 +1,13 @@
+package group.rohlik.grocerymanager.event;
+
+/**
+ * Published when the stock of a partitioned product changes in one of its locations.
+ * It is processed only after the surrounding transaction commits, the stock quantity of the product
+ * is then refreshed from the sum of its locations.
+ *
+ * @param productId   the id of the product
+ * @param productCode the code of the product
+ * @author Tomas Kramec
+ */
+public record LocationStockChangedEvent(Long productId, String productCode) {
+}
@@ -0,0 +1,20 @@
+package group.rohlik.grocerymanager.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Sink which only writes the relayed events to the application log.
+ *
+ * @author Tomas Kramec
+ */
+@Slf4j
+public class LoggingOrderEventSink implements IOrderEventSink {
+
+    @Override
+    public void publish(final List<OrderEvent> events) {
+        events.forEach(event -> log.info("Order event {} for order {}, status: {}",
+                event.type(), event.orderCode(), event.status()));
+    }
+}
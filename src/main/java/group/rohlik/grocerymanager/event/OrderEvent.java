@@ -0,0 +1,35 @@
+package group.rohlik.grocerymanager.event;
+
+import group.rohlik.grocerymanager.dto.OrderStateRow;
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Order lifecycle event. It is published inside the transaction which changed the order status
+ * and it is stored in the transactional outbox, from where it is relayed to the {@link IOrderEventSink}.
+ *
+ * @param orderId     the id of the order
+ * @param orderCode   the unique code of the order
+ * @param type        the type of the event
+ * @param status      the status of the order after the change
+ * @param totalAmount the total amount of the order
+ * @param occurredAt  the time when the status was changed
+ * @author Tomas Kramec
+ */
+public record OrderEvent(Long orderId, UUID orderCode, OrderEventType type, OrderStatus status,
+                         BigDecimal totalAmount, LocalDateTime occurredAt) {
+
+    public static OrderEvent of(final Order order, final OrderEventType type) {
+        return new OrderEvent(order.getId(), order.getCode(), type, order.getStatus(), order.getTotalAmount(),
+                LocalDateTime.now());
+    }
+
+    public static OrderEvent of(final OrderStateRow order, final OrderEventType type) {
+        return new OrderEvent(order.id(), order.code(), type, order.status(), order.totalAmount(),
+                LocalDateTime.now());
+    }
+}
@@ -0,0 +1,13 @@
+package group.rohlik.grocerymanager.event;
+
+/**
+ * Types of order lifecycle events published to downstream systems.
+ *
+ * @author Tomas Kramec
+ */
+public enum OrderEventType {
+    CREATED,
+    PAID,
+    CANCELED,
+    EXPIRED
+}
@@ -0,0 +1,36 @@
+package group.rohlik.grocerymanager.event;
+
+import group.rohlik.grocerymanager.model.OrderOutboxEvent;
+import group.rohlik.grocerymanager.repository.IOrderOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Stores published {@link OrderEvent}s into the transactional outbox.
+ * The listener is synchronous, so the outbox row is written in the same transaction as the status change
+ * and both are either committed or rolled back together.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderOutboxWriter {
+
+    private final IOrderOutboxRepository orderOutboxRepository;
+
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onOrderEvent(final OrderEvent event) {
+        orderOutboxRepository.save(OrderOutboxEvent.builder()
+                .orderId(event.orderId())
+                .orderCode(event.orderCode())
+                .eventType(event.type())
+                .orderStatus(event.status())
+                .totalAmount(event.totalAmount())
+                .occurredAt(event.occurredAt())
+                .build());
+    }
+}
@@ -0,0 +1,11 @@
+package group.rohlik.grocerymanager.event;
+
+/**
+ * Published by the product service when a product is created, updated, archived or deleted.
+ * It is processed only after the surrounding transaction commits.
+ *
+ * @param productCode the code of the product
+ * @author Tomas Kramec
+ */
+public record ProductChangedEvent(String productCode) {
+}
@@ -0,0 +1,14 @@
+package group.rohlik.grocerymanager.event;
+
+/**
+ * Published by the product service whenever the stock quantity of a product changes.
+ * It is processed only after the surrounding transaction commits.
+ *
+ * @param productCode   the code of the product
+ * @param delta         the change of the stock quantity
+ * @param stockQuantity the stock quantity after the change
+ * @param version       the version of the product after the change
+ * @author Tomas Kramec
+ */
+public record StockChangedEvent(String productCode, int delta, int stockQuantity, long version) {
+}
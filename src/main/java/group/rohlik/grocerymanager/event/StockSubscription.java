@@ -0,0 +1,99 @@
+package group.rohlik.grocerymanager.event;
+
+import group.rohlik.grocerymanager.dto.StockDeltaTO;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscription of a single client to the stock changes of a set of products.
+ * Deltas are buffered in a bounded queue. When the subscriber cannot keep up, the oldest deltas are dropped,
+ * as every delta carries the current stock quantity and a newer delta supersedes an older one.
+ *
+ * @author Tomas Kramec
+ */
+public class StockSubscription {
+
+    @Getter
+    private final Set<String> productCodes;
+    private final IStockDeltaListener listener;
+    private final ArrayBlockingQueue<StockDeltaTO> buffer;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicBoolean registered = new AtomicBoolean(true);
+    @Getter
+    private volatile boolean closed;
+
+    public StockSubscription(final Set<String> productCodes, final IStockDeltaListener listener, final int bufferSize) {
+        this.productCodes = Set.copyOf(productCodes);
+        this.listener = listener;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    /**
+     * Adds the delta to the buffer without blocking. If the buffer is full, the oldest delta is dropped.
+     *
+     * @param delta the delta to be delivered
+     * @return true if the subscription should be drained
+     */
+    public boolean offer(final StockDeltaTO delta) {
+        if (closed) {
+            return false;
+        }
+        while (!buffer.offer(delta)) {
+            if (buffer.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+        return draining.compareAndSet(false, true);
+    }
+
+    /**
+     * Delivers all buffered deltas to the listener. Only one drain runs at a time for a subscription.
+     */
+    public void drain() {
+        try {
+            do {
+                List<StockDeltaTO> deltas = new ArrayList<>(buffer.size());
+                buffer.drainTo(deltas);
+                if (!deltas.isEmpty() && !closed) {
+                    listener.onDeltas(deltas);
+                }
+                draining.set(false);
+            } while (!buffer.isEmpty() && draining.compareAndSet(false, true));
+        } catch (Exception e) {
+            draining.set(false);
+            close();
+        }
+    }
+
+    /**
+     * Marks the subscription as removed from the stream.
+     *
+     * @return true if the subscription was registered until now
+     */
+    public boolean unregister() {
+        return registered.compareAndSet(true, false);
+    }
+
+    public void close() {
+        closed = true;
+        buffer.clear();
+    }
+
+    /**
+     * @return number of deltas dropped because the subscriber was too slow
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getBuffered() {
+        return buffer.size();
+    }
+}
@@ -0,0 +1,15 @@
+package group.rohlik.grocerymanager.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * @author Tomas Kramec
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,15 @@
+package group.rohlik.grocerymanager.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * @author Tomas Kramec
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class ProductVersionMismatchException extends RuntimeException {
+
+    public ProductVersionMismatchException(String msg) {
+        super(msg);
+    }
+}
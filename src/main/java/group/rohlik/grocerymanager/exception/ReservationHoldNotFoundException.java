@@ -0,0 +1,15 @@
+package group.rohlik.grocerymanager.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * @author Tomas Kramec
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ReservationHoldNotFoundException extends RuntimeException {
+
+    public ReservationHoldNotFoundException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,67 @@
+package group.rohlik.grocerymanager.logging;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free rate limiter for high-volume log statements.
+ * At most {@code maxPerInterval} events are let through in each fixed time window,
+ * the rest are counted as suppressed and reported with the next event that is let through.
+ *
+ * @author Tomas Kramec
+ */
+public class LogSampler {
+
+    private final boolean enabled;
+    private final int maxPerInterval;
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+
+    private final AtomicLong windowStart;
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogSampler(final boolean enabled, final int maxPerInterval, final Duration interval) {
+        this(enabled, maxPerInterval, interval, System::nanoTime);
+    }
+
+    LogSampler(final boolean enabled, final int maxPerInterval, final Duration interval, final LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.maxPerInterval = maxPerInterval;
+        this.intervalNanos = interval.toNanos();
+        this.nanoClock = nanoClock;
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Decides whether the current event should be logged.
+     *
+     * @return true if the event should be logged, false if it was suppressed
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        var now = nanoClock.getAsLong();
+        var start = windowStart.get();
+        if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        if (windowCount.incrementAndGet() <= maxPerInterval) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the number of events suppressed since the last call and resets the counter.
+     *
+     * @return number of suppressed events
+     */
+    public long getAndResetSuppressed() {
+        return suppressed.getAndSet(0);
+    }
+}
@@ -0,0 +1,40 @@
+package group.rohlik.grocerymanager.logging;
+
+import org.zalando.logbook.*;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logbook strategy which writes the request and response together, only for responses
+ * with status at least {@code minimumStatus} or for a random fraction of the remaining exchanges.
+ *
+ * @author Tomas Kramec
+ */
+public class SampledStatusAtLeastStrategy implements Strategy {
+
+    private final int minimumStatus;
+    private final double sampleRate;
+
+    public SampledStatusAtLeastStrategy(final int minimumStatus, final double sampleRate) {
+        this.minimumStatus = minimumStatus;
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public void write(final Precorrelation precorrelation, final HttpRequest request, final Sink sink) {
+        // request is written together with the response
+    }
+
+    @Override
+    public void write(final Correlation correlation, final HttpRequest request, final HttpResponse response,
+                      final Sink sink) throws IOException {
+        if (response.getStatus() >= minimumStatus || isSampled()) {
+            sink.writeBoth(correlation, request, response);
+        }
+    }
+
+    private boolean isSampled() {
+        return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+}
@@ -1,12 +1,17 @@
 package group.rohlik.grocerymanager.mapper;
 
 import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderStateRow;
 import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.model.ArchivedOrder;
+import group.rohlik.grocerymanager.model.ArchivedOrderItem;
 import group.rohlik.grocerymanager.model.Order;
 import group.rohlik.grocerymanager.model.OrderItem;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
+import java.util.List;
+
 @Mapper(componentModel = "spring")
 public interface IOrderMapper {
 
@@ -16,4 +21,11 @@ public interface IOrderMapper {
     @Mapping(source = "product.code", target = "productCode")
     OrderItemTO toOrderItemTO(OrderItem orderItem);
 
+    OrderTO toOrderTO(ArchivedOrder order);
+
+    OrderItemTO toOrderItemTO(ArchivedOrderItem orderItem);
+
+    @Mapping(target = "items", source = "items")
+    OrderTO toOrderTO(OrderStateRow order, List<OrderItemTO> items);
+
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package group.rohlik.grocerymanager.mapper;
 
+import group.rohlik.grocerymanager.dto.ProductRow;
 import group.rohlik.grocerymanager.dto.ProductTO;
 import group.rohlik.grocerymanager.model.Product;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 import java.util.List;
 
@@ -13,4 +15,9 @@ public interface IProductMapper {
 
     List<ProductTO> toProductTOs(List<Product> products);
 
+    @Mapping(target = "version", ignore = true)
+    ProductTO toProductTO(ProductRow row);
+
+    List<ProductTO> rowsToProductTOs(List<ProductRow> rows);
+
 }
\ No newline at end of file
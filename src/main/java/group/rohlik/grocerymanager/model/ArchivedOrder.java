@@ -0,0 +1,60 @@
+package group.rohlik.grocerymanager.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Finished order moved out of GM_ORDER by the archival job. Archived orders are never modified.
+ *
+ * @author Tomas Kramec
+ */
+@Entity
+@Immutable
+@Table(name = "GM_ORDER_ARCHIVE")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedOrder implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 2871934630157408127L;
+
+    @Id
+    @Column(name = "ID")
+    private Long id;
+
+    @Column(name = "CODE", nullable = false, unique = true)
+    private UUID code;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUS", nullable = false)
+    private OrderStatus status;
+
+    @Column(name = "TOTAL_AMOUNT", nullable = false)
+    private BigDecimal totalAmount;
+
+    @Column(name = "EXPIRES_AT", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "CREATION_DATE")
+    private Date creationDate;
+
+    @Column(name = "ARCHIVED_AT", nullable = false)
+    private Date archivedAt;
+
+    @Builder.Default
+    @OneToMany(mappedBy = "order", fetch = FetchType.LAZY)
+    private List<ArchivedOrderItem> items = new ArrayList<>();
+}
@@ -0,0 +1,55 @@
+package group.rohlik.grocerymanager.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Item of an {@link ArchivedOrder}. It keeps the product code, so it stays readable after the product is deleted.
+ *
+ * @author Tomas Kramec
+ */
+@Entity
+@Immutable
+@Table(name = "GM_ORDER_ITEM_ARCHIVE")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedOrderItem implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -6254028123815946219L;
+
+    @Id
+    @Column(name = "ID")
+    private Long id;
+
+    @Column(name = "CODE", nullable = false)
+    private UUID code;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ORDER_ID", nullable = false)
+    private ArchivedOrder order;
+
+    @Column(name = "PRODUCT_ID", nullable = false)
+    private Long productId;
+
+    @Column(name = "PRODUCT_CODE", nullable = false)
+    private String productCode;
+
+    @Column(name = "QUANTITY", nullable = false)
+    private Integer quantity;
+
+    @Column(name = "UNIT_PRICE", nullable = false)
+    private BigDecimal unitPrice;
+
+    @Column(name = "TOTAL_PRICE", nullable = false)
+    private BigDecimal totalPrice;
+}
@@ -0,0 +1,65 @@
+package group.rohlik.grocerymanager.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Stored response of a write request sent with an idempotency key. It is inserted in the same transaction
+ * as the write itself, so either both are committed or none.
+ *
+ * @author Tomas Kramec
+ */
+@Entity
+@Table(name = "GM_IDEMPOTENCY_KEY")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey implements Persistable<String>, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 4187345106214623357L;
+
+    /**
+     * The operation (and the resource it is applied to) followed by the key sent by the client.
+     */
+    @Id
+    @Column(name = "ID_KEY")
+    private String id;
+
+    /**
+     * SHA-256 of the request, a key reused for a different request is rejected.
+     */
+    @Column(name = "REQUEST_HASH", nullable = false, updatable = false)
+    private String requestHash;
+
+    /**
+     * The response serialized to JSON.
+     */
+    @Lob
+    @Column(name = "RESPONSE", nullable = false, updatable = false)
+    private String response;
+
+    @Column(name = "CREATED_AT", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "EXPIRES_AT", nullable = false, updatable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * Keys are only inserted, never updated, so they are persisted without a merge.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    public boolean isExpired(final LocalDateTime now) {
+        return !expiresAt.isAfter(now);
+    }
+}
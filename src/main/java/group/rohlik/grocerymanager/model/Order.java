@@ -1,9 +1,8 @@
 package group.rohlik.grocerymanager.model;
 
+import group.rohlik.grocerymanager.util.UuidUtil;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.Generated;
-import org.hibernate.generator.EventType;
 
 import java.io.Serial;
 import java.math.BigDecimal;
@@ -41,8 +40,7 @@ public class Order extends UpdateAwareEntity {
     @Column(name = "ID")
     private Long id;
 
-    @Generated(event = EventType.INSERT)
-    @Column(name = "CODE", insertable = false, updatable = false, nullable = false, unique = true)
+    @Column(name = "CODE", updatable = false, nullable = false, unique = true)
     private UUID code;
 
     @Enumerated(EnumType.STRING)
@@ -60,18 +58,14 @@ public class Order extends UpdateAwareEntity {
 
     @PrePersist
     public void prePersist() {
+        if (code == null) {
+            code = UuidUtil.timeOrdered();
+        }
         if (status == null) {
             status = OrderStatus.PENDING;
         }
         if (expiresAt == null) {
             expiresAt = LocalDateTime.now().plusMinutes(30);
         }
-        calculateTotalAmount();
-    }
-
-    private void calculateTotalAmount() {
-        totalAmount = items.stream()
-                .map(OrderItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 }
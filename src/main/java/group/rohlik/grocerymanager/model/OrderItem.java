@@ -1,9 +1,8 @@
 package group.rohlik.grocerymanager.model;
 
+import group.rohlik.grocerymanager.util.UuidUtil;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.Generated;
-import org.hibernate.generator.EventType;
 
 import java.io.Serial;
 import java.math.BigDecimal;
@@ -29,8 +28,7 @@ public class OrderItem extends UpdateAwareEntity {
     @Column(name = "ID")
     private Long id;
 
-    @Generated(event = EventType.INSERT)
-    @Column(name = "CODE", insertable = false, updatable = false, nullable = false, unique = true)
+    @Column(name = "CODE", updatable = false, nullable = false, unique = true)
     private UUID code;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -50,4 +48,10 @@ public class OrderItem extends UpdateAwareEntity {
     @Column(name = "TOTAL_PRICE", nullable = false)
     private BigDecimal totalPrice;
 
+    @PrePersist
+    public void prePersist() {
+        if (code == null) {
+            code = UuidUtil.timeOrdered();
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package group.rohlik.grocerymanager.model;
+
+import group.rohlik.grocerymanager.event.OrderEvent;
+import group.rohlik.grocerymanager.event.OrderEventType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Row of the transactional outbox. It is inserted in the same transaction as the order status change
+ * and deleted by the relay once the event was delivered to the sink.
+ * <p>
+ * The ids are not pooled, so they follow the order in which the events occurred: the event of a status change
+ * is inserted only after the preceding event of the same order was committed, and takes the next value
+ * of the sequence. Pooled blocks of ids would let another instance insert a later event with a lower id.
+ *
+ * @author Tomas Kramec
+ */
+@Entity
+@Table(name = "GM_ORDER_OUTBOX")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderOutboxEvent implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -2406305916431472571L;
+
+    @Id
+    @GeneratedValue(generator = "SEQ_GM_ORDER_OUTBOX", strategy = GenerationType.SEQUENCE)
+    @SequenceGenerator(name = "SEQ_GM_ORDER_OUTBOX", sequenceName = "SEQ_GM_ORDER_OUTBOX", allocationSize = 1)
+    @Column(name = "ID")
+    private Long id;
+
+    @Column(name = "ORDER_ID", nullable = false, updatable = false)
+    private Long orderId;
+
+    @Column(name = "ORDER_CODE", nullable = false, updatable = false)
+    private UUID orderCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "EVENT_TYPE", nullable = false, updatable = false)
+    private OrderEventType eventType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "ORDER_STATUS", nullable = false, updatable = false)
+    private OrderStatus orderStatus;
+
+    @Column(name = "TOTAL_AMOUNT", nullable = false, updatable = false)
+    private BigDecimal totalAmount;
+
+    @Column(name = "OCCURRED_AT", nullable = false, updatable = false)
+    private LocalDateTime occurredAt;
+
+    public OrderEvent toOrderEvent() {
+        return new OrderEvent(orderId, orderCode, eventType, orderStatus, totalAmount, occurredAt);
+    }
+}
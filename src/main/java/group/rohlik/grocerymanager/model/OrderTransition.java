@@ -0,0 +1,40 @@
+package group.rohlik.grocerymanager.model;
+
+import group.rohlik.grocerymanager.event.OrderEventType;
+import lombok.Getter;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Declared transitions between the {@link OrderStatus order statuses}. A transition can be fired from any
+ * of its source statuses, anything else is rejected. A new status is supported by declaring the transitions
+ * leading to it and from it here, together with the event type they publish.
+ *
+ * @author Tomas Kramec
+ */
+@Getter
+public enum OrderTransition {
+    PAY("paid", OrderStatus.PAID, OrderEventType.PAID, false, OrderStatus.PENDING),
+    CANCEL("canceled", OrderStatus.CANCELED, OrderEventType.CANCELED, true, OrderStatus.PENDING),
+    EXPIRE("expired", OrderStatus.EXPIRED, OrderEventType.EXPIRED, true, OrderStatus.PENDING);
+
+    private final String action; // used in the message when the transition is rejected
+    private final OrderStatus target;
+    private final OrderEventType eventType;
+    private final boolean releasingStock; // returns the reserved stock, the items move to the finished counters
+    private final Set<OrderStatus> sources;
+
+    OrderTransition(final String action, final OrderStatus target, final OrderEventType eventType,
+                    final boolean releasingStock, final OrderStatus source, final OrderStatus... otherSources) {
+        this.action = action;
+        this.target = target;
+        this.eventType = eventType;
+        this.releasingStock = releasingStock;
+        this.sources = EnumSet.of(source, otherSources);
+    }
+
+    public boolean canFire(final OrderStatus status) {
+        return sources.contains(status);
+    }
+}
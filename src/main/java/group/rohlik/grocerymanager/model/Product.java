@@ -40,4 +40,17 @@ public class Product extends UpdateAwareEntity {
     @Column(name = "ARCHIVED", nullable = false)
     private boolean archived = false;
 
+    /**
+     * The stock is kept per warehouse location in {@link ProductStock} rows, the stock quantity is their sum.
+     */
+    @Column(name = "STOCK_PARTITIONED", nullable = false)
+    private boolean stockPartitioned;
+
+    /**
+     * Number of bucket rows the stock is sharded into, the buckets are partitioned stock {@link ProductStock} rows
+     * reserved from in random order. Zero when the stock is not sharded.
+     */
+    @Column(name = "STOCK_BUCKETS", nullable = false)
+    private int stockBuckets;
+
 }
@@ -0,0 +1,74 @@
+package group.rohlik.grocerymanager.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Number of order items of a product in active ({@link OrderStatus#PENDING}, {@link OrderStatus#PAID})
+ * and finished ({@link OrderStatus#CANCELED}, {@link OrderStatus#EXPIRED} and archived) orders.
+ * The counters are changed by relative updates only, see {@code IProductOrderCounterRepository}.
+ * <p>
+ * The counters of a product with sharded stock are split into as many shard rows as it has stock buckets,
+ * concurrent orders of the product update different rows. The counters of the product are the sums of its shards,
+ * a single shard may be negative.
+ *
+ * @author Tomas Kramec
+ */
+@Entity
+@Table(name = "GM_PRODUCT_ORDER_COUNTER")
+@IdClass(ProductOrderCounter.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductOrderCounter implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 4452069537161733790L;
+
+    @Id
+    @Column(name = "PRODUCT_ID")
+    private Long productId;
+
+    @Id
+    @Column(name = "SHARD")
+    private int shard;
+
+    @Column(name = "ACTIVE_ORDER_ITEMS", nullable = false)
+    private long activeOrderItems;
+
+    @Column(name = "FINISHED_ORDER_ITEMS", nullable = false)
+    private long finishedOrderItems;
+
+    /**
+     * The counters of a product summed over its shards, selected by JPQL constructor expression.
+     */
+    public ProductOrderCounter(final Long productId, final Long activeOrderItems, final Long finishedOrderItems) {
+        this(productId, 0, activeOrderItems, finishedOrderItems);
+    }
+
+    /**
+     * Primary key of a counter shard.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = -2201486950934624207L;
+
+        private Long productId;
+        private int shard;
+    }
+}
@@ -0,0 +1,41 @@
+package group.rohlik.grocerymanager.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Stock of a partitioned product in one warehouse location. Reservations lock the rows of the locations they take
+ * the stock from, so that concurrent reservations of one product wait for each other only when they share a location.
+ * The rows are updated under a pessimistic lock, so they carry no version.
+ *
+ * @author Tomas Kramec
+ */
+@Entity
+@Table(name = "GM_PRODUCT_STOCK")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductStock implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 4268291750318862215L;
+
+    @Id
+    @GeneratedValue(generator = "SEQ_GM_PRODUCT_STOCK", strategy = GenerationType.SEQUENCE)
+    @Column(name = "ID")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "PRODUCT_ID", nullable = false, updatable = false)
+    private Product product;
+
+    @Column(name = "LOCATION_CODE", nullable = false, updatable = false)
+    private String locationCode;
+
+    @Column(name = "QUANTITY", nullable = false)
+    private Integer quantity;
+}
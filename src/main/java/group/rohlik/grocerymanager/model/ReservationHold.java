@@ -0,0 +1,48 @@
+package group.rohlik.grocerymanager.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Stock of one product held for a storefront cart. All the products of one hold share its code and expiry.
+ * Holds are only inserted and deleted, never updated, so they carry no version nor audit columns.
+ *
+ * @author Tomas Kramec
+ */
+@Entity
+@Table(name = "GM_RESERVATION_HOLD")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReservationHold implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 7731925610492818513L;
+
+    @Id
+    @GeneratedValue(generator = "SEQ_GM_RESERVATION_HOLD", strategy = GenerationType.SEQUENCE)
+    @Column(name = "ID")
+    private Long id;
+
+    @Column(name = "CODE", nullable = false, updatable = false)
+    private UUID code;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "PRODUCT_ID", nullable = false, updatable = false)
+    private Product product;
+
+    @Column(name = "QUANTITY", nullable = false, updatable = false)
+    private Integer quantity;
+
+    @Column(name = "CREATED_AT", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "EXPIRES_AT", nullable = false, updatable = false)
+    private LocalDateTime expiresAt;
+}
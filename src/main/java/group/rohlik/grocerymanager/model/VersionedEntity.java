@@ -1,10 +1,10 @@
 package group.rohlik.grocerymanager.model;
 
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
-import org.springframework.data.annotation.Version;
 
 import java.io.Serializable;
 
@@ -0,0 +1,21 @@
+package group.rohlik.grocerymanager.model.scheduler;
+
+import group.rohlik.grocerymanager.service.IIdempotencyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyCleanupScheduler {
+
+    private final IIdempotencyService idempotencyService;
+
+    @Scheduled(cron = "${grocery-manager.schedule.idempotency.cleanup.cron}")
+    public void deleteExpiredKeys() {
+        idempotencyService.deleteExpired();
+    }
+}
@@ -0,0 +1,21 @@
+package group.rohlik.grocerymanager.model.scheduler;
+
+import group.rohlik.grocerymanager.service.IOrderArchiveService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderArchiveScheduler {
+
+    private final IOrderArchiveService orderArchiveService;
+
+    @Scheduled(cron = "${grocery-manager.schedule.order.archive.cron}")
+    public void archiveFinishedOrders() {
+        orderArchiveService.archiveFinishedOrders();
+    }
+}
@@ -0,0 +1,21 @@
+package group.rohlik.grocerymanager.model.scheduler;
+
+import group.rohlik.grocerymanager.service.IOrderOutboxService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderOutboxScheduler {
+
+    private final IOrderOutboxService orderOutboxService;
+
+    @Scheduled(fixedDelayString = "${grocery-manager.schedule.order.outbox.fixed-delay}")
+    public void relayOrderEvents() {
+        orderOutboxService.relay();
+    }
+}
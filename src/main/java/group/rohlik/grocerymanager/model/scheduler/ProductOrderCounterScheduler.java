@@ -0,0 +1,21 @@
+package group.rohlik.grocerymanager.model.scheduler;
+
+import group.rohlik.grocerymanager.service.IProductOrderCounterService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductOrderCounterScheduler {
+
+    private final IProductOrderCounterService productOrderCounterService;
+
+    @Scheduled(cron = "${grocery-manager.schedule.order.counter.cron}")
+    public void reconcileProductOrderCounters() {
+        productOrderCounterService.reconcile();
+    }
+}
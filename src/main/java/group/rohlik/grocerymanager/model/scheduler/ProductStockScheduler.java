@@ -0,0 +1,29 @@
+package group.rohlik.grocerymanager.model.scheduler;
+
+import group.rohlik.grocerymanager.service.IProductStockService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refreshes the stock quantity of the partitioned products, whose locations changed over the configured interval,
+ * to the sum of their locations, and rebalances the stock buckets of the sharded products.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductStockScheduler {
+
+    private final IProductStockService productStockService;
+
+    @Scheduled(fixedDelayString = "${grocery-manager.schedule.product-stock.refresh.fixed-delay}")
+    public void refreshStockQuantities() {
+        productStockService.refreshStockQuantities();
+    }
+
+    @Scheduled(fixedDelayString = "${grocery-manager.schedule.product-stock.rebalance.fixed-delay}")
+    public void rebalanceBuckets() {
+        productStockService.rebalanceBuckets();
+    }
+}
@@ -0,0 +1,26 @@
+package group.rohlik.grocerymanager.model.scheduler;
+
+import group.rohlik.grocerymanager.service.IReservationHoldService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class ReservationHoldSweepScheduler {
+
+    private final IReservationHoldService reservationHoldService;
+
+    @Scheduled(fixedDelayString = "${grocery-manager.schedule.reservation-hold.sweep.fixed-delay}")
+    public void sweepExpiredHolds() {
+        reservationHoldService.sweepExpired();
+    }
+
+    @Scheduled(cron = "${grocery-manager.schedule.reservation-hold.table-sweep.cron}")
+    public void sweepExpiredHoldsFromTable() {
+        reservationHoldService.sweepExpiredFromTable();
+    }
+}
@@ -0,0 +1,23 @@
+package group.rohlik.grocerymanager.model.scheduler;
+
+import group.rohlik.grocerymanager.service.IStockStreamService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pushes the stock changes coalesced over the configured interval to the stock stream subscribers.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+@RequiredArgsConstructor
+public class StockStreamScheduler {
+
+    private final IStockStreamService stockStreamService;
+
+    @Scheduled(fixedDelayString = "${grocery-manager.schedule.stock.stream.fixed-delay}")
+    public void flushStockChanges() {
+        stockStreamService.flush();
+    }
+}
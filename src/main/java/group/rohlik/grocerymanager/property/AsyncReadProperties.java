@@ -0,0 +1,18 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.async-read")
+@Getter
+@Setter
+public class AsyncReadProperties {
+    private int maxConcurrency = 8; // maximum number of concurrent database reads, keep below the connection pool size
+    private Duration timeout = Duration.ofSeconds(10); // maximum time a read can wait and run
+}
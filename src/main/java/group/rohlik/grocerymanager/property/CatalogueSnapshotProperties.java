@@ -0,0 +1,16 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.catalogue-snapshot")
+@Getter
+@Setter
+public class CatalogueSnapshotProperties {
+    private boolean enabled = false; // serve product reads from the off-heap catalogue snapshot instead of the product cache
+    private int expectedSize = 1024; // number of products the snapshot is sized for when loaded, it grows when exceeded
+}
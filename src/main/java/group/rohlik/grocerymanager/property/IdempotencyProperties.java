@@ -0,0 +1,19 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.idempotency")
+@Getter
+@Setter
+public class IdempotencyProperties {
+    private Duration ttl = Duration.ofHours(24); // how long a response is replayed for a retried idempotency key
+    private int cacheSize = 10_000; // number of recent keys kept in memory in front of the table
+    private Duration waitTimeout = Duration.ofSeconds(30); // maximum time a duplicate waits for the first request
+}
@@ -0,0 +1,46 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.logging")
+@Getter
+@Setter
+public class LoggingProperties {
+
+    private Async async = new Async();
+    private Stock stock = new Stock();
+    private Http http = new Http();
+
+    /**
+     * Settings of the asynchronous appender, consumed by logback-spring.xml.
+     */
+    @Getter
+    @Setter
+    public static class Async {
+        private int queueSize = 8192;
+        private int discardingThreshold = 1638; // drop events below WARN when fewer slots remain
+        private long maxFlushTime = 2000; // in milliseconds
+    }
+
+    @Getter
+    @Setter
+    public static class Stock {
+        private boolean sampled = true; // rate-limit per-unit stock reservation/release logs
+        private int maxPerInterval = 10; // maximum number of stock logs written per interval
+        private Duration interval = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Http {
+        private int minimumStatus = 400; // always log exchanges with at least this response status
+        private double sampleRate = 0.0; // fraction of the remaining exchanges to log, 0.0 - 1.0
+    }
+}
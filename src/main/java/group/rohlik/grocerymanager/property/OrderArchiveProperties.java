@@ -0,0 +1,21 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.order-archive")
+@Getter
+@Setter
+public class OrderArchiveProperties {
+    private boolean enabled = true;
+    private Duration retention = Duration.ofDays(30); // finished orders unchanged for longer are moved to the archive
+    private int chunkSize = 500; // number of orders moved in one transaction
+    private int maxChunksPerRun = 200; // upper bound of chunks moved by a single archival run
+    private Duration throttle = Duration.ofMillis(100); // pause between two chunks, leaves room for the order traffic
+}
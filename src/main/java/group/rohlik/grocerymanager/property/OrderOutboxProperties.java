@@ -0,0 +1,25 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.outbox")
+@Getter
+@Setter
+public class OrderOutboxProperties {
+    private int batchSize = 500; // number of events delivered to the sink in one transaction
+    private int maxBatchesPerRun = 20; // upper bound of batches drained by a single relay run
+    private SinkType sink = SinkType.LOG;
+    private Path file = Path.of("order-events.jsonl"); // target of the FILE sink
+
+    public enum SinkType {
+        LOG,
+        FILE
+    }
+}
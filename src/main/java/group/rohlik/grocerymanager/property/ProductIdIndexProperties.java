@@ -0,0 +1,16 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.product-id-index")
+@Getter
+@Setter
+public class ProductIdIndexProperties {
+    private boolean enabled = true; // lock products by primary key resolved from the in-memory code index
+    private int expectedSize = 1024; // number of products the index is sized for at startup, it grows when exceeded
+}
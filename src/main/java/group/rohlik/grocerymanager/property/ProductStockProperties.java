@@ -0,0 +1,24 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.product-stock")
+@Getter
+@Setter
+public class ProductStockProperties {
+    private StrategyType strategy = StrategyType.NEAREST; // picks the locations reservations take the stock from
+    private List<String> locations = new ArrayList<>(); // location codes from the nearest, for the NEAREST strategy
+
+    public enum StrategyType {
+        NEAREST,
+        MOST_STOCK
+    }
+}
@@ -0,0 +1,24 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.datasource.read")
+@Getter
+@Setter
+public class ReadDataSourceProperties {
+    private boolean enabled = false; // route read-only transactions to a separate connection pool
+    private String url; // JDBC url of the replica, the primary database (spring.datasource.url) when not set
+    private String username; // spring.datasource.username when not set
+    private String password; // spring.datasource.password when not set
+    private String poolName = "gm-read";
+    private int maximumPoolSize = 10;
+    private int minimumIdle = 2;
+    private Duration connectionTimeout = Duration.ofSeconds(30); // maximum time a read waits for a connection
+}
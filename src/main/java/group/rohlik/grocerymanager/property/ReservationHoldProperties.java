@@ -0,0 +1,19 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.reservation-hold")
+@Getter
+@Setter
+public class ReservationHoldProperties {
+    private Duration defaultTtl = Duration.ofMinutes(5); // lifetime of a hold created without its own ttl
+    private Duration maxTtl = Duration.ofMinutes(30); // longest lifetime a hold can ask for
+    private int sweepBatchSize = 500; // number of expired holds released in one transaction
+}
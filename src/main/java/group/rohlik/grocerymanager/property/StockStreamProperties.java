@@ -0,0 +1,19 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.stock-stream")
+@Getter
+@Setter
+public class StockStreamProperties {
+    private int bufferSize = 64; // maximum number of undelivered deltas per subscriber
+    private int maxProductCodes = 100; // maximum number of products in one subscription
+    private Duration timeout = Duration.ofMinutes(30); // lifetime of one SSE connection
+}
@@ -0,0 +1,27 @@
+package group.rohlik.grocerymanager.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @author Tomas Kramec
+ */
+@ConfigurationProperties(prefix = "grocery-manager.warm-up")
+@Getter
+@Setter
+public class WarmUpProperties {
+    private boolean enabled = true; // warm the application up before the readiness probe reports it ready
+    private Duration timeBudget = Duration.ofSeconds(30); // ready when the budget runs out, even with steps left
+    private PreloadType preload = PreloadType.MOST_ORDERED; // products preloaded into the product cache
+    private int preloadSize = 1000; // maximum number of preloaded products, capped at the size of the product cache
+    private int syntheticIterations = 10000; // iterations of the synthetic mapping and serialization pass
+
+    public enum PreloadType {
+        NONE,
+        MOST_ORDERED,
+        ALL_ACTIVE
+    }
+}
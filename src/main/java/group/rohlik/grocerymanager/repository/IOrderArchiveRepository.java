@@ -0,0 +1,58 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.model.ArchivedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository interface for the archive of finished orders.
+ * The move statements copy the rows of the given orders from the hot tables and remove them there,
+ * they have to run in one transaction.
+ *
+ * @author Tomas Kramec
+ */
+@Repository
+public interface IOrderArchiveRepository extends JpaRepository<ArchivedOrder, Long> {
+
+    @Query("SELECT o FROM ArchivedOrder o LEFT JOIN FETCH o.items WHERE o.code = :code")
+    Optional<ArchivedOrder> findByCodeWithItems(@Param("code") UUID code);
+
+    @Query("SELECT COUNT(oi) > 0 FROM ArchivedOrderItem oi WHERE oi.productCode = :productCode")
+    boolean existsByProductCode(@Param("productCode") String productCode);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO GM_ORDER_ARCHIVE (ID, CODE, STATUS, TOTAL_AMOUNT, EXPIRES_AT,
+                                          CREATION_DATE, CREATED_BY, UPDATE_DATE, UPDATED_BY, ARCHIVED_AT)
+            SELECT ID, CODE, STATUS, TOTAL_AMOUNT, EXPIRES_AT,
+                   CREATION_DATE, CREATED_BY, UPDATE_DATE, UPDATED_BY, CURRENT_TIMESTAMP
+            FROM GM_ORDER WHERE ID IN (:orderIds)
+            """, nativeQuery = true)
+    int copyOrders(@Param("orderIds") List<Long> orderIds);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO GM_ORDER_ITEM_ARCHIVE (ID, CODE, ORDER_ID, PRODUCT_ID, PRODUCT_CODE, QUANTITY, UNIT_PRICE,
+                                               TOTAL_PRICE, CREATION_DATE, CREATED_BY, UPDATE_DATE, UPDATED_BY)
+            SELECT oi.ID, oi.CODE, oi.ORDER_ID, oi.PRODUCT_ID, p.CODE, oi.QUANTITY, oi.UNIT_PRICE,
+                   oi.TOTAL_PRICE, oi.CREATION_DATE, oi.CREATED_BY, oi.UPDATE_DATE, oi.UPDATED_BY
+            FROM GM_ORDER_ITEM oi JOIN GM_PRODUCT p ON p.ID = oi.PRODUCT_ID
+            WHERE oi.ORDER_ID IN (:orderIds)
+            """, nativeQuery = true)
+    int copyOrderItems(@Param("orderIds") List<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM GM_ORDER_ITEM WHERE ORDER_ID IN (:orderIds)", nativeQuery = true)
+    int deleteOrderItems(@Param("orderIds") List<Long> orderIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM GM_ORDER WHERE ID IN (:orderIds)", nativeQuery = true)
+    int deleteOrders(@Param("orderIds") List<Long> orderIds);
+}
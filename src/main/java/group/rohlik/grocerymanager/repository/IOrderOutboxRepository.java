@@ -0,0 +1,34 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.model.OrderOutboxEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for the transactional outbox of order events.
+ *
+ * @author Tomas Kramec
+ */
+@Repository
+public interface IOrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+    /**
+     * Locks and returns the oldest events of the outbox. The lock keeps concurrent relays
+     * (e.g. from other application instances) from delivering the same events twice or out of order.
+     * The id order is the order in which the events of one order occurred, as the ids are not pooled.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM OrderOutboxEvent e ORDER BY e.id")
+    List<OrderOutboxEvent> findNextBatchForUpdate(Pageable pageable);
+
+    @Query("SELECT MIN(e.occurredAt) FROM OrderOutboxEvent e")
+    Optional<LocalDateTime> findOldestOccurredAt();
+}
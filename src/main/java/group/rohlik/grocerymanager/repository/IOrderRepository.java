@@ -1,12 +1,18 @@
 package group.rohlik.grocerymanager.repository;
 
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderStateRow;
 import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
 import group.rohlik.grocerymanager.model.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,4 +36,49 @@ public interface IOrderRepository extends JpaRepository<Order, Long> {
 
     @Query("SELECT o FROM Order o LEFT JOIN FETCH o.items WHERE o.code = :code")
     Optional<Order> findByCodeWithItems(@Param("code") UUID code);
+
+    /**
+     * Returns the ids of the oldest orders in the given statuses which were last changed before the threshold.
+     */
+    @Query("SELECT o.id FROM Order o " +
+            "WHERE o.status IN :statuses AND nvl(o.updateDate, o.creationDate) < :archiveDateThreshold " +
+            "ORDER BY o.id")
+    List<Long> findIdsToArchive(@Param("statuses") List<OrderStatus> statuses,
+                                @Param("archiveDateThreshold") Date archiveDateThreshold,
+                                Pageable pageable);
+
+    @Query("SELECT new group.rohlik.grocerymanager.dto.OrderStateRow(o.id, o.code, o.status, o.version, " +
+            "o.totalAmount, o.expiresAt) FROM Order o WHERE o.code = :code")
+    Optional<OrderStateRow> findStateByCode(@Param("code") UUID code);
+
+    @Query("SELECT new group.rohlik.grocerymanager.dto.OrderStateRow(o.id, o.code, o.status, o.version, " +
+            "o.totalAmount, o.expiresAt) FROM Order o WHERE o.id IN :ids")
+    List<OrderStateRow> findStatesByIds(@Param("ids") List<Long> ids);
+
+    @Query("SELECT oi FROM OrderItem oi JOIN FETCH oi.product WHERE oi.order.id IN :orderIds")
+    List<OrderItem> findItemsByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    /**
+     * Reads the items of the order for a response, without loading the item and product entities.
+     */
+    @Query("SELECT new group.rohlik.grocerymanager.dto.OrderItemTO(oi.code, p.code, oi.quantity, oi.unitPrice, " +
+            "oi.totalPrice) FROM OrderItem oi JOIN oi.product p WHERE oi.order.id = :orderId ORDER BY oi.id")
+    List<OrderItemTO> findItemTOsByOrderId(@Param("orderId") Long orderId);
+
+    /**
+     * Changes the status of the order only if it still has the expected status and version, increments the version.
+     * The update bypasses the persistence context, so the auditing columns are set here.
+     *
+     * @return 1 if the order was changed, 0 if it was changed by someone else in the meantime
+     */
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :newStatus, o.version = o.version + 1, " +
+            "o.updateDate = :updateDate, o.updatedBy = :updatedBy " +
+            "WHERE o.id = :id AND o.status = :status AND o.version = :version")
+    int updateStatus(@Param("id") Long id,
+                     @Param("status") OrderStatus status,
+                     @Param("version") Long version,
+                     @Param("newStatus") OrderStatus newStatus,
+                     @Param("updateDate") Date updateDate,
+                     @Param("updatedBy") String updatedBy);
 }
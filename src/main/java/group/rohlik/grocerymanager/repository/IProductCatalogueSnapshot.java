@@ -0,0 +1,42 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductTO;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Read-only snapshot of the product catalogue, kept up to date from the committed product and stock changes.
+ * It serves reads only once it is {@link #isReady() ready}, products missing in it are to be read from the database.
+ *
+ * @author Tomas Kramec
+ */
+public interface IProductCatalogueSnapshot {
+
+    /**
+     * @return true once the snapshot is enabled and loaded
+     */
+    boolean isReady();
+
+    /**
+     * @param code the product code
+     * @return the product including its version, empty if the snapshot is not ready or does not hold the product
+     */
+    Optional<ProductTO> getProduct(String code);
+
+    /**
+     * Streams the products sorted by name and then code. The stream is read in chunks and is weakly consistent:
+     * a product changed while streaming is listed as it was when its chunk was read, a product renamed meanwhile
+     * may be listed twice or not at all.
+     *
+     * @param onlyActive whether to skip the archived products
+     * @return the products, empty if the snapshot is not ready
+     */
+    Stream<ProductRow> streamRows(boolean onlyActive);
+
+    /**
+     * Replaces the content of the snapshot with the products stored in the database.
+     */
+    void rebuild();
+}
@@ -0,0 +1,29 @@
+package group.rohlik.grocerymanager.repository;
+
+/**
+ * In-memory index of the active product codes to their primary keys.
+ * <p>
+ * The index is only a hint for the lookups by code: a missing or stale entry must lead to the lookup by code,
+ * never to a wrong result. Product ids are generated by a sequence starting at 1, so {@link #UNKNOWN_ID} is never a valid id.
+ *
+ * @author Tomas Kramec
+ */
+public interface IProductIdIndex {
+
+    long UNKNOWN_ID = 0L;
+
+    /**
+     * @param code the product code
+     * @return the id of the product or {@link #UNKNOWN_ID} when the code is not indexed
+     */
+    long getId(String code);
+
+    void put(String code, long id);
+
+    void remove(String code);
+
+    /**
+     * Replaces the content of the index with the active products stored in the database.
+     */
+    void rebuild();
+}
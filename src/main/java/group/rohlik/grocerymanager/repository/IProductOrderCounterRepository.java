@@ -0,0 +1,123 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.model.ProductOrderCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for the per-product order counters. The counters of a product are read summed
+ * over its shards, the updates of the order transactions go to a single shard.
+ *
+ * @author Tomas Kramec
+ */
+@Repository
+public interface IProductOrderCounterRepository extends JpaRepository<ProductOrderCounter, ProductOrderCounter.Key> {
+
+    @Query("SELECT new group.rohlik.grocerymanager.model.ProductOrderCounter(c.productId, SUM(c.activeOrderItems), " +
+            "SUM(c.finishedOrderItems)) FROM ProductOrderCounter c WHERE c.productId = :productId GROUP BY c.productId")
+    Optional<ProductOrderCounter> findByProductId(@Param("productId") Long productId);
+
+    @Query("SELECT new group.rohlik.grocerymanager.model.ProductOrderCounter(c.productId, SUM(c.activeOrderItems), " +
+            "SUM(c.finishedOrderItems)) FROM ProductOrderCounter c " +
+            "WHERE c.productId = (SELECT p.id FROM Product p WHERE p.code = :code) GROUP BY c.productId")
+    Optional<ProductOrderCounter> findByProductCode(@Param("code") String code);
+
+    /**
+     * Adds the deltas to the counters of the product in the given shard, the row is created when missing.
+     */
+    @Modifying
+    @Query(value = """
+            MERGE INTO GM_PRODUCT_ORDER_COUNTER c
+            USING (VALUES (CAST(:productId AS BIGINT), CAST(:shard AS INTEGER), CAST(:activeDelta AS BIGINT),
+                           CAST(:finishedDelta AS BIGINT)))
+                AS d (PRODUCT_ID, SHARD, ACTIVE_DELTA, FINISHED_DELTA)
+            ON c.PRODUCT_ID = d.PRODUCT_ID AND c.SHARD = d.SHARD
+            WHEN MATCHED THEN UPDATE SET ACTIVE_ORDER_ITEMS = c.ACTIVE_ORDER_ITEMS + d.ACTIVE_DELTA,
+                                         FINISHED_ORDER_ITEMS = c.FINISHED_ORDER_ITEMS + d.FINISHED_DELTA
+            WHEN NOT MATCHED THEN INSERT (PRODUCT_ID, SHARD, ACTIVE_ORDER_ITEMS, FINISHED_ORDER_ITEMS)
+                                  VALUES (d.PRODUCT_ID, d.SHARD, d.ACTIVE_DELTA, d.FINISHED_DELTA)
+            """, nativeQuery = true)
+    int add(@Param("productId") Long productId,
+            @Param("shard") int shard,
+            @Param("activeDelta") long activeDelta,
+            @Param("finishedDelta") long finishedDelta);
+
+    /**
+     * Moves the items of the given orders which are still {@code PAID} from the active to the finished counters
+     * of shard zero. Called before the orders are moved to the archive, where they count as finished.
+     */
+    @Modifying
+    @Query(value = """
+            MERGE INTO GM_PRODUCT_ORDER_COUNTER c
+            USING (SELECT oi.PRODUCT_ID, COUNT(*) AS ITEMS
+                   FROM GM_ORDER_ITEM oi JOIN GM_ORDER o ON o.ID = oi.ORDER_ID
+                   WHERE o.ID IN (:orderIds) AND o.STATUS = 'PAID'
+                   GROUP BY oi.PRODUCT_ID) d
+            ON c.PRODUCT_ID = d.PRODUCT_ID AND c.SHARD = 0
+            WHEN MATCHED THEN UPDATE SET ACTIVE_ORDER_ITEMS = c.ACTIVE_ORDER_ITEMS - d.ITEMS,
+                                         FINISHED_ORDER_ITEMS = c.FINISHED_ORDER_ITEMS + d.ITEMS
+            WHEN NOT MATCHED THEN INSERT (PRODUCT_ID, SHARD, ACTIVE_ORDER_ITEMS, FINISHED_ORDER_ITEMS)
+                                  VALUES (d.PRODUCT_ID, 0, -d.ITEMS, d.ITEMS)
+            """, nativeQuery = true)
+    int finishPaidOrders(@Param("orderIds") List<Long> orderIds);
+
+    /**
+     * Locks the counter rows of all products in the order of the product ids and shards, the order in which
+     * the order transactions lock them too. Called before the {@link #reconcile() reconciliation}, which must not
+     * overwrite the increments of transactions still running.
+     *
+     * @return the product ids of the locked rows
+     */
+    @Query(value = "SELECT PRODUCT_ID FROM GM_PRODUCT_ORDER_COUNTER ORDER BY PRODUCT_ID, SHARD FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockAll();
+
+    /**
+     * Recounts the counters of all products from the order tables and the archive, the difference of the recount
+     * and the sum of the other shards is written to shard zero. Only the rows whose sums differ from the recount
+     * are written. The counter rows are to be {@link #lockAll() locked} in the same transaction first.
+     *
+     * @return the number of corrected or created rows
+     */
+    @Modifying
+    @Query(value = """
+            MERGE INTO GM_PRODUCT_ORDER_COUNTER c
+            USING (SELECT p.ID AS PRODUCT_ID,
+                          COALESCE(a.ITEMS, 0) AS ACTIVE_ORDER_ITEMS,
+                          COALESCE(f.ITEMS, 0) + COALESCE(r.ITEMS, 0) AS FINISHED_ORDER_ITEMS,
+                          COALESCE(s.ACTIVE_ORDER_ITEMS, 0) AS SHARDS_ACTIVE_ORDER_ITEMS,
+                          COALESCE(s.FINISHED_ORDER_ITEMS, 0) AS SHARDS_FINISHED_ORDER_ITEMS
+                   FROM GM_PRODUCT p
+                   LEFT JOIN (SELECT oi.PRODUCT_ID, COUNT(*) AS ITEMS
+                              FROM GM_ORDER_ITEM oi JOIN GM_ORDER o ON o.ID = oi.ORDER_ID
+                              WHERE o.STATUS IN ('PENDING', 'PAID')
+                              GROUP BY oi.PRODUCT_ID) a ON a.PRODUCT_ID = p.ID
+                   LEFT JOIN (SELECT oi.PRODUCT_ID, COUNT(*) AS ITEMS
+                              FROM GM_ORDER_ITEM oi JOIN GM_ORDER o ON o.ID = oi.ORDER_ID
+                              WHERE o.STATUS IN ('CANCELED', 'EXPIRED')
+                              GROUP BY oi.PRODUCT_ID) f ON f.PRODUCT_ID = p.ID
+                   LEFT JOIN (SELECT oia.PRODUCT_ID, COUNT(*) AS ITEMS
+                              FROM GM_ORDER_ITEM_ARCHIVE oia
+                              GROUP BY oia.PRODUCT_ID) r ON r.PRODUCT_ID = p.ID
+                   LEFT JOIN (SELECT cs.PRODUCT_ID, SUM(cs.ACTIVE_ORDER_ITEMS) AS ACTIVE_ORDER_ITEMS,
+                                     SUM(cs.FINISHED_ORDER_ITEMS) AS FINISHED_ORDER_ITEMS
+                              FROM GM_PRODUCT_ORDER_COUNTER cs
+                              WHERE cs.SHARD > 0
+                              GROUP BY cs.PRODUCT_ID) s ON s.PRODUCT_ID = p.ID) d
+            ON c.PRODUCT_ID = d.PRODUCT_ID AND c.SHARD = 0
+            WHEN MATCHED AND (c.ACTIVE_ORDER_ITEMS + d.SHARDS_ACTIVE_ORDER_ITEMS <> d.ACTIVE_ORDER_ITEMS
+                              OR c.FINISHED_ORDER_ITEMS + d.SHARDS_FINISHED_ORDER_ITEMS <> d.FINISHED_ORDER_ITEMS)
+                THEN UPDATE SET ACTIVE_ORDER_ITEMS = d.ACTIVE_ORDER_ITEMS - d.SHARDS_ACTIVE_ORDER_ITEMS,
+                                FINISHED_ORDER_ITEMS = d.FINISHED_ORDER_ITEMS - d.SHARDS_FINISHED_ORDER_ITEMS
+            WHEN NOT MATCHED THEN INSERT (PRODUCT_ID, SHARD, ACTIVE_ORDER_ITEMS, FINISHED_ORDER_ITEMS)
+                                  VALUES (d.PRODUCT_ID, 0, d.ACTIVE_ORDER_ITEMS - d.SHARDS_ACTIVE_ORDER_ITEMS,
+                                          d.FINISHED_ORDER_ITEMS - d.SHARDS_FINISHED_ORDER_ITEMS)
+            """, nativeQuery = true)
+    int reconcile();
+}
@@ -1,17 +1,26 @@
 package group.rohlik.grocerymanager.repository;
 
+import group.rohlik.grocerymanager.dto.ProductIdRow;
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductSnapshotRow;
 import group.rohlik.grocerymanager.model.Product;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * @author Tomas Kramec
@@ -23,13 +32,65 @@ public interface IProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.code = :code AND p.archived = FALSE")
     Optional<Product> findByCodeForUpdate(@Param("code") String code);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id AND p.archived = FALSE")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+
 
     List<Product> findAllByArchived(@Param("archived") Boolean archived, Sort sort);
 
+    List<Product> findAllByArchived(@Param("archived") Boolean archived, Sort sort, Limit limit);
+
+    /**
+     * Reads the active products with the most order items in active and finished orders, preloaded into the product
+     * cache at startup. Products which were never ordered have no order counter and are not read.
+     *
+     * @param limit the maximum number of products
+     * @return the products from the most ordered one
+     */
+    @Query("SELECT p FROM Product p JOIN ProductOrderCounter c ON c.productId = p.id WHERE p.archived = FALSE " +
+            "GROUP BY p ORDER BY SUM(c.activeOrderItems + c.finishedOrderItems) DESC, p.id")
+    List<Product> findMostOrdered(Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new group.rohlik.grocerymanager.dto.ProductRow(p.code, p.name, p.stockQuantity, p.stockBuckets, " +
+            "p.pricePerUnit, p.archived) FROM Product p ORDER BY p.name")
+    Stream<ProductRow> streamAllRows();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new group.rohlik.grocerymanager.dto.ProductRow(p.code, p.name, p.stockQuantity, p.stockBuckets, " +
+            "p.pricePerUnit, p.archived) FROM Product p WHERE p.archived = :archived ORDER BY p.name")
+    Stream<ProductRow> streamRowsByArchived(@Param("archived") boolean archived);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new group.rohlik.grocerymanager.dto.ProductIdRow(p.id, p.code) FROM Product p WHERE p.archived = FALSE")
+    Stream<ProductIdRow> streamIdRows();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new group.rohlik.grocerymanager.dto.ProductSnapshotRow(p.code, p.name, p.stockQuantity, " +
+            "p.stockBuckets, p.pricePerUnit, p.archived, p.version) FROM Product p")
+    Stream<ProductSnapshotRow> streamSnapshotRows();
+
     Optional<Product> findByCode(String code);
 
+    @Query("SELECT new group.rohlik.grocerymanager.dto.ProductIdRow(p.id, p.code) FROM Product p " +
+            "WHERE p.stockPartitioned = TRUE AND p.archived = FALSE")
+    List<ProductIdRow> findPartitionedIdRows();
+
+    /**
+     * Sets the stock quantity of the partitioned products to the sum of their locations.
+     *
+     * @param ids the ids of the products
+     * @return the number of updated products
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = " +
+            "(SELECT COALESCE(SUM(s.quantity), 0) FROM ProductStock s WHERE s.product.id = p.id), " +
+            "p.version = p.version + 1 WHERE p.id IN :ids AND p.stockPartitioned = TRUE")
+    int refreshStockQuantities(@Param("ids") Collection<Long> ids);
+
     @Modifying
-    @Query("UPDATE Product p SET p.archived = TRUE WHERE p.code = :code")
+    @Query("UPDATE Product p SET p.archived = TRUE, p.version = p.version + 1 WHERE p.code = :code")
     void archiveByCode(@Param("code") String code);
 
     void deleteByCode(String code);
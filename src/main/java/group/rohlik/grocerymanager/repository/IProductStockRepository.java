@@ -0,0 +1,48 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+import group.rohlik.grocerymanager.model.ProductStock;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for the stock of the partitioned products per warehouse location.
+ *
+ * @author Tomas Kramec
+ */
+@Repository
+public interface IProductStockRepository extends JpaRepository<ProductStock, Long> {
+
+    @Query("SELECT new group.rohlik.grocerymanager.dto.ProductStockRow(s.id, s.locationCode, s.quantity) " +
+            "FROM ProductStock s WHERE s.product.id = :productId ORDER BY s.locationCode")
+    List<ProductStockRow> findRowsByProductId(@Param("productId") Long productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStock s WHERE s.product.id = :productId ORDER BY s.id")
+    List<ProductStock> findByProductIdForUpdate(@Param("productId") Long productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStock s WHERE s.id = :id")
+    Optional<ProductStock> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Locks the location unless another transaction holds its lock. The query is native, because the H2 dialect
+     * of Hibernate drops SKIP LOCKED from the lock clause although the database supports it.
+     *
+     * @param id the id of the location row
+     * @return the locked location or empty when it is locked by another transaction
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "GM_PRODUCT_STOCK"))
+    @Query(value = "SELECT * FROM GM_PRODUCT_STOCK WHERE ID = :id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<ProductStock> findByIdForUpdateSkipLocked(@Param("id") Long id);
+}
@@ -0,0 +1,37 @@
+package group.rohlik.grocerymanager.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * In-memory index of the reservation holds ordered by their expiry.
+ * <p>
+ * The index only tells the sweep which holds to look at: a hold missing in the index is still found
+ * by the sweep over the table, a hold in the index without rows is simply dropped from it.
+ *
+ * @author Tomas Kramec
+ */
+public interface IReservationHoldIndex {
+
+    void put(UUID code, LocalDateTime expiresAt);
+
+    void remove(UUID code);
+
+    void removeAll(Collection<UUID> codes);
+
+    /**
+     * @param now   the current time
+     * @param limit the maximum number of returned codes
+     * @return the codes of the holds expired at the given time, the longest expired first; they stay in the index
+     */
+    List<UUID> getExpired(LocalDateTime now, int limit);
+
+    int size();
+
+    /**
+     * Replaces the content of the index with the holds stored in the database.
+     */
+    void rebuild();
+}
@@ -0,0 +1,67 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.dto.ReservationHoldExpiryRow;
+import group.rohlik.grocerymanager.model.ReservationHold;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Repository interface for the stock reservation holds.
+ * Held rows are locked before they are deleted, so of a conversion into an order, a drop and a sweep
+ * of the same hold only the first one finds the rows.
+ *
+ * @author Tomas Kramec
+ */
+@Repository
+public interface IReservationHoldRepository extends JpaRepository<ReservationHold, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM ReservationHold h JOIN FETCH h.product WHERE h.code = :code ORDER BY h.id")
+    List<ReservationHold> findByCodeForUpdate(@Param("code") UUID code);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM ReservationHold h JOIN FETCH h.product WHERE h.code IN :codes AND h.expiresAt <= :now " +
+            "ORDER BY h.id")
+    List<ReservationHold> findExpiredByCodesForUpdate(@Param("codes") Collection<UUID> codes,
+                                                      @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM ReservationHold h WHERE h.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT COUNT(h) > 0 FROM ReservationHold h " +
+            "WHERE h.product.id = (SELECT p.id FROM Product p WHERE p.code = :code) AND h.expiresAt > :now")
+    boolean existsLiveByProductCode(@Param("code") String code, @Param("now") LocalDateTime now);
+
+    /**
+     * Deletes the expired holds of the product which the sweep did not get to yet, before the product is deleted.
+     * Their stock is not released, it goes away with the product.
+     */
+    @Modifying
+    @Query("DELETE FROM ReservationHold h " +
+            "WHERE h.product.id = (SELECT p.id FROM Product p WHERE p.code = :code) AND h.expiresAt <= :now")
+    int deleteExpiredByProductCode(@Param("code") String code, @Param("now") LocalDateTime now);
+
+    @Query("SELECT DISTINCT h.code FROM ReservationHold h WHERE h.expiresAt <= :now")
+    List<UUID> findExpiredCodes(@Param("now") LocalDateTime now, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new group.rohlik.grocerymanager.dto.ReservationHoldExpiryRow(h.code, MIN(h.expiresAt)) " +
+            "FROM ReservationHold h GROUP BY h.code")
+    Stream<ReservationHoldExpiryRow> streamExpiryRows();
+}
@@ -0,0 +1,226 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductSnapshotRow;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.event.ProductChangedEvent;
+import group.rohlik.grocerymanager.event.StockChangedEvent;
+import group.rohlik.grocerymanager.property.CatalogueSnapshotProperties;
+import group.rohlik.grocerymanager.util.OffHeapProductTable;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Product catalogue snapshot held in an {@link OffHeapProductTable}, so a large catalogue costs neither heap nor GC time.
+ * Lookups by code are optimistic reads of a StampedLock, the committed changes are applied under its write lock:
+ * stock changes are overlaid from the {@link StockChangedEvent}, other changes reload the product from the database.
+ * Both are ordered by the product version, a late event never overwrites a newer state. Listings are streamed
+ * from the name index of the table in chunks, each read under the read lock, so neither the whole catalogue
+ * is copied to the heap nor the lock held while the rows are written to the client.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+@Slf4j
+public class ProductCatalogueSnapshot implements IProductCatalogueSnapshot {
+
+    private static final int STREAM_CHUNK_SIZE = 256;
+
+    private final IProductRepository productRepository;
+    private final CatalogueSnapshotProperties properties;
+    private final StampedLock lock = new StampedLock();
+    private final Set<String> changedWhileLoading = ConcurrentHashMap.newKeySet();
+    private OffHeapProductTable table;
+    private volatile boolean loading;
+    private volatile boolean ready;
+
+    public ProductCatalogueSnapshot(final IProductRepository productRepository, final CatalogueSnapshotProperties properties,
+                                    final MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.properties = properties;
+        this.table = new OffHeapProductTable(0);
+        Gauge.builder("gm.catalogue.snapshot.size", this, snapshot -> snapshot.read(OffHeapProductTable::size))
+                .description("Number of products in the catalogue snapshot")
+                .register(meterRegistry);
+        Gauge.builder("gm.catalogue.snapshot.memory", this, snapshot -> snapshot.read(OffHeapProductTable::offHeapBytes))
+                .description("Off-heap memory of the catalogue snapshot")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public Optional<ProductTO> getProduct(final String code) {
+        if (!ready || code == null) {
+            return Optional.empty();
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                var product = table.get(code);
+                if (lock.validate(stamp)) {
+                    return Optional.ofNullable(product);
+                }
+            } catch (RuntimeException e) {
+                // inconsistent read racing with a write, repeated under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return Optional.ofNullable(table.get(code));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Stream<ProductRow> streamRows(final boolean onlyActive) {
+        if (!ready) {
+            return Stream.empty();
+        }
+        var rows = Stream.iterate(readChunk(null), chunk -> !chunk.isEmpty(),
+                        chunk -> chunk.size() < STREAM_CHUNK_SIZE ? List.of() : readChunk(chunk.get(chunk.size() - 1)))
+                .flatMap(List::stream);
+        return onlyActive ? rows.filter(row -> !row.archived()) : rows;
+    }
+
+    /**
+     * Reads the rows following the given one by name under the read lock, which is not held while they are consumed.
+     */
+    private List<ProductRow> readChunk(final ProductRow after) {
+        var chunk = new ArrayList<ProductRow>(STREAM_CHUNK_SIZE);
+        long stamp = lock.readLock();
+        try {
+            table.forEachByName(after == null ? null : after.name(), after == null ? null : after.code(),
+                    STREAM_CHUNK_SIZE, chunk::add);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return chunk;
+    }
+
+    /**
+     * Loads the products into a new table which receives the committed changes from the start.
+     * Products changed while loading are reloaded afterwards, the loaded rows might predate their change.
+     * The rows come in no particular order, the table sorts its name index once they are all loaded.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    @Override
+    public void rebuild() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        var rebuilt = new OffHeapProductTable(properties.getExpectedSize());
+        rebuilt.startBulkLoad();
+        long stamp = lock.writeLock();
+        try {
+            table = rebuilt;
+            loading = true;
+            ready = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        try (Stream<ProductSnapshotRow> rows = productRepository.streamSnapshotRows()) {
+            rows.forEach(this::put);
+        }
+        stamp = lock.writeLock();
+        try {
+            rebuilt.finishBulkLoad();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        loading = false;
+        for (String code : changedWhileLoading) {
+            changedWhileLoading.remove(code);
+            reload(code);
+        }
+        ready = true;
+        log.info("Catalogue snapshot rebuilt with {} products in {} bytes off-heap", rebuilt.size(), rebuilt.offHeapBytes());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(final StockChangedEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (loading) {
+            changedWhileLoading.add(event.productCode());
+        }
+        long stamp = lock.writeLock();
+        try {
+            table.updateStock(event.productCode(), event.stockQuantity(), event.version());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(final ProductChangedEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (loading) {
+            changedWhileLoading.add(event.productCode());
+        }
+        reload(event.productCode());
+    }
+
+    private void reload(final String code) {
+        var product = productRepository.findByCode(code);
+        long stamp = lock.writeLock();
+        try {
+            if (product.isPresent()) {
+                var p = product.get();
+                table.put(p.getCode(), p.getName(), p.getPricePerUnit(), p.isArchived(), p.getStockBuckets(),
+                        p.getStockQuantity(), versionOf(p.getVersion()));
+            } else {
+                table.remove(code);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void put(final ProductSnapshotRow row) {
+        long stamp = lock.writeLock();
+        try {
+            table.put(row.code(), row.name(), row.pricePerUnit(), row.archived(), row.stockBuckets(), row.stockQuantity(),
+                    versionOf(row.version()));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private long read(final ToLongFunction<OffHeapProductTable> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.applyAsLong(table);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static long versionOf(final Long version) {
+        return version == null ? 0L : version;
+    }
+}
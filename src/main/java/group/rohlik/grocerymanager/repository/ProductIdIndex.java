@@ -0,0 +1,126 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.dto.ProductIdRow;
+import group.rohlik.grocerymanager.property.ProductIdIndexProperties;
+import group.rohlik.grocerymanager.util.StringLongHashMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Product id index held in a {@link StringLongHashMap}. Lookups are optimistic reads of a StampedLock,
+ * so the reservation path neither allocates nor writes shared state, only the rare create/delete/archive take the write lock.
+ * <p>
+ * The index is loaded once the application is ready. Until then, and for products created outside of this instance,
+ * the lookups miss and the callers fall back to the lookup by code.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+@Slf4j
+public class ProductIdIndex implements IProductIdIndex {
+
+    private final IProductRepository productRepository;
+    private final ProductIdIndexProperties properties;
+    private final StampedLock lock = new StampedLock();
+    private StringLongHashMap index;
+
+    public ProductIdIndex(final IProductRepository productRepository, final ProductIdIndexProperties properties,
+                          final MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.properties = properties;
+        this.index = new StringLongHashMap(properties.getExpectedSize());
+        Gauge.builder("gm.product.id.index.size", this, productIdIndex -> productIdIndex.read(StringLongHashMap::size))
+                .description("Number of product codes in the product id index")
+                .register(meterRegistry);
+        Gauge.builder("gm.product.id.index.table", this, productIdIndex -> productIdIndex.read(StringLongHashMap::tableBytes))
+                .description("Heap occupied by the tables of the product id index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long getId(final String code) {
+        if (!properties.isEnabled() || code == null) {
+            return UNKNOWN_ID;
+        }
+        long stamp = lock.tryOptimisticRead();
+        long id = index.get(code, UNKNOWN_ID);
+        if (lock.validate(stamp)) {
+            return id;
+        }
+        stamp = lock.readLock();
+        try {
+            return index.get(code, UNKNOWN_ID);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void put(final String code, final long id) {
+        Assert.hasText(code, "Product code must not be empty");
+        Assert.isTrue(id != UNKNOWN_ID, "Product id must be known");
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            index.put(code, id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(final String code) {
+        long stamp = lock.writeLock();
+        try {
+            index.remove(code);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Loads the index off the lock and swaps it in at once. Changes made meanwhile may be lost,
+     * which only turns them into misses served by the lookup by code.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    @Override
+    public void rebuild() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        var rebuilt = new StringLongHashMap(properties.getExpectedSize());
+        try (Stream<ProductIdRow> rows = productRepository.streamIdRows()) {
+            rows.forEach(row -> rebuilt.put(row.code(), row.id()));
+        }
+        long stamp = lock.writeLock();
+        try {
+            index = rebuilt;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        log.info("Product id index rebuilt with {} products in {} bytes of tables", rebuilt.size(), rebuilt.tableBytes());
+    }
+
+    private double read(final ToLongFunction<StringLongHashMap> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.applyAsLong(index);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.dto.ReservationHoldExpiryRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Hold expiry index held in a {@link ConcurrentSkipListSet} ordered by expiry, next to a map of the codes
+ * to their entries for the removals. Creating and dropping a hold is an O(log n) update without a lock,
+ * the sweep reads the expired holds from the head of the set and never queries the table when nothing is due.
+ * <p>
+ * The index is loaded once the application is ready. Holds created by other instances are not indexed,
+ * they are left to the periodic sweep over the table.
+ *
+ * @author Tomas Kramec
+ */
+@Component
+@Slf4j
+public class ReservationHoldIndex implements IReservationHoldIndex {
+
+    private static final Comparator<Entry> EXPIRY_ORDER = Comparator.comparing(Entry::expiresAt)
+            .thenComparing(Entry::code);
+
+    private final IReservationHoldRepository reservationHoldRepository;
+    private final ConcurrentSkipListSet<Entry> byExpiry = new ConcurrentSkipListSet<>(EXPIRY_ORDER);
+    private final ConcurrentHashMap<UUID, Entry> byCode = new ConcurrentHashMap<>();
+
+    public ReservationHoldIndex(final IReservationHoldRepository reservationHoldRepository,
+                                final MeterRegistry meterRegistry) {
+        this.reservationHoldRepository = reservationHoldRepository;
+        Gauge.builder("gm.reservation.hold.index.size", this, IReservationHoldIndex::size)
+                .description("Number of reservation holds in the hold expiry index")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void put(final UUID code, final LocalDateTime expiresAt) {
+        Assert.notNull(code, "Hold code must not be null");
+        Assert.notNull(expiresAt, "Hold expiry must not be null");
+        var entry = new Entry(code, expiresAt);
+        var previous = byCode.put(code, entry);
+        if (previous != null) {
+            byExpiry.remove(previous);
+        }
+        byExpiry.add(entry);
+    }
+
+    @Override
+    public void remove(final UUID code) {
+        var entry = byCode.remove(code);
+        if (entry != null) {
+            byExpiry.remove(entry);
+        }
+    }
+
+    @Override
+    public void removeAll(final Collection<UUID> codes) {
+        codes.forEach(this::remove);
+    }
+
+    @Override
+    public List<UUID> getExpired(final LocalDateTime now, final int limit) {
+        var expired = new ArrayList<UUID>();
+        for (Entry entry : byExpiry) {
+            if (entry.expiresAt().isAfter(now) || expired.size() >= limit) {
+                break;
+            }
+            expired.add(entry.code());
+        }
+        return expired;
+    }
+
+    @Override
+    public int size() {
+        return byCode.size();
+    }
+
+    /**
+     * Adds the stored holds to the index. Holds created meanwhile are indexed already,
+     * holds deleted meanwhile may be added back, which only makes the sweep look for their rows in vain.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    @Override
+    public void rebuild() {
+        try (Stream<ReservationHoldExpiryRow> rows = reservationHoldRepository.streamExpiryRows()) {
+            rows.forEach(row -> byCode.computeIfAbsent(row.code(), code -> {
+                var entry = new Entry(code, row.expiresAt());
+                byExpiry.add(entry);
+                return entry;
+            }));
+        }
+        log.info("Reservation hold index rebuilt with {} holds", size());
+    }
+
+    private record Entry(UUID code, LocalDateTime expiresAt) {
+    }
+}
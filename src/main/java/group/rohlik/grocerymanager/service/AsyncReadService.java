@@ -0,0 +1,109 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.property.AsyncReadProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class AsyncReadService implements IAsyncReadService {
+
+    private final IProductService productService;
+    private final IOrderService orderService;
+    private final CacheManager cacheManager;
+    private final AsyncReadProperties asyncReadProperties;
+    private final Semaphore readPermits;
+    private final ExecutorService readExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AsyncReadService(final IProductService productService, final IOrderService orderService,
+                            final CacheManager cacheManager, final AsyncReadProperties asyncReadProperties) {
+        this.productService = productService;
+        this.orderService = orderService;
+        this.cacheManager = cacheManager;
+        this.asyncReadProperties = asyncReadProperties;
+        this.readPermits = new Semaphore(asyncReadProperties.getMaxConcurrency());
+    }
+
+    @Override
+    public CompletableFuture<List<ProductTO>> getAllProducts(final boolean onlyActive) {
+        return read(() -> productService.getAllProducts(onlyActive));
+    }
+
+    @Override
+    public CompletableFuture<ProductTO> getProductByCode(final String code) {
+        Assert.hasText(code, "Product code must not be empty");
+        return getCached("product", code, ProductTO.class)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> read(() -> productService.getProductByCode(code)));
+    }
+
+    @Override
+    public CompletableFuture<OrderTO> getOrderByCode(final UUID code) {
+        Assert.notNull(code, "Order code must not be null");
+        return read(() -> orderService.getOrderByCode(code));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readExecutor.shutdownNow();
+    }
+
+    private <T> Optional<T> getCached(final String cacheName, final Object key, final Class<T> type) {
+        return Optional.ofNullable(cacheManager.getCache(cacheName))
+                .map(cache -> cache.get(key, type));
+    }
+
+    /**
+     * Runs the blocking read on a virtual thread. The number of reads hitting the database at the same time
+     * is limited, so a read burst waits here instead of in the connection pool of the write path.
+     * Both the wait for a permit and the read itself are limited by the timeout, the time of the read counts
+     * from the permit. A read which times out or whose future is canceled is interrupted, so that it does not
+     * keep its permit and connection after nobody waits for it.
+     *
+     * @param reader the blocking read
+     * @return the future completed with the read value
+     */
+    private <T> CompletableFuture<T> read(final Supplier<T> reader) {
+        var timeoutMillis = asyncReadProperties.getTimeout().toMillis();
+        var result = new CompletableFuture<T>();
+        var task = readExecutor.submit(() -> {
+            try {
+                if (!readPermits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    result.completeExceptionally(new TimeoutException("Read was not started in time"));
+                    return;
+                }
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+                result.complete(reader.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                readPermits.release();
+            }
+        });
+        result.whenComplete((value, e) -> {
+            if (e instanceof TimeoutException || e instanceof CancellationException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+}
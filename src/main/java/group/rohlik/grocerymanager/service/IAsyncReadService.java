@@ -0,0 +1,33 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of the read operations of products and orders.
+ * Cached values are returned as already completed futures. Database reads run on virtual threads
+ * limited to the configured concurrency, so request threads are never blocked by JDBC.
+ *
+ * @author Tomas Kramec
+ */
+public interface IAsyncReadService {
+
+    /**
+     * @see IProductService#getAllProducts(boolean)
+     */
+    CompletableFuture<List<ProductTO>> getAllProducts(boolean onlyActive);
+
+    /**
+     * @see IProductService#getProductByCode(String)
+     */
+    CompletableFuture<ProductTO> getProductByCode(String code);
+
+    /**
+     * @see IOrderService#getOrderByCode(UUID)
+     */
+    CompletableFuture<OrderTO> getOrderByCode(UUID code);
+}
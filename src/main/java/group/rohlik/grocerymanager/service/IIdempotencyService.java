@@ -0,0 +1,38 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.exception.IdempotencyKeyInProgressException;
+import group.rohlik.grocerymanager.exception.IdempotencyKeyReuseException;
+
+import java.util.function.Supplier;
+
+/**
+ * Service interface for executing write requests at most once per idempotency key.
+ *
+ * @author Tomas Kramec
+ */
+public interface IIdempotencyService {
+
+    /**
+     * Executes the action once for the key and returns its response, a retry with the same key gets the stored
+     * response without executing the action again. A duplicate arriving while the first request is still running
+     * waits for its response. The response is stored in the transaction of the action, a failed action stores
+     * nothing and can be retried with the same key.
+     *
+     * @param scope        the operation and the resource it is applied to, keys are unique within a scope
+     * @param key          the idempotency key sent by the client
+     * @param request      the request, a key reused for a different request is rejected
+     * @param responseType the type the stored response is read as
+     * @param action       the write to execute
+     * @return the response of the first execution
+     * @throws IdempotencyKeyReuseException      when the key was used for a different request
+     * @throws IdempotencyKeyInProgressException when the first request did not finish in the configured wait timeout
+     */
+    <T> T execute(String scope, String key, Object request, Class<T> responseType, Supplier<T> action);
+
+    /**
+     * Deletes the stored responses whose time to live has passed.
+     *
+     * @return the number of deleted responses
+     */
+    int deleteExpired();
+}
@@ -0,0 +1,31 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.model.OrderStatus;
+
+import java.util.Date;
+
+/**
+ * Service interface for moving finished orders from the hot order tables to the archive.
+ *
+ * @author Tomas Kramec
+ */
+public interface IOrderArchiveService {
+
+    /**
+     * Moves the oldest chunk of {@link OrderStatus#PAID}, {@link OrderStatus#CANCELED} and {@link OrderStatus#EXPIRED}
+     * orders which were last changed before the threshold, together with their items, to the archive
+     * in one transaction.
+     *
+     * @param archiveDateThreshold orders changed at or after this date stay in the hot tables
+     * @return the number of archived orders
+     */
+    int archiveNextChunk(Date archiveDateThreshold);
+
+    /**
+     * Archives finished orders older than the configured retention in chunks, pausing between them,
+     * until there is nothing left to archive or the configured number of chunks per run is reached.
+     *
+     * @return the total number of archived orders
+     */
+    int archiveFinishedOrders();
+}
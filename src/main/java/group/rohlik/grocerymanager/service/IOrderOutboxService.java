@@ -0,0 +1,24 @@
+package group.rohlik.grocerymanager.service;
+
+/**
+ * Service interface for relaying order events from the transactional outbox to the configured sink.
+ *
+ * @author Tomas Kramec
+ */
+public interface IOrderOutboxService {
+
+    /**
+     * Delivers the oldest batch of outbox events to the sink and removes them from the outbox.
+     * If the sink fails, the batch stays in the outbox and is delivered again by the next call.
+     *
+     * @return the number of delivered events
+     */
+    int publishNextBatch();
+
+    /**
+     * Drains the outbox in batches until it is empty or the configured number of batches per run is reached.
+     *
+     * @return the total number of delivered events
+     */
+    int relay();
+}
@@ -2,6 +2,8 @@ package group.rohlik.grocerymanager.service;
 
 import group.rohlik.grocerymanager.dto.OrderTO;
 import group.rohlik.grocerymanager.exception.OrderExpiredException;
+import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.exception.ReservationHoldNotFoundException;
 import group.rohlik.grocerymanager.model.OrderStatus;
 
 import java.util.UUID;
@@ -22,6 +24,18 @@ public interface IOrderService {
      */
     OrderTO createOrder(OrderTO orderTO);
 
+    /**
+     * Creates a new order in state {@link OrderStatus#PENDING} of the products held by a reservation hold.
+     * The held stock is taken over by the order in the same transaction which deletes the hold,
+     * so the stock is not reserved again and stays reserved if the order cannot be created.
+     *
+     * @param holdCode the code of the reservation hold
+     * @return the created Order
+     * @throws ReservationHoldNotFoundException if there is no hold with the code or it has expired
+     * @throws ProductNotFoundException         if a held product was deleted or archived meanwhile
+     */
+    OrderTO createOrderFromHold(UUID holdCode) throws ReservationHoldNotFoundException, ProductNotFoundException;
+
     /**
      * Pays for an order identified by its unique code.
      * Only {@link OrderStatus#PENDING} orders can be paid.
@@ -42,7 +56,8 @@ public interface IOrderService {
     OrderTO cancelOrder(UUID code);
 
     /**
-     * Retrieves an order by its unique code.
+     * Retrieves an order by its unique code, from the hot order tables or from the archive of finished orders.
+     * Codes whose embedded creation time is older than the archive retention are looked up in the archive first.
      *
      * @param code the unique identifier of the order
      * @return the Order transfer object
@@ -0,0 +1,42 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderStateRow;
+import group.rohlik.grocerymanager.exception.InvalidOrderStatusException;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.OrderTransition;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+
+/**
+ * Applies the declared {@link OrderTransition order transitions}. A transition is written as a single conditional
+ * update of the order status, guarded by the status and version the order was read with, the order items are
+ * loaded only for transitions which release the reserved stock. Must be called in a transaction.
+ *
+ * @author Tomas Kramec
+ */
+public interface IOrderStateMachine {
+
+    /**
+     * Fires the transition on the order, releases the reserved stock if the transition requires it
+     * and publishes the order event of the transition.
+     *
+     * @param order      the order as it was read
+     * @param transition the transition to fire
+     * @return the order after the transition
+     * @throws InvalidOrderStatusException       if the transition cannot be fired from the status of the order
+     * @throws OptimisticLockingFailureException if the order was changed since it was read
+     */
+    OrderStateRow fire(OrderStateRow order, OrderTransition transition);
+
+    /**
+     * Fires the transition on the order like {@link #fire(OrderStateRow, OrderTransition)}, with the order items
+     * already loaded, e.g. for a batch of orders.
+     *
+     * @param order      the order as it was read
+     * @param transition the transition to fire
+     * @param items      the items of the order
+     * @return the order after the transition
+     */
+    OrderStateRow fire(OrderStateRow order, OrderTransition transition, List<OrderItem> items);
+}
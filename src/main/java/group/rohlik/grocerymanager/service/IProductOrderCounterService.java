@@ -0,0 +1,47 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.OrderStatus;
+
+import java.util.List;
+
+/**
+ * Service interface for maintaining the per-product counters of order items in active and finished orders.
+ * The counters are changed in the transaction of the order status change.
+ *
+ * @author Tomas Kramec
+ */
+public interface IProductOrderCounterService {
+
+    /**
+     * Counts the items of a newly created {@link OrderStatus#PENDING} order as active.
+     *
+     * @param order the created order with its items
+     */
+    void orderCreated(Order order);
+
+    /**
+     * Moves the items of an order which changed from {@link OrderStatus#PENDING} to {@link OrderStatus#CANCELED}
+     * or {@link OrderStatus#EXPIRED} from the active to the finished counters.
+     *
+     * @param items the items of the finished order
+     */
+    void orderFinished(List<OrderItem> items);
+
+    /**
+     * Moves the items of the {@link OrderStatus#PAID} orders among the given ones from the active
+     * to the finished counters. Must be called before the orders are moved to the archive.
+     *
+     * @param orderIds the ids of the orders which are being archived
+     */
+    void ordersArchived(List<Long> orderIds);
+
+    /**
+     * Recounts the counters of all products from the order tables and the archive in bulk
+     * and corrects the ones which drifted.
+     *
+     * @return the number of corrected counters
+     */
+    int reconcile();
+}
@@ -1,12 +1,16 @@
 package group.rohlik.grocerymanager.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import group.rohlik.grocerymanager.dto.ProductStockTO;
 import group.rohlik.grocerymanager.dto.ProductTO;
 import group.rohlik.grocerymanager.exception.InsufficientStockException;
 import group.rohlik.grocerymanager.exception.ProductAlreadyExistsException;
 import group.rohlik.grocerymanager.exception.ProductDeletionException;
 import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.exception.ProductVersionMismatchException;
 import group.rohlik.grocerymanager.model.Product;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -24,6 +28,17 @@ public interface IProductService {
      */
     List<ProductTO> getAllProducts(boolean onlyActive);
 
+    /**
+     * Writes all products, optionally filtering by active status, as a JSON array sorted by name.
+     * Rows are streamed from the database and written one by one, so the catalogue is never held in memory.
+     *
+     * @param onlyActive if true, writes only active products; otherwise, writes all products
+     * @param generator  the generator to write the array to
+     * @return the number of written products
+     * @throws IOException if writing to the generator fails
+     */
+    long writeAllProducts(boolean onlyActive, JsonGenerator generator) throws IOException;
+
     /**
      * Retrieves a product by its unique code.
      * This method finds also archived products.
@@ -36,6 +51,7 @@ public interface IProductService {
 
     /**
      * Creates a new product.
+     * With a positive number of stock buckets the stock is sharded into that many buckets right away.
      *
      * @param product the Product transfer object to be created
      * @return the created Product transfer object
@@ -46,17 +62,48 @@ public interface IProductService {
     /**
      * Updates an existing active product.
      * Only active (non-archived) products can be updated.
+     * If the version of the transfer object is set, the product is updated only if it still has this version.
+     * A positive number of stock buckets shards the stock into that many buckets which share the stock quantity
+     * evenly, zero merges the buckets back into the product, no number keeps the current buckets. The stock
+     * of a sharded product is set like that of any other product, a product partitioned into locations
+     * cannot be sharded.
      *
      * @param product the Product transfer object to be updated
      * @return the updated Product transfer object
+     * @throws ProductNotFoundException        if the active product with the specified code does not exist
+     * @throws ProductVersionMismatchException if the product has a different version than the expected one
+     */
+    ProductTO updateProduct(ProductTO product) throws ProductNotFoundException, ProductVersionMismatchException;
+
+    /**
+     * Retrieves the stock quantities of a product per warehouse location.
+     * This method finds also archived products.
+     *
+     * @param code the unique identifier of the product
+     * @return the locations sorted by their code, empty if the stock of the product is not partitioned
+     * @throws ProductNotFoundException if the product with the specified code does not exist
+     */
+    List<ProductStockTO> getStockLocations(String code) throws ProductNotFoundException;
+
+    /**
+     * Partitions the stock of an active product into the given warehouse locations, or replaces the locations
+     * of a partitioned product. Locations which are not listed are removed.
+     * The stock quantity of the product becomes the sum of the locations, reservations then take the stock
+     * from the locations and the stock quantity of an update of the product is ignored. The stock buckets
+     * of a sharded product are replaced by the locations.
+     *
+     * @param code      the unique identifier of the product
+     * @param locations the locations with their stock quantities
+     * @return the locations of the product sorted by their code
      * @throws ProductNotFoundException if the active product with the specified code does not exist
      */
-    ProductTO updateProduct(ProductTO product) throws ProductNotFoundException;
+    List<ProductStockTO> updateStockLocations(String code, List<ProductStockTO> locations) throws ProductNotFoundException;
 
     /**
      * Checks if a product has active orders. Active orders are defined as those with statuses
      * {@link group.rohlik.grocerymanager.model.OrderStatus#PENDING} or
      * {@link group.rohlik.grocerymanager.model.OrderStatus#PAID}.
+     * The check reads the precomputed order counters of the product.
      *
      * @param code the unique identifier of the product
      * @return true if the product has active orders, false otherwise
@@ -66,7 +113,8 @@ public interface IProductService {
     /**
      * Checks if a product has finished orders. Finished orders are defined as those with statuses
      * {@link group.rohlik.grocerymanager.model.OrderStatus#CANCELED} or
-     * {@link group.rohlik.grocerymanager.model.OrderStatus#EXPIRED}.
+     * {@link group.rohlik.grocerymanager.model.OrderStatus#EXPIRED}, archived orders count as finished too.
+     * The check reads the precomputed order counters of the product.
      *
      * @param code the unique identifier of the product
      * @return true if the product has finished orders, false otherwise
@@ -87,6 +135,7 @@ public interface IProductService {
     /**
      * Reserves stock for a product by reducing its stock quantity.
      * If the requested quantity exceeds the available stock, an InsufficientStockException is thrown.
+     * The stock of a partitioned product is reserved from its locations or stock buckets, see {@link IProductStockService}.
      *
      * @param productCode       the unique code of the product
      * @param requestedQuantity the quantity to reserve
@@ -98,6 +147,7 @@ public interface IProductService {
 
     /**
      * Releases stock for a product by increasing its stock quantity.
+     * The stock of a partitioned product is released to one of its locations or stock buckets, see {@link IProductStockService}.
      *
      * @param productCode       the unique code of the product
      * @param quantityToRelease the quantity to release
@@ -0,0 +1,103 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductStockTO;
+import group.rohlik.grocerymanager.exception.InsufficientStockException;
+import group.rohlik.grocerymanager.model.Product;
+
+import java.util.List;
+
+/**
+ * Service interface for the stock of the partitioned products, kept per warehouse location or sharded into
+ * stock buckets, which are locations named by the service.
+ * The product service delegates the stock changes of partitioned products here, the stock quantity
+ * of the product itself is the sum of its locations, refreshed shortly after they change.
+ *
+ * @author Tomas Kramec
+ */
+public interface IProductStockService {
+
+    /**
+     * Tells whether the product is known to be partitioned, so its reservations need not lock the product row.
+     * Products partitioned by another instance are unknown until they are reserved here or the application restarts.
+     *
+     * @param productCode the code of the product
+     * @return true if the product is known to be partitioned
+     */
+    boolean isPartitioned(String productCode);
+
+    /**
+     * Returns the locations of the product sorted by their code.
+     *
+     * @param product the product
+     * @return the locations, empty for a product which is not partitioned
+     */
+    List<ProductStockTO> getLocations(Product product);
+
+    /**
+     * Replaces the locations of the product, locations which are not listed are removed.
+     * Must be called in the transaction which holds the lock of the product.
+     *
+     * @param product   the locked product
+     * @param locations the new locations with their stock quantities
+     * @return the sum of the stock quantities of the locations
+     */
+    int replaceLocations(Product product, List<ProductStockTO> locations);
+
+    /**
+     * Shards the stock of the product into the number of buckets which share the stock quantity evenly,
+     * replacing its locations or buckets. Must be called in the transaction which holds the lock of the product.
+     *
+     * @param product       the locked product
+     * @param buckets       the number of buckets
+     * @param stockQuantity the stock quantity of the product
+     * @return the sum of the stock quantities of the replaced locations, zero if the product was not partitioned
+     */
+    int replaceBuckets(Product product, int buckets, int stockQuantity);
+
+    /**
+     * Removes all the locations of the product. Must be called in the transaction which holds the lock of the product.
+     *
+     * @param product the locked product
+     * @return the sum of the stock quantities of the removed locations
+     */
+    int removeLocations(Product product);
+
+    /**
+     * Reserves the quantity of a partitioned product from the locations picked by the stock location strategy,
+     * or from the stock buckets starting at a random one.
+     * Must be called in a transaction, the locations stay locked until it ends.
+     *
+     * @param product  the partitioned product
+     * @param quantity the quantity to reserve
+     * @return the stock quantity of the product after the reservation
+     * @throws InsufficientStockException if there is not enough stock in all the locations together
+     */
+    int reserve(Product product, int quantity) throws InsufficientStockException;
+
+    /**
+     * Releases the quantity of a partitioned product to the location picked by the stock location strategy,
+     * or to a random stock bucket.
+     * Must be called in a transaction, the location stays locked until it ends.
+     *
+     * @param product  the partitioned product
+     * @param quantity the quantity to release
+     * @return the stock quantity of the product after the release
+     */
+    int release(Product product, int quantity);
+
+    /**
+     * Sets the stock quantity of the products, whose locations changed since the previous refresh,
+     * to the sum of their locations.
+     *
+     * @return the number of refreshed products
+     */
+    int refreshStockQuantities();
+
+    /**
+     * Spreads the stock quantity evenly over the buckets of the sharded products, whose reservations found
+     * a bucket short since the previous run. Buckets locked by reservations are left out.
+     *
+     * @return the number of rebalanced products
+     */
+    int rebalanceBuckets();
+}
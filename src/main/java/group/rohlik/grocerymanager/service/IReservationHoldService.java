@@ -0,0 +1,68 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ReservationHoldTO;
+import group.rohlik.grocerymanager.exception.InsufficientStockException;
+import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.exception.ReservationHoldNotFoundException;
+import group.rohlik.grocerymanager.model.ReservationHold;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Service interface for the short-lived stock reservations of storefront carts.
+ * A hold takes the stock of its products like an order does, but it is not an order: it has no price,
+ * it is dropped or expires without any status change and it can be converted into an order
+ * without reserving the stock again.
+ *
+ * @author Tomas Kramec
+ */
+public interface IReservationHoldService {
+
+    /**
+     * Creates a hold of the given items, reserving their stock.
+     * The hold expires after its ttl, after the configured default ttl when not set,
+     * ttls longer than the configured maximum are capped.
+     *
+     * @param hold the hold to create
+     * @return the created hold with its code and expiry
+     * @throws ProductNotFoundException   if a product of the hold does not exist
+     * @throws InsufficientStockException if there is not enough stock of a product of the hold
+     */
+    ReservationHoldTO createHold(ReservationHoldTO hold) throws ProductNotFoundException, InsufficientStockException;
+
+    /**
+     * Drops the hold with the given code and releases its stock.
+     *
+     * @param code the code of the hold
+     * @throws ReservationHoldNotFoundException if there is no hold with the code
+     */
+    void dropHold(UUID code) throws ReservationHoldNotFoundException;
+
+    /**
+     * Deletes the unexpired hold with the given code without releasing its stock, which is handed over
+     * to the caller. It must be called in the transaction which uses the stock, so that the stock
+     * is either used or still held.
+     *
+     * @param code the code of the hold
+     * @return the held products with their quantities, the products are loaded
+     * @throws ReservationHoldNotFoundException if there is no hold with the code or it has expired
+     */
+    List<ReservationHold> claimHold(UUID code) throws ReservationHoldNotFoundException;
+
+    /**
+     * Releases the stock of the expired holds known to the in-memory expiry index, in batches
+     * of one transaction each.
+     *
+     * @return the number of released holds
+     */
+    int sweepExpired();
+
+    /**
+     * Releases the stock of the expired holds found in the table, including the holds the in-memory index
+     * of this instance does not know about.
+     *
+     * @return the number of released holds
+     */
+    int sweepExpiredFromTable();
+}
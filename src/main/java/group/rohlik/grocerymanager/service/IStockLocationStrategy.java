@@ -0,0 +1,32 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+
+import java.util.List;
+
+/**
+ * Decides from which warehouse locations a partitioned product is reserved and to which one released stock returns.
+ * Strategies work with the unlocked rows of the locations, their quantities may be out of date already.
+ *
+ * @author Tomas Kramec
+ */
+public interface IStockLocationStrategy {
+
+    /**
+     * Orders the locations of a product, a reservation takes the stock from the first ones. A location locked
+     * by another reservation is passed over and returned to only when the other locations do not have enough stock.
+     *
+     * @param locations the locations of the product, not empty
+     * @return the locations, the preferred first
+     */
+    List<ProductStockRow> orderForReservation(List<ProductStockRow> locations);
+
+    /**
+     * Orders the locations of a product, released stock returns to the first one which is not locked
+     * by another transaction, or to the first one when all of them are locked.
+     *
+     * @param locations the locations of the product, not empty
+     * @return the locations, the preferred first
+     */
+    List<ProductStockRow> orderForRelease(List<ProductStockRow> locations);
+}
@@ -0,0 +1,38 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.event.IStockDeltaListener;
+import group.rohlik.grocerymanager.event.StockSubscription;
+
+import java.util.Set;
+
+/**
+ * Service interface for streaming stock changes of products to subscribed clients.
+ *
+ * @author Tomas Kramec
+ */
+public interface IStockStreamService {
+
+    /**
+     * Subscribes the listener to the stock changes of the given products.
+     *
+     * @param productCodes the codes of the products
+     * @param listener     the receiver of the stock deltas
+     * @return the created subscription
+     */
+    StockSubscription subscribe(Set<String> productCodes, IStockDeltaListener listener);
+
+    /**
+     * Cancels the subscription. No more deltas are delivered to its listener.
+     *
+     * @param subscription the subscription to be canceled
+     */
+    void unsubscribe(StockSubscription subscription);
+
+    /**
+     * Delivers the stock changes coalesced since the previous call to the subscribers of the changed products.
+     * The delivery itself runs asynchronously, so a slow subscriber never blocks the others.
+     *
+     * @return the number of changed products
+     */
+    int flush();
+}
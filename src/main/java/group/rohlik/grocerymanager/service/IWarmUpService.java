@@ -0,0 +1,30 @@
+package group.rohlik.grocerymanager.service;
+
+import java.time.Duration;
+
+/**
+ * Service interface for the warm-up of the application at startup, run before the readiness probe reports
+ * the application ready, so that the first requests after a deploy do not hit an empty product cache,
+ * connection pools which open their connections lazily and code the JIT compiler has not compiled yet.
+ *
+ * @author Tomas Kramec
+ */
+public interface IWarmUpService {
+
+    /**
+     * Preloads products into the product cache, opens the idle connections of the connection pools
+     * and runs a synthetic pass over the product and order mapping and serialization, each step
+     * only while the time budget lasts.
+     *
+     * @param timeBudget the maximum time of the warm-up, checked between the units of work of the steps
+     * @return the number of steps completed within the time budget
+     */
+    int warmUp(Duration timeBudget);
+
+    /**
+     * Returns the time from the start of the application until it became ready, including the warm-up.
+     *
+     * @return the time to ready, null until the application is ready
+     */
+    Duration getTimeToReady();
+}
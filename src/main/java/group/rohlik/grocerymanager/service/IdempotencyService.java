@@ -0,0 +1,169 @@
+package group.rohlik.grocerymanager.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import group.rohlik.grocerymanager.exception.IdempotencyKeyInProgressException;
+import group.rohlik.grocerymanager.exception.IdempotencyKeyReuseException;
+import group.rohlik.grocerymanager.model.IdempotencyKey;
+import group.rohlik.grocerymanager.property.IdempotencyProperties;
+import group.rohlik.grocerymanager.repository.IIdempotencyKeyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the responses of recent keys in a Caffeine cache in front of the GM_IDEMPOTENCY_KEY table.
+ * The cache holds a future per key, so concurrent duplicates within this instance wait for the first request
+ * instead of executing the action again. Duplicates running on other instances are caught by the primary key
+ * of the table: the transaction which inserts the key second is rolled back together with its write.
+ *
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class IdempotencyService implements IIdempotencyService {
+
+    private final IIdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyProperties idempotencyProperties;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, CompletableFuture<IdempotencyKey>> responses;
+
+    private final Counter replayedCounter;
+
+    public IdempotencyService(final IIdempotencyKeyRepository idempotencyKeyRepository,
+                              final IdempotencyProperties idempotencyProperties,
+                              final ObjectMapper objectMapper,
+                              final PlatformTransactionManager transactionManager,
+                              final MeterRegistry meterRegistry) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.idempotencyProperties = idempotencyProperties;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.responses = Caffeine.newBuilder()
+                .expireAfterWrite(idempotencyProperties.getTtl())
+                .maximumSize(idempotencyProperties.getCacheSize())
+                .build();
+        this.replayedCounter = Counter.builder("gm.idempotency.replayed")
+                .description("Number of requests answered with the stored response of their idempotency key")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T execute(final String scope, final String key, final Object request, final Class<T> responseType,
+                         final Supplier<T> action) {
+        var id = scope + ":" + key;
+        var requestHash = hash(request);
+        var first = new CompletableFuture<IdempotencyKey>();
+        var running = responses.asMap().putIfAbsent(id, first);
+        if (running == null) {
+            try {
+                first.complete(loadOrExecute(id, requestHash, action));
+            } catch (RuntimeException e) {
+                // nothing was stored, the key can be retried
+                responses.asMap().remove(id, first);
+                first.completeExceptionally(e);
+                throw e;
+            }
+        }
+        var stored = running == null ? first.join() : await(id, running);
+        if (!stored.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReuseException("Idempotency key " + key + " was used for a different request");
+        }
+        if (running != null) {
+            replayedCounter.increment();
+        }
+        return read(stored, responseType);
+    }
+
+    @Override
+    public int deleteExpired() {
+        var deleted = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteExpired(LocalDateTime.now()));
+        log.debug("Deleted {} expired idempotency keys", deleted);
+        return deleted == null ? 0 : deleted;
+    }
+
+    private IdempotencyKey loadOrExecute(final String id, final String requestHash, final Supplier<?> action) {
+        var now = LocalDateTime.now();
+        var stored = idempotencyKeyRepository.findById(id);
+        if (stored.isPresent() && !stored.get().isExpired(now)) {
+            replayedCounter.increment();
+            return stored.get();
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                // an expired key not deleted yet is executed again
+                stored.ifPresent(idempotencyKeyRepository::delete);
+                var response = action.get();
+                return idempotencyKeyRepository.saveAndFlush(IdempotencyKey.builder()
+                        .id(id)
+                        .requestHash(requestHash)
+                        .response(write(response))
+                        .createdAt(now)
+                        .expiresAt(now.plus(idempotencyProperties.getTtl()))
+                        .build());
+            });
+        } catch (DataIntegrityViolationException e) {
+            // the same key was executed by another instance in the meantime, its write was committed and ours rolled back
+            log.info("Idempotency key {} was executed concurrently, returning the stored response", id);
+            return idempotencyKeyRepository.findById(id).orElseThrow(() -> e);
+        }
+    }
+
+    private IdempotencyKey await(final String id, final CompletableFuture<IdempotencyKey> running) {
+        try {
+            return running.get(idempotencyProperties.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException("Request with idempotency key " + id + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("Request with idempotency key " + id + " is still in progress");
+        }
+    }
+
+    private String hash(final Object request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot hash request", e);
+        }
+    }
+
+    private String write(final Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize response", e);
+        }
+    }
+
+    private <T> T read(final IdempotencyKey stored, final Class<T> responseType) {
+        try {
+            return objectMapper.readValue(stored.getResponse(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize stored response " + stored.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Strategy which reserves from the locations with the most stock first and returns released stock
+ * to the location with the least stock, which keeps the stock spread evenly over the locations.
+ *
+ * @author Tomas Kramec
+ */
+public class MostStockLocationStrategy implements IStockLocationStrategy {
+
+    private static final Comparator<ProductStockRow> MOST_STOCK_FIRST = Comparator.comparingInt(ProductStockRow::quantity)
+            .reversed().thenComparing(ProductStockRow::locationCode);
+    private static final Comparator<ProductStockRow> LEAST_STOCK_FIRST = Comparator.comparingInt(ProductStockRow::quantity)
+            .thenComparing(ProductStockRow::locationCode);
+
+    @Override
+    public List<ProductStockRow> orderForReservation(final List<ProductStockRow> locations) {
+        return locations.stream().sorted(MOST_STOCK_FIRST).toList();
+    }
+
+    @Override
+    public List<ProductStockRow> orderForRelease(final List<ProductStockRow> locations) {
+        return locations.stream().sorted(LEAST_STOCK_FIRST).toList();
+    }
+}
@@ -0,0 +1,38 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strategy which reserves from the locations nearest to this instance first and returns released stock
+ * to the nearest location too. The locations are configured from the nearest, unknown ones come last by their code.
+ *
+ * @author Tomas Kramec
+ */
+public class NearestStockLocationStrategy implements IStockLocationStrategy {
+
+    private final Comparator<ProductStockRow> nearestFirst;
+
+    public NearestStockLocationStrategy(final List<String> locations) {
+        Map<String, Integer> distances = new HashMap<>();
+        for (int i = 0; i < locations.size(); i++) {
+            distances.putIfAbsent(locations.get(i), i);
+        }
+        nearestFirst = Comparator.<ProductStockRow>comparingInt(row -> distances.getOrDefault(row.locationCode(), Integer.MAX_VALUE))
+                .thenComparing(ProductStockRow::locationCode);
+    }
+
+    @Override
+    public List<ProductStockRow> orderForReservation(final List<ProductStockRow> locations) {
+        return locations.stream().sorted(nearestFirst).toList();
+    }
+
+    @Override
+    public List<ProductStockRow> orderForRelease(final List<ProductStockRow> locations) {
+        return orderForReservation(locations);
+    }
+}
@@ -0,0 +1,109 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.property.OrderArchiveProperties;
+import group.rohlik.grocerymanager.repository.IOrderArchiveRepository;
+import group.rohlik.grocerymanager.repository.IOrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class OrderArchiveService implements IOrderArchiveService {
+
+    public static final List<OrderStatus> ARCHIVED_ORDER_STATUSES =
+            List.of(OrderStatus.PAID, OrderStatus.CANCELED, OrderStatus.EXPIRED);
+
+    private final IOrderRepository orderRepository;
+    private final IOrderArchiveRepository orderArchiveRepository;
+    private final IProductOrderCounterService productOrderCounterService;
+    private final OrderArchiveProperties orderArchiveProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer chunkTimer;
+    private final Counter archivedCounter;
+
+    public OrderArchiveService(final IOrderRepository orderRepository,
+                               final IOrderArchiveRepository orderArchiveRepository,
+                               final IProductOrderCounterService productOrderCounterService,
+                               final OrderArchiveProperties orderArchiveProperties,
+                               final PlatformTransactionManager transactionManager,
+                               final MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.orderArchiveRepository = orderArchiveRepository;
+        this.productOrderCounterService = productOrderCounterService;
+        this.orderArchiveProperties = orderArchiveProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkTimer = Timer.builder("gm.order.archive.chunk")
+                .description("Time to move one chunk of finished orders to the archive")
+                .register(meterRegistry);
+        this.archivedCounter = Counter.builder("gm.order.archive.archived")
+                .description("Number of finished orders moved to the archive")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int archiveNextChunk(final Date archiveDateThreshold) {
+        var archived = transactionTemplate.execute(status -> {
+            var orderIds = orderRepository.findIdsToArchive(ARCHIVED_ORDER_STATUSES, archiveDateThreshold,
+                    PageRequest.ofSize(orderArchiveProperties.getChunkSize()));
+            if (orderIds.isEmpty()) {
+                return 0;
+            }
+            var sample = Timer.start();
+            // finished statuses are final, so the selected orders cannot change before they are moved
+            productOrderCounterService.ordersArchived(orderIds);
+            orderArchiveRepository.copyOrders(orderIds);
+            orderArchiveRepository.copyOrderItems(orderIds);
+            orderArchiveRepository.deleteOrderItems(orderIds);
+            var moved = orderArchiveRepository.deleteOrders(orderIds);
+            sample.stop(chunkTimer);
+            archivedCounter.increment(moved);
+            return moved;
+        });
+        return archived == null ? 0 : archived;
+    }
+
+    @Override
+    public int archiveFinishedOrders() {
+        if (!orderArchiveProperties.isEnabled()) {
+            return 0;
+        }
+        var archiveDateThreshold = Date.from(Instant.now().minus(orderArchiveProperties.getRetention()));
+        var total = 0;
+        var startTime = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < orderArchiveProperties.getMaxChunksPerRun(); i++) {
+                var archived = archiveNextChunk(archiveDateThreshold);
+                total += archived;
+                if (archived < orderArchiveProperties.getChunkSize()) {
+                    break;
+                }
+                Thread.sleep(orderArchiveProperties.getThrottle());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Archival of finished orders interrupted after {} orders", total);
+        } catch (Exception e) {
+            log.error("Archival of finished orders stopped after {} orders: {}", total, e.getMessage());
+        }
+        if (total > 0) {
+            log.info("Archived {} finished orders older than {} in {} ms", total, archiveDateThreshold,
+                    System.currentTimeMillis() - startTime);
+        }
+        return total;
+    }
+}
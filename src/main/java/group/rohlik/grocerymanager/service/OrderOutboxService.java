@@ -0,0 +1,124 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.event.IOrderEventSink;
+import group.rohlik.grocerymanager.model.OrderOutboxEvent;
+import group.rohlik.grocerymanager.property.OrderOutboxProperties;
+import group.rohlik.grocerymanager.repository.IOrderOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class OrderOutboxService implements IOrderOutboxService {
+
+    private final IOrderOutboxRepository orderOutboxRepository;
+    private final IOrderEventSink orderEventSink;
+    private final OrderOutboxProperties orderOutboxProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSize;
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    public OrderOutboxService(final IOrderOutboxRepository orderOutboxRepository,
+                              final IOrderEventSink orderEventSink,
+                              final OrderOutboxProperties orderOutboxProperties,
+                              final PlatformTransactionManager transactionManager,
+                              final MeterRegistry meterRegistry) {
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.orderEventSink = orderEventSink;
+        this.orderOutboxProperties = orderOutboxProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchTimer = Timer.builder("gm.outbox.relay.batch")
+                .description("Time to deliver one batch of order events to the sink")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("gm.outbox.relay.batch.size")
+                .description("Number of order events delivered in one batch")
+                .register(meterRegistry);
+        this.publishedCounter = Counter.builder("gm.outbox.relay.published")
+                .description("Number of order events delivered to the sink")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("gm.outbox.relay.failed")
+                .description("Number of batches the sink failed to deliver")
+                .register(meterRegistry);
+        Gauge.builder("gm.outbox.relay.lag", lagMillis, AtomicLong::get)
+                .description("Age of the oldest undelivered order event")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int publishNextBatch() {
+        var published = transactionTemplate.execute(status -> {
+            var outboxEvents = orderOutboxRepository.findNextBatchForUpdate(
+                    PageRequest.ofSize(orderOutboxProperties.getBatchSize()));
+            if (outboxEvents.isEmpty()) {
+                return 0;
+            }
+            var events = outboxEvents.stream().map(OrderOutboxEvent::toOrderEvent).toList();
+            var sample = Timer.start();
+            try {
+                orderEventSink.publish(events);
+            } catch (Exception e) {
+                failedCounter.increment();
+                throw new IllegalStateException("Failed to publish " + events.size() + " order events", e);
+            } finally {
+                sample.stop(batchTimer);
+            }
+            orderOutboxRepository.deleteAllInBatch(outboxEvents);
+            batchSize.record(events.size());
+            publishedCounter.increment(events.size());
+            return events.size();
+        });
+        return published == null ? 0 : published;
+    }
+
+    @Override
+    public int relay() {
+        var total = 0;
+        try {
+            for (int i = 0; i < orderOutboxProperties.getMaxBatchesPerRun(); i++) {
+                var published = publishNextBatch();
+                total += published;
+                if (published < orderOutboxProperties.getBatchSize()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Relay of order events stopped after {} events: {}", total, e.getMessage());
+        } finally {
+            updateLag();
+        }
+        if (total > 0) {
+            log.debug("Relayed {} order events", total);
+        }
+        return total;
+    }
+
+    /**
+     * Updates the lag gauge with the age of the oldest event which is still waiting in the outbox.
+     */
+    private void updateLag() {
+        var lag = orderOutboxRepository.findOldestOccurredAt()
+                .map(oldest -> Duration.between(oldest, LocalDateTime.now()).toMillis())
+                .orElse(0L);
+        lagMillis.set(Math.max(lag, 0));
+    }
+}
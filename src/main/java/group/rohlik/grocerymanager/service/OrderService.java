@@ -1,26 +1,35 @@
 package group.rohlik.grocerymanager.service;
 
 import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderStateRow;
 import group.rohlik.grocerymanager.dto.OrderTO;
-import group.rohlik.grocerymanager.exception.InvalidOrderStatusException;
+import group.rohlik.grocerymanager.event.OrderEvent;
+import group.rohlik.grocerymanager.event.OrderEventType;
 import group.rohlik.grocerymanager.exception.OrderExpiredException;
 import group.rohlik.grocerymanager.exception.OrderNotFoundException;
+import group.rohlik.grocerymanager.exception.ProductNotFoundException;
 import group.rohlik.grocerymanager.mapper.IOrderMapper;
 import group.rohlik.grocerymanager.model.Order;
 import group.rohlik.grocerymanager.model.OrderItem;
 import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.model.OrderTransition;
 import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.model.ReservationHold;
 import group.rohlik.grocerymanager.property.ExpireOrderScheduleProperties;
+import group.rohlik.grocerymanager.property.OrderArchiveProperties;
 import group.rohlik.grocerymanager.repository.IExpireOrderRepository;
+import group.rohlik.grocerymanager.repository.IOrderArchiveRepository;
 import group.rohlik.grocerymanager.repository.IOrderRepository;
+import group.rohlik.grocerymanager.util.MoneyUtil;
+import group.rohlik.grocerymanager.util.UuidUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -28,6 +37,7 @@ import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static group.rohlik.grocerymanager.util.BatchUtil.splitIntoBatches;
 
@@ -42,32 +52,56 @@ public class OrderService implements IOrderService {
 
     private final IOrderRepository orderRepository;
     private final ProductService productService;
+    private final IProductOrderCounterService productOrderCounterService;
     private final IOrderMapper orderMapper;
     private final IExpireOrderRepository expireOrderRepository;
     private final ExpireOrderScheduleProperties expireOrderScheduleProperties;
+    private final IOrderArchiveRepository orderArchiveRepository;
+    private final OrderArchiveProperties orderArchiveProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IOrderStateMachine orderStateMachine;
+    private final IReservationHoldService reservationHoldService;
 
     @Override
     public OrderTO createOrder(final OrderTO orderTO) {
         Assert.notNull(orderTO, "Order must not be null");
         Assert.notEmpty(orderTO.getItems(), "Order must contain at least one item");
 
-        List<OrderItem> orderItems = new ArrayList<>();
+        List<OrderItem> orderItems = new ArrayList<>(orderTO.getItems().size());
+        long totalAmount = 0; // in minor units
         for (OrderItemTO itemRequest : orderTO.getItems()) {
             try {
                 var product = productService.reserveStock(itemRequest.getProductCode(), itemRequest.getQuantity());
-                orderItems.add(createOrderItem(itemRequest, product));
+                var totalPrice = calculateTotalPrice(itemRequest.getQuantity(), product.getPricePerUnit());
+                orderItems.add(createOrderItem(itemRequest.getQuantity(), product, totalPrice));
+                totalAmount = Math.addExact(totalAmount, totalPrice);
             } catch (Exception ex) {
                 log.error("Error while reserving {} units in stock for product {}: {}. Rolling back order creation.",
                         itemRequest.getQuantity(), itemRequest.getProductCode(), ex.getMessage());
                 throw ex;
             }
         }
-        var order = createOrder(orderItems);
-//        eventPublisher.publishEvent(new OrderCreatedEvent(savedOrder.getId()));
-        log.info("Created order with id: {}, code: {}, totalAmount: {}",
-                order.getId(), order.getCode(), order.getTotalAmount());
+        return placeOrder(orderItems, totalAmount);
+    }
 
-        return orderMapper.toOrderTO(order);
+    @Override
+    public OrderTO createOrderFromHold(final UUID holdCode) {
+        Assert.notNull(holdCode, "Hold code must not be null");
+
+        var holds = reservationHoldService.claimHold(holdCode);
+        List<OrderItem> orderItems = new ArrayList<>(holds.size());
+        long totalAmount = 0; // in minor units
+        for (ReservationHold hold : holds) {
+            var product = hold.getProduct();
+            if (product.isArchived()) {
+                throw new ProductNotFoundException("Product not found with code: " + product.getCode());
+            }
+            var totalPrice = calculateTotalPrice(hold.getQuantity(), product.getPricePerUnit());
+            orderItems.add(createOrderItem(hold.getQuantity(), product, totalPrice));
+            totalAmount = Math.addExact(totalAmount, totalPrice);
+        }
+        log.info("Converting hold with code: {} into an order", holdCode);
+        return placeOrder(orderItems, totalAmount);
     }
 
     @Transactional(noRollbackFor = OrderExpiredException.class)
@@ -75,18 +109,11 @@ public class OrderService implements IOrderService {
     public OrderTO payOrder(final UUID code) {
         Assert.notNull(code, "Order code must not be null");
 
-        var order = getOrderByCodeInternal(code);
+        var order = getOrderStateInternal(code);
         checkOrderExpiration(order, "Cannot pay expired order");
-        if (order.getStatus() != OrderStatus.PENDING) {
-            throw new InvalidOrderStatusException("Order "+ code + " cannot be paid. Current status: " + order.getStatus());
-        }
-
-        order.setStatus(OrderStatus.PAID);
-        var paidOrder = orderRepository.save(order);
-//        eventPublisher.publishEvent(new OrderPaidEvent(paidOrder.getId()));
-        log.info("Paid order with code: {}", paidOrder.getCode());
+        var paidOrder = orderStateMachine.fire(order, OrderTransition.PAY);
 
-        return orderMapper.toOrderTO(paidOrder);
+        return orderMapper.toOrderTO(paidOrder, orderRepository.findItemTOsByOrderId(paidOrder.id()));
     }
 
     @Transactional(noRollbackFor = OrderExpiredException.class)
@@ -94,25 +121,30 @@ public class OrderService implements IOrderService {
     public OrderTO cancelOrder(final UUID code) {
         Assert.notNull(code, "Order code must not be null");
 
-        var order = getOrderByCodeInternal(code);
+        var order = getOrderStateInternal(code);
         checkOrderExpiration(order, "Cannot cancel expired order");
-        if (order.getStatus() != OrderStatus.PENDING) {
-            throw new InvalidOrderStatusException("Order "+ code + " cannot be canceled. Current status: " + order.getStatus());
-        }
-        releaseStock(order);
+        var canceledOrder = orderStateMachine.fire(order, OrderTransition.CANCEL);
 
-        order.setStatus(OrderStatus.CANCELED);
-        var savedOrder = orderRepository.save(order);
-//        eventPublisher.publishEvent(new OrderCanceledEvent(order.getId()));
-        log.info("Canceled order with code: {}", savedOrder.getCode());
-
-        return orderMapper.toOrderTO(savedOrder);
+        return orderMapper.toOrderTO(canceledOrder, orderRepository.findItemTOsByOrderId(canceledOrder.id()));
     }
 
     @Transactional(readOnly = true)
     @Override
     public OrderTO getOrderByCode(final UUID code) {
-        return orderMapper.toOrderTO(getOrderByCodeInternal(code));
+        if (isPastRetention(code)) {
+            var archivedOrder = orderArchiveRepository.findByCodeWithItems(code);
+            if (archivedOrder.isPresent()) {
+                return orderMapper.toOrderTO(archivedOrder.get());
+            }
+            return orderMapper.toOrderTO(getOrderByCodeInternal(code));
+        }
+        var order = orderRepository.findByCodeWithItems(code);
+        if (order.isPresent()) {
+            return orderMapper.toOrderTO(order.get());
+        }
+        return orderArchiveRepository.findByCodeWithItems(code)
+                .map(orderMapper::toOrderTO)
+                .orElseThrow(() -> new OrderNotFoundException("Order not found with code: " + code));
     }
 
     @Override
@@ -147,6 +179,34 @@ public class OrderService implements IOrderService {
                 .orElseThrow(() -> new OrderNotFoundException("Order not found with code: " + code));
     }
 
+    /**
+     * Retrieves the state of an order by its unique code, without its items.
+     * If the order is not found, an OrderNotFoundException is thrown.
+     *
+     * @param code the unique identifier of the order
+     * @return the state of the order
+     * @throws OrderNotFoundException if the order with the given code does not exist
+     */
+    private OrderStateRow getOrderStateInternal(final UUID code) {
+        return orderRepository.findStateByCode(code)
+                .orElseThrow(() -> new OrderNotFoundException("Order not found with code: " + code));
+    }
+
+    /**
+     * Checks whether the order with the given code was created before the archive retention window.
+     * Such orders are most likely archived already, so they are looked up in the archive first.
+     *
+     * @param code the time-ordered code of the order
+     * @return true if the code is older than the archive retention, false otherwise or if it carries no timestamp
+     */
+    private boolean isPastRetention(final UUID code) {
+        if (!orderArchiveProperties.isEnabled() || orderArchiveProperties.getRetention() == null) {
+            return false;
+        }
+        var retentionStart = Instant.now().minus(orderArchiveProperties.getRetention());
+        return UuidUtil.timestampOf(code).map(createdAt -> createdAt.isBefore(retentionStart)).orElse(false);
+    }
+
     /**
      * Splits the provided list of order IDs into batches and processes each batch to expire orders.
      * It logs the total number of expired orders and the time taken for the operation.
@@ -158,16 +218,19 @@ public class OrderService implements IOrderService {
         var expiredTotalCount = new AtomicInteger();
         splitIntoBatches(orderIds, expireOrderScheduleProperties.getBatchUpdateSize())
                 .forEach(batch -> {
-                    var orders = orderRepository.findByIdsWithItems(batch);
+                    var orders = orderRepository.findStatesByIds(batch);
+                    var itemsByOrderId = orderRepository.findItemsByOrderIds(batch).stream()
+                            .collect(Collectors.groupingBy(item -> item.getOrder().getId()));
                     log.info("Expiring {} orders in batch", orders.size());
                     orders.forEach(order -> {
                         if (shouldOrderBeExpired(order)) {
                             try {
-                                expireOrder(order);
+                                orderStateMachine.fire(order, OrderTransition.EXPIRE,
+                                        itemsByOrderId.getOrDefault(order.id(), List.of()));
                                 expiredTotalCount.incrementAndGet();
                             } catch (Exception e) {
                                 log.error("Failed to expire order {}: {}. Continuing with next order.",
-                                        order.getCode(), e.getMessage());
+                                        order.code(), e.getMessage());
                             }
                         }
                     });
@@ -177,52 +240,56 @@ public class OrderService implements IOrderService {
     }
 
     /**
-     * Expires the given order by releasing its stock and updating its status to {@link OrderStatus#EXPIRED}.
-     * It also saves the updated order to the repository.
+     * Stores a new order of the given items, whose stock is reserved already, and announces it.
      *
-     * @param order the order to be expired
+     * @param orderItems  the items of the order
+     * @param totalAmount the sum of the item total prices in minor units
+     * @return the created order
      */
-    private void expireOrder(final Order order) {
-        releaseStock(order);
-        order.setStatus(OrderStatus.EXPIRED);
-        orderRepository.save(order);
-//        eventPublisher.publishEvent(new OrderExpiredEvent(order.getId()));
-        log.info("Expired order with code: {}", order.getCode());
+    private OrderTO placeOrder(final List<OrderItem> orderItems, final long totalAmount) {
+        var order = createOrder(orderItems, totalAmount);
+        productOrderCounterService.orderCreated(order);
+        eventPublisher.publishEvent(OrderEvent.of(order, OrderEventType.CREATED));
+        log.info("Created order with id: {}, code: {}, totalAmount: {}",
+                order.getId(), order.getCode(), order.getTotalAmount());
+
+        return orderMapper.toOrderTO(order);
     }
 
     /**
-     * Creates an OrderItem entity from the provided OrderItemTO and Product.
-     * It calculates the total price based on the quantity and product's price per unit.
+     * Creates an OrderItem entity of the given quantity of the product.
      *
-     * @param itemTO the transfer object containing order item details
-     * @param product the product associated with this order item
+     * @param quantity   the ordered quantity
+     * @param product    the product associated with this order item
+     * @param totalPrice the total price of the item in minor units
      * @return a new OrderItem entity
      */
-    private OrderItem createOrderItem(final OrderItemTO itemTO, final Product product) {
+    private OrderItem createOrderItem(final Integer quantity, final Product product, final long totalPrice) {
         return OrderItem.builder()
                 .product(product)
-                .quantity(itemTO.getQuantity())
+                .quantity(quantity)
                 .unitPrice(product.getPricePerUnit())
-                .totalPrice(calculateTotalPrice(itemTO.getQuantity(), product.getPricePerUnit()))
+                .totalPrice(MoneyUtil.toBigDecimal(totalPrice))
                 .build();
     }
 
     /**
      * Creates a new order with the given list of items and stores it in the repository.
-     * It sets the order status to {@link OrderStatus#PENDING}, calculates the total amount,
+     * It sets the order status to {@link OrderStatus#PENDING}, the total amount,
      * and sets the expiration time based on the configured threshold.
      *
-     * @param items the list of order items to be included in the order
+     * @param items       the list of order items to be included in the order
+     * @param totalAmount the sum of the item total prices in minor units
      * @return the created Order entity
      */
-    private Order createOrder(final List<OrderItem> items) {
+    private Order createOrder(final List<OrderItem> items, final long totalAmount) {
         Assert.notEmpty(items, "Order must contain at least one item");
 
         var order = Order.builder()
                 .status(OrderStatus.PENDING)
                 .expiresAt(LocalDateTime.now().plus(expireOrderScheduleProperties.getThreshold()))
                 .items(items)
-                .totalAmount(calculateTotalAmount(items))
+                .totalAmount(MoneyUtil.toBigDecimal(totalAmount))
                 .build();
 
         items.forEach(item -> item.setOrder(order));
@@ -231,32 +298,18 @@ public class OrderService implements IOrderService {
     }
 
     /**
-     * Calculates the total amount for the order based on the total prices of its items.
-     * It filters out any null or zero total prices before summing them up.
+     * Calculates the total price for a given quantity and unit price in minor units.
+     * The unit price is rounded to two decimal places using HALF_UP rounding mode first,
+     * product prices are validated to have at most two.
      *
-     * @param items the list of order items with their total prices already calculated
-     * @return the total amount for the order
-     */
-    private BigDecimal calculateTotalAmount(final List<OrderItem> items) {
-        return items.stream()
-                .map(OrderItem::getTotalPrice)
-                .filter(Objects::nonNull)
-                .filter(totalPrice -> totalPrice.compareTo(BigDecimal.ZERO) > 0)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    /**
-     * Calculates the total price for a given quantity and unit price.
-     * The result is rounded to two decimal places using HALF_UP rounding mode.
-     *
-     * @param quantity the quantity of order item
+     * @param quantity  the quantity of order item
      * @param unitPrice the price per unit
-     * @return the total price for the given quantity and unit price
+     * @return the total price in minor units
      */
-    private BigDecimal calculateTotalPrice(final Integer quantity, final BigDecimal unitPrice) {
+    private long calculateTotalPrice(final Integer quantity, final BigDecimal unitPrice) {
         Assert.notNull(unitPrice, "Unit price must not be null");
         Assert.notNull(quantity, "Quantity must not be null");
-        return unitPrice.multiply(BigDecimal.valueOf(quantity)).setScale(2, RoundingMode.HALF_UP);
+        return MoneyUtil.multiply(MoneyUtil.toMinorUnits(unitPrice), quantity);
     }
 
     /**
@@ -268,14 +321,14 @@ public class OrderService implements IOrderService {
      * @param errorMsg the error message to include in the exception if the order is expired
      * @throws OrderExpiredException if the order is expired
      */
-    private void checkOrderExpiration(final Order order, final String errorMsg) throws OrderExpiredException {
+    private void checkOrderExpiration(final OrderStateRow order, final String errorMsg) throws OrderExpiredException {
         Assert.notNull(order, "Order must not be null");
-        if (order.getStatus() == OrderStatus.EXPIRED) {
-            throw new OrderExpiredException("Order " + order.getCode() + " has already expired. " + errorMsg);
+        if (order.status() == OrderStatus.EXPIRED) {
+            throw new OrderExpiredException("Order " + order.code() + " has already expired. " + errorMsg);
         }
         if (shouldOrderBeExpired(order)) {
-            expireOrder(order);
-            throw new OrderExpiredException("Order " + order.getCode() + " has expired. " + errorMsg);
+            orderStateMachine.fire(order, OrderTransition.EXPIRE);
+            throw new OrderExpiredException("Order " + order.code() + " has expired. " + errorMsg);
         }
     }
 
@@ -285,30 +338,10 @@ public class OrderService implements IOrderService {
      * @param order the order to check
      * @return true if the order should be expired, false otherwise
      */
-    private boolean shouldOrderBeExpired(final Order order) {
-        Assert.notNull(order, "Order must not be null");
-        Assert.notNull(order.getExpiresAt(), "Order expiration time must not be null");
-        return order.getStatus() == OrderStatus.PENDING
-                && order.getExpiresAt().isBefore(LocalDateTime.now());
-    }
-
-    /**
-     * Releases stock for all the items in the order.
-     *
-     * @param order the order for which stock should be released
-     */
-    private void releaseStock(final Order order) {
+    private boolean shouldOrderBeExpired(final OrderStateRow order) {
         Assert.notNull(order, "Order must not be null");
-        order.getItems().forEach(item -> {
-            try {
-                productService.releaseStock(item.getProduct().getCode(), item.getQuantity());
-            } catch (Exception ex) {
-                log.error("Error while releasing {} units to stock for product {}. " +
-                                "Rolling back operation for order {}: {}",
-                        item.getQuantity(), item.getProduct().getCode(), order.getCode(), ex.getMessage());
-                throw ex;
-            }
-        });
-
+        Assert.notNull(order.expiresAt(), "Order expiration time must not be null");
+        return OrderTransition.EXPIRE.canFire(order.status())
+                && order.expiresAt().isBefore(LocalDateTime.now());
     }
 }
@@ -0,0 +1,97 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderStateRow;
+import group.rohlik.grocerymanager.event.OrderEvent;
+import group.rohlik.grocerymanager.exception.InvalidOrderStatusException;
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.OrderTransition;
+import group.rohlik.grocerymanager.repository.IOrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The status is changed before the stock is released, so of two concurrent transitions of the same order
+ * only the one whose update matched releases the stock, the other one fails on the version.
+ * It joins the transaction of the caller without being transactional itself, so a rejected transition
+ * does not mark that transaction rollback-only and a batch can skip the order and continue.
+ *
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OrderStateMachine implements IOrderStateMachine {
+
+    private final IOrderRepository orderRepository;
+    private final IProductService productService;
+    private final IProductOrderCounterService productOrderCounterService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<AuditorAware<String>> auditorAware;
+
+    @Override
+    public OrderStateRow fire(final OrderStateRow order, final OrderTransition transition) {
+        return fire(order, transition, null);
+    }
+
+    @Override
+    public OrderStateRow fire(final OrderStateRow order, final OrderTransition transition,
+                              final List<OrderItem> items) {
+        Assert.notNull(order, "Order must not be null");
+        Assert.notNull(transition, "Transition must not be null");
+        if (!transition.canFire(order.status())) {
+            throw new InvalidOrderStatusException("Order " + order.code() + " cannot be " + transition.getAction()
+                    + ". Current status: " + order.status());
+        }
+
+        var updated = orderRepository.updateStatus(order.id(), order.status(), order.version(),
+                transition.getTarget(), new Date(), currentAuditor());
+        if (updated == 0) {
+            throw new ObjectOptimisticLockingFailureException(Order.class, order.id());
+        }
+        var changedOrder = order.withStatus(transition.getTarget());
+
+        if (transition.isReleasingStock()) {
+            var orderItems = items != null ? items : orderRepository.findItemsByOrderIds(List.of(order.id()));
+            releaseStock(changedOrder, orderItems);
+            productOrderCounterService.orderFinished(orderItems);
+        }
+        eventPublisher.publishEvent(OrderEvent.of(changedOrder, transition.getEventType()));
+        log.info("Order with code: {} {}", changedOrder.code(), transition.getAction());
+
+        return changedOrder;
+    }
+
+    private String currentAuditor() {
+        var auditor = auditorAware.getIfAvailable();
+        return auditor == null ? null : auditor.getCurrentAuditor().orElse(null);
+    }
+
+    /**
+     * Releases stock for all the items of the order.
+     *
+     * @param order the order for which stock should be released
+     * @param items the items of the order
+     */
+    private void releaseStock(final OrderStateRow order, final List<OrderItem> items) {
+        items.forEach(item -> {
+            try {
+                productService.releaseStock(item.getProduct().getCode(), item.getQuantity());
+            } catch (Exception ex) {
+                log.error("Error while releasing {} units to stock for product {}. " +
+                                "Rolling back operation for order {}: {}",
+                        item.getQuantity(), item.getProduct().getCode(), order.code(), ex.getMessage());
+                throw ex;
+            }
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.repository.IProductOrderCounterRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The counters of a product with sharded stock are updated in a random one of as many shards as it has stock buckets,
+ * like its stock, so concurrent orders of a flash-sale product do not queue on a single counter row.
+ * Other products use shard zero only.
+ *
+ * @author Tomas Kramec
+ */
+@Service
+@Transactional
+@Slf4j
+public class ProductOrderCounterService implements IProductOrderCounterService {
+
+    private final IProductOrderCounterRepository productOrderCounterRepository;
+
+    private final Timer reconcileTimer;
+    private final Counter correctedCounter;
+
+    public ProductOrderCounterService(final IProductOrderCounterRepository productOrderCounterRepository,
+                                      final MeterRegistry meterRegistry) {
+        this.productOrderCounterRepository = productOrderCounterRepository;
+        this.reconcileTimer = Timer.builder("gm.product.order.counter.reconcile")
+                .description("Time to recount the per-product order counters")
+                .register(meterRegistry);
+        this.correctedCounter = Counter.builder("gm.product.order.counter.corrected")
+                .description("Number of per-product order counters corrected by the reconciliation")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void orderCreated(final Order order) {
+        Assert.notNull(order, "Order must not be null");
+        countItemsByProduct(order.getItems()).forEach((product, items) ->
+                productOrderCounterRepository.add(product.getId(), shardOf(product), items, 0));
+    }
+
+    @Override
+    public void orderFinished(final List<OrderItem> orderItems) {
+        Assert.notNull(orderItems, "Order items must not be null");
+        countItemsByProduct(orderItems).forEach((product, items) ->
+                productOrderCounterRepository.add(product.getId(), shardOf(product), -items, items));
+    }
+
+    @Override
+    public void ordersArchived(final List<Long> orderIds) {
+        if (!orderIds.isEmpty()) {
+            productOrderCounterRepository.finishPaidOrders(orderIds);
+        }
+    }
+
+    /**
+     * The counter rows are locked before the recount, so the recount sees the orders of all the transactions which
+     * changed the counters before and the transactions changing them meanwhile wait and add to the recount.
+     * Without the lock an increment committed during the recount would be overwritten by the count taken without it.
+     * The shard rows of a sharded product are created with its stock buckets, so they are all locked too.
+     */
+    @Override
+    public int reconcile() {
+        int corrected = reconcileTimer.record(() -> {
+            productOrderCounterRepository.lockAll();
+            return productOrderCounterRepository.reconcile();
+        });
+        if (corrected > 0) {
+            correctedCounter.increment(corrected);
+            log.warn("Corrected {} per-product order counters", corrected);
+        }
+        return corrected;
+    }
+
+    /**
+     * Counts the items of an order per product. The products are sorted by id, so concurrent transactions
+     * update the counter rows in the same order and do not deadlock on them.
+     *
+     * @param items the items of the order
+     * @return the number of items per product
+     */
+    private Map<Product, Long> countItemsByProduct(final List<OrderItem> items) {
+        var itemsByProduct = new TreeMap<Product, Long>(Comparator.comparing(Product::getId));
+        for (OrderItem item : items) {
+            itemsByProduct.merge(item.getProduct(), 1L, Long::sum);
+        }
+        return itemsByProduct;
+    }
+
+    private static int shardOf(final Product product) {
+        return product.getStockBuckets() > 0 ? ThreadLocalRandom.current().nextInt(product.getStockBuckets()) : 0;
+    }
+}
@@ -1,28 +1,48 @@
 package group.rohlik.grocerymanager.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductStockTO;
 import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.event.ProductChangedEvent;
+import group.rohlik.grocerymanager.event.StockChangedEvent;
 import group.rohlik.grocerymanager.exception.InsufficientStockException;
 import group.rohlik.grocerymanager.exception.ProductAlreadyExistsException;
 import group.rohlik.grocerymanager.exception.ProductDeletionException;
 import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.exception.ProductVersionMismatchException;
+import group.rohlik.grocerymanager.logging.LogSampler;
 import group.rohlik.grocerymanager.mapper.IProductMapper;
 import group.rohlik.grocerymanager.model.OrderStatus;
 import group.rohlik.grocerymanager.model.Product;
-import group.rohlik.grocerymanager.repository.IOrderRepository;
+import group.rohlik.grocerymanager.model.ProductOrderCounter;
+import group.rohlik.grocerymanager.repository.IProductCatalogueSnapshot;
+import group.rohlik.grocerymanager.repository.IProductIdIndex;
+import group.rohlik.grocerymanager.repository.IProductOrderCounterRepository;
 import group.rohlik.grocerymanager.repository.IProductRepository;
+import group.rohlik.grocerymanager.repository.IReservationHoldRepository;
+import group.rohlik.grocerymanager.util.MoneyUtil;
+import group.rohlik.grocerymanager.util.ProductJsonUtil;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * @author Tomas Kramec
@@ -36,12 +56,24 @@ public class ProductService implements IProductService {
     public static final List<OrderStatus> ACTIVE_ORDER_STATUSES = Arrays.asList(OrderStatus.PENDING, OrderStatus.PAID);
     public static final List<OrderStatus> FINISHED_ORDER_STATUSES = Arrays.asList(OrderStatus.CANCELED, OrderStatus.EXPIRED);
     private final IProductRepository productRepository;
-    private final IOrderRepository orderRepository;
+    private final IProductIdIndex productIdIndex;
+    private final IProductCatalogueSnapshot catalogueSnapshot;
+    private final IProductOrderCounterRepository productOrderCounterRepository;
+    private final IReservationHoldRepository reservationHoldRepository;
     private final IProductMapper productMapper;
+    private final IProductStockService productStockService;
+    private final LogSampler stockLogSampler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
 
     @Transactional(readOnly = true)
     @Override
     public List<ProductTO> getAllProducts(final boolean onlyActive) {
+        if (catalogueSnapshot.isReady()) {
+            try (Stream<ProductRow> rows = catalogueSnapshot.streamRows(onlyActive)) {
+                return productMapper.rowsToProductTOs(rows.toList());
+            }
+        }
         var sort = Sort.sort(Product.class).by(Product::getName).ascending();
         if (onlyActive) {
             return productMapper.toProductTOs(productRepository.findAllByArchived(false, sort));
@@ -50,9 +82,30 @@ public class ProductService implements IProductService {
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "product", key = "#code")
+    @Override
+    public long writeAllProducts(final boolean onlyActive, final JsonGenerator generator) throws IOException {
+        long count = 0;
+        generator.writeStartArray();
+        try (Stream<ProductRow> rows = catalogueSnapshot.isReady() ? catalogueSnapshot.streamRows(onlyActive)
+                : onlyActive ? productRepository.streamRowsByArchived(false) : productRepository.streamAllRows()) {
+            var iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                ProductJsonUtil.writeProduct(generator, iterator.next());
+                count++;
+            }
+        }
+        generator.writeEndArray();
+        return count;
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(value = "product", key = "#code", unless = "@productCatalogueSnapshot.isReady()")
     @Override
     public ProductTO getProductByCode(final String code) throws ProductNotFoundException {
+        var snapshot = catalogueSnapshot.getProduct(code);
+        if (snapshot.isPresent()) {
+            return snapshot.get();
+        }
         var product = productRepository.findByCode(code)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found with code: " + code));
         return productMapper.toProductTO(product);
@@ -75,6 +128,15 @@ public class ProductService implements IProductService {
                 .build();
 
         product = productRepository.save(product);
+        if (productTO.getStockBuckets() != null && productTO.getStockBuckets() > 0) {
+            productStockService.replaceBuckets(product, productTO.getStockBuckets(), product.getStockQuantity());
+            product.setStockPartitioned(true);
+            product.setStockBuckets(productTO.getStockBuckets());
+        }
+        // every product has its counter rows, for the reconciliation to lock
+        addOrderCounterShards(product.getId(), 0, Math.max(product.getStockBuckets(), 1));
+        productIdIndex.put(product.getCode(), product.getId());
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getCode()));
         log.info("Created productTO with id: {}, code: {}", product.getId(), product.getCode());
 
         return productMapper.toProductTO(product);
@@ -86,25 +148,90 @@ public class ProductService implements IProductService {
     @Override
     public ProductTO updateProduct(ProductTO productTO) throws ProductNotFoundException {
         validateProduct(productTO);
-        var product = productRepository.findByCodeForUpdate(productTO.getCode())
+        var product = findByCodeForUpdate(productTO.getCode())
                 .orElseThrow(() -> new ProductNotFoundException("Product not found with code: " + productTO.getCode()));
+        if (productTO.getVersion() != null && !productTO.getVersion().equals(product.getVersion())) {
+            throw new ProductVersionMismatchException("Product " + productTO.getCode() + " was modified. Expected version: "
+                    + productTO.getVersion() + ", current version: " + product.getVersion());
+        }
 
+        var stockBuckets = productTO.getStockBuckets() == null ? product.getStockBuckets() : productTO.getStockBuckets();
+        int stockDelta;
+        if (stockBuckets > 0) {
+            Assert.isTrue(!product.isStockPartitioned() || product.getStockBuckets() > 0, "Stock of product "
+                    + product.getCode() + " is kept per location, it cannot be sharded into buckets");
+            var replaced = productStockService.replaceBuckets(product, stockBuckets, productTO.getStockQuantity());
+            addOrderCounterShards(product.getId(), Math.max(product.getStockBuckets(), 1), stockBuckets);
+            // the stock quantity of a sharded product may lag behind its buckets
+            stockDelta = productTO.getStockQuantity() - (product.isStockPartitioned() ? replaced : product.getStockQuantity());
+            product.setStockPartitioned(true);
+        } else if (product.getStockBuckets() > 0) {
+            stockDelta = productTO.getStockQuantity() - productStockService.removeLocations(product);
+            product.setStockPartitioned(false);
+        } else {
+            // the stock of a product partitioned into locations is changed per location only
+            stockDelta = product.isStockPartitioned() ? 0 : productTO.getStockQuantity() - product.getStockQuantity();
+        }
         product.setName(productTO.getName());
         product.setPricePerUnit(productTO.getPricePerUnit());
-        product.setStockQuantity(productTO.getStockQuantity());
+        product.setStockBuckets(stockBuckets);
+        if (!product.isStockPartitioned() || stockBuckets > 0) {
+            product.setStockQuantity(productTO.getStockQuantity());
+        }
         product = productRepository.save(product);
         log.info("Updated productTO with code: {}", product.getCode());
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getCode()));
+        if (stockDelta != 0) {
+            publishStockChange(product, stockDelta);
+        }
 
         return productMapper.toProductTO(product);
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public List<ProductStockTO> getStockLocations(final String code) throws ProductNotFoundException {
+        Assert.hasText(code, "Product code must not be empty");
+        var product = productRepository.findByCode(code)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found with code: " + code));
+        return productStockService.getLocations(product);
+    }
+
+    @Retryable(interceptor = "productServiceRetryInterceptor")
+    @CacheEvict(value = "product", key = "#code")
+    @Override
+    public List<ProductStockTO> updateStockLocations(final String code, final List<ProductStockTO> locations)
+            throws ProductNotFoundException {
+        Assert.hasText(code, "Product code must not be empty");
+        Assert.notEmpty(locations, "Product must be stocked in at least one location");
+        Assert.isTrue(locations.stream().map(ProductStockTO::getLocationCode).distinct().count() == locations.size(),
+                "Locations of product " + code + " must not repeat");
+        locations.forEach(location -> Assert.isTrue(location.getQuantity() != null && location.getQuantity() >= 0,
+                "Stock quantity must be non-negative in location " + location.getLocationCode()));
+
+        var product = findByCodeForUpdate(code)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found with code: " + code));
+        var stockQuantity = productStockService.replaceLocations(product, locations);
+        var stockDelta = stockQuantity - product.getStockQuantity();
+        product.setStockPartitioned(true);
+        product.setStockBuckets(0);
+        product.setStockQuantity(stockQuantity);
+        product = productRepository.saveAndFlush(product);
+        log.info("Updated stock locations of product with code: {}. Current stock: {}", code, stockQuantity);
+        eventPublisher.publishEvent(new ProductChangedEvent(code));
+        if (stockDelta != 0) {
+            publishStockChange(product, stockDelta);
+        }
+        return productStockService.getLocations(product);
+    }
+
     @Override
     public boolean hasProductActiveOrders(String code) {
         Assert.hasText(code, "Product code must not be empty");
         if (!productRepository.existsByCode(code)) {
             throw new ProductNotFoundException("Product not found with code: " + code);
         }
-        return orderRepository.existsByProductCodeAndStatusIn(code, ACTIVE_ORDER_STATUSES);
+        return getOrderCounter(code).getActiveOrderItems() > 0;
     }
 
     @Override
@@ -113,7 +240,7 @@ public class ProductService implements IProductService {
         if (!productRepository.existsByCode(code)) {
             throw new ProductNotFoundException("Product not found with code: " + code);
         }
-        return orderRepository.existsByProductCodeAndStatusIn(code, FINISHED_ORDER_STATUSES);
+        return getOrderCounter(code).getFinishedOrderItems() > 0;
     }
 
     @CacheEvict(value = "product", key = "#code")
@@ -125,21 +252,33 @@ public class ProductService implements IProductService {
             throw new ProductNotFoundException("Product not found with code: " + code);
         }
 
-        boolean hasActiveOrders = orderRepository.existsByProductCodeAndStatusIn(code,ACTIVE_ORDER_STATUSES);
+        var orderCounter = getOrderCounter(code);
+        boolean hasActiveOrders = orderCounter.getActiveOrderItems() > 0;
 
         if (hasActiveOrders) {
             throw new ProductDeletionException("Cannot delete product " + code + " with active orders");
         }
 
-        boolean hasFinishedOrders = orderRepository.existsByProductCodeAndStatusIn(code, FINISHED_ORDER_STATUSES);
+        // a live hold still owns stock of the product, it must be converted or dropped first
+        var now = LocalDateTime.now();
+        if (reservationHoldRepository.existsLiveByProductCode(code, now)) {
+            throw new ProductDeletionException("Cannot delete product " + code + " with active reservation holds");
+        }
+
+        // archived orders count as finished, they still refer to the product
+        boolean hasFinishedOrders = orderCounter.getFinishedOrderItems() > 0;
 
         if (hasFinishedOrders) {
             productRepository.archiveByCode(code);
+            productIdIndex.remove(code);
             log.info("Archived product with code: {}", code);
         } else {
+            reservationHoldRepository.deleteExpiredByProductCode(code, now);
             productRepository.deleteByCode(code);
+            productIdIndex.remove(code);
             log.info("Deleted product with code: {}", code);
         }
+        eventPublisher.publishEvent(new ProductChangedEvent(code));
     }
 
     @Retryable(interceptor = "productServiceRetryInterceptor")
@@ -150,8 +289,16 @@ public class ProductService implements IProductService {
         Assert.isTrue(requestedQuantity > 0, "Requested quantity must be greater than zero " +
                 "for product: " + productCode);
 
-        var product = productRepository.findByCodeForUpdate(productCode)
+        var product = findForStockChange(productCode)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found with code: " + productCode));
+        if (product.isStockPartitioned()) {
+            var stockQuantity = productStockService.reserve(product, requestedQuantity);
+            // the product row is not written, the catalogue snapshot skips the unchanged version and takes
+            // the stock with the new version from the refresh of the stock quantities
+            publishStockChange(product, -requestedQuantity, stockQuantity);
+            logStockChange("Reserved", requestedQuantity, productCode, stockQuantity);
+            return product;
+        }
         if (product.getStockQuantity() < requestedQuantity) {
             throw new InsufficientStockException(
                     "Insufficient stock for product " + product.getCode() +
@@ -161,8 +308,8 @@ public class ProductService implements IProductService {
         }
         product.setStockQuantity(product.getStockQuantity() - requestedQuantity);
         product = productRepository.saveAndFlush(product);
-        log.info("Reserved {} units of product with code: {}. Current stock: {}",
-                requestedQuantity, productCode, product.getStockQuantity());
+        publishStockChange(product, -requestedQuantity);
+        logStockChange("Reserved", requestedQuantity, productCode, product.getStockQuantity());
 
         return product;
     }
@@ -175,12 +322,119 @@ public class ProductService implements IProductService {
         Assert.isTrue(quantityToRelease > 0, "Quantity to release must be greater than zero " +
                 "for product: " + productCode);
 
-        var product = productRepository.findByCodeForUpdate(productCode)
+        var product = findForStockChange(productCode)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found with code: " + productCode));
+        if (product.isStockPartitioned()) {
+            var stockQuantity = productStockService.release(product, quantityToRelease);
+            publishStockChange(product, quantityToRelease, stockQuantity);
+            logStockChange("Released", quantityToRelease, productCode, stockQuantity);
+            return;
+        }
         product.setStockQuantity(product.getStockQuantity() + quantityToRelease);
         productRepository.saveAndFlush(product);
-        log.info("Released {} units of product with code: {}. Current stock: {}",
-                quantityToRelease, productCode, product.getStockQuantity());
+        publishStockChange(product, quantityToRelease);
+        logStockChange("Released", quantityToRelease, productCode, product.getStockQuantity());
+    }
+
+    /**
+     * Creates the order counter shard rows of the product in the given range, the existing ones are left unchanged.
+     * The order transactions of a sharded product update a random one of as many shards as it has stock buckets.
+     *
+     * @param productId the id of the product
+     * @param from      the first shard to create
+     * @param to        the shard after the last one to create
+     */
+    private void addOrderCounterShards(final Long productId, final int from, final int to) {
+        for (int shard = from; shard < to; shard++) {
+            productOrderCounterRepository.add(productId, shard, 0, 0);
+        }
+    }
+
+    /**
+     * Reads the order counters of the product summed over its shards by the product id, resolved from the product
+     * id index or, for codes which are not indexed (e.g. archived products), from the product code.
+     *
+     * @param code the product code
+     * @return the order counters of the product, zero counters if the product was never ordered
+     */
+    private ProductOrderCounter getOrderCounter(final String code) {
+        var id = productIdIndex.getId(code);
+        var orderCounter = id != IProductIdIndex.UNKNOWN_ID
+                ? productOrderCounterRepository.findByProductId(id)
+                : productOrderCounterRepository.findByProductCode(code);
+        return orderCounter.orElseGet(ProductOrderCounter::new);
+    }
+
+    /**
+     * Finds the active product by its code and locks it for update. The product is locked by its primary key
+     * when the id index knows the code, so the hot path skips the CODE index. Misses and stale entries
+     * fall back to the lookup by code, which also refreshes the index. A product the transaction has already loaded,
+     * e.g. with the items of an order being canceled, is detached first. Hibernate refuses to lock a loaded product
+     * changed meanwhile by another transaction, so the lock query loads it again instead.
+     *
+     * @param code the product code
+     * @return the locked product or empty when there is no active product with the code
+     */
+    private Optional<Product> findByCodeForUpdate(final String code) {
+        var id = productIdIndex.getId(code);
+        if (id != IProductIdIndex.UNKNOWN_ID) {
+            var loaded = entityManager.getReference(Product.class, id);
+            if (Hibernate.isInitialized(loaded)) {
+                entityManager.detach(loaded);
+            }
+            var product = productRepository.findByIdForUpdate(id);
+            if (product.isPresent() && product.get().getCode().equals(code)) {
+                return product;
+            }
+        }
+        var product = productRepository.findByCodeForUpdate(code);
+        if (product.isPresent()) {
+            productIdIndex.put(code, product.get().getId());
+        } else if (id != IProductIdIndex.UNKNOWN_ID) {
+            productIdIndex.remove(code);
+        }
+        return product;
+    }
+
+    /**
+     * Finds the active product for a change of its stock. Products known to be partitioned are read without
+     * a lock, their reservations lock the stock locations instead. Other products are locked, which also covers
+     * products partitioned by another instance.
+     *
+     * @param code the product code
+     * @return the product or empty when there is no active product with the code
+     */
+    private Optional<Product> findForStockChange(final String code) {
+        if (productStockService.isPartitioned(code)) {
+            var product = productRepository.findByCode(code)
+                    .filter(found -> found.isStockPartitioned() && !found.isArchived());
+            if (product.isPresent()) {
+                return product;
+            }
+        }
+        return findByCodeForUpdate(code);
+    }
+
+    /**
+     * Publishes the change of the product stock quantity for the stock stream subscribers.
+     *
+     * @param product the product after the change
+     * @param delta   the change of the stock quantity
+     */
+    private void publishStockChange(final Product product, final int delta) {
+        publishStockChange(product, delta, product.getStockQuantity());
+    }
+
+    private void publishStockChange(final Product product, final int delta, final int stockQuantity) {
+        var version = product.getVersion() == null ? 0L : product.getVersion();
+        eventPublisher.publishEvent(new StockChangedEvent(product.getCode(), delta, stockQuantity, version));
+    }
+
+    private void logStockChange(final String change, final int quantity, final String productCode, final int stockQuantity) {
+        if (stockLogSampler.tryAcquire()) {
+            log.info("{} {} units of product with code: {}. Current stock: {}. Suppressed stock logs: {}",
+                    change, quantity, productCode, stockQuantity, stockLogSampler.getAndResetSuppressed());
+        }
     }
 
     /**
@@ -195,6 +449,8 @@ public class ProductService implements IProductService {
         Assert.notNull(product.getPricePerUnit(), "Price per unit must not be null");
         Assert.isTrue(product.getPricePerUnit().compareTo(BigDecimal.ZERO) > 0,
                 "Price per unit must be greater than zero");
+        Assert.isTrue(product.getPricePerUnit().stripTrailingZeros().scale() <= MoneyUtil.SCALE,
+                "Price per unit must not have more than " + MoneyUtil.SCALE + " decimal places");
         Assert.notNull(product.getStockQuantity(), "Stock quantity must not be null");
         Assert.isTrue(product.getStockQuantity() >= 0, "Stock quantity must be non-negative");
     }
@@ -0,0 +1,384 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductIdRow;
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+import group.rohlik.grocerymanager.dto.ProductStockTO;
+import group.rohlik.grocerymanager.event.LocationStockChangedEvent;
+import group.rohlik.grocerymanager.event.ProductChangedEvent;
+import group.rohlik.grocerymanager.exception.InsufficientStockException;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.model.ProductStock;
+import group.rohlik.grocerymanager.repository.IProductRepository;
+import group.rohlik.grocerymanager.repository.IProductStockRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A reservation of a partitioned product reads its locations without locking them, lets the stock location strategy
+ * order them and locks them one by one with SKIP LOCKED until it has the quantity. Locations locked by concurrent
+ * reservations are passed over and waited for only when the free ones do not have enough stock, so concurrent
+ * reservations of one product take their stock from different rows instead of queueing on the product row.
+ * A release passes over the locked locations the same way and waits only when all of them are locked.
+ * <p>
+ * The product row is not touched by the reservation. The products whose locations changed are collected
+ * after the commit and their stock quantity is set to the sum of the locations by one update per product
+ * every refresh run, so the product API reports the stock of a partitioned product with the delay of that run.
+ * The refresh bumps the versions of the products, so it publishes a {@link ProductChangedEvent} of every product
+ * it updated, the catalogue snapshot reloads their stock with the new version after the commit.
+ * The sums of all partitioned products are refreshed at startup, which covers changes not refreshed before
+ * a restart.
+ * <p>
+ * The stock of a sharded product is kept in stock buckets, locations named by the service, which are tried
+ * from a random one on instead of in the order of the strategy. The random choice leaves the buckets uneven
+ * over time, a reservation which finds a bucket short marks the product and the rebalancing run spreads
+ * the stock of the buckets it can lock without waiting evenly over them again.
+ *
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class ProductStockService implements IProductStockService {
+
+    private static final int REFRESH_BATCH_SIZE = 500;
+    private static final String BUCKET_CODE_PREFIX = "BUCKET-";
+    private static final IStockLocationStrategy BUCKET_STRATEGY = new RandomStockBucketStrategy();
+
+    private final IProductStockRepository productStockRepository;
+    private final IProductRepository productRepository;
+    private final IStockLocationStrategy stockLocationStrategy;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter skippedLocationCounter;
+    private final Counter rebalancedBucketsCounter;
+
+    private final Set<String> partitionedCodes = ConcurrentHashMap.newKeySet();
+    private final Map<Long, String> changedProducts = new ConcurrentHashMap<>();
+    private final Map<Long, String> unbalancedProducts = new ConcurrentHashMap<>();
+
+    public ProductStockService(final IProductStockRepository productStockRepository,
+                               final IProductRepository productRepository,
+                               final IStockLocationStrategy stockLocationStrategy,
+                               final CacheManager cacheManager,
+                               final ApplicationEventPublisher eventPublisher,
+                               final PlatformTransactionManager transactionManager,
+                               final MeterRegistry meterRegistry) {
+        this.productStockRepository = productStockRepository;
+        this.productRepository = productRepository;
+        this.stockLocationStrategy = stockLocationStrategy;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.skippedLocationCounter = Counter.builder("gm.product.stock.locations.skipped")
+                .description("Locations passed over by reservations because a concurrent reservation held their lock")
+                .register(meterRegistry);
+        this.rebalancedBucketsCounter = Counter.builder("gm.product.stock.buckets.rebalanced")
+                .description("Sharded products whose stock was spread evenly over their buckets again")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isPartitioned(final String productCode) {
+        return partitionedCodes.contains(productCode);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<ProductStockTO> getLocations(final Product product) {
+        if (!product.isStockPartitioned()) {
+            return List.of();
+        }
+        return productStockRepository.findRowsByProductId(product.getId()).stream()
+                .map(row -> ProductStockTO.builder().locationCode(row.locationCode()).quantity(row.quantity()).build())
+                .toList();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public int replaceLocations(final Product product, final List<ProductStockTO> locations) {
+        var existing = productStockRepository.findByProductIdForUpdate(product.getId()).stream()
+                .collect(Collectors.toMap(ProductStock::getLocationCode, Function.identity()));
+        var replaced = new ArrayList<ProductStock>(locations.size());
+        var stockQuantity = 0;
+        for (ProductStockTO locationTO : locations) {
+            var location = existing.remove(locationTO.getLocationCode());
+            if (location == null) {
+                location = ProductStock.builder().product(product).locationCode(locationTO.getLocationCode()).build();
+            }
+            location.setQuantity(locationTO.getQuantity());
+            replaced.add(location);
+            stockQuantity += locationTO.getQuantity();
+        }
+        productStockRepository.deleteAll(existing.values());
+        productStockRepository.saveAll(replaced);
+        partitionedCodes.add(product.getCode());
+        log.info("Stock of product {} partitioned into locations {}", product.getCode(),
+                replaced.stream().map(ProductStock::getLocationCode).toList());
+        return stockQuantity;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public int replaceBuckets(final Product product, final int buckets, final int stockQuantity) {
+        Assert.isTrue(buckets > 0, "Number of stock buckets must be positive");
+        var replaced = productStockRepository.findByProductIdForUpdate(product.getId()).stream()
+                .mapToInt(ProductStock::getQuantity)
+                .sum();
+        var bucketTOs = new ArrayList<ProductStockTO>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            bucketTOs.add(ProductStockTO.builder().locationCode(BUCKET_CODE_PREFIX + i)
+                    .quantity(share(stockQuantity, buckets, i)).build());
+        }
+        replaceLocations(product, bucketTOs);
+        return replaced;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public int removeLocations(final Product product) {
+        var locations = productStockRepository.findByProductIdForUpdate(product.getId());
+        productStockRepository.deleteAll(locations);
+        partitionedCodes.remove(product.getCode());
+        unbalancedProducts.remove(product.getId());
+        log.info("Stock locations of product {} removed", product.getCode());
+        return locations.stream().mapToInt(ProductStock::getQuantity).sum();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public int reserve(final Product product, final int quantity) throws InsufficientStockException {
+        var rows = productStockRepository.findRowsByProductId(product.getId());
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        rows.forEach(row -> quantities.put(row.id(), row.quantity()));
+
+        var remaining = quantity;
+        Map<ProductStock, Integer> taken = new IdentityHashMap<>();
+        var passedOver = new ArrayList<ProductStockRow>();
+        for (ProductStockRow row : strategyOf(product).orderForReservation(rows)) {
+            if (remaining == 0) {
+                break;
+            }
+            if (row.quantity() == 0) {
+                // may have been restocked meanwhile, checked under the lock only when the others do not suffice
+                passedOver.add(row);
+                continue;
+            }
+            var location = productStockRepository.findByIdForUpdateSkipLocked(row.id());
+            if (location.isEmpty()) {
+                skippedLocationCounter.increment();
+                passedOver.add(row);
+                continue;
+            }
+            remaining -= take(location.get(), remaining, quantities, taken);
+        }
+        for (ProductStockRow row : passedOver) {
+            if (remaining == 0) {
+                break;
+            }
+            var location = productStockRepository.findByIdForUpdate(row.id());
+            if (location.isPresent()) {
+                remaining -= take(location.get(), remaining, quantities, taken);
+            }
+        }
+
+        if (product.getStockBuckets() > 0 && (taken.size() > 1 || quantities.containsValue(0))) {
+            unbalancedProducts.put(product.getId(), product.getCode());
+        }
+        var stockQuantity = sum(quantities);
+        if (remaining > 0) {
+            // give the stock back, so nothing is written when the caller catches the exception and commits
+            taken.forEach((location, given) -> location.setQuantity(location.getQuantity() + given));
+            throw new InsufficientStockException("Insufficient stock for product " + product.getCode() +
+                    ". Available: " + (stockQuantity + quantity - remaining) + ", Requested: " + quantity);
+        }
+        onLocationsChanged(product);
+        return stockQuantity;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public int release(final Product product, final int quantity) {
+        var rows = productStockRepository.findRowsByProductId(product.getId());
+        Assert.state(!rows.isEmpty(), "Partitioned product " + product.getCode() + " has no stock location");
+        var candidates = strategyOf(product).orderForRelease(rows);
+        Optional<ProductStock> location = Optional.empty();
+        for (ProductStockRow row : candidates) {
+            location = productStockRepository.findByIdForUpdateSkipLocked(row.id());
+            if (location.isPresent()) {
+                break;
+            }
+            skippedLocationCounter.increment();
+        }
+        if (location.isEmpty()) {
+            var preferred = candidates.get(0);
+            location = productStockRepository.findByIdForUpdate(preferred.id());
+        }
+        var released = location.orElseThrow(() -> new ConcurrencyFailureException("Stock location " +
+                candidates.get(0).locationCode() + " of product " + product.getCode() + " was removed"));
+        released.setQuantity(released.getQuantity() + quantity);
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        rows.forEach(row -> quantities.put(row.id(), row.quantity()));
+        quantities.put(released.getId(), released.getQuantity());
+        onLocationsChanged(product);
+        return sum(quantities);
+    }
+
+    @Override
+    public int refreshStockQuantities() {
+        if (changedProducts.isEmpty()) {
+            return 0;
+        }
+        Map<Long, String> products = new HashMap<>();
+        for (Long id : changedProducts.keySet()) {
+            // remove() hands the product over atomically, later changes mark it for the next refresh
+            var code = changedProducts.remove(id);
+            if (code != null) {
+                products.put(id, code);
+            }
+        }
+        var ids = new ArrayList<>(products.keySet());
+        var refreshed = 0;
+        for (int from = 0; from < ids.size(); from += REFRESH_BATCH_SIZE) {
+            var batch = ids.subList(from, Math.min(from + REFRESH_BATCH_SIZE, ids.size()));
+            refreshed += transactionTemplate.execute(status -> {
+                var updated = productRepository.refreshStockQuantities(batch);
+                batch.forEach(id -> eventPublisher.publishEvent(new ProductChangedEvent(products.get(id))));
+                return updated;
+            });
+        }
+        var cache = cacheManager.getCache("product");
+        if (cache != null) {
+            products.values().forEach(cache::evict);
+        }
+        return refreshed;
+    }
+
+    @Override
+    public int rebalanceBuckets() {
+        var rebalanced = 0;
+        for (Long id : unbalancedProducts.keySet()) {
+            var code = unbalancedProducts.remove(id);
+            if (code != null && Boolean.TRUE.equals(transactionTemplate.execute(status -> rebalanceBuckets(id)))) {
+                rebalanced++;
+                rebalancedBucketsCounter.increment();
+            }
+        }
+        return rebalanced;
+    }
+
+    /**
+     * Marks the product for the next refresh of the stock quantities once the change of its locations is committed.
+     *
+     * @param event the change of the locations
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLocationStockChanged(final LocationStockChangedEvent event) {
+        changedProducts.put(event.productId(), event.productCode());
+    }
+
+    /**
+     * Loads the codes of the partitioned products and refreshes their stock quantities, changes of the locations
+     * made before a restart may not have been refreshed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPartitionedProducts() {
+        var products = transactionTemplate.execute(status -> {
+            var rows = productRepository.findPartitionedIdRows();
+            var ids = rows.stream().map(ProductIdRow::id).toList();
+            for (int from = 0; from < ids.size(); from += REFRESH_BATCH_SIZE) {
+                productRepository.refreshStockQuantities(ids.subList(from, Math.min(from + REFRESH_BATCH_SIZE, ids.size())));
+            }
+            rows.forEach(row -> eventPublisher.publishEvent(new ProductChangedEvent(row.code())));
+            return rows;
+        });
+        products.forEach(row -> partitionedCodes.add(row.code()));
+        log.info("Loaded {} products with partitioned stock", products.size());
+    }
+
+    /**
+     * Spreads the stock of the buckets of the product, which are not locked by another transaction, evenly over them.
+     * The sum of the buckets does not change, the product needs no refresh.
+     *
+     * @param productId the id of the sharded product
+     * @return true if the quantities of the buckets were changed
+     */
+    private boolean rebalanceBuckets(final Long productId) {
+        var sharded = productRepository.findById(productId).filter(product -> product.getStockBuckets() > 0);
+        if (sharded.isEmpty()) {
+            return false;
+        }
+        var buckets = new ArrayList<ProductStock>();
+        for (ProductStockRow row : productStockRepository.findRowsByProductId(productId)) {
+            productStockRepository.findByIdForUpdateSkipLocked(row.id()).ifPresent(buckets::add);
+        }
+        var min = buckets.stream().mapToInt(ProductStock::getQuantity).min().orElse(0);
+        var max = buckets.stream().mapToInt(ProductStock::getQuantity).max().orElse(0);
+        if (max - min <= 1) {
+            return false;
+        }
+        var stockQuantity = buckets.stream().mapToInt(ProductStock::getQuantity).sum();
+        for (int i = 0; i < buckets.size(); i++) {
+            buckets.get(i).setQuantity(share(stockQuantity, buckets.size(), i));
+        }
+        log.debug("Rebalanced {} stock buckets of product {}", buckets.size(), sharded.get().getCode());
+        return true;
+    }
+
+    private IStockLocationStrategy strategyOf(final Product product) {
+        return product.getStockBuckets() > 0 ? BUCKET_STRATEGY : stockLocationStrategy;
+    }
+
+    private void onLocationsChanged(final Product product) {
+        partitionedCodes.add(product.getCode());
+        eventPublisher.publishEvent(new LocationStockChangedEvent(product.getId(), product.getCode()));
+    }
+
+    private static int take(final ProductStock location, final int remaining, final Map<Long, Integer> quantities,
+                            final Map<ProductStock, Integer> taken) {
+        var quantity = Math.min(remaining, location.getQuantity());
+        if (quantity > 0) {
+            location.setQuantity(location.getQuantity() - quantity);
+            taken.put(location, quantity);
+        }
+        quantities.put(location.getId(), location.getQuantity());
+        return quantity;
+    }
+
+    /**
+     * Splits the stock quantity into equal shares, the first shares take one more unit of the remainder each.
+     */
+    private static int share(final int stockQuantity, final int shares, final int index) {
+        return stockQuantity / shares + (index < stockQuantity % shares ? 1 : 0);
+    }
+
+    private static int sum(final Map<Long, Integer> quantities) {
+        return quantities.values().stream().mapToInt(Integer::intValue).sum();
+    }
+}
@@ -0,0 +1,35 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strategy for the stock buckets of a sharded product: the buckets are tried from a random one on, wrapping around,
+ * so concurrent reservations and releases start at different rows. The background rebalancing of the buckets
+ * evens out the quantities the random choice leaves uneven.
+ *
+ * @author Tomas Kramec
+ */
+public class RandomStockBucketStrategy implements IStockLocationStrategy {
+
+    @Override
+    public List<ProductStockRow> orderForReservation(final List<ProductStockRow> locations) {
+        return fromRandomBucket(locations);
+    }
+
+    @Override
+    public List<ProductStockRow> orderForRelease(final List<ProductStockRow> locations) {
+        return fromRandomBucket(locations);
+    }
+
+    private static List<ProductStockRow> fromRandomBucket(final List<ProductStockRow> buckets) {
+        var first = ThreadLocalRandom.current().nextInt(buckets.size());
+        var ordered = new ArrayList<ProductStockRow>(buckets.size());
+        ordered.addAll(buckets.subList(first, buckets.size()));
+        ordered.addAll(buckets.subList(0, first));
+        return ordered;
+    }
+}
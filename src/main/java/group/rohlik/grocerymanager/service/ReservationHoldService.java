@@ -0,0 +1,242 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.ReservationHoldTO;
+import group.rohlik.grocerymanager.exception.ReservationHoldNotFoundException;
+import group.rohlik.grocerymanager.model.ReservationHold;
+import group.rohlik.grocerymanager.property.ReservationHoldProperties;
+import group.rohlik.grocerymanager.repository.IReservationHoldIndex;
+import group.rohlik.grocerymanager.repository.IReservationHoldRepository;
+import group.rohlik.grocerymanager.util.UuidUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Holds are rows of {@code GM_RESERVATION_HOLD} next to an in-memory index of their expiry. Creating or dropping
+ * a hold costs the stock change of its products plus a batched insert or delete, the index lets the sweep
+ * go straight to the expired holds. The sweep releases the stock of a batch of holds summed per product,
+ * so every product is locked once per batch however many of its holds expired.
+ * <p>
+ * A hold is put into the index before its transaction commits. When the transaction rolls back, the sweep
+ * finds no rows for it and drops it from the index.
+ *
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class ReservationHoldService implements IReservationHoldService {
+
+    private final IReservationHoldRepository reservationHoldRepository;
+    private final IReservationHoldIndex reservationHoldIndex;
+    private final IProductService productService;
+    private final ReservationHoldProperties reservationHoldProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter createdCounter;
+    private final Counter droppedCounter;
+    private final Counter claimedCounter;
+    private final Counter expiredCounter;
+
+    public ReservationHoldService(final IReservationHoldRepository reservationHoldRepository,
+                                  final IReservationHoldIndex reservationHoldIndex,
+                                  final IProductService productService,
+                                  final ReservationHoldProperties reservationHoldProperties,
+                                  final PlatformTransactionManager transactionManager,
+                                  final MeterRegistry meterRegistry) {
+        this.reservationHoldRepository = reservationHoldRepository;
+        this.reservationHoldIndex = reservationHoldIndex;
+        this.productService = productService;
+        this.reservationHoldProperties = reservationHoldProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.createdCounter = holdCounter(meterRegistry, "created");
+        this.droppedCounter = holdCounter(meterRegistry, "dropped");
+        this.claimedCounter = holdCounter(meterRegistry, "claimed");
+        this.expiredCounter = holdCounter(meterRegistry, "expired");
+    }
+
+    @Transactional
+    @Override
+    public ReservationHoldTO createHold(final ReservationHoldTO holdTO) {
+        Assert.notNull(holdTO, "Hold must not be null");
+        Assert.notEmpty(holdTO.getItems(), "Hold must contain at least one item");
+
+        var code = UuidUtil.timeOrdered();
+        var createdAt = LocalDateTime.now();
+        var expiresAt = createdAt.plus(getTtl(holdTO));
+        var holds = new ArrayList<ReservationHold>(holdTO.getItems().size());
+        for (OrderItemTO item : holdTO.getItems()) {
+            try {
+                var product = productService.reserveStock(item.getProductCode(), item.getQuantity());
+                holds.add(ReservationHold.builder()
+                        .code(code)
+                        .product(product)
+                        .quantity(item.getQuantity())
+                        .createdAt(createdAt)
+                        .expiresAt(expiresAt)
+                        .build());
+            } catch (Exception ex) {
+                log.error("Error while holding {} units in stock for product {}: {}. Rolling back hold creation.",
+                        item.getQuantity(), item.getProductCode(), ex.getMessage());
+                throw ex;
+            }
+        }
+        reservationHoldRepository.saveAll(holds);
+        reservationHoldIndex.put(code, expiresAt);
+        createdCounter.increment();
+        log.debug("Created hold with code: {}, expiresAt: {}", code, expiresAt);
+
+        return toReservationHoldTO(holds);
+    }
+
+    @Transactional
+    @Override
+    public void dropHold(final UUID code) {
+        Assert.notNull(code, "Hold code must not be null");
+
+        var holds = reservationHoldRepository.findByCodeForUpdate(code);
+        if (holds.isEmpty()) {
+            throw new ReservationHoldNotFoundException("Hold not found with code: " + code);
+        }
+        releaseStock(holds);
+        reservationHoldRepository.deleteByIds(holds.stream().map(ReservationHold::getId).toList());
+        reservationHoldIndex.remove(code);
+        droppedCounter.increment();
+        log.debug("Dropped hold with code: {}", code);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public List<ReservationHold> claimHold(final UUID code) {
+        Assert.notNull(code, "Hold code must not be null");
+
+        var holds = reservationHoldRepository.findByCodeForUpdate(code);
+        var now = LocalDateTime.now();
+        if (holds.isEmpty() || holds.stream().anyMatch(hold -> !hold.getExpiresAt().isAfter(now))) {
+            throw new ReservationHoldNotFoundException("Hold not found or expired with code: " + code);
+        }
+        reservationHoldRepository.deleteByIds(holds.stream().map(ReservationHold::getId).toList());
+        reservationHoldIndex.remove(code);
+        claimedCounter.increment();
+
+        return holds;
+    }
+
+    @Override
+    public int sweepExpired() {
+        var total = 0;
+        List<UUID> codes;
+        do {
+            var now = LocalDateTime.now();
+            codes = reservationHoldIndex.getExpired(now, reservationHoldProperties.getSweepBatchSize());
+            if (codes.isEmpty()) {
+                break;
+            }
+            total += sweep(codes, now);
+            reservationHoldIndex.removeAll(codes);
+        } while (codes.size() == reservationHoldProperties.getSweepBatchSize());
+        if (total > 0) {
+            log.info("Released stock of {} expired holds", total);
+        }
+        return total;
+    }
+
+    @Override
+    public int sweepExpiredFromTable() {
+        var total = 0;
+        List<UUID> codes;
+        do {
+            var now = LocalDateTime.now();
+            codes = reservationHoldRepository.findExpiredCodes(now,
+                    Limit.of(reservationHoldProperties.getSweepBatchSize()));
+            if (codes.isEmpty()) {
+                break;
+            }
+            total += sweep(codes, now);
+            reservationHoldIndex.removeAll(codes);
+        } while (codes.size() == reservationHoldProperties.getSweepBatchSize());
+        if (total > 0) {
+            log.info("Released stock of {} expired holds found in the table", total);
+        }
+        return total;
+    }
+
+    /**
+     * Releases the stock of the given holds which are expired and deletes them, in one transaction.
+     *
+     * @param codes the codes of the holds
+     * @param now   the current time, holds expiring later are left untouched
+     * @return the number of released holds
+     */
+    private int sweep(final List<UUID> codes, final LocalDateTime now) {
+        var swept = transactionTemplate.execute(status -> {
+            var holds = reservationHoldRepository.findExpiredByCodesForUpdate(codes, now);
+            if (holds.isEmpty()) {
+                return 0;
+            }
+            releaseStock(holds);
+            reservationHoldRepository.deleteByIds(holds.stream().map(ReservationHold::getId).toList());
+            return (int) holds.stream().map(ReservationHold::getCode).distinct().count();
+        });
+        var released = swept == null ? 0 : swept;
+        expiredCounter.increment(released);
+        return released;
+    }
+
+    /**
+     * Releases the held stock summed per product, in the order of the product codes so that concurrent
+     * releases lock the products in the same order. Archived products are skipped, their stock is not offered anymore.
+     *
+     * @param holds the holds to release, with their products loaded
+     */
+    private void releaseStock(final List<ReservationHold> holds) {
+        var quantities = new TreeMap<String, Integer>();
+        holds.stream()
+                .filter(hold -> !hold.getProduct().isArchived())
+                .forEach(hold -> quantities.merge(hold.getProduct().getCode(), hold.getQuantity(), Integer::sum));
+        quantities.forEach(productService::releaseStock);
+    }
+
+    private Duration getTtl(final ReservationHoldTO holdTO) {
+        if (holdTO.getTtlSeconds() == null) {
+            return reservationHoldProperties.getDefaultTtl();
+        }
+        var ttl = Duration.ofSeconds(holdTO.getTtlSeconds());
+        return ttl.compareTo(reservationHoldProperties.getMaxTtl()) > 0 ? reservationHoldProperties.getMaxTtl() : ttl;
+    }
+
+    private static ReservationHoldTO toReservationHoldTO(final List<ReservationHold> holds) {
+        var first = holds.get(0);
+        return ReservationHoldTO.builder()
+                .code(first.getCode())
+                .expiresAt(first.getExpiresAt())
+                .items(holds.stream()
+                        .map(hold -> OrderItemTO.builder()
+                                .productCode(hold.getProduct().getCode())
+                                .quantity(hold.getQuantity())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    private static Counter holdCounter(final MeterRegistry meterRegistry, final String outcome) {
+        return Counter.builder("gm.reservation.holds")
+                .description("Reservation holds created, dropped, claimed by an order or expired")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
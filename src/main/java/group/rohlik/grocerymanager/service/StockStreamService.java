@@ -0,0 +1,136 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.StockDeltaTO;
+import group.rohlik.grocerymanager.event.IStockDeltaListener;
+import group.rohlik.grocerymanager.event.StockChangedEvent;
+import group.rohlik.grocerymanager.event.StockSubscription;
+import group.rohlik.grocerymanager.property.StockStreamProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.Assert;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class StockStreamService implements IStockStreamService {
+
+    private final StockStreamProperties stockStreamProperties;
+    private final Map<String, Set<StockSubscription>> subscriptionsByCode = new ConcurrentHashMap<>();
+    private final Map<String, StockDeltaTO> pendingDeltas = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    private final ExecutorService deliveryExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter deliveredCounter;
+
+    public StockStreamService(final StockStreamProperties stockStreamProperties, final MeterRegistry meterRegistry) {
+        this.stockStreamProperties = stockStreamProperties;
+        this.deliveredCounter = Counter.builder("gm.stock.stream.deltas")
+                .description("Number of stock deltas handed over to the subscribers")
+                .register(meterRegistry);
+        Gauge.builder("gm.stock.stream.subscriptions", subscriptionCount, AtomicInteger::get)
+                .description("Number of open stock stream subscriptions")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public StockSubscription subscribe(final Set<String> productCodes, final IStockDeltaListener listener) {
+        Assert.notEmpty(productCodes, "At least one product code must be provided");
+        Assert.isTrue(productCodes.size() <= stockStreamProperties.getMaxProductCodes(),
+                "At most " + stockStreamProperties.getMaxProductCodes() + " product codes can be subscribed");
+        var subscription = new StockSubscription(productCodes, listener, stockStreamProperties.getBufferSize());
+        subscription.getProductCodes().forEach(code ->
+                subscriptionsByCode.computeIfAbsent(code, key -> ConcurrentHashMap.newKeySet()).add(subscription));
+        subscriptionCount.incrementAndGet();
+        return subscription;
+    }
+
+    @Override
+    public void unsubscribe(final StockSubscription subscription) {
+        if (!subscription.unregister()) {
+            return;
+        }
+        subscription.close();
+        subscription.getProductCodes().forEach(code -> subscriptionsByCode.computeIfPresent(code, (key, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        }));
+        subscriptionCount.decrementAndGet();
+    }
+
+    /**
+     * Records the stock change once the transaction which made it has committed.
+     * Changes of the same product are merged until the next {@link #flush()}.
+     *
+     * @param event the stock change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(final StockChangedEvent event) {
+        if (!subscriptionsByCode.containsKey(event.productCode())) {
+            return;
+        }
+        var delta = StockDeltaTO.builder()
+                .code(event.productCode())
+                .delta(event.delta())
+                .stockQuantity(event.stockQuantity())
+                .version(event.version())
+                .build();
+        pendingDeltas.merge(event.productCode(), delta, StockStreamService::coalesce);
+    }
+
+    @Override
+    public int flush() {
+        var changed = 0;
+        Set<StockSubscription> toDrain = new HashSet<>();
+        for (String code : pendingDeltas.keySet()) {
+            // remove() hands over the delta atomically, later changes start a new delta for the next flush
+            var delta = pendingDeltas.remove(code);
+            var subscriptions = subscriptionsByCode.get(code);
+            if (delta == null || subscriptions == null) {
+                continue;
+            }
+            changed++;
+            deliveredCounter.increment(subscriptions.size());
+            subscriptions.forEach(subscription -> {
+                if (subscription.offer(delta)) {
+                    toDrain.add(subscription);
+                }
+            });
+        }
+        toDrain.forEach(subscription -> deliveryExecutor.execute(() -> {
+            subscription.drain();
+            if (subscription.isClosed()) {
+                unsubscribe(subscription);
+            }
+        }));
+        return changed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    private static StockDeltaTO coalesce(final StockDeltaTO previous, final StockDeltaTO next) {
+        var latest = next.getVersion() >= previous.getVersion() ? next : previous;
+        return StockDeltaTO.builder()
+                .code(latest.getCode())
+                .delta(previous.getDelta() + next.getDelta())
+                .stockQuantity(latest.getStockQuantity())
+                .version(latest.getVersion())
+                .build();
+    }
+}
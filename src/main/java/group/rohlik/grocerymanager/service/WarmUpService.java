@@ -0,0 +1,266 @@
+package group.rohlik.grocerymanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import group.rohlik.grocerymanager.converter.CborJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.converter.SmileJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.mapper.IOrderMapper;
+import group.rohlik.grocerymanager.mapper.IProductMapper;
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.property.CacheProperties;
+import group.rohlik.grocerymanager.property.CatalogueSnapshotProperties;
+import group.rohlik.grocerymanager.property.WarmUpProperties;
+import group.rohlik.grocerymanager.repository.IProductRepository;
+import group.rohlik.grocerymanager.util.ETagUtil;
+import group.rohlik.grocerymanager.util.ProductJsonUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs the warm-up in the listener of the {@link ApplicationReadyEvent}. Spring Boot sets the readiness state
+ * to {@link ReadinessState#ACCEPTING_TRAFFIC} only after all the listeners of that event returned, so the readiness
+ * probe answers 503 until the warm-up is done or its time budget runs out. The liveness probe is not affected.
+ * <p>
+ * The products preloaded into the product cache are the most ordered ones by the product order counters, or the active
+ * ones by name, at most as many as the cache holds. Products cached meanwhile are kept, not overwritten with the
+ * preloaded copy. Nothing is preloaded when the product reads are served by the catalogue snapshot. The synthetic pass
+ * maps and serializes a product and an order which are never stored, in JSON, CBOR and Smile, so that the JIT compiler
+ * has compiled the hot paths before the first requests come.
+ * The time from the start of the application until it is ready, the warm-up included, is published as
+ * {@code gm.startup.time.to.ready}.
+ *
+ * @author Tomas Kramec
+ */
+@Service
+@Slf4j
+public class WarmUpService implements IWarmUpService {
+
+    private static final int SYNTHETIC_BATCH_SIZE = 100;
+
+    private final IProductRepository productRepository;
+    private final IProductMapper productMapper;
+    private final IOrderMapper orderMapper;
+    private final CacheManager cacheManager;
+    private final CacheProperties cacheProperties;
+    private final CatalogueSnapshotProperties catalogueSnapshotProperties;
+    private final WarmUpProperties warmUpProperties;
+    private final ObjectProvider<HikariDataSource> dataSources;
+    private final List<ObjectMapper> objectMappers;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Duration timeToReady;
+
+    public WarmUpService(final IProductRepository productRepository,
+                         final IProductMapper productMapper,
+                         final IOrderMapper orderMapper,
+                         final CacheManager cacheManager,
+                         final CacheProperties cacheProperties,
+                         final CatalogueSnapshotProperties catalogueSnapshotProperties,
+                         final WarmUpProperties warmUpProperties,
+                         final ObjectProvider<HikariDataSource> dataSources,
+                         final ObjectMapper objectMapper,
+                         final CborJackson2HttpMessageConverter cborConverter,
+                         final SmileJackson2HttpMessageConverter smileConverter,
+                         final ApplicationEventPublisher eventPublisher,
+                         final PlatformTransactionManager transactionManager,
+                         final MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.productMapper = productMapper;
+        this.orderMapper = orderMapper;
+        this.cacheManager = cacheManager;
+        this.cacheProperties = cacheProperties;
+        this.catalogueSnapshotProperties = catalogueSnapshotProperties;
+        this.warmUpProperties = warmUpProperties;
+        this.dataSources = dataSources;
+        this.objectMappers = List.of(objectMapper, cborConverter.getObjectMapper(), smileConverter.getObjectMapper());
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        TimeGauge.builder("gm.startup.time.to.ready", this, TimeUnit.MILLISECONDS,
+                        service -> service.timeToReady == null ? Double.NaN : service.timeToReady.toMillis())
+                .description("Time from the start of the application until it was ready, including the warm-up")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Warms the application up once it is started, the readiness state is set only after this listener returns.
+     *
+     * @param event the ready event with the time the startup took
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(final ApplicationReadyEvent event) {
+        var started = System.nanoTime();
+        if (warmUpProperties.isEnabled()) {
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            warmUp(warmUpProperties.getTimeBudget());
+        }
+        timeToReady = event.getTimeTaken().plusNanos(System.nanoTime() - started);
+        log.info("Application ready in {} ms", timeToReady.toMillis());
+    }
+
+    @Override
+    public int warmUp(final Duration timeBudget) {
+        var started = System.nanoTime();
+        var deadline = started + timeBudget.toNanos();
+        var completed = runStep("Preloaded {} products into the product cache", deadline, this::preloadProducts)
+                + runStep("Opened {} pooled connections", deadline, () -> openConnections(deadline))
+                + runStep("Ran {} synthetic mapping and serialization iterations", deadline, () -> runSyntheticPass(deadline));
+        log.info("Warm-up completed {} of 3 steps in {} ms", completed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return completed;
+    }
+
+    @Override
+    public Duration getTimeToReady() {
+        return timeToReady;
+    }
+
+    /**
+     * Runs the step unless the time budget is exhausted. A failed step is logged and skipped,
+     * the warm-up must not keep the application from starting.
+     *
+     * @return 1 if the step completed, 0 otherwise
+     */
+    private static int runStep(final String message, final long deadline, final IntSupplier step) {
+        if (isOver(deadline)) {
+            return 0;
+        }
+        try {
+            log.info(message, step.getAsInt());
+            return 1;
+        } catch (RuntimeException e) {
+            log.warn("Warm-up step failed, the application starts without it", e);
+            return 0;
+        }
+    }
+
+    private int preloadProducts() {
+        var cache = cacheManager.getCache("product");
+        var size = Math.min(warmUpProperties.getPreloadSize(), cacheProperties.getMaxSize());
+        if (cache == null || size <= 0 || catalogueSnapshotProperties.isEnabled()) {
+            return 0;
+        }
+        List<ProductTO> products = transactionTemplate.execute(status -> switch (warmUpProperties.getPreload()) {
+            case NONE -> List.of();
+            case MOST_ORDERED -> productMapper.toProductTOs(productRepository.findMostOrdered(Limit.of(size)));
+            case ALL_ACTIVE -> productMapper.toProductTOs(productRepository.findAllByArchived(false,
+                    Sort.sort(Product.class).by(Product::getName).ascending(), Limit.of(size)));
+        });
+        // a product cached meanwhile was read after the preload, possibly after a change which evicted it
+        products.forEach(product -> cache.putIfAbsent(product.getCode(), product));
+        return products.size();
+    }
+
+    /**
+     * Opens the idle connections every pool keeps by borrowing them all at once, instead of the first requests
+     * waiting for the pool to open them.
+     */
+    private int openConnections(final long deadline) {
+        var opened = 0;
+        for (HikariDataSource dataSource : dataSources) {
+            var connections = new ArrayList<Connection>();
+            try {
+                while (connections.size() < dataSource.getMinimumIdle() && !isOver(deadline)) {
+                    var connection = dataSource.getConnection();
+                    connections.add(connection);
+                    connection.isValid(1);
+                }
+                opened += connections.size();
+            } catch (SQLException e) {
+                log.warn("Opening the connections of pool {} failed", dataSource.getPoolName(), e);
+            } finally {
+                connections.forEach(WarmUpService::close);
+            }
+        }
+        return opened;
+    }
+
+    private int runSyntheticPass(final long deadline) {
+        var product = Product.builder().id(0L).code("WARM-UP").name("Warm-up product").stockQuantity(100)
+                .pricePerUnit(new BigDecimal("9.99")).archived(false).build();
+        product.setVersion(1L);
+        var order = Order.builder().id(0L).code(UUID.randomUUID()).status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("19.98")).expiresAt(LocalDateTime.now()).items(new ArrayList<>()).build();
+        order.getItems().add(OrderItem.builder().id(0L).code(UUID.randomUUID()).order(order).product(product).quantity(2)
+                .unitPrice(product.getPricePerUnit()).totalPrice(order.getTotalAmount()).build());
+        var row = new ProductRow(product.getCode(), product.getName(), product.getStockQuantity(),
+                product.getStockBuckets(), product.getPricePerUnit(), product.isArchived());
+
+        var iterations = 0;
+        try {
+            while (iterations < warmUpProperties.getSyntheticIterations() && !isOver(deadline)) {
+                for (int i = 0; i < SYNTHETIC_BATCH_SIZE; i++) {
+                    var productTO = productMapper.toProductTO(product);
+                    ETagUtil.toETag(productTO.getCode(), productTO.getVersion());
+                    var orderTO = orderMapper.toOrderTO(order);
+                    for (ObjectMapper objectMapper : objectMappers) {
+                        serialize(objectMapper, productTO, orderTO, row);
+                    }
+                }
+                iterations += SYNTHETIC_BATCH_SIZE;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Synthetic serialization failed", e);
+        }
+        return iterations;
+    }
+
+    private static void serialize(final ObjectMapper objectMapper, final ProductTO productTO, final OrderTO orderTO,
+                                  final ProductRow row) throws IOException {
+        var product = objectMapper.writerWithView(View.Read.class).writeValueAsBytes(productTO);
+        objectMapper.readerWithView(View.Update.class).forType(ProductTO.class).readValue(product);
+        objectMapper.writerWithView(View.Read.class).writeValueAsBytes(orderTO);
+        try (var generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            generator.writeStartArray();
+            ProductJsonUtil.writeProduct(generator, row);
+            generator.writeEndArray();
+        }
+    }
+
+    private static boolean isOver(final long deadline) {
+        return System.nanoTime() - deadline >= 0;
+    }
+
+    private static void close(final Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Closing a warm-up connection failed", e);
+        }
+    }
+}
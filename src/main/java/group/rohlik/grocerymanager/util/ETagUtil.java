@@ -0,0 +1,54 @@
+package group.rohlik.grocerymanager.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.OptionalLong;
+
+/**
+ * Utility class for strong entity tags derived from the business code and the version of an entity.
+ * The code is Base64url encoded, so any code yields a valid tag, e.g. {@code "TUlMSzE.3"}.
+ *
+ * @author Tomas Kramec
+ */
+public class ETagUtil {
+
+    public static final String ANY = "*";
+
+    private static final char SEPARATOR = '.';
+
+    /**
+     * @param code    the business code of the entity
+     * @param version the version of the entity
+     * @return the quoted strong entity tag
+     */
+    public static String toETag(final String code, final long version) {
+        return "\"" + encode(code) + SEPARATOR + version + "\"";
+    }
+
+    /**
+     * Finds the version of the entity with the given code in an {@code If-Match} header value.
+     * Weak tags are ignored, {@code If-Match} uses the strong comparison.
+     *
+     * @param ifMatch the comma separated list of entity tags
+     * @param code    the business code of the entity
+     * @return the version of the first tag of the entity, empty if there is none
+     */
+    public static OptionalLong parseVersion(final String ifMatch, final String code) {
+        var prefix = "\"" + encode(code) + SEPARATOR;
+        for (var tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    return OptionalLong.of(Long.parseLong(tag.substring(prefix.length(), tag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // not our tag, it cannot match
+                }
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    private static String encode(final String code) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(code.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,48 @@
+package group.rohlik.grocerymanager.util;
+
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Utility class for money arithmetic in minor units.
+ * Amounts are carried as {@code long} hundredths (scale 2) on the hot path and converted to BigDecimal
+ * only where they enter or leave it, so summing and multiplying allocates nothing.
+ *
+ * @author Tomas Kramec
+ */
+public class MoneyUtil {
+
+    public static final int SCALE = 2;
+
+    /**
+     * Converts the amount to minor units, rounding it to the scale using HALF_UP.
+     *
+     * @param amount the amount to convert
+     * @return the amount in minor units
+     * @throws ArithmeticException if the amount does not fit into a long
+     */
+    public static long toMinorUnits(final BigDecimal amount) {
+        Assert.notNull(amount, "Amount must not be null");
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * @param minorUnits the amount in minor units
+     * @return the amount as a BigDecimal with the scale of 2
+     */
+    public static BigDecimal toBigDecimal(final long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * @param unitPrice the unit price in minor units
+     * @param quantity  the quantity
+     * @return the total price in minor units
+     * @throws ArithmeticException on overflow
+     */
+    public static long multiply(final long unitPrice, final int quantity) {
+        return Math.multiplyExact(unitPrice, (long) quantity);
+    }
+}
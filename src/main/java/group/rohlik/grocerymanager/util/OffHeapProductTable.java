@@ -0,0 +1,560 @@
+package group.rohlik.grocerymanager.util;
+
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Product catalogue stored outside of the Java heap, in direct byte buffers:
+ * <ul>
+ *     <li>records - append-only log of the immutable product fields, one variable-length record per product version:
+ *     {@code hash:int, ordinal:int, priceUnscaled:long, priceScale:byte, archived:byte, stockBuckets:byte, codeLength:char,
+ *     nameLength:char, code:UTF-8, name:UTF-8}</li>
+ *     <li>slots - open-addressing hash index of the codes, linear probing, an int record offset per slot (0 is empty)</li>
+ *     <li>overlay - {@code version:long, stock:int, recordOffset:int} per product ordinal, the version and stock
+ *     updated in place on every stock change</li>
+ *     <li>name index - the ordinals sorted by name and then code, compared as unsigned UTF-8 bytes (i.e. by code points),
+ *     kept sorted by shifting the entries when a product is added, renamed or removed. A bulk load appends
+ *     the entries unsorted and sorts them once when it finishes</li>
+ * </ul>
+ * Changing a product appends a new record and leaves the old one as garbage. The records are compacted
+ * once the garbage outgrows the live records. The heap holds only the four buffer objects, whatever the catalogue size.
+ * <p>
+ * The table is not thread-safe. Reads may run concurrently with a write only when the caller validates them afterwards,
+ * a racy read either returns garbage or throws a RuntimeException, it never loops forever.
+ *
+ * @author Tomas Kramec
+ */
+public final class OffHeapProductTable {
+
+    private static final int HEADER_BYTES = 23;
+    private static final int OVERLAY_BYTES = 16;
+    private static final int FIRST_RECORD = 8; // keeps offset 0 free to mark empty slots
+    private static final int MIN_SLOTS = 16;
+
+    private ByteBuffer records;
+    private ByteBuffer slots;
+    private ByteBuffer overlay;
+    private ByteBuffer nameIndex;
+    private int slotCount;
+    private int recordsEnd = FIRST_RECORD;
+    private int nextOrdinal;
+    private int size;
+    private long garbageBytes;
+    private boolean nameIndexSorted = true;
+
+    /**
+     * @param expectedSize number of products the table should hold without growing
+     */
+    public OffHeapProductTable(final int expectedSize) {
+        Assert.isTrue(expectedSize >= 0, "Expected size must not be negative");
+        slotCount = Math.max(MIN_SLOTS, Integer.highestOneBit(Math.max(1, 2 * expectedSize) - 1) << 1);
+        slots = ByteBuffer.allocateDirect(slotCount * Integer.BYTES);
+        records = ByteBuffer.allocateDirect(FIRST_RECORD + Math.max(MIN_SLOTS, expectedSize) * 64);
+        overlay = ByteBuffer.allocateDirect(Math.max(MIN_SLOTS, expectedSize) * OVERLAY_BYTES);
+        nameIndex = ByteBuffer.allocateDirect(Math.max(MIN_SLOTS, expectedSize) * Integer.BYTES);
+    }
+
+    /**
+     * Puts the product, unless the table already holds a newer version of it.
+     *
+     * @return false if the stored version is newer than {@code version}
+     */
+    public boolean put(final String code, final String name, final BigDecimal pricePerUnit, final boolean archived,
+                       final int stockBuckets, final int stockQuantity, final long version) {
+        Assert.hasText(code, "Product code must not be empty");
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        Assert.isTrue(codeBytes.length <= Character.MAX_VALUE && nameBytes.length <= Character.MAX_VALUE,
+                "Product code and name must not exceed " + (int) Character.MAX_VALUE + " bytes");
+        Assert.isTrue(stockBuckets >= 0 && stockBuckets <= Byte.MAX_VALUE, "Stock buckets out of range: " + stockBuckets);
+        Assert.isTrue(pricePerUnit.scale() >= Byte.MIN_VALUE && pricePerUnit.scale() <= Byte.MAX_VALUE,
+                "Price scale out of range: " + pricePerUnit.scale());
+        long unscaledPrice = pricePerUnit.unscaledValue().longValueExact();
+
+        int hash = code.hashCode();
+        int slot = findSlot(hash, codeBytes);
+        int ordinal;
+        int offset = slot < 0 ? 0 : slots.getInt(slot * Integer.BYTES);
+        boolean renamed = false;
+        if (offset != 0) {
+            ordinal = records.getInt(offset + 4);
+            if (overlay.getLong(ordinal * OVERLAY_BYTES) > version) {
+                return false;
+            }
+            garbageBytes += recordLength(offset);
+            renamed = compareName(offset, nameBytes) != 0;
+            if (renamed) {
+                removeFromNameIndex(offset);
+            }
+        } else {
+            if (size + 1 > slotCount / 2) {
+                resizeSlots(slotCount * 2);
+            }
+            ordinal = nextOrdinal++;
+            ensureOverlay(ordinal);
+        }
+        int newOffset = appendRecord(hash, ordinal, unscaledPrice, (byte) pricePerUnit.scale(), archived,
+                (byte) stockBuckets, codeBytes, nameBytes);
+        if (offset != 0) {
+            slots.putInt(slot * Integer.BYTES, newOffset);
+        } else {
+            slots.putInt(emptySlot(hash) * Integer.BYTES, newOffset);
+        }
+        overlay.putLong(ordinal * OVERLAY_BYTES, version);
+        overlay.putInt(ordinal * OVERLAY_BYTES + 8, stockQuantity);
+        overlay.putInt(ordinal * OVERLAY_BYTES + 12, newOffset);
+        if (offset == 0) {
+            insertIntoNameIndex(nameBytes, codeBytes, ordinal, size++);
+        } else if (renamed) {
+            insertIntoNameIndex(nameBytes, codeBytes, ordinal, size - 1);
+        }
+        if (garbageBytes > Math.max(1 << 20, recordsEnd - garbageBytes)) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Overlays the stock quantity of the product, unless the table already holds a newer version of it.
+     *
+     * @return false if the product is not present or its stored version is not older than {@code version}
+     */
+    public boolean updateStock(final String code, final int stockQuantity, final long version) {
+        int offset = findOffset(code);
+        if (offset == 0) {
+            return false;
+        }
+        int position = records.getInt(offset + 4) * OVERLAY_BYTES;
+        if (overlay.getLong(position) >= version) {
+            return false;
+        }
+        overlay.putLong(position, version);
+        overlay.putInt(position + 8, stockQuantity);
+        return true;
+    }
+
+    /**
+     * @return true if the product was present
+     */
+    public boolean remove(final String code) {
+        int hash = code.hashCode();
+        int slot = findSlot(hash, code.getBytes(StandardCharsets.UTF_8));
+        if (slot < 0 || slots.getInt(slot * Integer.BYTES) == 0) {
+            return false;
+        }
+        int offset = slots.getInt(slot * Integer.BYTES);
+        garbageBytes += recordLength(offset);
+        removeFromNameIndex(offset);
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the product including its version or null if it is not present
+     */
+    public ProductTO get(final String code) {
+        int offset = findOffset(code);
+        if (offset == 0) {
+            return null;
+        }
+        int position = records.getInt(offset + 4) * OVERLAY_BYTES;
+        return ProductTO.builder()
+                .code(code)
+                .name(readName(offset))
+                .pricePerUnit(readPrice(offset))
+                .archived(records.get(offset + 17) != 0)
+                .stockQuantity(overlay.getInt(position + 8))
+                .stockBuckets((int) records.get(offset + 18))
+                .version(overlay.getLong(position))
+                .build();
+    }
+
+    /**
+     * Passes all the products to the consumer, in no particular order.
+     */
+    public void forEach(final Consumer<ProductRow> consumer) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            int offset = slots.getInt(slot * Integer.BYTES);
+            if (offset != 0) {
+                consumer.accept(readRow(offset));
+            }
+        }
+    }
+
+    /**
+     * Passes the products sorted by name and then code to the consumer, starting after the given product.
+     * The product to start after need not be present, so a caller can page through the table while it changes.
+     *
+     * @param afterName  name of the product to start after, null to start with the first product
+     * @param afterCode  code of the product to start after
+     * @param limit      maximum number of products to pass
+     * @return the number of products passed, less than {@code limit} only at the end of the table
+     */
+    public int forEachByName(final String afterName, final String afterCode, final int limit,
+                             final Consumer<ProductRow> consumer) {
+        Assert.state(nameIndexSorted, "Name index is not sorted during a bulk load");
+        int from = afterName == null ? 0 : searchNameIndex(afterName.getBytes(StandardCharsets.UTF_8),
+                afterCode.getBytes(StandardCharsets.UTF_8), size, true);
+        int to = (int) Math.min(size, (long) from + limit);
+        for (int position = from; position < to; position++) {
+            consumer.accept(readRow(recordOffset(nameIndex.getInt(position * Integer.BYTES))));
+        }
+        return to - from;
+    }
+
+    /**
+     * Starts a bulk load, the products put until {@link #finishBulkLoad()} are appended to the name index unsorted,
+     * so loading them costs no shifting whatever their order. The products cannot be passed by name meanwhile.
+     */
+    public void startBulkLoad() {
+        nameIndexSorted = false;
+    }
+
+    /**
+     * Finishes the bulk load by sorting the name index once, by a bottom-up merge sort which copies the runs
+     * already in order in bulk.
+     */
+    public void finishBulkLoad() {
+        if (nameIndexSorted) {
+            return;
+        }
+        var source = nameIndex;
+        var target = ByteBuffer.allocateDirect(nameIndex.capacity());
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                merge(source, target, low, Math.min(low + width, size), Math.min(low + 2 * width, size));
+            }
+            var merged = target;
+            target = source;
+            source = merged;
+        }
+        nameIndex = source;
+        nameIndexSorted = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the capacity of the direct buffers in bytes
+     */
+    public long offHeapBytes() {
+        return (long) records.capacity() + slots.capacity() + overlay.capacity() + nameIndex.capacity();
+    }
+
+    /**
+     * @return the bytes of the replaced and removed records, which are not yet compacted
+     */
+    public long garbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Copies the live records into a new buffer and renumbers the ordinals, the slots keep their positions
+     * and the name index keeps its order.
+     */
+    public void compact() {
+        var compacted = ByteBuffer.allocateDirect(Math.max(FIRST_RECORD + MIN_SLOTS * 64,
+                (int) Math.min(Integer.MAX_VALUE, 2L * (recordsEnd - garbageBytes))));
+        var compactedOverlay = ByteBuffer.allocateDirect(Math.max(MIN_SLOTS, 2 * size) * OVERLAY_BYTES);
+        var renumbered = new int[nextOrdinal];
+        int end = FIRST_RECORD;
+        int ordinal = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int offset = slots.getInt(slot * Integer.BYTES);
+            if (offset != 0) {
+                int length = recordLength(offset);
+                int oldOrdinal = records.getInt(offset + 4);
+                compacted.put(end, records, offset, length);
+                compactedOverlay.put(ordinal * OVERLAY_BYTES, overlay, oldOrdinal * OVERLAY_BYTES, OVERLAY_BYTES);
+                compactedOverlay.putInt(ordinal * OVERLAY_BYTES + 12, end);
+                compacted.putInt(end + 4, ordinal);
+                renumbered[oldOrdinal] = ordinal++;
+                slots.putInt(slot * Integer.BYTES, end);
+                end += length;
+            }
+        }
+        for (int position = 0; position < size; position++) {
+            nameIndex.putInt(position * Integer.BYTES, renumbered[nameIndex.getInt(position * Integer.BYTES)]);
+        }
+        records = compacted;
+        overlay = compactedOverlay;
+        recordsEnd = end;
+        nextOrdinal = ordinal;
+        garbageBytes = 0;
+    }
+
+    private int recordOffset(final int ordinal) {
+        return overlay.getInt(ordinal * OVERLAY_BYTES + 12);
+    }
+
+    /**
+     * Inserts the ordinal into the name index holding {@code count} entries.
+     */
+    private void insertIntoNameIndex(final byte[] nameBytes, final byte[] codeBytes, final int ordinal, final int count) {
+        if ((long) (count + 1) * Integer.BYTES > nameIndex.capacity()) {
+            var grown = ByteBuffer.allocateDirect(grow(nameIndex.capacity(), (count + 1) * Integer.BYTES));
+            grown.put(0, nameIndex, 0, count * Integer.BYTES);
+            nameIndex = grown;
+        }
+        int position = nameIndexSorted ? searchNameIndex(nameBytes, codeBytes, count, false) : count;
+        nameIndex.put((position + 1) * Integer.BYTES, nameIndex, position * Integer.BYTES,
+                (count - position) * Integer.BYTES);
+        nameIndex.putInt(position * Integer.BYTES, ordinal);
+    }
+
+    /**
+     * Removes the product of the record from the name index holding {@code size} entries.
+     */
+    private void removeFromNameIndex(final int offset) {
+        int position;
+        if (nameIndexSorted) {
+            int codeLength = records.getChar(offset + 19);
+            var codeBytes = new byte[codeLength];
+            var nameBytes = new byte[records.getChar(offset + 21)];
+            records.get(offset + HEADER_BYTES, codeBytes);
+            records.get(offset + HEADER_BYTES + codeLength, nameBytes);
+            position = searchNameIndex(nameBytes, codeBytes, size, false);
+        } else {
+            int ordinal = records.getInt(offset + 4);
+            position = 0;
+            while (nameIndex.getInt(position * Integer.BYTES) != ordinal) {
+                position++;
+            }
+        }
+        nameIndex.put(position * Integer.BYTES, nameIndex, (position + 1) * Integer.BYTES,
+                (size - position - 1) * Integer.BYTES);
+    }
+
+    /**
+     * Merges the sorted entries {@code [low, middle)} and {@code [middle, high)} of the source into the target.
+     */
+    private void merge(final ByteBuffer source, final ByteBuffer target, final int low, final int middle, final int high) {
+        if (middle == high || compareOrdinals(source.getInt((middle - 1) * Integer.BYTES),
+                source.getInt(middle * Integer.BYTES)) <= 0) {
+            target.put(low * Integer.BYTES, source, low * Integer.BYTES, (high - low) * Integer.BYTES);
+            return;
+        }
+        int left = low;
+        int right = middle;
+        for (int position = low; position < high; position++) {
+            int ordinal;
+            if (right == high || (left < middle && compareOrdinals(source.getInt(left * Integer.BYTES),
+                    source.getInt(right * Integer.BYTES)) <= 0)) {
+                ordinal = source.getInt(left++ * Integer.BYTES);
+            } else {
+                ordinal = source.getInt(right++ * Integer.BYTES);
+            }
+            target.putInt(position * Integer.BYTES, ordinal);
+        }
+    }
+
+    /**
+     * Compares the products of the ordinals by name and then code.
+     */
+    private int compareOrdinals(final int first, final int second) {
+        int firstOffset = recordOffset(first);
+        int secondOffset = recordOffset(second);
+        int firstCodeLength = records.getChar(firstOffset + 19);
+        int secondCodeLength = records.getChar(secondOffset + 19);
+        int comparison = compareBytes(firstOffset + HEADER_BYTES + firstCodeLength, records.getChar(firstOffset + 21),
+                secondOffset + HEADER_BYTES + secondCodeLength, records.getChar(secondOffset + 21));
+        return comparison != 0 ? comparison : compareBytes(firstOffset + HEADER_BYTES, firstCodeLength,
+                secondOffset + HEADER_BYTES, secondCodeLength);
+    }
+
+    /**
+     * @param after whether to return the position after an entry equal to the name and code
+     * @return the position of the first of the {@code count} entries not less than (or greater than) the name and code
+     */
+    private int searchNameIndex(final byte[] nameBytes, final byte[] codeBytes, final int count, final boolean after) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int offset = recordOffset(nameIndex.getInt(middle * Integer.BYTES));
+            int comparison = compareName(offset, nameBytes);
+            if (comparison == 0) {
+                comparison = compareBytes(offset + HEADER_BYTES, records.getChar(offset + 19), codeBytes);
+            }
+            if (comparison < 0 || (after && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareName(final int offset, final byte[] nameBytes) {
+        return compareBytes(offset + HEADER_BYTES + records.getChar(offset + 19), records.getChar(offset + 21), nameBytes);
+    }
+
+    private int compareBytes(final int position, final int length, final byte[] bytes) {
+        int common = Math.min(length, bytes.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(records.get(position + i), bytes[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return length - bytes.length;
+    }
+
+    private int compareBytes(final int first, final int firstLength, final int second, final int secondLength) {
+        int common = Math.min(firstLength, secondLength);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(records.get(first + i), records.get(second + i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    private int findOffset(final String code) {
+        int slot = findSlot(code.hashCode(), code.getBytes(StandardCharsets.UTF_8));
+        return slot < 0 ? 0 : slots.getInt(slot * Integer.BYTES);
+    }
+
+    /**
+     * @return the slot holding the code, the empty slot ending its probe run, or -1 if the table was changed meanwhile
+     */
+    private int findSlot(final int hash, final byte[] codeBytes) {
+        int mask = slotCount - 1;
+        int slot = spread(hash) & mask;
+        for (int probes = 0; probes < slotCount; probes++) {
+            int offset = slots.getInt(slot * Integer.BYTES);
+            if (offset == 0 || (records.getInt(offset) == hash && codeEquals(offset, codeBytes))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int emptySlot(final int hash) {
+        int mask = slotCount - 1;
+        int slot = spread(hash) & mask;
+        while (slots.getInt(slot * Integer.BYTES) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean codeEquals(final int offset, final byte[] codeBytes) {
+        if (records.getChar(offset + 19) != codeBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < codeBytes.length; i++) {
+            if (records.get(offset + HEADER_BYTES + i) != codeBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void shiftBack(int gap) {
+        int mask = slotCount - 1;
+        int slot = (gap + 1) & mask;
+        int offset;
+        while ((offset = slots.getInt(slot * Integer.BYTES)) != 0) {
+            int home = spread(records.getInt(offset)) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                slots.putInt(gap * Integer.BYTES, offset);
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots.putInt(gap * Integer.BYTES, 0);
+    }
+
+    private void resizeSlots(final int newSlotCount) {
+        Assert.isTrue(newSlotCount <= 1 << 29, "Catalogue is too large");
+        var oldSlots = slots;
+        int oldSlotCount = slotCount;
+        slots = ByteBuffer.allocateDirect(newSlotCount * Integer.BYTES);
+        slotCount = newSlotCount;
+        for (int slot = 0; slot < oldSlotCount; slot++) {
+            int offset = oldSlots.getInt(slot * Integer.BYTES);
+            if (offset != 0) {
+                slots.putInt(emptySlot(records.getInt(offset)) * Integer.BYTES, offset);
+            }
+        }
+    }
+
+    private void ensureOverlay(final int ordinal) {
+        if ((long) (ordinal + 1) * OVERLAY_BYTES > overlay.capacity()) {
+            var grown = ByteBuffer.allocateDirect(grow(overlay.capacity(), (ordinal + 1) * OVERLAY_BYTES));
+            grown.put(0, overlay, 0, overlay.capacity());
+            overlay = grown;
+        }
+    }
+
+    private int appendRecord(final int hash, final int ordinal, final long unscaledPrice, final byte scale,
+                             final boolean archived, final byte stockBuckets, final byte[] codeBytes,
+                             final byte[] nameBytes) {
+        int length = HEADER_BYTES + codeBytes.length + nameBytes.length;
+        if ((long) recordsEnd + length > records.capacity()) {
+            var grown = ByteBuffer.allocateDirect(grow(records.capacity(), recordsEnd + length));
+            grown.put(0, records, 0, recordsEnd);
+            records = grown;
+        }
+        int offset = recordsEnd;
+        records.putInt(offset, hash)
+                .putInt(offset + 4, ordinal)
+                .putLong(offset + 8, unscaledPrice)
+                .put(offset + 16, scale)
+                .put(offset + 17, (byte) (archived ? 1 : 0))
+                .put(offset + 18, stockBuckets)
+                .putChar(offset + 19, (char) codeBytes.length)
+                .putChar(offset + 21, (char) nameBytes.length)
+                .put(offset + HEADER_BYTES, codeBytes)
+                .put(offset + HEADER_BYTES + codeBytes.length, nameBytes);
+        recordsEnd += length;
+        return offset;
+    }
+
+    private int recordLength(final int offset) {
+        return HEADER_BYTES + records.getChar(offset + 19) + records.getChar(offset + 21);
+    }
+
+    private ProductRow readRow(final int offset) {
+        return new ProductRow(readString(offset + HEADER_BYTES, records.getChar(offset + 19)), readName(offset),
+                overlay.getInt(records.getInt(offset + 4) * OVERLAY_BYTES + 8), records.get(offset + 18),
+                readPrice(offset), records.get(offset + 17) != 0);
+    }
+
+    private String readName(final int offset) {
+        return readString(offset + HEADER_BYTES + records.getChar(offset + 19), records.getChar(offset + 21));
+    }
+
+    private BigDecimal readPrice(final int offset) {
+        return BigDecimal.valueOf(records.getLong(offset + 8), records.get(offset + 16));
+    }
+
+    private String readString(final int offset, final int length) {
+        var bytes = new byte[length];
+        records.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int grow(final int capacity, final long needed) {
+        long grown = Math.max(needed, 2L * capacity);
+        Assert.state(needed <= Integer.MAX_VALUE, "Catalogue does not fit into a direct buffer");
+        return (int) Math.min(grown, Integer.MAX_VALUE - 8);
+    }
+
+    private static int spread(final int hash) {
+        int spread = hash * 0x9E3779B9;
+        return spread ^ (spread >>> 16);
+    }
+}
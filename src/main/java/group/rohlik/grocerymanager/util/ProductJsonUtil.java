@@ -0,0 +1,56 @@
+package group.rohlik.grocerymanager.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import group.rohlik.grocerymanager.dto.ProductRow;
+
+import java.io.IOException;
+
+/**
+ * Utility class for writing products with a streaming {@link JsonGenerator}.
+ * The output is the same as the {@code View.Read} serialization of {@code ProductTO}.
+ *
+ * @author Tomas Kramec
+ */
+public class ProductJsonUtil {
+
+    private static final SerializableString CODE = new SerializedString("code");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString STOCK_QUANTITY = new SerializedString("stockQuantity");
+    private static final SerializableString STOCK_BUCKETS = new SerializedString("stockBuckets");
+    private static final SerializableString PRICE_PER_UNIT = new SerializedString("pricePerUnit");
+    private static final SerializableString ARCHIVED = new SerializedString("archived");
+
+    /**
+     * Writes the product as a JSON object. Null values are omitted, like in {@code ProductTO}.
+     *
+     * @param generator the generator to write to
+     * @param product   the product to write
+     * @throws IOException if writing fails
+     */
+    public static void writeProduct(final JsonGenerator generator, final ProductRow product) throws IOException {
+        generator.writeStartObject();
+        if (product.code() != null) {
+            generator.writeFieldName(CODE);
+            generator.writeString(product.code());
+        }
+        if (product.name() != null) {
+            generator.writeFieldName(NAME);
+            generator.writeString(product.name());
+        }
+        if (product.stockQuantity() != null) {
+            generator.writeFieldName(STOCK_QUANTITY);
+            generator.writeNumber(product.stockQuantity());
+        }
+        generator.writeFieldName(STOCK_BUCKETS);
+        generator.writeNumber(product.stockBuckets());
+        if (product.pricePerUnit() != null) {
+            generator.writeFieldName(PRICE_PER_UNIT);
+            generator.writeNumber(product.pricePerUnit());
+        }
+        generator.writeFieldName(ARCHIVED);
+        generator.writeBoolean(product.archived());
+        generator.writeEndObject();
+    }
+}
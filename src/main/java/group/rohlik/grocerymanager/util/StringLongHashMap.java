@@ -0,0 +1,181 @@
+package group.rohlik.grocerymanager.util;
+
+import org.springframework.util.Assert;
+
+/**
+ * Open-addressing hash map from String keys to primitive long values.
+ * <p>
+ * Keys and values live in two parallel arrays probed linearly, so a lookup allocates nothing
+ * and touches at most a few adjacent slots. Keys are interned when put, repeated keys share one instance
+ * and a lookup with the interned instance is decided by a reference comparison.
+ * Removal shifts the following entries back instead of leaving tombstones, the table never degrades.
+ * <p>
+ * The map is not thread-safe. {@link #get(String, long)} never throws nor loops forever while another thread
+ * modifies the map, the caller is expected to validate such a racy read (e.g. by a StampedLock optimistic read).
+ *
+ * @author Tomas Kramec
+ */
+public final class StringLongHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private long[] values;
+    private int size;
+
+    /**
+     * @param expectedSize number of entries the map should hold without resizing
+     */
+    public StringLongHashMap(final int expectedSize) {
+        Assert.isTrue(expectedSize >= 0, "Expected size must not be negative");
+        int capacity = tableSizeFor(expectedSize);
+        keys = new String[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * @param key          the key to look up
+     * @param missingValue the value returned when the key is not present
+     * @return the value of the key or {@code missingValue}
+     */
+    public long get(final String key, final long missingValue) {
+        String[] keys = this.keys;
+        long[] values = this.values;
+        if (keys.length != values.length) {
+            return missingValue; // resized concurrently
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (int probes = 0; probes < keys.length; probes++) {
+            String candidate = keys[slot];
+            if (candidate == null) {
+                return missingValue;
+            }
+            if (candidate == key || candidate.equals(key)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Puts the value of the key, replacing the previous one.
+     *
+     * @param key   the key, interned when stored
+     * @param value the value
+     */
+    public void put(final String key, final long value) {
+        Assert.notNull(key, "Key must not be null");
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        String candidate;
+        while ((candidate = keys[slot]) != null) {
+            if (candidate.equals(key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size + 1 > keys.length / 2) {
+            resize(keys.length * 2);
+            put(key, value);
+            return;
+        }
+        values[slot] = value;
+        keys[slot] = key.intern();
+        size++;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return true if the key was present
+     */
+    public boolean remove(final String key) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        String candidate;
+        while ((candidate = keys[slot]) != null) {
+            if (candidate.equals(key)) {
+                shiftBack(slot, mask);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of key and value slots, at least twice the size
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Estimates the heap occupied by the tables, assuming compressed references.
+     * The interned key strings are not included, they are shared with the rest of the application.
+     *
+     * @return the size of the key and value arrays in bytes
+     */
+    public long tableBytes() {
+        return 2L * 16 + (long) keys.length * Integer.BYTES + (long) values.length * Long.BYTES;
+    }
+
+    /**
+     * Closes the gap at the removed slot by moving back the entries of the same probe run
+     * which could not have been placed there.
+     */
+    private void shiftBack(int gap, final int mask) {
+        int slot = (gap + 1) & mask;
+        String candidate;
+        while ((candidate = keys[slot]) != null) {
+            int home = slot(candidate, mask);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = candidate;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[gap] = null;
+        values[gap] = 0;
+    }
+
+    private void resize(final int capacity) {
+        String[] oldKeys = keys;
+        long[] oldValues = values;
+        String[] newKeys = new String[capacity];
+        long[] newValues = new long[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            String key = oldKeys[i];
+            if (key != null) {
+                int slot = slot(key, mask);
+                while (newKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                newKeys[slot] = key;
+                newValues[slot] = oldValues[i];
+            }
+        }
+        values = newValues;
+        keys = newKeys;
+    }
+
+    private static int slot(final String key, final int mask) {
+        int hash = key.hashCode() * 0x9E3779B9; // spread the sequential codes over the table
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int tableSizeFor(final int expectedSize) {
+        long capacity = Math.max(MIN_CAPACITY, Long.highestOneBit(Math.max(1L, 2L * expectedSize) - 1) << 1);
+        Assert.isTrue(capacity <= 1 << 30, "Expected size is too large: " + expectedSize);
+        return (int) capacity;
+    }
+}
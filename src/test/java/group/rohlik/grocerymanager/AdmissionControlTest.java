@@ -0,0 +1,114 @@
+package group.rohlik.grocerymanager;
+
+import group.rohlik.grocerymanager.configuration.AdmissionControlConfiguration;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.service.IOrderService;
+import group.rohlik.grocerymanager.service.IProductService;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the admission control: overloaded endpoint classes are answered with 503 and Retry-After
+ * instead of waiting, the rejections are counted.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class, properties = {
+        "resilience4j.bulkhead.instances.order-write.max-concurrent-calls=1",
+        "resilience4j.ratelimiter.instances.product-write.limit-for-period=1",
+        "resilience4j.ratelimiter.instances.product-write.limit-refresh-period=1h"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class AdmissionControlTest {
+
+    @MockBean
+    private IOrderService orderService;
+    @MockBean
+    private IProductService productService;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void orderWrite_bulkheadFull_rejectedWithoutWaiting() throws Exception {
+        var release = new CountDownLatch(1);
+        when(orderService.payOrder(any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return OrderTO.builder().build();
+        });
+        var bulkhead = bulkheadRegistry.bulkhead(AdmissionControlConfiguration.ORDER_WRITE);
+
+        var blocked = CompletableFuture.runAsync(() -> {
+            try {
+                // the mock user of the test is bound to the test thread
+                mockMvc.perform(post("/api/v1/orders/{code}/pay", UUID.randomUUID()).with(csrf())
+                                .with(user("TestUser").authorities(new SimpleGrantedAuthority("GM_USER"))))
+                        .andExpect(status().isOk());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> bulkhead.getMetrics().getAvailableConcurrentCalls() == 0);
+
+        mockMvc.perform(post("/api/v1/orders/{code}/cancel", UUID.randomUUID()).with(csrf()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.status").value(503));
+
+        release.countDown();
+        blocked.get(10, TimeUnit.SECONDS);
+        assertThat(meterRegistry.get("gm.admission.rejected").tag("type", "bulkhead")
+                .tag("name", AdmissionControlConfiguration.ORDER_WRITE).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("resilience4j.bulkhead.available.concurrent.calls")
+                .tag("name", AdmissionControlConfiguration.ORDER_WRITE).gauge()).isNotNull();
+    }
+
+    @Test
+    void productWrite_rateLimited_rejected() throws Exception {
+        mockMvc.perform(delete("/api/v1/products/{code}", "LIMITED1").with(csrf()))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/v1/products/{code}", "LIMITED1").with(csrf()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+        assertThat(meterRegistry.get("gm.admission.rejected").tag("type", "ratelimiter")
+                .tag("name", AdmissionControlConfiguration.PRODUCT_WRITE).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("resilience4j.ratelimiter.available.permissions")
+                .tag("name", AdmissionControlConfiguration.PRODUCT_WRITE).gauge()).isNotNull();
+    }
+}
@@ -0,0 +1,106 @@
+package group.rohlik.grocerymanager;
+
+import group.rohlik.grocerymanager.dto.ProductStockTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.repository.IProductCatalogueSnapshot;
+import group.rohlik.grocerymanager.service.IProductService;
+import group.rohlik.grocerymanager.service.IProductStockService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the product reads served from the catalogue snapshot, kept up to date by the committed changes.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class)
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@TestPropertySource(properties = {
+        "grocery-manager.catalogue-snapshot.enabled=true",
+        "grocery-manager.schedule.product-stock.refresh.fixed-delay=3600000"
+})
+class CatalogueSnapshotTest {
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private IProductStockService productStockService;
+
+    @Autowired
+    private IProductCatalogueSnapshot catalogueSnapshot;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void productLifecycle_reflectedInSnapshot() {
+        assertThat(catalogueSnapshot.isReady()).isTrue();
+
+        productService.createProduct(ProductTO.builder().code("SNAPSHOT1").name("Snapshot product")
+                .stockQuantity(10).pricePerUnit(new BigDecimal("12.50")).build());
+        assertThat(catalogueSnapshot.getProduct("SNAPSHOT1")).hasValueSatisfying(product ->
+                assertThat(product.getStockQuantity()).isEqualTo(10));
+
+        productService.reserveStock("SNAPSHOT1", 3);
+        var product = productService.getProductByCode("SNAPSHOT1");
+        assertThat(product.getStockQuantity()).isEqualTo(7);
+        assertThat(product.getVersion()).isEqualTo(1);
+
+        productService.updateProduct(ProductTO.builder().code("SNAPSHOT1").name("Renamed product")
+                .stockQuantity(7).pricePerUnit(new BigDecimal("13.00")).build());
+        assertThat(productService.getProductByCode("SNAPSHOT1").getName()).isEqualTo("Renamed product");
+        assertThat(productService.getAllProducts(true)).extracting(ProductTO::getCode).contains("SNAPSHOT1");
+
+        productService.deleteProduct("SNAPSHOT1");
+        assertThat(catalogueSnapshot.getProduct("SNAPSHOT1")).isEmpty();
+        assertThatThrownBy(() -> productService.getProductByCode("SNAPSHOT1")).isInstanceOf(ProductNotFoundException.class);
+    }
+
+    @Test
+    void partitionedStock_reflectedInSnapshotByRefresh() {
+        productService.createProduct(ProductTO.builder().code("SNAPSHOT2").name("Partitioned snapshot product")
+                .stockQuantity(10).pricePerUnit(new BigDecimal("2.50")).build());
+        productService.updateStockLocations("SNAPSHOT2", List.of(
+                ProductStockTO.builder().locationCode("PRG").quantity(6).build(),
+                ProductStockTO.builder().locationCode("BRN").quantity(4).build()));
+        var partitioned = productService.getProductByCode("SNAPSHOT2");
+
+        productService.reserveStock("SNAPSHOT2", 3);
+        productService.releaseStock("SNAPSHOT2", 1);
+        assertThat(productService.getProductByCode("SNAPSHOT2").getVersion()).isEqualTo(partitioned.getVersion());
+        assertThat(productStockService.refreshStockQuantities()).isEqualTo(1);
+
+        var refreshed = productService.getProductByCode("SNAPSHOT2");
+        assertThat(refreshed.getStockQuantity()).isEqualTo(8);
+        assertThat(refreshed.getVersion()).isEqualTo(jdbcTemplate.queryForObject(
+                "SELECT VERSION FROM GM_PRODUCT WHERE CODE = ?", Long.class, "SNAPSHOT2"));
+        assertThat(refreshed.getVersion()).isGreaterThan(partitioned.getVersion());
+        assertThat(productService.getAllProducts(true)).filteredOn(product -> product.getCode().equals("SNAPSHOT2"))
+                .singleElement()
+                .satisfies(product -> assertThat(product.getStockQuantity()).isEqualTo(8));
+    }
+
+    @Test
+    void stockBuckets_servedFromSnapshot() {
+        productService.createProduct(ProductTO.builder().code("SNAPSHOT3").name("Bucketed snapshot product")
+                .stockQuantity(20).stockBuckets(4).pricePerUnit(new BigDecimal("3.50")).build());
+
+        assertThat(catalogueSnapshot.getProduct("SNAPSHOT3")).hasValueSatisfying(product ->
+                assertThat(product.getStockBuckets()).isEqualTo(4));
+        assertThat(productService.getAllProducts(true)).filteredOn(product -> product.getCode().equals("SNAPSHOT3"))
+                .singleElement()
+                .satisfies(product -> assertThat(product.getStockBuckets()).isEqualTo(4));
+    }
+}
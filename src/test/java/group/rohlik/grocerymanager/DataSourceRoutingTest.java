@@ -0,0 +1,140 @@
+package group.rohlik.grocerymanager;
+
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.repository.IProductRepository;
+import group.rohlik.grocerymanager.service.IProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the read/write data source routing with two H2 databases standing in for the primary and a replica.
+ * The replica gets the schema from the same changelog, it is not replicated, so the tests can tell which database
+ * a transaction used.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class, properties = {
+        "spring.datasource.url=" + DataSourceRoutingTest.PRIMARY_URL,
+        "spring.liquibase.url=" + DataSourceRoutingTest.PRIMARY_URL,
+        "grocery-manager.datasource.read.enabled=true",
+        "grocery-manager.datasource.read.url=" + DataSourceRoutingTest.REPLICA_URL
+})
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@Import(DataSourceRoutingTest.ReplicaSchemaConfiguration.class)
+class DataSourceRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    @Autowired
+    private IProductRepository productRepository;
+    @Autowired
+    private IProductService productService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", "password"));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+
+    @Test
+    void readOnlyTransaction_readsReplica() {
+        replica.update("INSERT INTO GM_PRODUCT (ID, CODE, NAME, STOCK_QUANTITY, UNIT_PRICE) "
+                + "VALUES (900001, 'REPLICA1', 'Replica only', 5, 1.50)");
+
+        assertThat(findByCode(readOnly(), "REPLICA1")).isPresent();
+        assertThat(findByCode(readWrite(), "REPLICA1")).isEmpty();
+    }
+
+    @Test
+    void writeTransaction_writesPrimary() {
+        productService.createProduct(ProductTO.builder().code("ROUTED1").name("Routed product")
+                .stockQuantity(10).pricePerUnit(new BigDecimal("2.50")).build());
+
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM GM_PRODUCT WHERE CODE = 'ROUTED1'", Integer.class))
+                .isOne();
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM GM_PRODUCT WHERE CODE = 'ROUTED1'", Integer.class))
+                .isZero();
+        // a read-only method joining a read-write transaction stays on its primary connection
+        Optional<Product> joined = readWrite().execute(status -> findByCode(readOnly(), "ROUTED1"));
+        assertThat(joined).isPresent();
+        assertThat(findByCode(readOnly(), "ROUTED1")).isEmpty();
+    }
+
+    @Test
+    void connectionWait_measuredPerPool() {
+        readOnly().execute(status -> productRepository.existsByCode("METRICS1"));
+        readWrite().execute(status -> productRepository.existsByCode("METRICS1"));
+
+        assertThat(meterRegistry.find("hikaricp.connections.acquire").tag("pool", "gm-read").timer())
+                .isNotNull().satisfies(timer -> assertThat(timer.count()).isPositive());
+        assertThat(meterRegistry.find("hikaricp.connections.acquire").tag("pool", "gm-primary").timer())
+                .isNotNull().satisfies(timer -> assertThat(timer.count()).isPositive());
+    }
+
+    private Optional<Product> findByCode(final TransactionTemplate transactionTemplate, final String code) {
+        return transactionTemplate.execute(status -> productRepository.findByCode(code));
+    }
+
+    private TransactionTemplate readOnly() {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
+    private TransactionTemplate readWrite() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Creates the schema of the replica before the read pool is used.
+     */
+    @TestConfiguration
+    static class ReplicaSchemaConfiguration {
+
+        @Bean
+        static BeanPostProcessor replicaSchemaPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(final Object bean, final String beanName) throws BeansException {
+                    if ("readDataSource".equals(beanName)) {
+                        var liquibase = new SpringLiquibase();
+                        liquibase.setDataSource(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+                        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+                        liquibase.setDatabaseChangeLogTable("GM_DATABASE_CHANGELOG");
+                        liquibase.setDatabaseChangeLogLockTable("GM_DATABASE_CHANGELOG_LOCK");
+                        liquibase.setContexts("all");
+                        liquibase.setResourceLoader(new DefaultResourceLoader());
+                        try {
+                            liquibase.afterPropertiesSet();
+                        } catch (Exception e) {
+                            throw new IllegalStateException("Cannot create the replica schema", e);
+                        }
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
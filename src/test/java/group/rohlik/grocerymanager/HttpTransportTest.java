@@ -0,0 +1,113 @@
+package group.rohlik.grocerymanager;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.repository.IProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the embedded server transport settings: response compression and HTTP/2 over clear text.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = Application.class)
+@ActiveProfiles(profiles = {RunProfile.TEST})
+class HttpTransportTest {
+
+    private static final String CODE_PREFIX = "TRANSPORT";
+    private static final int PRODUCTS = 200;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private IProductRepository productRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(Product.builder().code(CODE_PREFIX + i).name("Transport test product " + i)
+                    .stockQuantity(10).pricePerUnit(BigDecimal.TEN).build());
+        }
+        productRepository.saveAll(products);
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll(products);
+    }
+
+    @Test
+    void productListing_gzipAccepted_compressed() throws Exception {
+        var response = send(HttpClient.Version.HTTP_1_1, "gzip");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+        byte[] body;
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            body = gzip.readAllBytes();
+        }
+        assertThat(response.body().length).isLessThan(body.length / 4);
+        List<ProductTO> listed = objectMapper.readValue(body, new TypeReference<>() {
+        });
+        assertThat(listed).filteredOn(product -> product.getCode().startsWith(CODE_PREFIX)).hasSize(PRODUCTS);
+    }
+
+    @Test
+    void productListing_gzipNotAccepted_identity() throws Exception {
+        var response = send(HttpClient.Version.HTTP_1_1, null);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).isEmpty();
+        assertThat(new String(response.body(), StandardCharsets.UTF_8)).startsWith("[");
+    }
+
+    @Test
+    void productListing_http2_upgradedOverClearText() throws Exception {
+        var response = send(HttpClient.Version.HTTP_2, "gzip");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.version()).isEqualTo(HttpClient.Version.HTTP_2);
+        assertThat(response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+    }
+
+    private HttpResponse<byte[]> send(final HttpClient.Version version, final String acceptEncoding) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/products"))
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8)))
+                .header(HttpHeaders.ACCEPT, "application/json");
+        if (acceptEncoding != null) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        try (var client = HttpClient.newBuilder().version(version).build()) {
+            return client.send(request.GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        }
+    }
+}
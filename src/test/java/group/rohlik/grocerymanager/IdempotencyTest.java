@@ -0,0 +1,136 @@
+package group.rohlik.grocerymanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.controller.OrderController;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.repository.IIdempotencyKeyRepository;
+import group.rohlik.grocerymanager.repository.IOrderRepository;
+import group.rohlik.grocerymanager.service.IProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Tests of the order writes deduplicated by the Idempotency-Key header.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class, properties = {
+        "resilience4j.bulkhead.instances.order-write.max-concurrent-calls=100"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles(profiles = {RunProfile.TEST})
+class IdempotencyTest {
+
+    private static final int REQUESTS = 100;
+
+    @SpyBean
+    private IProductService productService;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private IOrderRepository orderRepository;
+    @Autowired
+    private IIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Test
+    void createOrder_concurrentDuplicates_reservedOnce() throws Exception {
+        productService.createProduct(ProductTO.builder().code("IDEMPOTENT1").name("Idempotent product")
+                .stockQuantity(1000).pricePerUnit(new BigDecimal("2.00")).build());
+        var ordersBefore = orderRepository.count();
+        var body = objectMapper.writeValueAsString(OrderTO.builder()
+                .items(List.of(OrderItemTO.builder().productCode("IDEMPOTENT1").quantity(3).build()))
+                .build());
+        var key = UUID.randomUUID().toString();
+
+        var start = new CountDownLatch(1);
+        var responses = new ArrayList<CompletableFuture<OrderTO>>();
+        try (var executor = Executors.newFixedThreadPool(REQUESTS)) {
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                        var response = mockMvc.perform(post("/api/v1/orders").with(csrf())
+                                        .with(user("TestUser").authorities(new SimpleGrantedAuthority("GM_USER")))
+                                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, key)
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .accept(MediaType.APPLICATION_JSON)
+                                        .content(body))
+                                .andReturn().getResponse();
+                        assertThat(response.getStatus()).isEqualTo(201);
+                        return objectMapper.readValue(response.getContentAsString(), OrderTO.class);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        }
+
+        var codes = responses.stream().map(CompletableFuture::join).map(OrderTO::getCode).distinct().toList();
+        assertThat(codes).hasSize(1).doesNotContainNull();
+        verify(productService, times(1)).reserveStock(eq("IDEMPOTENT1"), anyInt());
+        assertThat(productService.getProductByCode("IDEMPOTENT1").getStockQuantity()).isEqualTo(997);
+        assertThat(orderRepository.count()).isEqualTo(ordersBefore + 1);
+        assertThat(idempotencyKeyRepository.findById("create:" + key)).isPresent();
+    }
+
+    @Test
+    void createOrder_keyReusedForDifferentRequest_rejected() throws Exception {
+        productService.createProduct(ProductTO.builder().code("IDEMPOTENT2").name("Idempotent product")
+                .stockQuantity(10).pricePerUnit(new BigDecimal("2.00")).build());
+        var key = UUID.randomUUID().toString();
+
+        var first = mockMvc.perform(order(key, 1)).andReturn().getResponse();
+        var retried = mockMvc.perform(order(key, 1)).andReturn().getResponse();
+        var reused = mockMvc.perform(order(key, 2)).andReturn().getResponse();
+
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(retried.getStatus()).isEqualTo(201);
+        assertThat(retried.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(reused.getStatus()).isEqualTo(422);
+        assertThat(productService.getProductByCode("IDEMPOTENT2").getStockQuantity()).isEqualTo(9);
+    }
+
+    private RequestBuilder order(final String key, final int quantity) throws Exception {
+        return post("/api/v1/orders").with(csrf())
+                .with(user("TestUser").authorities(new SimpleGrantedAuthority("GM_USER")))
+                .header(OrderController.IDEMPOTENCY_KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(OrderTO.builder()
+                        .items(List.of(OrderItemTO.builder().productCode("IDEMPOTENT2").quantity(quantity).build()))
+                        .build()));
+    }
+}
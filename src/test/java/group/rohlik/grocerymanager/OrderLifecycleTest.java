@@ -0,0 +1,131 @@
+package group.rohlik.grocerymanager;
+
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.exception.InvalidOrderStatusException;
+import group.rohlik.grocerymanager.exception.OrderExpiredException;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.repository.IOrderRepository;
+import group.rohlik.grocerymanager.service.IOrderService;
+import group.rohlik.grocerymanager.service.IProductService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the order status transitions applied by conditional updates against the database.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class)
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class OrderLifecycleTest {
+
+    @Autowired
+    private IOrderService orderService;
+    @Autowired
+    private IProductService productService;
+    @Autowired
+    private IOrderRepository orderRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void payOrder_conditionalUpdateWithoutLoadingEntities() {
+        var order = createOrder("LIFECYCLE1", 10, 2);
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var paidOrder = orderService.payOrder(order.getCode());
+
+        assertThat(paidOrder.getStatus()).isEqualTo(OrderStatus.PAID);
+        assertThat(paidOrder.getItems()).singleElement().satisfies(item -> {
+            assertThat(item.getCode()).isEqualTo(order.getItems().get(0).getCode());
+            assertThat(item.getQuantity()).isEqualTo(2);
+            assertThat(item.getTotalPrice()).isEqualByComparingTo("3.00");
+        });
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+        var row = jdbcTemplate.queryForMap("SELECT STATUS, VERSION, UPDATED_BY, UPDATE_DATE FROM GM_ORDER WHERE CODE = ?",
+                order.getCode());
+        assertThat(row.get("STATUS")).isEqualTo("PAID");
+        assertThat(((Number) row.get("VERSION")).longValue()).isEqualTo(1L);
+        assertThat(row.get("UPDATED_BY")).isEqualTo("TestUser");
+        assertThat(row.get("UPDATE_DATE")).isNotNull();
+
+        assertThatThrownBy(() -> orderService.cancelOrder(order.getCode()))
+                .isInstanceOf(InvalidOrderStatusException.class);
+        assertThat(productService.getProductByCode("LIFECYCLE1").getStockQuantity()).isEqualTo(8);
+    }
+
+    @Test
+    void cancelOrder_releasesStock() {
+        var order = createOrder("LIFECYCLE2", 10, 3);
+
+        var canceledOrder = orderService.cancelOrder(order.getCode());
+
+        assertThat(canceledOrder.getStatus()).isEqualTo(OrderStatus.CANCELED);
+        assertThat(canceledOrder.getItems()).extracting(OrderItemTO::getQuantity).containsExactly(3);
+        assertThat(productService.getProductByCode("LIFECYCLE2").getStockQuantity()).isEqualTo(10);
+        assertThatThrownBy(() -> orderService.payOrder(order.getCode()))
+                .isInstanceOf(InvalidOrderStatusException.class);
+    }
+
+    @Test
+    void cancelOrder_productChangedAfterItemsLoaded_releasesStock() {
+        var order = createOrder("LIFECYCLE4", 10, 3);
+
+        var canceledOrder = new TransactionTemplate(transactionManager).execute(status -> {
+            var orderId = orderRepository.findStateByCode(order.getCode()).orElseThrow().id();
+            assertThat(orderRepository.findItemsByOrderIds(List.of(orderId))).hasSize(1);
+            CompletableFuture.runAsync(() -> productService.reserveStock("LIFECYCLE4", 2)).join();
+            return orderService.cancelOrder(order.getCode());
+        });
+
+        assertThat(canceledOrder.getStatus()).isEqualTo(OrderStatus.CANCELED);
+        assertThat(productService.getProductByCode("LIFECYCLE4").getStockQuantity()).isEqualTo(8);
+    }
+
+    @Test
+    void payOrder_pastExpiry_expiresOrderAndReleasesStock() {
+        var order = createOrder("LIFECYCLE3", 10, 4);
+        jdbcTemplate.update("UPDATE GM_ORDER SET EXPIRES_AT = ? WHERE CODE = ?",
+                LocalDateTime.now().minusMinutes(1), order.getCode());
+
+        assertThatThrownBy(() -> orderService.payOrder(order.getCode()))
+                .isInstanceOf(OrderExpiredException.class);
+
+        assertThat(orderService.getOrderByCode(order.getCode()).getStatus()).isEqualTo(OrderStatus.EXPIRED);
+        assertThat(productService.getProductByCode("LIFECYCLE3").getStockQuantity()).isEqualTo(10);
+    }
+
+    private OrderTO createOrder(final String productCode, final int stockQuantity, final int quantity) {
+        productService.createProduct(ProductTO.builder().code(productCode).name("Lifecycle product")
+                .stockQuantity(stockQuantity).pricePerUnit(new BigDecimal("1.50")).build());
+        return orderService.createOrder(OrderTO.builder()
+                .items(List.of(OrderItemTO.builder().productCode(productCode).quantity(quantity).build()))
+                .build());
+    }
+}
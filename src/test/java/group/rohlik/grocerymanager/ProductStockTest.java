@@ -0,0 +1,168 @@
+package group.rohlik.grocerymanager;
+
+import group.rohlik.grocerymanager.dto.ProductStockTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.exception.InsufficientStockException;
+import group.rohlik.grocerymanager.repository.IProductStockRepository;
+import group.rohlik.grocerymanager.service.IProductService;
+import group.rohlik.grocerymanager.service.IProductStockService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the stock partitioned into warehouse locations or stock buckets against the database. The scheduled
+ * refresh of the stock quantities and rebalancing of the buckets are switched off, the tests run them.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class, properties = {
+        "grocery-manager.schedule.product-stock.refresh.fixed-delay=3600000",
+        "grocery-manager.schedule.product-stock.rebalance.fixed-delay=3600000",
+        "grocery-manager.product-stock.locations=PRG,BRN,OSR"
+})
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class ProductStockTest {
+
+    @Autowired
+    private IProductService productService;
+    @Autowired
+    private IProductStockService productStockService;
+    @Autowired
+    private IProductStockRepository productStockRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reserveStock_takesNearestLocationsFirst_productReportsRefreshedSum() {
+        createProduct("STOCK1", 10);
+
+        var locations = productService.updateStockLocations("STOCK1", List.of(location("OSR", 5), location("PRG", 2),
+                location("BRN", 3)));
+
+        assertThat(locations).extracting(ProductStockTO::getLocationCode).containsExactly("BRN", "OSR", "PRG");
+        assertThat(stockOf("STOCK1")).isEqualTo(10);
+
+        productService.reserveStock("STOCK1", 4);
+
+        assertThat(locationStockOf("STOCK1")).containsExactly(1, 5, 0);
+        assertThat(productService.getProductByCode("STOCK1").getStockQuantity()).isEqualTo(10);
+        assertThatThrownBy(() -> productService.reserveStock("STOCK1", 7)).isInstanceOf(InsufficientStockException.class);
+        assertThat(locationStockOf("STOCK1")).containsExactly(1, 5, 0);
+
+        productService.releaseStock("STOCK1", 2);
+        assertThat(productStockService.refreshStockQuantities()).isEqualTo(1);
+
+        assertThat(locationStockOf("STOCK1")).containsExactly(1, 5, 2);
+        assertThat(stockOf("STOCK1")).isEqualTo(8);
+        assertThat(productService.getProductByCode("STOCK1").getStockQuantity()).isEqualTo(8);
+    }
+
+    @Test
+    void updateProduct_partitionedStock_keepsLocations() {
+        createProduct("STOCK2", 10);
+        productService.updateStockLocations("STOCK2", List.of(location("PRG", 4), location("BRN", 4)));
+
+        var updated = productService.updateProduct(ProductTO.builder().code("STOCK2").name("Renamed")
+                .stockQuantity(100).pricePerUnit(new BigDecimal("2.50")).build());
+
+        assertThat(updated.getStockQuantity()).isEqualTo(8);
+        assertThat(locationStockOf("STOCK2")).containsExactly(4, 4);
+
+        productService.updateStockLocations("STOCK2", List.of(location("PRG", 6)));
+        assertThat(locationStockOf("STOCK2")).containsExactly(6);
+        assertThat(stockOf("STOCK2")).isEqualTo(6);
+    }
+
+    @Test
+    void reserveStock_nearestLocationLocked_takesNextLocationWithoutWaiting() throws Exception {
+        createProduct("STOCK3", 10);
+        productService.updateStockLocations("STOCK3", List.of(location("PRG", 5), location("BRN", 5)));
+        var pragueId = jdbcTemplate.queryForObject("SELECT s.ID FROM GM_PRODUCT_STOCK s JOIN GM_PRODUCT p " +
+                "ON p.ID = s.PRODUCT_ID WHERE p.CODE = 'STOCK3' AND s.LOCATION_CODE = 'PRG'", Long.class);
+
+        var locked = new CountDownLatch(1);
+        var reserved = new CountDownLatch(1);
+        var lockHolder = CompletableFuture.runAsync(() -> new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> {
+                    productStockRepository.findByIdForUpdate(pragueId).orElseThrow();
+                    locked.countDown();
+                    try {
+                        reserved.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        productService.reserveStock("STOCK3", 2);
+        reserved.countDown();
+        lockHolder.get(10, TimeUnit.SECONDS);
+
+        assertThat(locationStockOf("STOCK3")).containsExactly(3, 5);
+    }
+
+    @Test
+    void reserveStock_stockBuckets_fallsBackToOtherBucketsAndRebalances() {
+        productService.createProduct(ProductTO.builder().code("STOCK4").name("Flash sale product")
+                .stockQuantity(10).stockBuckets(4).pricePerUnit(new BigDecimal("1.50")).build());
+
+        assertThat(locationStockOf("STOCK4")).containsExactly(3, 3, 2, 2);
+        for (int i = 0; i < 10; i++) {
+            productService.reserveStock("STOCK4", 1);
+        }
+        assertThat(locationStockOf("STOCK4")).containsExactly(0, 0, 0, 0);
+        assertThatThrownBy(() -> productService.reserveStock("STOCK4", 1)).isInstanceOf(InsufficientStockException.class);
+
+        productService.releaseStock("STOCK4", 8);
+        assertThat(productStockService.rebalanceBuckets()).isEqualTo(1);
+        assertThat(productStockService.refreshStockQuantities()).isEqualTo(1);
+
+        assertThat(locationStockOf("STOCK4")).containsExactly(2, 2, 2, 2);
+        assertThat(stockOf("STOCK4")).isEqualTo(8);
+
+        var updated = productService.updateProduct(ProductTO.builder().code("STOCK4").name("Flash sale product")
+                .stockQuantity(20).stockBuckets(0).pricePerUnit(new BigDecimal("1.50")).build());
+
+        assertThat(updated.getStockBuckets()).isZero();
+        assertThat(locationStockOf("STOCK4")).isEmpty();
+        productService.reserveStock("STOCK4", 5);
+        assertThat(stockOf("STOCK4")).isEqualTo(15);
+    }
+
+    private void createProduct(final String code, final int stockQuantity) {
+        productService.createProduct(ProductTO.builder().code(code).name("Stocked product")
+                .stockQuantity(stockQuantity).pricePerUnit(new BigDecimal("1.50")).build());
+    }
+
+    private static ProductStockTO location(final String locationCode, final int quantity) {
+        return ProductStockTO.builder().locationCode(locationCode).quantity(quantity).build();
+    }
+
+    private int stockOf(final String productCode) {
+        return jdbcTemplate.queryForObject("SELECT STOCK_QUANTITY FROM GM_PRODUCT WHERE CODE = ?", Integer.class,
+                productCode);
+    }
+
+    private List<Integer> locationStockOf(final String productCode) {
+        return jdbcTemplate.queryForList("SELECT s.QUANTITY FROM GM_PRODUCT_STOCK s JOIN GM_PRODUCT p " +
+                "ON p.ID = s.PRODUCT_ID WHERE p.CODE = ? ORDER BY s.LOCATION_CODE", Integer.class, productCode);
+    }
+}
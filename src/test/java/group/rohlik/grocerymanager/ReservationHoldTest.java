@@ -0,0 +1,155 @@
+package group.rohlik.grocerymanager;
+
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.dto.ReservationHoldTO;
+import group.rohlik.grocerymanager.exception.InsufficientStockException;
+import group.rohlik.grocerymanager.exception.ProductDeletionException;
+import group.rohlik.grocerymanager.exception.ReservationHoldNotFoundException;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.repository.IReservationHoldIndex;
+import group.rohlik.grocerymanager.service.IOrderService;
+import group.rohlik.grocerymanager.service.IProductService;
+import group.rohlik.grocerymanager.service.IReservationHoldService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the reservation holds against the database. The scheduled sweeps are switched off,
+ * the tests run them.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class, properties = {
+        "grocery-manager.schedule.reservation-hold.sweep.fixed-delay=3600000",
+        "grocery-manager.schedule.reservation-hold.table-sweep.cron=-"
+})
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class ReservationHoldTest {
+
+    @Autowired
+    private IReservationHoldService reservationHoldService;
+    @Autowired
+    private IReservationHoldIndex reservationHoldIndex;
+    @Autowired
+    private IOrderService orderService;
+    @Autowired
+    private IProductService productService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void createHold_takesStock_dropReleasesIt() {
+        createProduct("HOLD1", 10);
+
+        var hold = createHold("HOLD1", 4);
+
+        assertThat(stockOf("HOLD1")).isEqualTo(6);
+        assertThatThrownBy(() -> createHold("HOLD1", 7)).isInstanceOf(InsufficientStockException.class);
+        assertThat(stockOf("HOLD1")).isEqualTo(6);
+
+        reservationHoldService.dropHold(hold.getCode());
+
+        assertThat(stockOf("HOLD1")).isEqualTo(10);
+        assertThat(holdRows(hold.getCode())).isZero();
+        assertThatThrownBy(() -> reservationHoldService.dropHold(hold.getCode()))
+                .isInstanceOf(ReservationHoldNotFoundException.class);
+    }
+
+    @Test
+    void createOrderFromHold_takesOverHeldStock() {
+        createProduct("HOLD2", 10);
+        var hold = createHold("HOLD2", 3);
+
+        var order = orderService.createOrderFromHold(hold.getCode());
+
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(order.getTotalAmount()).isEqualByComparingTo("4.50");
+        assertThat(orderService.getOrderByCode(order.getCode()).getItems())
+                .singleElement()
+                .satisfies(item -> assertThat(item.getQuantity()).isEqualTo(3));
+        assertThat(stockOf("HOLD2")).isEqualTo(7);
+        assertThat(holdRows(hold.getCode())).isZero();
+        assertThatThrownBy(() -> orderService.createOrderFromHold(hold.getCode()))
+                .isInstanceOf(ReservationHoldNotFoundException.class);
+
+        orderService.cancelOrder(order.getCode());
+        assertThat(stockOf("HOLD2")).isEqualTo(10);
+    }
+
+    @Test
+    void sweepExpired_releasesStockOfExpiredHolds() {
+        createProduct("HOLD3", 10);
+        var expired = createHold("HOLD3", 2);
+        var untracked = createHold("HOLD3", 3);
+        var live = createHold("HOLD3", 1);
+        jdbcTemplate.update("UPDATE GM_RESERVATION_HOLD SET EXPIRES_AT = ? WHERE CODE IN (?, ?)",
+                LocalDateTime.now().minusSeconds(1), expired.getCode(), untracked.getCode());
+        reservationHoldIndex.put(expired.getCode(), LocalDateTime.now().minusSeconds(1));
+        reservationHoldIndex.remove(untracked.getCode());
+
+        assertThatThrownBy(() -> orderService.createOrderFromHold(expired.getCode()))
+                .isInstanceOf(ReservationHoldNotFoundException.class);
+        assertThat(reservationHoldService.sweepExpired()).isEqualTo(1);
+        assertThat(stockOf("HOLD3")).isEqualTo(6);
+        assertThat(reservationHoldService.sweepExpiredFromTable()).isEqualTo(1);
+        assertThat(stockOf("HOLD3")).isEqualTo(9);
+
+        assertThat(holdRows(expired.getCode()) + holdRows(untracked.getCode())).isZero();
+        assertThat(holdRows(live.getCode())).isEqualTo(1);
+    }
+
+    @Test
+    void deleteProduct_refusedWhileLiveHoldsReferenceIt() {
+        createProduct("HOLD4", 10);
+        var live = createHold("HOLD4", 2);
+        var expired = createHold("HOLD4", 3);
+        jdbcTemplate.update("UPDATE GM_RESERVATION_HOLD SET EXPIRES_AT = ? WHERE CODE = ?",
+                LocalDateTime.now().minusSeconds(1), expired.getCode());
+
+        assertThatThrownBy(() -> productService.deleteProduct("HOLD4"))
+                .isInstanceOf(ProductDeletionException.class);
+        assertThat(holdRows(live.getCode())).isEqualTo(1);
+
+        reservationHoldService.dropHold(live.getCode());
+        productService.deleteProduct("HOLD4");
+
+        assertThat(holdRows(expired.getCode())).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM GM_PRODUCT WHERE CODE = ?", Integer.class,
+                "HOLD4")).isZero();
+    }
+
+    private void createProduct(final String code, final int stockQuantity) {
+        productService.createProduct(ProductTO.builder().code(code).name("Held product")
+                .stockQuantity(stockQuantity).pricePerUnit(new BigDecimal("1.50")).build());
+    }
+
+    private ReservationHoldTO createHold(final String productCode, final int quantity) {
+        return reservationHoldService.createHold(ReservationHoldTO.builder()
+                .items(List.of(OrderItemTO.builder().productCode(productCode).quantity(quantity).build()))
+                .build());
+    }
+
+    private int stockOf(final String productCode) {
+        return jdbcTemplate.queryForObject("SELECT STOCK_QUANTITY FROM GM_PRODUCT WHERE CODE = ?", Integer.class,
+                productCode);
+    }
+
+    private int holdRows(final UUID code) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM GM_RESERVATION_HOLD WHERE CODE = ?", Integer.class,
+                code);
+    }
+}
@@ -0,0 +1,103 @@
+package group.rohlik.grocerymanager;
+
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.service.IProductService;
+import group.rohlik.grocerymanager.service.IWarmUpService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests of the warm-up at startup against the database, with the warm-up enabled unlike in the other tests.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(classes = Application.class, properties = {
+        "grocery-manager.warm-up.enabled=true",
+        "grocery-manager.warm-up.preload-size=2",
+        "grocery-manager.warm-up.synthetic-iterations=500"
+})
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@Import(WarmUpTest.ReadinessRecorder.class)
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class WarmUpTest {
+
+    @Autowired
+    private IWarmUpService warmUpService;
+    @Autowired
+    private IProductService productService;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void startup_readyOnlyAfterWarmUp_timeToReadyPublished() {
+        assertThat(ReadinessRecorder.STATES).containsSubsequence(ReadinessState.REFUSING_TRAFFIC,
+                ReadinessState.ACCEPTING_TRAFFIC);
+        assertThat(ReadinessRecorder.STATES.get(ReadinessRecorder.STATES.size() - 1))
+                .isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+        assertThat(warmUpService.getTimeToReady()).isPositive();
+        assertThat(meterRegistry.get("gm.startup.time.to.ready").timeGauge().value(TimeUnit.MILLISECONDS))
+                .isCloseTo(warmUpService.getTimeToReady().toMillis(), within(0.001));
+    }
+
+    @Test
+    void warmUp_preloadsMostOrderedProducts() {
+        createProduct("WARM1", 1_000_000);
+        createProduct("WARM2", 3_000_000);
+        createProduct("WARM3", 2_000_000);
+        var cache = cacheManager.getCache("product");
+        cache.clear();
+
+        assertThat(warmUpService.warmUp(Duration.ofMinutes(1))).isEqualTo(3);
+
+        assertThat(cache.get("WARM2", ProductTO.class)).isEqualTo(productService.getProductByCode("WARM2"));
+        assertThat(cache.get("WARM3")).isNotNull();
+        assertThat(cache.get("WARM1")).isNull();
+    }
+
+    @Test
+    void warmUp_noTimeBudget_skipsAllSteps() {
+        assertThat(warmUpService.warmUp(Duration.ZERO)).isZero();
+    }
+
+    private void createProduct(final String code, final long orderItems) {
+        productService.createProduct(ProductTO.builder().code(code).name("Popular product")
+                .stockQuantity(10).pricePerUnit(new BigDecimal("1.50")).build());
+        jdbcTemplate.update("MERGE INTO GM_PRODUCT_ORDER_COUNTER (PRODUCT_ID, ACTIVE_ORDER_ITEMS, FINISHED_ORDER_ITEMS) " +
+                "KEY (PRODUCT_ID) SELECT ID, 0, ? FROM GM_PRODUCT WHERE CODE = ?", orderItems, code);
+    }
+
+    @TestConfiguration
+    static class ReadinessRecorder {
+
+        static final List<ReadinessState> STATES = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void onReadinessChanged(final AvailabilityChangeEvent<ReadinessState> event) {
+            STATES.add(event.getState());
+        }
+    }
+}
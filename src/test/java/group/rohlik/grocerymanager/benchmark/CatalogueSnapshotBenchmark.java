@@ -0,0 +1,100 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.util.OffHeapProductTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a catalogue of 5M products held on the heap, as ProductTO values of a concurrent map like in the product cache,
+ * with the off-heap catalogue snapshot:
+ * <ul>
+ *     <li>{@code lookup} - read of a random product, with the GC profiler {@code gc.time} shows the cost of the young
+ *     collections while the catalogue stays reachable</li>
+ *     <li>{@code fullGc} - pause of a full collection ({@code System.gc()}), which has to mark the whole on-heap catalogue</li>
+ * </ul>
+ * The off-heap catalogue is bulk loaded like the rebuild of the snapshot, the names of the products are not in
+ * the order of the name index. The heap used after a full collection is printed at the end of each setup.
+ *
+ * @author Tomas Kramec
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g", "-XX:+UseG1GC"})
+public class CatalogueSnapshotBenchmark {
+
+    @Param({"5000000"})
+    private int products;
+
+    @Param({"heap", "offHeap"})
+    private String store;
+
+    private Map<String, ProductTO> heapCatalogue;
+    private OffHeapProductTable offHeapCatalogue;
+    private String[] codes;
+
+    @Setup
+    public void setUp() {
+        codes = new String[products];
+        if ("heap".equals(store)) {
+            heapCatalogue = new ConcurrentHashMap<>(products);
+        } else {
+            offHeapCatalogue = new OffHeapProductTable(products);
+            offHeapCatalogue.startBulkLoad();
+        }
+        for (int i = 0; i < products; i++) {
+            var code = "PRODUCT-" + i;
+            var name = "Product name " + i;
+            var price = BigDecimal.valueOf(1000 + i % 10000, 2);
+            if (heapCatalogue != null) {
+                heapCatalogue.put(code, ProductTO.builder().code(code).name(name).pricePerUnit(price)
+                        .stockQuantity(100).stockBuckets(0).archived(false).version(0L).build());
+            } else {
+                offHeapCatalogue.put(code, name, price, false, 0, 100, 0);
+            }
+            codes[i] = new String(code.toCharArray()); // the request's copy of the code
+        }
+        if (offHeapCatalogue != null) {
+            offHeapCatalogue.finishBulkLoad();
+        }
+        System.gc();
+        var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        var offHeap = offHeapCatalogue == null ? 0 : offHeapCatalogue.offHeapBytes();
+        System.out.printf("%n%s catalogue: %,d bytes of heap used, %,d bytes off-heap%n", store, heap, offHeap);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 10)
+    public ProductTO lookup() {
+        var code = codes[ThreadLocalRandom.current().nextInt(products)];
+        return heapCatalogue != null ? heapCatalogue.get(code) : offHeapCatalogue.get(code);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void fullGc() {
+        System.gc();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CatalogueSnapshotBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
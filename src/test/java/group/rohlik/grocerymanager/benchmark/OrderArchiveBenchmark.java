@@ -0,0 +1,176 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the latency of the hot order queries in a file based H2 database holding {@code historicalOrders}
+ * finished orders besides {@value #RECENT_ORDERS} recent ones:
+ * <ul>
+ *     <li>{@code layout = hot} - the historical orders stay in GM_ORDER and GM_ORDER_ITEM</li>
+ *     <li>{@code layout = archived} - the historical orders were moved to GM_ORDER_ARCHIVE and GM_ORDER_ITEM_ARCHIVE</li>
+ * </ul>
+ * The queries are the SQL of {@code IOrderRepository.findByCodeWithItems} for a recent order
+ * and {@code IOrderRepository.existsByProductCodeAndStatusIn} with the active statuses, which is run
+ * before every product deletion and has to walk all order items of the product.
+ * The schema mirrors the Liquibase changelog, the database lives in {@code target/benchmark} and is dropped
+ * after each trial. The load takes about 5 minutes per million orders and layout on a single core,
+ * use {@code -p historicalOrders=1000000} for a quicker run.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class OrderArchiveBenchmark {
+
+    private static final int RECENT_ORDERS = 100_000;
+    private static final int PRODUCTS = 1_000;
+    private static final Path DATABASE_DIR = Path.of("target", "benchmark", "order-archive");
+
+    @Param({"10000000"})
+    private int historicalOrders;
+
+    @Param({"hot", "archived"})
+    private String layout;
+
+    private Connection connection;
+    private PreparedStatement findByCodeWithItems;
+    private PreparedStatement existsByProductCodeAndStatusIn;
+    private UUID[] recentCodes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        deleteDatabase();
+        connection = DriverManager.getConnection("jdbc:h2:file:" + DATABASE_DIR.toAbsolutePath().resolve(layout)
+                + ";CACHE_SIZE=262144", "sa", "");
+        try (var statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE GM_PRODUCT (ID BIGINT PRIMARY KEY, CODE VARCHAR(50) NOT NULL CONSTRAINT UQ_GM_PRODUCT_CODE UNIQUE,
+                        NAME VARCHAR(255) NOT NULL, STOCK_QUANTITY INTEGER NOT NULL, UNIT_PRICE DECIMAL(18, 4) NOT NULL)""");
+            statement.execute("""
+                    CREATE TABLE GM_ORDER (ID BIGINT PRIMARY KEY, CODE UUID NOT NULL CONSTRAINT UQ_GM_ORDER_CODE UNIQUE,
+                        STATUS VARCHAR(20) NOT NULL, TOTAL_AMOUNT DECIMAL(18, 4) NOT NULL, EXPIRES_AT TIMESTAMP NOT NULL,
+                        CREATION_DATE TIMESTAMP, UPDATE_DATE TIMESTAMP)""");
+            statement.execute("""
+                    CREATE TABLE GM_ORDER_ITEM (ID BIGINT PRIMARY KEY, CODE UUID NOT NULL CONSTRAINT UQ_GM_ORDER_ITEM_CODE UNIQUE,
+                        ORDER_ID BIGINT NOT NULL CONSTRAINT FK_GM_ORDER_ITEM_ORDER REFERENCES GM_ORDER(ID),
+                        PRODUCT_ID BIGINT NOT NULL CONSTRAINT FK_GM_ORDER_ITEM_PRODUCT REFERENCES GM_PRODUCT(ID),
+                        QUANTITY INTEGER NOT NULL, UNIT_PRICE DECIMAL(18, 4) NOT NULL, TOTAL_PRICE DECIMAL(18, 4) NOT NULL)""");
+            statement.execute("CREATE INDEX IDX_GM_ORDER_EXPIRES_AT_STATUS ON GM_ORDER(EXPIRES_AT, STATUS)");
+            statement.execute("CREATE INDEX IDX_GM_ORDER_STATUS ON GM_ORDER(STATUS)");
+            statement.execute("""
+                    CREATE TABLE GM_ORDER_ARCHIVE (ID BIGINT PRIMARY KEY, CODE UUID NOT NULL CONSTRAINT UQ_GM_ORDER_ARCHIVE_CODE UNIQUE,
+                        STATUS VARCHAR(20) NOT NULL, TOTAL_AMOUNT DECIMAL(18, 4) NOT NULL, EXPIRES_AT TIMESTAMP NOT NULL,
+                        CREATION_DATE TIMESTAMP, UPDATE_DATE TIMESTAMP, ARCHIVED_AT TIMESTAMP NOT NULL)""");
+            statement.execute("""
+                    CREATE TABLE GM_ORDER_ITEM_ARCHIVE (ID BIGINT PRIMARY KEY, CODE UUID NOT NULL,
+                        ORDER_ID BIGINT NOT NULL CONSTRAINT FK_GM_ORDER_ITEM_ARCHIVE_ORDER REFERENCES GM_ORDER_ARCHIVE(ID),
+                        PRODUCT_ID BIGINT NOT NULL, PRODUCT_CODE VARCHAR(50) NOT NULL,
+                        QUANTITY INTEGER NOT NULL, UNIT_PRICE DECIMAL(18, 4) NOT NULL, TOTAL_PRICE DECIMAL(18, 4) NOT NULL)""");
+            statement.execute("CREATE INDEX IDX_GM_ORDER_ITEM_ARCHIVE_PRODUCT_CODE ON GM_ORDER_ITEM_ARCHIVE(PRODUCT_CODE)");
+
+            statement.execute("INSERT INTO GM_PRODUCT SELECT X, 'P' || X, 'Product ' || X, 1000000, 9.9900 "
+                    + "FROM SYSTEM_RANGE(1, " + PRODUCTS + ")");
+            // historical orders are finished, one item each, ids ordered by creation time
+            var orderTable = "archived".equals(layout) ? "GM_ORDER_ARCHIVE" : "GM_ORDER";
+            var archivedAt = "archived".equals(layout) ? ", CURRENT_TIMESTAMP" : "";
+            statement.execute("INSERT INTO " + orderTable + " SELECT X, RANDOM_UUID(), "
+                    + "CASEWHEN(MOD(X, 10) = 0, 'EXPIRED', 'PAID'), 19.9800, DATEADD(MINUTE, 30, T), T, T" + archivedAt
+                    + " FROM (SELECT X, DATEADD(SECOND, X, TIMESTAMP '2020-01-01 00:00:00') T "
+                    + "FROM SYSTEM_RANGE(1, " + historicalOrders + "))");
+            if ("archived".equals(layout)) {
+                statement.execute("INSERT INTO GM_ORDER_ITEM_ARCHIVE SELECT X, RANDOM_UUID(), X, "
+                        + "MOD(X, " + PRODUCTS + ") + 1, 'P' || (MOD(X, " + PRODUCTS + ") + 1), 2, 9.9900, 19.9800 "
+                        + "FROM SYSTEM_RANGE(1, " + historicalOrders + ")");
+            } else {
+                statement.execute("INSERT INTO GM_ORDER_ITEM SELECT X, RANDOM_UUID(), X, "
+                        + "MOD(X, " + PRODUCTS + ") + 1, 2, 9.9900, 19.9800 "
+                        + "FROM SYSTEM_RANGE(1, " + historicalOrders + ")");
+            }
+            var firstRecent = historicalOrders + 1L;
+            var lastRecent = historicalOrders + (long) RECENT_ORDERS;
+            statement.execute("INSERT INTO GM_ORDER SELECT X, RANDOM_UUID(), "
+                    + "CASEWHEN(MOD(X, 2) = 0, 'PENDING', 'PAID'), 19.9800, DATEADD(MINUTE, 30, CURRENT_TIMESTAMP), "
+                    + "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM SYSTEM_RANGE(" + firstRecent + ", " + lastRecent + ")");
+            statement.execute("INSERT INTO GM_ORDER_ITEM SELECT X, RANDOM_UUID(), X, "
+                    + "MOD(X, " + PRODUCTS + ") + 1, 2, 9.9900, 19.9800 "
+                    + "FROM SYSTEM_RANGE(" + firstRecent + ", " + lastRecent + ")");
+            statement.execute("ANALYZE");
+
+            recentCodes = new UUID[RECENT_ORDERS];
+            try (var resultSet = statement.executeQuery("SELECT CODE FROM GM_ORDER WHERE ID >= " + firstRecent)) {
+                for (int i = 0; resultSet.next(); i++) {
+                    recentCodes[i] = resultSet.getObject(1, UUID.class);
+                }
+            }
+        }
+        findByCodeWithItems = connection.prepareStatement("""
+                SELECT o.ID, o.CODE, o.STATUS, o.TOTAL_AMOUNT, o.EXPIRES_AT, oi.ID, oi.CODE, oi.PRODUCT_ID, oi.QUANTITY,
+                       oi.UNIT_PRICE, oi.TOTAL_PRICE
+                FROM GM_ORDER o LEFT JOIN GM_ORDER_ITEM oi ON oi.ORDER_ID = o.ID
+                WHERE o.CODE = ?""");
+        existsByProductCodeAndStatusIn = connection.prepareStatement("""
+                SELECT COUNT(oi.ID) > 0
+                FROM GM_ORDER_ITEM oi JOIN GM_ORDER o ON o.ID = oi.ORDER_ID JOIN GM_PRODUCT p ON p.ID = oi.PRODUCT_ID
+                WHERE p.CODE = ? AND o.STATUS IN ('PENDING', 'PAID')""");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        deleteDatabase();
+    }
+
+    @Benchmark
+    public void findByCodeWithItems(final Blackhole blackhole) throws SQLException {
+        findByCodeWithItems.setObject(1, recentCodes[ThreadLocalRandom.current().nextInt(RECENT_ORDERS)]);
+        try (var resultSet = findByCodeWithItems.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getBigDecimal(10));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean existsByProductCodeAndStatusIn() throws SQLException {
+        existsByProductCodeAndStatusIn.setString(1, "P" + (ThreadLocalRandom.current().nextInt(PRODUCTS) + 1));
+        try (var resultSet = existsByProductCodeAndStatusIn.executeQuery()) {
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+
+    private static void deleteDatabase() throws Exception {
+        if (Files.exists(DATABASE_DIR)) {
+            try (Stream<Path> files = Files.walk(DATABASE_DIR)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderArchiveBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,118 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import group.rohlik.grocerymanager.Application;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.repository.IOrderRepository;
+import group.rohlik.grocerymanager.service.IOrderService;
+import group.rohlik.grocerymanager.service.IProductService;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the write of paying a {@code PENDING} order of {@code items} items in the application context
+ * with the in-memory H2 database of the test profile:
+ * <ul>
+ *     <li>{@code fetchWithItems} - the former pay path, {@code IOrderRepository.findByCodeWithItems} fetch-joins
+ *     all items, the status is set on the entity and the flush dirty-checks the order and every item</li>
+ *     <li>{@code conditionalUpdate} - the pay path of {@code OrderStateMachine}, {@code IOrderRepository.findStateByCode}
+ *     selects the order columns into a projection and {@code IOrderRepository.updateStatus} changes the status
+ *     in one statement, then {@code IOrderRepository.findItemTOsByOrderId} selects the items of the response
+ *     into DTOs, no entity is loaded</li>
+ * </ul>
+ * Each invocation runs in its own transaction which is rolled back, so the order stays {@code PENDING}.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class OrderPayBenchmark {
+
+    @Param({"1", "200"})
+    private int items;
+
+    private ConfigurableApplicationContext context;
+    private IOrderRepository orderRepository;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private UUID orderCode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .profiles(RunProfile.TEST)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN")
+                .run();
+        orderRepository = context.getBean(IOrderRepository.class);
+        entityManager = context.getBean(EntityManager.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        var productService = context.getBean(IProductService.class);
+        var orderItems = new ArrayList<OrderItemTO>(items);
+        for (int i = 0; i < items; i++) {
+            productService.createProduct(ProductTO.builder().code("PAY" + i).name("Product " + i)
+                    .stockQuantity(1_000).pricePerUnit(new BigDecimal("9.99")).build());
+            orderItems.add(OrderItemTO.builder().productCode("PAY" + i).quantity(1).build());
+        }
+        orderCode = context.getBean(IOrderService.class)
+                .createOrder(OrderTO.builder().items(orderItems).build())
+                .getCode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderStatus fetchWithItems() {
+        return transactionTemplate.execute(status -> {
+            var order = orderRepository.findByCodeWithItems(orderCode).orElseThrow();
+            order.setStatus(OrderStatus.PAID);
+            orderRepository.save(order);
+            entityManager.flush();
+            status.setRollbackOnly();
+            return order.getStatus();
+        });
+    }
+
+    @Benchmark
+    public OrderStatus conditionalUpdate() {
+        return transactionTemplate.execute(status -> {
+            var order = orderRepository.findStateByCode(orderCode).orElseThrow();
+            orderRepository.updateStatus(order.id(), order.status(), order.version(), OrderStatus.PAID,
+                    new Date(), null);
+            var orderItems = orderRepository.findItemTOsByOrderId(order.id());
+            status.setRollbackOnly();
+            return orderItems.isEmpty() ? null : OrderStatus.PAID;
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderPayBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
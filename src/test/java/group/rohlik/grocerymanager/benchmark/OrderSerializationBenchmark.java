@@ -0,0 +1,107 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.converter.ViewCachingJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonInputMessage;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize/deserialize throughput of OrderTO through the default JSON converter
+ * and through {@link ViewCachingJackson2HttpMessageConverter}.
+ * Responses are written with {@code View.Read}, requests are read with {@code View.Create}, like in OrderController.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderSerializationBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int items;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MappingJackson2HttpMessageConverter defaultConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+    private final MappingJackson2HttpMessageConverter cachingConverter = new ViewCachingJackson2HttpMessageConverter(objectMapper);
+    private final HttpHeaders headers = new HttpHeaders();
+
+    private MappingJacksonValue response;
+    private byte[] request;
+
+    @Setup
+    public void setUp() throws IOException {
+        var orderItems = new ArrayList<OrderItemTO>(items);
+        for (int i = 0; i < items; i++) {
+            orderItems.add(OrderItemTO.builder().code(UUID.randomUUID()).productCode("PRODUCT" + i).quantity(i + 1)
+                    .unitPrice(new BigDecimal("10.99")).totalPrice(new BigDecimal("10.99").multiply(BigDecimal.valueOf(i + 1)))
+                    .build());
+        }
+        var order = OrderTO.builder().code(UUID.randomUUID()).status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("1000.00")).expiresAt(LocalDateTime.now()).items(orderItems).build();
+        response = new MappingJacksonValue(order);
+        response.setSerializationView(View.Read.class);
+        request = objectMapper.writerWithView(View.Create.class).writeValueAsBytes(order);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+    }
+
+    @Benchmark
+    public byte[] serializeDefault() throws IOException {
+        return write(defaultConverter);
+    }
+
+    @Benchmark
+    public byte[] serializeCached() throws IOException {
+        return write(cachingConverter);
+    }
+
+    @Benchmark
+    public Object deserializeDefault() throws IOException {
+        return read(defaultConverter);
+    }
+
+    @Benchmark
+    public Object deserializeCached() throws IOException {
+        return read(cachingConverter);
+    }
+
+    private byte[] write(final MappingJackson2HttpMessageConverter converter) throws IOException {
+        var outputMessage = new MockHttpOutputMessage();
+        converter.write(response, OrderTO.class, MediaType.APPLICATION_JSON, outputMessage);
+        return outputMessage.getBodyAsBytes();
+    }
+
+    private Object read(final MappingJackson2HttpMessageConverter converter) throws IOException {
+        return converter.read(OrderTO.class, null,
+                new MappingJacksonInputMessage(new ByteArrayInputStream(request), headers, View.Create.class));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderSerializationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
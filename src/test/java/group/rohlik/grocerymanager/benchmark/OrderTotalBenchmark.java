@@ -0,0 +1,88 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import group.rohlik.grocerymanager.util.MoneyUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the price arithmetic of creating an order from a 100-item cart, with the unit prices loaded from the database:
+ * <ul>
+ *     <li>{@code bigDecimal} - item totals by BigDecimal multiply and setScale, the order total summed by a stream
+ *     in the service and once more in {@code Order.prePersist}</li>
+ *     <li>{@code minorUnits} - item totals and the order total in long minor units, converted to BigDecimal
+ *     once per persisted value</li>
+ * </ul>
+ * Both produce the item total prices and the order total to be persisted.
+ * Run with the GC profiler, {@code gc.alloc.rate.norm} is the allocation per cart.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderTotalBenchmark {
+
+    private static final int ITEMS = 100;
+
+    private final BigDecimal[] unitPrices = new BigDecimal[ITEMS];
+    private final int[] quantities = new int[ITEMS];
+    private final BigDecimal[] totalPrices = new BigDecimal[ITEMS];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < ITEMS; i++) {
+            unitPrices[i] = BigDecimal.valueOf(99 + i * 137L, 2).setScale(4); // DECIMAL(18, 4) column
+            quantities[i] = 1 + i % 5;
+        }
+    }
+
+    @Benchmark
+    public void bigDecimal(final Blackhole blackhole) {
+        List<BigDecimal> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(unitPrices[i].multiply(BigDecimal.valueOf(quantities[i])).setScale(2, RoundingMode.HALF_UP));
+        }
+        var serviceTotal = items.stream()
+                .filter(Objects::nonNull)
+                .filter(totalPrice -> totalPrice.compareTo(BigDecimal.ZERO) > 0)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        var prePersistTotal = items.stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        blackhole.consume(items);
+        blackhole.consume(serviceTotal);
+        blackhole.consume(prePersistTotal);
+    }
+
+    @Benchmark
+    public void minorUnits(final Blackhole blackhole) {
+        long total = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            var totalPrice = MoneyUtil.multiply(MoneyUtil.toMinorUnits(unitPrices[i]), quantities[i]);
+            totalPrices[i] = MoneyUtil.toBigDecimal(totalPrice);
+            total = Math.addExact(total, totalPrice);
+        }
+        blackhole.consume(totalPrices);
+        blackhole.consume(MoneyUtil.toBigDecimal(total));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderTotalBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
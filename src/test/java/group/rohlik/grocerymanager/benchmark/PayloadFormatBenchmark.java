@@ -0,0 +1,91 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize and parse cost of OrderTO in JSON, CBOR and Smile with the views used by OrderController.
+ * The response ({@code View.Read}) and request ({@code View.Create}) sizes are printed in the setup.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark {
+
+    public enum Format {
+        JSON, CBOR, SMILE
+    }
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    private Format format;
+
+    @Param({"10", "100"})
+    private int items;
+
+    private OrderTO order;
+    private ObjectWriter responseWriter;
+    private ObjectReader requestReader;
+    private byte[] request;
+
+    @Setup
+    public void setUp() throws IOException {
+        var builder = Jackson2ObjectMapperBuilder.json();
+        var objectMapper = switch (format) {
+            case JSON -> builder.build();
+            case CBOR -> builder.factory(new CBORFactory()).build();
+            case SMILE -> builder.factory(new SmileFactory()).build();
+        };
+        var orderItems = new ArrayList<OrderItemTO>(items);
+        for (int i = 0; i < items; i++) {
+            orderItems.add(OrderItemTO.builder().code(UUID.randomUUID()).productCode("PRODUCT" + i).quantity(i + 1)
+                    .unitPrice(new BigDecimal("10.99")).totalPrice(new BigDecimal("10.99").multiply(BigDecimal.valueOf(i + 1)))
+                    .build());
+        }
+        order = OrderTO.builder().code(UUID.randomUUID()).status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("1000.00")).expiresAt(LocalDateTime.now()).items(orderItems).build();
+        responseWriter = objectMapper.writerWithView(View.Read.class).forType(OrderTO.class);
+        requestReader = objectMapper.readerWithView(View.Create.class).forType(OrderTO.class);
+        request = objectMapper.writerWithView(View.Create.class).writeValueAsBytes(order);
+        System.out.printf("%n%s, %d items: response %d B, request %d B%n",
+                format, items, responseWriter.writeValueAsBytes(order).length, request.length);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws IOException {
+        return responseWriter.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public Object parseRequest() throws IOException {
+        return requestReader.readValue(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PayloadFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
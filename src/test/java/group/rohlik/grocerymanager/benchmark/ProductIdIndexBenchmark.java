@@ -0,0 +1,167 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import group.rohlik.grocerymanager.util.StringLongHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the product id index for 1M SKUs:
+ * <ul>
+ *     <li>{@code indexLookup} / {@code hashMapLookup} - code to id lookup in the StringLongHashMap and in a {@code HashMap<String, Long>}</li>
+ *     <li>{@code lockByCode} / {@code lockById} - {@code SELECT ... FOR UPDATE} of one product in H2 through the unique CODE index
+ *     and through the primary key, the reservation path before and after the index</li>
+ * </ul>
+ * {@link #main(String[])} prints the retained heap of both maps before running the benchmarks.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ProductIdIndexBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+
+    private String[] queries;
+    private StringLongHashMap index;
+    private Map<String, Long> hashMap;
+    private Connection connection;
+    private PreparedStatement lockByCode;
+    private PreparedStatement lockById;
+
+    @Setup
+    public void setUp() throws SQLException {
+        index = buildIndex();
+        hashMap = buildHashMap();
+        queries = new String[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            queries[i] = new String(code(i).toCharArray()); // not interned, like a code parsed from a request
+        }
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:product-id-index;DB_CLOSE_DELAY=-1", "sa", "");
+        try (var statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE GM_PRODUCT (ID BIGINT PRIMARY KEY, CODE VARCHAR(255) NOT NULL UNIQUE, " +
+                    "NAME VARCHAR(255) NOT NULL, STOCK_QUANTITY INT NOT NULL, ARCHIVED BOOLEAN NOT NULL)");
+            statement.execute("INSERT INTO GM_PRODUCT SELECT X, 'PRODUCT-' || X, 'Product ' || X, 100, FALSE " +
+                    "FROM SYSTEM_RANGE(1, " + PRODUCTS + ")");
+        }
+        connection.setAutoCommit(false);
+        lockByCode = connection.prepareStatement("SELECT ID, CODE, NAME, STOCK_QUANTITY FROM GM_PRODUCT " +
+                "WHERE CODE = ? AND ARCHIVED = FALSE FOR UPDATE");
+        lockById = connection.prepareStatement("SELECT ID, CODE, NAME, STOCK_QUANTITY FROM GM_PRODUCT " +
+                "WHERE ID = ? AND ARCHIVED = FALSE FOR UPDATE");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long indexLookup() {
+        return index.get(randomQuery(), 0L);
+    }
+
+    @Benchmark
+    public Long hashMapLookup() {
+        return hashMap.get(randomQuery());
+    }
+
+    @Benchmark
+    public long lockByCode() throws SQLException {
+        lockByCode.setString(1, randomQuery());
+        return lock(lockByCode);
+    }
+
+    @Benchmark
+    public long lockById() throws SQLException {
+        lockById.setLong(1, index.get(randomQuery(), 0L));
+        return lock(lockById);
+    }
+
+    private long lock(final PreparedStatement statement) throws SQLException {
+        long id;
+        try (var resultSet = statement.executeQuery()) {
+            resultSet.next();
+            id = resultSet.getLong(1);
+        }
+        connection.rollback();
+        return id;
+    }
+
+    private String randomQuery() {
+        return queries[ThreadLocalRandom.current().nextInt(PRODUCTS)];
+    }
+
+    private static String code(final int i) {
+        return "PRODUCT-" + (i + 1);
+    }
+
+    private static StringLongHashMap buildIndex() {
+        var map = new StringLongHashMap(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            map.put(code(i), i + 1);
+        }
+        return map;
+    }
+
+    private static Map<String, Long> buildHashMap() {
+        var map = new HashMap<String, Long>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            map.put(code(i).intern(), (long) i + 1);
+        }
+        return map;
+    }
+
+    /**
+     * Retained heap of the map, without the codes which are interned up front and shared by both maps.
+     */
+    private static long retainedBytes(final Supplier<Object> factory) {
+        var reference = new Object[1];
+        long before = usedHeapAfterGc();
+        reference[0] = factory.get();
+        long after = usedHeapAfterGc();
+        return reference[0] != null ? after - before : 0;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var codes = new String[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            codes[i] = code(i).intern();
+        }
+        System.out.printf("StringLongHashMap: %,d bytes%n", retainedBytes(ProductIdIndexBenchmark::buildIndex));
+        System.out.printf("HashMap<String, Long>: %,d bytes%n", retainedBytes(ProductIdIndexBenchmark::buildHashMap));
+        Reference.reachabilityFence(codes);
+
+        new Runner(new OptionsBuilder()
+                .include(ProductIdIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.mapper.IProductMapper;
+import group.rohlik.grocerymanager.mapper.IProductMapperImpl;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.util.ProductJsonUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the product listing paths from the selected columns to the response bytes:
+ * <ul>
+ *     <li>{@code materialized} - Product entities, mapped to ProductTO list, serialized with the {@code View.Read} writer</li>
+ *     <li>{@code streamed} - ProductRow per row, written directly with the JsonGenerator</li>
+ * </ul>
+ * Run with the GC profiler, {@code gc.alloc.rate.norm} divided by {@code rows} is the allocation per row.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductListingBenchmark {
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectWriter readWriter = objectMapper.writerWithView(View.Read.class);
+    private final IProductMapper productMapper = new IProductMapperImpl();
+    private final OutputStream out = new OutputStream() { // discards the bytes and survives close()
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private String[] codes;
+    private String[] names;
+    private BigDecimal[] prices;
+
+    @Setup
+    public void setUp() {
+        codes = new String[rows];
+        names = new String[rows];
+        prices = new BigDecimal[rows];
+        for (int i = 0; i < rows; i++) {
+            codes[i] = "PRODUCT" + i;
+            names[i] = "Product name " + i;
+            prices[i] = BigDecimal.valueOf(1000 + i, 2);
+        }
+    }
+
+    @Benchmark
+    public void materialized() throws IOException {
+        var products = new ArrayList<Product>(rows);
+        for (int i = 0; i < rows; i++) {
+            products.add(Product.builder().code(codes[i]).name(names[i]).stockQuantity(i)
+                    .pricePerUnit(prices[i]).archived(false).build());
+        }
+        readWriter.writeValue(out, productMapper.toProductTOs(products));
+    }
+
+    @Benchmark
+    public void streamed() throws IOException {
+        try (var generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (int i = 0; i < rows; i++) {
+                ProductJsonUtil.writeProduct(generator, new ProductRow(codes[i], names[i], i, 0, prices[i], false));
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductListingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
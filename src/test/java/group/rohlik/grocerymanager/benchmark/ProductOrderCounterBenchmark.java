@@ -0,0 +1,137 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the active order check of a product in an in-memory H2 database with {@value #ORDER_ITEMS} order items
+ * spread over {@code products} products, one item per order and a fifth of the orders active:
+ * <ul>
+ *     <li>{@code countOrderItems} - the SQL of {@code IOrderRepository.existsByProductCodeAndStatusIn},
+ *     a COUNT over the items of the product joined with their orders</li>
+ *     <li>{@code readCounterByCode} - {@code IProductOrderCounterRepository.findByProductCode}, the counter row
+ *     read by the product id resolved through the product code index</li>
+ *     <li>{@code readCounterById} - the counter row read by primary key, the id coming from the product id index</li>
+ * </ul>
+ * The schema mirrors the Liquibase changelog, including the index H2 creates for the PRODUCT_ID foreign key.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ProductOrderCounterBenchmark {
+
+    private static final int ORDER_ITEMS = 1_000_000;
+
+    @Param({"1000", "100000"})
+    private int products;
+
+    private Connection connection;
+    private PreparedStatement countOrderItems;
+    private PreparedStatement readCounterByCode;
+    private PreparedStatement readCounterById;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:product-order-counter-" + products, "sa", "");
+        try (var statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE GM_PRODUCT (ID BIGINT PRIMARY KEY, CODE VARCHAR(50) NOT NULL CONSTRAINT UQ_GM_PRODUCT_CODE UNIQUE,
+                        NAME VARCHAR(255) NOT NULL, STOCK_QUANTITY INTEGER NOT NULL, UNIT_PRICE DECIMAL(18, 4) NOT NULL)""");
+            statement.execute("""
+                    CREATE TABLE GM_ORDER (ID BIGINT PRIMARY KEY, CODE UUID NOT NULL CONSTRAINT UQ_GM_ORDER_CODE UNIQUE,
+                        STATUS VARCHAR(20) NOT NULL, TOTAL_AMOUNT DECIMAL(18, 4) NOT NULL, EXPIRES_AT TIMESTAMP NOT NULL)""");
+            statement.execute("""
+                    CREATE TABLE GM_ORDER_ITEM (ID BIGINT PRIMARY KEY, CODE UUID NOT NULL CONSTRAINT UQ_GM_ORDER_ITEM_CODE UNIQUE,
+                        ORDER_ID BIGINT NOT NULL CONSTRAINT FK_GM_ORDER_ITEM_ORDER REFERENCES GM_ORDER(ID),
+                        PRODUCT_ID BIGINT NOT NULL CONSTRAINT FK_GM_ORDER_ITEM_PRODUCT REFERENCES GM_PRODUCT(ID),
+                        QUANTITY INTEGER NOT NULL, UNIT_PRICE DECIMAL(18, 4) NOT NULL, TOTAL_PRICE DECIMAL(18, 4) NOT NULL)""");
+            statement.execute("CREATE INDEX IDX_GM_ORDER_STATUS ON GM_ORDER(STATUS)");
+            statement.execute("""
+                    CREATE TABLE GM_PRODUCT_ORDER_COUNTER (PRODUCT_ID BIGINT PRIMARY KEY REFERENCES GM_PRODUCT(ID) ON DELETE CASCADE,
+                        ACTIVE_ORDER_ITEMS BIGINT DEFAULT 0 NOT NULL, FINISHED_ORDER_ITEMS BIGINT DEFAULT 0 NOT NULL)""");
+
+            statement.execute("INSERT INTO GM_PRODUCT SELECT X, 'P' || X, 'Product ' || X, 1000000, 9.9900 "
+                    + "FROM SYSTEM_RANGE(1, " + products + ")");
+            statement.execute("INSERT INTO GM_ORDER SELECT X, RANDOM_UUID(), "
+                    + "CASE MOD(X, 10) WHEN 0 THEN 'PENDING' WHEN 1 THEN 'PAID' WHEN 2 THEN 'CANCELED' ELSE 'EXPIRED' END, "
+                    + "9.9900, CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, " + ORDER_ITEMS + ")");
+            statement.execute("INSERT INTO GM_ORDER_ITEM SELECT X, RANDOM_UUID(), X, MOD(X * 7919, " + products + ") + 1, "
+                    + "1, 9.9900, 9.9900 FROM SYSTEM_RANGE(1, " + ORDER_ITEMS + ")");
+            // the counters as the reconciliation computes them
+            statement.execute("""
+                    INSERT INTO GM_PRODUCT_ORDER_COUNTER
+                    SELECT oi.PRODUCT_ID,
+                           SUM(CASEWHEN(o.STATUS IN ('PENDING', 'PAID'), 1, 0)),
+                           SUM(CASEWHEN(o.STATUS IN ('CANCELED', 'EXPIRED'), 1, 0))
+                    FROM GM_ORDER_ITEM oi JOIN GM_ORDER o ON o.ID = oi.ORDER_ID
+                    GROUP BY oi.PRODUCT_ID""");
+            statement.execute("ANALYZE");
+        }
+        countOrderItems = connection.prepareStatement("""
+                SELECT COUNT(oi.ID) > 0
+                FROM GM_ORDER_ITEM oi JOIN GM_ORDER o ON o.ID = oi.ORDER_ID JOIN GM_PRODUCT p ON p.ID = oi.PRODUCT_ID
+                WHERE p.CODE = ? AND o.STATUS IN ('PENDING', 'PAID')""");
+        readCounterByCode = connection.prepareStatement("""
+                SELECT c.PRODUCT_ID, c.ACTIVE_ORDER_ITEMS, c.FINISHED_ORDER_ITEMS FROM GM_PRODUCT_ORDER_COUNTER c
+                WHERE c.PRODUCT_ID = (SELECT p.ID FROM GM_PRODUCT p WHERE p.CODE = ?)""");
+        readCounterById = connection.prepareStatement("""
+                SELECT c.PRODUCT_ID, c.ACTIVE_ORDER_ITEMS, c.FINISHED_ORDER_ITEMS FROM GM_PRODUCT_ORDER_COUNTER c
+                WHERE c.PRODUCT_ID = ?""");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public boolean countOrderItems() throws SQLException {
+        countOrderItems.setString(1, "P" + randomProductId());
+        try (var resultSet = countOrderItems.executeQuery()) {
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+
+    @Benchmark
+    public boolean readCounterByCode() throws SQLException {
+        readCounterByCode.setString(1, "P" + randomProductId());
+        try (var resultSet = readCounterByCode.executeQuery()) {
+            return resultSet.next() && resultSet.getLong(2) > 0;
+        }
+    }
+
+    @Benchmark
+    public boolean readCounterById() throws SQLException {
+        readCounterById.setLong(1, randomProductId());
+        try (var resultSet = readCounterById.executeQuery()) {
+            return resultSet.next() && resultSet.getLong(2) > 0;
+        }
+    }
+
+    private int randomProductId() {
+        return ThreadLocalRandom.current().nextInt(products) + 1;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductOrderCounterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,90 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import group.rohlik.grocerymanager.Application;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.dto.ReservationHoldTO;
+import group.rohlik.grocerymanager.service.IProductService;
+import group.rohlik.grocerymanager.service.IReservationHoldService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the reservation holds in the application context with the in-memory H2 database
+ * of the test profile, counted in hold operations (a create or a drop) per second:
+ * <ul>
+ *     <li>{@code createAndDrop} - a hold of one unit of one of {@code products} products is created
+ *     and dropped right away, i.e. one stock reservation, one insert, one stock release and one delete</li>
+ * </ul>
+ * The scheduled sweeps are switched off, every hold is dropped explicitly.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class ReservationHoldBenchmark {
+
+    @Param({"1000"})
+    private int products;
+
+    private ConfigurableApplicationContext context;
+    private IReservationHoldService reservationHoldService;
+    private ReservationHoldTO[] holds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .profiles(RunProfile.TEST)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN",
+                        "grocery-manager.schedule.reservation-hold.sweep.fixed-delay=3600000",
+                        "grocery-manager.schedule.reservation-hold.table-sweep.cron=-")
+                .run();
+        reservationHoldService = context.getBean(IReservationHoldService.class);
+
+        var productService = context.getBean(IProductService.class);
+        holds = new ReservationHoldTO[products];
+        for (int i = 0; i < products; i++) {
+            productService.createProduct(ProductTO.builder().code("HOLD" + i).name("Product " + i)
+                    .stockQuantity(1_000).pricePerUnit(new BigDecimal("9.99")).build());
+            holds[i] = ReservationHoldTO.builder()
+                    .items(List.of(OrderItemTO.builder().productCode("HOLD" + i).quantity(1).build()))
+                    .build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public UUID createAndDrop() {
+        var hold = reservationHoldService.createHold(holds[next++ % products]);
+        reservationHoldService.dropHold(hold.getCode());
+        return hold.getCode();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReservationHoldBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
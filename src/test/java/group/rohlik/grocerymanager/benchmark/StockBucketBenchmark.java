@@ -0,0 +1,99 @@
+package group.rohlik.grocerymanager.benchmark;
+
+import group.rohlik.grocerymanager.Application;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.service.IOrderService;
+import group.rohlik.grocerymanager.service.IProductService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the throughput of concurrent orders of one flash-sale product in the application context with
+ * the in-memory H2 database of the test profile, counted in order operations (a creation or a cancellation) per second:
+ * <ul>
+ *     <li>{@code createAndCancelOrder} - {@code 8} threads create an order of one unit of the same product through
+ *     the order service in a transaction which keeps the stock and the order counter locked for further
+ *     {@code transactionMillis} before it commits, then cancel the order, which releases the unit again</li>
+ * </ul>
+ * With {@code buckets = 0} the stock and the order counter are single rows every order locks, otherwise both are
+ * sharded into that many buckets and counter shards, orders start at a random one. The scheduled rebalancing
+ * keeps running.
+ *
+ * @author Tomas Kramec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+@Threads(8)
+public class StockBucketBenchmark {
+
+    private static final String PRODUCT_CODE = "FLASH";
+
+    @Param({"0", "2", "4", "8"})
+    private int buckets;
+
+    @Param({"20", "100"})
+    private int transactionMillis;
+
+    private ConfigurableApplicationContext context;
+    private IOrderService orderService;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .profiles(RunProfile.TEST)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN")
+                .run();
+        var productService = context.getBean(IProductService.class);
+        orderService = context.getBean(IOrderService.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        productService.createProduct(ProductTO.builder().code(PRODUCT_CODE).name("Flash sale product")
+                .stockQuantity(1_000_000).stockBuckets(buckets).pricePerUnit(new BigDecimal("9.99")).build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public OrderStatus createAndCancelOrder() {
+        var order = transactionTemplate.execute(status -> {
+            var created = orderService.createOrder(OrderTO.builder()
+                    .items(List.of(OrderItemTO.builder().productCode(PRODUCT_CODE).quantity(1).build()))
+                    .build());
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(transactionMillis));
+            return created;
+        });
+        return orderService.cancelOrder(order.getCode()).getStatus();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StockBucketBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
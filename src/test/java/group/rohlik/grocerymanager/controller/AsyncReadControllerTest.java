@@ -0,0 +1,126 @@
+package group.rohlik.grocerymanager.controller;
+
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.exception.OrderNotFoundException;
+import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.service.IAsyncReadService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * @author Tomas Kramec
+ */
+@ExtendWith({MockitoExtension.class})
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@WebMvcTest(AsyncReadController.class)
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class AsyncReadControllerTest {
+
+    public static final String BASE_URL = "/api/v1/async";
+
+    @MockBean
+    private IAsyncReadService asyncReadService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Get all products - successfully")
+    void getAllProducts_ShouldReturnProducts() throws Exception {
+        var productTO = ProductTO.builder().code("product1").name("Product 1")
+                .pricePerUnit(new BigDecimal("10.99")).stockQuantity(100).build();
+        when(asyncReadService.getAllProducts(true)).thenReturn(CompletableFuture.completedFuture(List.of(productTO)));
+
+        var result = mockMvc.perform(get(BASE_URL + "/products").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].code").value("product1"))
+                .andExpect(jsonPath("$[0].stockQuantity").value(100));
+    }
+
+    @Test
+    @DisplayName("Get product by code - not found")
+    void getProductByCode_ShouldReturnNotFound_WhenProductDoesNotExist() throws Exception {
+        when(asyncReadService.getProductByCode("missing"))
+                .thenReturn(CompletableFuture.failedFuture(new ProductNotFoundException("Product not found: missing")));
+
+        var result = mockMvc.perform(get(BASE_URL + "/products/missing").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Product not found"));
+    }
+
+    @Test
+    @DisplayName("Get order by code - successfully")
+    void getOrderByCode_ShouldReturnOrder() throws Exception {
+        var code = UUID.randomUUID();
+        var orderTO = OrderTO.builder().code(code).totalAmount(new BigDecimal("21.98")).build();
+        when(asyncReadService.getOrderByCode(code)).thenReturn(CompletableFuture.completedFuture(orderTO));
+
+        var result = mockMvc.perform(get(BASE_URL + "/orders/" + code).accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(code.toString()));
+    }
+
+    @Test
+    @DisplayName("Get order by code - not found")
+    void getOrderByCode_ShouldReturnNotFound_WhenOrderDoesNotExist() throws Exception {
+        var code = UUID.randomUUID();
+        when(asyncReadService.getOrderByCode(code))
+                .thenReturn(CompletableFuture.failedFuture(new OrderNotFoundException("Order not found: " + code)));
+
+        var result = mockMvc.perform(get(BASE_URL + "/orders/" + code).accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Get order by code - read timed out")
+    void getOrderByCode_ShouldReturnServiceUnavailable_WhenReadTimesOut() throws Exception {
+        var code = UUID.randomUUID();
+        when(asyncReadService.getOrderByCode(code))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("Read was not started in time")));
+
+        var result = mockMvc.perform(get(BASE_URL + "/orders/" + code).accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
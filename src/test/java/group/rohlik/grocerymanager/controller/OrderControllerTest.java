@@ -3,11 +3,13 @@ package group.rohlik.grocerymanager.controller;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.converter.CborJackson2HttpMessageConverter;
 import group.rohlik.grocerymanager.dto.ErrorTO;
 import group.rohlik.grocerymanager.dto.OrderItemTO;
 import group.rohlik.grocerymanager.dto.OrderTO;
 import group.rohlik.grocerymanager.exception.*;
 import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.service.IIdempotencyService;
 import group.rohlik.grocerymanager.service.IOrderService;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.DisplayName;
@@ -51,12 +53,18 @@ class OrderControllerTest {
     @MockBean
     private IOrderService orderService;
 
+    @MockBean
+    private IIdempotencyService idempotencyService;
+
     @Autowired
     private MockMvc mockMvc;
 
     @Inject
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CborJackson2HttpMessageConverter cborConverter;
+
     @Test
     @DisplayName("Create order - successfully")
     void createOrder_ShouldReturnOrder_WhenValidRequest() throws Exception {
@@ -91,6 +99,34 @@ class OrderControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Create order - CBOR request and response")
+    void createOrder_ShouldReturnCborOrder_WhenCborRequest() throws Exception {
+        var cborMapper = cborConverter.getObjectMapper();
+        var orderTO = OrderTO.builder()
+                .code(UUID.randomUUID())
+                .items(List.of(OrderItemTO.builder().productCode("product1").quantity(2).build()))
+                .build();
+        var createdTO = OrderTO.builder().code(UUID.randomUUID()).status(OrderStatus.PENDING)
+                .items(orderTO.getItems()).build();
+
+        when(orderService.createOrder(any(OrderTO.class))).thenReturn(createdTO);
+
+        var result = mockMvc.perform(post(BASE_URL)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cborMapper.writeValueAsBytes(orderTO)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        // the code is not part of the Create view, so it is not bound from the request
+        verify(orderService, times(1)).createOrder(argThat(order -> order.getCode() == null
+                && order.getItems().equals(orderTO.getItems())));
+        assertThat(cborMapper.readValue(result.getResponse().getContentAsByteArray(), OrderTO.class)).isEqualTo(createdTO);
+    }
+
     @Test
     @DisplayName("Create order - validation error when no items provided")
     void createOrder_ShouldReturnBadRequest_WhenNoItems() throws Exception {
@@ -342,6 +378,57 @@ class OrderControllerTest {
         assertThat(errorTO.getTimestamp()).isNotNull();
     }
 
+    @Test
+    @DisplayName("Pay order - replayed by idempotency key")
+    void payOrder_ShouldUseIdempotencyService_WhenIdempotencyKeyPresent() throws Exception {
+        var orderTO = OrderTO.builder()
+                .code(UUID.randomUUID())
+                .status(OrderStatus.PAID)
+                .build();
+
+        when(idempotencyService.execute(eq("pay:" + orderTO.getCode()), eq("key-1"), eq(orderTO.getCode()),
+                eq(OrderTO.class), any())).thenReturn(orderTO);
+
+        MvcResult result = mockMvc.perform(post(BASE_URL + "/{code}/pay", orderTO.getCode())
+                        .with(csrf())
+                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        verify(orderService, never()).payOrder(any());
+
+        OrderTO responseTO = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(responseTO.getCode()).isEqualTo(orderTO.getCode());
+        assertThat(responseTO.getStatus()).isEqualTo(OrderStatus.PAID);
+    }
+
+    @Test
+    @DisplayName("Pay order - idempotency key reused for a different request")
+    void payOrder_ShouldReturnUnprocessableEntity_WhenIdempotencyKeyReused() throws Exception {
+        UUID orderCode = UUID.randomUUID();
+
+        when(idempotencyService.execute(any(), any(), any(), any(), any()))
+                .thenThrow(new IdempotencyKeyReuseException("Idempotency key key-1 was used for a different request"));
+
+        var result = mockMvc.perform(post(BASE_URL + "/{code}/pay", orderCode)
+                        .with(csrf())
+                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnprocessableEntity())
+                .andReturn();
+
+        ErrorTO errorTO = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+
+        assertThat(errorTO.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY.value());
+        assertThat(errorTO.getMessage()).contains("key-1");
+    }
+
     @Test
     @DisplayName("Cancel order - successfully")
     void cancelOrder_ShouldReturnOrder_WhenValidCode() throws Exception {
@@ -1,14 +1,22 @@
 package group.rohlik.grocerymanager.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.converter.CborJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.converter.SmileJackson2HttpMessageConverter;
 import group.rohlik.grocerymanager.dto.ErrorTO;
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductStockTO;
 import group.rohlik.grocerymanager.dto.ProductTO;
 import group.rohlik.grocerymanager.exception.ProductAlreadyExistsException;
 import group.rohlik.grocerymanager.exception.ProductDeletionException;
 import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.exception.ProductVersionMismatchException;
 import group.rohlik.grocerymanager.service.IProductService;
+import group.rohlik.grocerymanager.util.ETagUtil;
+import group.rohlik.grocerymanager.util.ProductJsonUtil;
 import jakarta.inject.Inject;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.DisplayName;
@@ -18,6 +26,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -26,13 +35,17 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -55,6 +68,76 @@ class ProductControllerTest {
     @Inject
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CborJackson2HttpMessageConverter cborConverter;
+
+    @Autowired
+    private SmileJackson2HttpMessageConverter smileConverter;
+
+    @Test
+    @DisplayName("Get all products - streamed")
+    void getAllProducts_ShouldStreamProducts() throws Exception {
+        when(productService.writeAllProducts(eq(false), any(JsonGenerator.class))).thenAnswer(invocation -> {
+            JsonGenerator generator = invocation.getArgument(1);
+            generator.writeStartArray();
+            ProductJsonUtil.writeProduct(generator, new ProductRow("product1", "Product 1", 100, 0, new BigDecimal("10.99"), true));
+            generator.writeEndArray();
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get(BASE_URL).param("onlyActive", "false")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        List<ProductTO> products = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        assertThat(products).containsExactly(ProductTO.builder().code("product1").name("Product 1")
+                .stockQuantity(100).stockBuckets(0).pricePerUnit(new BigDecimal("10.99")).archived(true).build());
+        verify(productService, never()).getAllProducts(anyBoolean());
+    }
+
+    @Test
+    @DisplayName("Get all products - streamed as CBOR")
+    void getAllProducts_ShouldStreamCbor_WhenCborAccepted() throws Exception {
+        when(productService.writeAllProducts(eq(true), any(JsonGenerator.class))).thenAnswer(invocation -> {
+            JsonGenerator generator = invocation.getArgument(1);
+            generator.writeStartArray();
+            ProductJsonUtil.writeProduct(generator, new ProductRow("product1", "Product 1", 100, 0, new BigDecimal("10.99"), false));
+            generator.writeEndArray();
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get(BASE_URL)
+                        .accept("application/json;q=0.5, application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        List<ProductTO> products = cborConverter.getObjectMapper().readValue(result.getResponse().getContentAsByteArray(),
+                new TypeReference<>() {
+                });
+        assertThat(products).extracting(ProductTO::getCode).containsExactly("product1");
+    }
+
+    @Test
+    @DisplayName("Get product by code - Smile")
+    void getProductByCode_ShouldReturnSmile_WhenSmileAccepted() throws Exception {
+        var productTO = ProductTO.builder().code("product1").name("Product 1").stockQuantity(100)
+                .pricePerUnit(new BigDecimal("10.99")).build();
+        when(productService.getProductByCode("product1")).thenReturn(productTO);
+
+        MvcResult result = mockMvc.perform(get(BASE_URL + "/product1")
+                        .accept(SmileJackson2HttpMessageConverter.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SmileJackson2HttpMessageConverter.APPLICATION_SMILE))
+                .andReturn();
+
+        assertThat(smileConverter.getObjectMapper().readValue(result.getResponse().getContentAsByteArray(), ProductTO.class))
+                .isEqualTo(productTO);
+    }
+
     @Test
     @DisplayName("Create product - successfully")
     void createProduct_ShouldReturnProduct_WhenValidRequest() throws Exception {
@@ -187,6 +270,80 @@ class ProductControllerTest {
         assertThat(errorTO.getTimestamp()).isNotNull();
     }
 
+    @Test
+    @DisplayName("Get product by code - ETag and 304 Not Modified")
+    void getProductByCode_ShouldReturnNotModified_WhenETagMatches() throws Exception {
+        var productTO = ProductTO.builder().code("product1").name("Product 1").stockQuantity(100)
+                .pricePerUnit(new BigDecimal("10.99")).version(3L).build();
+        when(productService.getProductByCode("product1")).thenReturn(productTO);
+        var eTag = ETagUtil.toETag("product1", 3);
+
+        mockMvc.perform(get(BASE_URL + "/product1").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+
+        var result = mockMvc.perform(get(BASE_URL + "/product1")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn();
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+
+        mockMvc.perform(get(BASE_URL + "/product1")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, ETagUtil.toETag("product1", 2)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Update product - If-Match passes expected version")
+    void updateProduct_ShouldPassVersion_WhenIfMatchPresent() throws Exception {
+        var productTO = ProductTO.builder().name("Updated Product 1").stockQuantity(150)
+                .pricePerUnit(new BigDecimal("12.99")).build();
+        when(productService.updateProduct(any(ProductTO.class))).thenAnswer(invocation -> {
+            ProductTO updated = invocation.getArgument(0);
+            return ProductTO.builder().code(updated.getCode()).name(updated.getName()).version(updated.getVersion() + 1).build();
+        });
+
+        mockMvc.perform(put(BASE_URL + "/product1")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, ETagUtil.toETag("product1", 3))
+                        .content(objectMapper.writeValueAsString(productTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETagUtil.toETag("product1", 4)))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+
+        verify(productService).updateProduct(argThat(updated -> updated.getVersion() == 3L));
+    }
+
+    @Test
+    @DisplayName("Update product - 412 when If-Match does not match")
+    void updateProduct_ShouldReturnPreconditionFailed_WhenIfMatchDoesNotMatch() throws Exception {
+        var productTO = ProductTO.builder().name("Updated Product 1").stockQuantity(150)
+                .pricePerUnit(new BigDecimal("12.99")).build();
+        when(productService.updateProduct(any(ProductTO.class)))
+                .thenThrow(new ProductVersionMismatchException("Product product1 was modified"));
+
+        mockMvc.perform(put(BASE_URL + "/product1")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, ETagUtil.toETag("product1", 3))
+                        .content(objectMapper.writeValueAsString(productTO)))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put(BASE_URL + "/product1")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, ETagUtil.toETag("product2", 3))
+                        .content(objectMapper.writeValueAsString(productTO)))
+                .andExpect(status().isPreconditionFailed());
+        verify(productService, times(1)).updateProduct(any(ProductTO.class));
+    }
+
     @Test
     @DisplayName("Update product - successfully")
     void updateProduct_ShouldReturnUpdatedProduct_WhenValidRequest() throws Exception {
@@ -327,6 +484,64 @@ class ProductControllerTest {
         assertThat(data.get("updateProduct.productTO.pricePerUnit")).isEqualTo("Price per unit is required");
     }
 
+    @Test
+    @DisplayName("Update product - bad request when too many stock buckets")
+    void updateProduct_ShouldReturnBadRequest_WhenTooManyStockBuckets() throws Exception {
+        var productTO = ProductTO.builder().name("Milk").stockQuantity(10).stockBuckets(65)
+                .pricePerUnit(BigDecimal.TEN).build();
+
+        MvcResult result = mockMvc.perform(put(BASE_URL + "/" + RandomStringUtils.randomAlphanumeric(10))
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(productTO)))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        verify(productService, never()).updateProduct(any(ProductTO.class));
+
+        ErrorTO errorTO = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        assertThat(errorTO.getData()).containsEntry("updateProduct.productTO.stockBuckets",
+                "Number of stock buckets must be at most 64");
+    }
+
+    @Test
+    @DisplayName("Update stock locations - successfully")
+    void updateStockLocations_ShouldReturnLocations_WhenValidRequest() throws Exception {
+        String productCode = RandomStringUtils.randomAlphanumeric(10);
+        var locations = List.of(ProductStockTO.builder().locationCode("BRN").quantity(4).build(),
+                ProductStockTO.builder().locationCode("PRG").quantity(7).build());
+        when(productService.updateStockLocations(productCode, locations)).thenReturn(locations);
+
+        MvcResult result = mockMvc.perform(put(BASE_URL + "/" + productCode + "/stock")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(locations)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<ProductStockTO> response = objectMapper.readValue(result.getResponse().getContentAsString(),
+                new TypeReference<>() {
+                });
+        assertThat(response).isEqualTo(locations);
+    }
+
+    @Test
+    @DisplayName("Update stock locations - negative quantity")
+    void updateStockLocations_ShouldReturnBadRequest_WhenQuantityNegative() throws Exception {
+        String productCode = RandomStringUtils.randomAlphanumeric(10);
+        var locations = List.of(ProductStockTO.builder().locationCode("PRG").quantity(-1).build());
+
+        mockMvc.perform(put(BASE_URL + "/" + productCode + "/stock")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(locations)))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).updateStockLocations(any(), any());
+    }
+
     @Test
     @DisplayName("Delete product - successfully")
     void deleteProduct_ShouldReturnNoContent_WhenProductDeletedSuccessfully() throws Exception {
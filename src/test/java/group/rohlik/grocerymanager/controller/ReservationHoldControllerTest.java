@@ -0,0 +1,151 @@
+package group.rohlik.grocerymanager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.dto.ErrorTO;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ReservationHoldTO;
+import group.rohlik.grocerymanager.exception.ReservationHoldNotFoundException;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.service.IIdempotencyService;
+import group.rohlik.grocerymanager.service.IOrderService;
+import group.rohlik.grocerymanager.service.IReservationHoldService;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Tomas Kramec
+ */
+@ExtendWith({MockitoExtension.class})
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@WebMvcTest(ReservationHoldController.class)
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class ReservationHoldControllerTest {
+
+    public static final String BASE_URL = "/api/v1/holds";
+
+    @MockBean
+    private IReservationHoldService reservationHoldService;
+
+    @MockBean
+    private IOrderService orderService;
+
+    @MockBean
+    private IIdempotencyService idempotencyService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("Create hold - successfully")
+    void createHold_ShouldReturnHold_WhenValidRequest() throws Exception {
+        var holdTO = ReservationHoldTO.builder()
+                .ttlSeconds(300)
+                .items(List.of(OrderItemTO.builder().productCode("product1").quantity(2).build()))
+                .build();
+        var createdTO = ReservationHoldTO.builder()
+                .code(UUID.randomUUID())
+                .expiresAt(LocalDateTime.now().plusMinutes(5))
+                .items(holdTO.getItems())
+                .build();
+        when(reservationHoldService.createHold(any(ReservationHoldTO.class))).thenReturn(createdTO);
+
+        mockMvc.perform(post(BASE_URL)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(holdTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.code").value(createdTO.getCode().toString()))
+                .andExpect(jsonPath("$.items[0].productCode").value("product1"));
+
+        verify(reservationHoldService).createHold(holdTO);
+    }
+
+    @Test
+    @DisplayName("Create hold - no items")
+    void createHold_ShouldReturnBadRequest_WhenNoItems() throws Exception {
+        var holdTO = ReservationHoldTO.builder().items(List.of()).build();
+
+        mockMvc.perform(post(BASE_URL)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(holdTO)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(reservationHoldService);
+    }
+
+    @Test
+    @DisplayName("Drop hold - successfully")
+    void dropHold_ShouldReturnNoContent() throws Exception {
+        var code = UUID.randomUUID();
+
+        mockMvc.perform(delete(BASE_URL + "/{code}", code).with(csrf()))
+                .andExpect(status().isNoContent());
+
+        verify(reservationHoldService).dropHold(code);
+    }
+
+    @Test
+    @DisplayName("Drop hold - not found")
+    void dropHold_ShouldReturnNotFound_WhenHoldDoesNotExist() throws Exception {
+        var code = UUID.randomUUID();
+        doThrow(new ReservationHoldNotFoundException("Hold not found with code: " + code))
+                .when(reservationHoldService).dropHold(code);
+
+        var result = mockMvc.perform(delete(BASE_URL + "/{code}", code)
+                        .with(csrf())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andReturn();
+
+        var error = objectMapper.readValue(result.getResponse().getContentAsString(), ErrorTO.class);
+        assertThat(error.getError()).isEqualTo("Reservation hold not found");
+    }
+
+    @Test
+    @DisplayName("Convert hold into order - successfully")
+    void createOrderFromHold_ShouldReturnOrder() throws Exception {
+        var code = UUID.randomUUID();
+        var orderTO = OrderTO.builder().code(UUID.randomUUID()).status(OrderStatus.PENDING).build();
+        when(orderService.createOrderFromHold(code)).thenReturn(orderTO);
+
+        mockMvc.perform(post(BASE_URL + "/{code}/order", code)
+                        .with(csrf())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.code").value(orderTO.getCode().toString()))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        verifyNoInteractions(idempotencyService);
+    }
+}
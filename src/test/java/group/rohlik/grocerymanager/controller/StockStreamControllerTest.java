@@ -0,0 +1,89 @@
+package group.rohlik.grocerymanager.controller;
+
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.dto.StockDeltaTO;
+import group.rohlik.grocerymanager.event.IStockDeltaListener;
+import group.rohlik.grocerymanager.event.StockSubscription;
+import group.rohlik.grocerymanager.property.StockStreamProperties;
+import group.rohlik.grocerymanager.service.IStockStreamService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Tomas Kramec
+ */
+@ExtendWith({MockitoExtension.class})
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@WebMvcTest(StockStreamController.class)
+@WithMockUser(username = "TestUser", password = "TestUser", authorities = "GM_USER")
+class StockStreamControllerTest {
+
+    public static final String BASE_URL = "/api/v1/stock/stream";
+
+    @MockBean
+    private IStockStreamService stockStreamService;
+
+    @MockBean
+    private StockStreamProperties stockStreamProperties;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        when(stockStreamProperties.getTimeout()).thenReturn(Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("Stream stock changes - deltas are pushed as SSE events")
+    void streamStockChanges_ShouldPushDeltas() throws Exception {
+        var listener = ArgumentCaptor.forClass(IStockDeltaListener.class);
+        var subscription = new StockSubscription(Set.of("P1", "P2"), deltas -> {
+        }, 1);
+        when(stockStreamService.subscribe(eq(Set.of("P1", "P2")), listener.capture())).thenReturn(subscription);
+
+        var result = mockMvc.perform(get(BASE_URL)
+                        .param("codes", "P1", "P2")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        listener.getValue().onDeltas(List.of(new StockDeltaTO("P1", -2, 8, 3)));
+
+        var body = result.getResponse().getContentAsString();
+        assertThat(body).contains("event:" + StockStreamController.STOCK_EVENT_NAME);
+        assertThat(body).contains("\"code\":\"P1\"", "\"delta\":-2", "\"stockQuantity\":8");
+    }
+
+    @Test
+    @DisplayName("Stream stock changes - bad request when no product codes provided")
+    void streamStockChanges_ShouldReturnBadRequest_WhenNoCodes() throws Exception {
+        mockMvc.perform(get(BASE_URL).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest());
+
+        verify(stockStreamService, never()).subscribe(any(), any());
+    }
+}
@@ -0,0 +1,95 @@
+package group.rohlik.grocerymanager.converter;
+
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJacksonInputMessage;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the CBOR and Smile message converters.
+ *
+ * @author Tomas Kramec
+ */
+class BinaryJackson2HttpMessageConvertersTest {
+
+    private static final ViewCachingJackson2HttpMessageConverter JSON_CONVERTER =
+            new ViewCachingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build());
+
+    static Stream<Arguments> converters() {
+        return Stream.of(
+                Arguments.of(new CborJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json()), MediaType.APPLICATION_CBOR),
+                Arguments.of(new SmileJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json()),
+                        SmileJackson2HttpMessageConverter.APPLICATION_SMILE));
+    }
+
+    @ParameterizedTest
+    @MethodSource("converters")
+    void write_readView_smallerThanJson(final AbstractJackson2HttpMessageConverter converter, final MediaType mediaType)
+            throws Exception {
+        var order = order(50);
+
+        var binary = write(converter, order, mediaType);
+        var json = write(JSON_CONVERTER, order, MediaType.APPLICATION_JSON);
+
+        assertThat(binary.length).isLessThan(json.length);
+        assertThat(converter.getObjectMapper().readValue(binary, OrderTO.class)).isEqualTo(order);
+    }
+
+    @ParameterizedTest
+    @MethodSource("converters")
+    void read_createView_ignoresPropertiesOutsideView(final AbstractJackson2HttpMessageConverter converter,
+                                                      final MediaType mediaType) throws Exception {
+        var body = converter.getObjectMapper().writeValueAsBytes(order(2));
+        var headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+
+        var order = (OrderTO) converter.read(OrderTO.class, null,
+                new MappingJacksonInputMessage(new ByteArrayInputStream(body), headers, View.Create.class));
+
+        assertThat(order.getCode()).isNull();
+        assertThat(order.getStatus()).isNull();
+        assertThat(order.getItems()).hasSize(2).allSatisfy(item -> {
+            assertThat(item.getProductCode()).isNotNull();
+            assertThat(item.getCode()).isNull();
+            assertThat(item.getUnitPrice()).isNull();
+        });
+    }
+
+    private static byte[] write(final AbstractJackson2HttpMessageConverter converter, final OrderTO order,
+                                final MediaType mediaType) throws Exception {
+        var value = new MappingJacksonValue(order);
+        value.setSerializationView(View.Read.class);
+        var outputMessage = new MockHttpOutputMessage();
+        converter.write(value, OrderTO.class, mediaType, outputMessage);
+        return outputMessage.getBodyAsBytes();
+    }
+
+    private static OrderTO order(final int items) {
+        var orderItems = new ArrayList<OrderItemTO>();
+        for (int i = 0; i < items; i++) {
+            orderItems.add(OrderItemTO.builder().code(UUID.randomUUID()).productCode("PRODUCT" + i).quantity(i + 1)
+                    .unitPrice(new BigDecimal("10.99")).totalPrice(new BigDecimal("10.99").multiply(BigDecimal.valueOf(i + 1)))
+                    .build());
+        }
+        return OrderTO.builder().code(UUID.randomUUID()).status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("1000.00")).items(orderItems).build();
+    }
+}
@@ -0,0 +1,122 @@
+package group.rohlik.grocerymanager.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonInputMessage;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the ViewCachingJackson2HttpMessageConverter class.
+ *
+ * @author Tomas Kramec
+ */
+class ViewCachingJackson2HttpMessageConverterTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ViewCachingJackson2HttpMessageConverter converter = new ViewCachingJackson2HttpMessageConverter(objectMapper);
+    private final MappingJackson2HttpMessageConverter defaultConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+
+    @Test
+    void write_withView_sameOutputAsDefaultConverter() throws Exception {
+        var order = OrderTO.builder()
+                .code(UUID.randomUUID())
+                .status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("21.98"))
+                .items(List.of(OrderItemTO.builder().code(UUID.randomUUID()).productCode("P1").quantity(2)
+                        .unitPrice(new BigDecimal("10.99")).totalPrice(new BigDecimal("21.98")).build()))
+                .build();
+
+        assertThat(write(converter, order, OrderTO.class)).isEqualTo(write(defaultConverter, order, OrderTO.class));
+    }
+
+    @Test
+    void write_listWithView_sameOutputAsDefaultConverter() throws Exception {
+        var products = List.of(ProductTO.builder().code("P1").name("Product 1").stockQuantity(1)
+                .pricePerUnit(BigDecimal.TEN).build());
+        var type = new ParameterizedTypeReference<List<ProductTO>>() {
+        }.getType();
+
+        var json = write(converter, products, type);
+
+        assertThat(json).isEqualTo(write(defaultConverter, products, type));
+        assertThat(json).contains("\"archived\":false");
+    }
+
+    @Test
+    void getWriter_samePair_reusesWriter() {
+        var javaType = objectMapper.constructType(OrderTO.class);
+
+        assertThat(converter.getWriter(javaType, View.Read.class)).isSameAs(converter.getWriter(javaType, View.Read.class));
+        assertThat(converter.getWriter(javaType, View.Read.class)).isNotSameAs(converter.getWriter(javaType, View.Create.class));
+    }
+
+    @Test
+    void read_withView_ignoresPropertiesOutsideView() throws Exception {
+        var json = "{\"code\":\"" + UUID.randomUUID() + "\",\"items\":[{\"productCode\":\"P1\",\"quantity\":2,\"unitPrice\":1}]}";
+
+        var order = (OrderTO) converter.read(OrderTO.class, null, input(json, MediaType.APPLICATION_JSON));
+
+        assertThat(order.getCode()).isNull();
+        assertThat(order.getItems()).singleElement().satisfies(item -> {
+            assertThat(item.getProductCode()).isEqualTo("P1");
+            assertThat(item.getQuantity()).isEqualTo(2);
+            assertThat(item.getUnitPrice()).isNull();
+        });
+    }
+
+    @Test
+    void read_malformedJson_throwsNotReadable() {
+        assertThatThrownBy(() -> converter.read(OrderTO.class, null, input("{\"items\":[", MediaType.APPLICATION_JSON)))
+                .isInstanceOf(HttpMessageNotReadableException.class)
+                .hasMessageStartingWith("JSON parse error");
+    }
+
+    @Test
+    void read_otherCharset_delegatesToDefaultConverter() throws Exception {
+        var contentType = new MediaType(MediaType.APPLICATION_JSON, StandardCharsets.ISO_8859_1);
+
+        var product = (ProductTO) converter.read(ProductTO.class, null,
+                input("{\"code\":\"P1\",\"name\":\"Product 1\",\"archived\":true}", contentType));
+
+        assertThat(product.getCode()).isEqualTo("P1");
+        assertThat(product.getName()).isEqualTo("Product 1");
+        assertThat(product.isArchived()).isFalse();
+    }
+
+    private static String write(final MappingJackson2HttpMessageConverter converter, final Object value,
+                                final java.lang.reflect.Type type) throws Exception {
+        var jacksonValue = new MappingJacksonValue(value);
+        jacksonValue.setSerializationView(View.Read.class);
+        var outputMessage = new MockHttpOutputMessage();
+        converter.write(jacksonValue, type, MediaType.APPLICATION_JSON, outputMessage);
+        return outputMessage.getBodyAsString(StandardCharsets.UTF_8);
+    }
+
+    private static MappingJacksonInputMessage input(final String json, final MediaType contentType) {
+        var headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        return new MappingJacksonInputMessage(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                headers, View.Create.class);
+    }
+}
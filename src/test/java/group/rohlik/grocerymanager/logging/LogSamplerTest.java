@@ -0,0 +1,53 @@
+package group.rohlik.grocerymanager.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the LogSampler class.
+ *
+ * @author Tomas Kramec
+ */
+class LogSamplerTest {
+
+    @Test
+    void tryAcquire_disabled_alwaysLogs() {
+        var sampler = new LogSampler(false, 1, Duration.ofSeconds(1));
+        for (int i = 0; i < 100; i++) {
+            assertThat(sampler.tryAcquire()).isTrue();
+        }
+        assertThat(sampler.getAndResetSuppressed()).isZero();
+    }
+
+    @Test
+    void tryAcquire_limitReached_suppressesAndCounts() {
+        var clock = new AtomicLong();
+        var sampler = new LogSampler(true, 2, Duration.ofSeconds(1), clock::get);
+
+        assertThat(sampler.tryAcquire()).isTrue();
+        assertThat(sampler.tryAcquire()).isTrue();
+        assertThat(sampler.tryAcquire()).isFalse();
+        assertThat(sampler.tryAcquire()).isFalse();
+
+        assertThat(sampler.getAndResetSuppressed()).isEqualTo(2);
+        assertThat(sampler.getAndResetSuppressed()).isZero();
+    }
+
+    @Test
+    void tryAcquire_nextInterval_logsAgain() {
+        var clock = new AtomicLong();
+        var sampler = new LogSampler(true, 1, Duration.ofSeconds(1), clock::get);
+
+        assertThat(sampler.tryAcquire()).isTrue();
+        assertThat(sampler.tryAcquire()).isFalse();
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        assertThat(sampler.tryAcquire()).isTrue();
+        assertThat(sampler.tryAcquire()).isFalse();
+    }
+}
@@ -0,0 +1,111 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.Application;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.service.OrderArchiveService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = Application.class)
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@Transactional
+class OrderArchiveRepositoryTest {
+
+    @Autowired
+    private IOrderArchiveRepository orderArchiveRepository;
+    @Autowired
+    private IOrderRepository orderRepository;
+    @Autowired
+    private IProductRepository productRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    private Order createOrder(String productCode, OrderStatus status) {
+        final Product product = new Product();
+        product.setName("Test Product");
+        product.setCode(productCode);
+        product.setArchived(false);
+        product.setPricePerUnit(BigDecimal.TEN);
+        product.setStockQuantity(100);
+        productRepository.saveAndFlush(product);
+
+        Order order = new Order();
+        order.setStatus(status);
+        order.setTotalAmount(new BigDecimal("20.00"));
+        order.setExpiresAt(LocalDateTime.now().plusMinutes(30));
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(2);
+        item.setUnitPrice(product.getPricePerUnit());
+        item.setTotalPrice(new BigDecimal("20.00"));
+        order.setItems(List.of(item));
+        return orderRepository.saveAndFlush(order);
+    }
+
+    @Test
+    @DisplayName("findIdsToArchive returns only finished orders changed before the threshold")
+    void findIdsToArchive_finishedOrdersBeforeThreshold() {
+        var paid = createOrder("A1", OrderStatus.PAID);
+        var pending = createOrder("A2", OrderStatus.PENDING);
+        var expired = createOrder("A3", OrderStatus.EXPIRED);
+
+        var future = Date.from(Instant.now().plus(1, ChronoUnit.MINUTES));
+        var past = Date.from(Instant.now().minus(1, ChronoUnit.DAYS));
+
+        assertThat(orderRepository.findIdsToArchive(OrderArchiveService.ARCHIVED_ORDER_STATUSES, future,
+                PageRequest.ofSize(10)))
+                .containsExactly(paid.getId(), expired.getId())
+                .doesNotContain(pending.getId());
+        assertThat(orderRepository.findIdsToArchive(OrderArchiveService.ARCHIVED_ORDER_STATUSES, past,
+                PageRequest.ofSize(10)))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("move statements transfer an order with its items to the archive")
+    void moveToArchive_orderReadableFromArchiveOnly() {
+        var order = createOrder("A4", OrderStatus.PAID);
+        var orderIds = List.of(order.getId());
+        entityManager.clear();
+
+        assertThat(orderArchiveRepository.copyOrders(orderIds)).isEqualTo(1);
+        assertThat(orderArchiveRepository.copyOrderItems(orderIds)).isEqualTo(1);
+        assertThat(orderArchiveRepository.deleteOrderItems(orderIds)).isEqualTo(1);
+        assertThat(orderArchiveRepository.deleteOrders(orderIds)).isEqualTo(1);
+        entityManager.clear();
+
+        assertThat(orderRepository.findByCodeWithItems(order.getCode())).isEmpty();
+        var archived = orderArchiveRepository.findByCodeWithItems(order.getCode()).orElseThrow();
+        assertThat(archived.getId()).isEqualTo(order.getId());
+        assertThat(archived.getStatus()).isEqualTo(OrderStatus.PAID);
+        assertThat(archived.getTotalAmount()).isEqualByComparingTo("20.00");
+        assertThat(archived.getArchivedAt()).isNotNull();
+        assertThat(archived.getItems()).singleElement()
+                .satisfies(item -> {
+                    assertThat(item.getProductCode()).isEqualTo("A4");
+                    assertThat(item.getQuantity()).isEqualTo(2);
+                });
+        assertThat(orderArchiveRepository.existsByProductCode("A4")).isTrue();
+        assertThat(orderArchiveRepository.existsByProductCode("A1")).isFalse();
+    }
+}
@@ -0,0 +1,72 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.Application;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.event.OrderEventType;
+import group.rohlik.grocerymanager.model.OrderOutboxEvent;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = Application.class)
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@Transactional
+class OrderOutboxRepositoryTest {
+
+    @Autowired
+    private IOrderOutboxRepository orderOutboxRepository;
+
+    private OrderOutboxEvent createEvent(UUID orderCode, OrderEventType type, LocalDateTime occurredAt) {
+        return orderOutboxRepository.saveAndFlush(OrderOutboxEvent.builder()
+                .orderId(1L)
+                .orderCode(orderCode)
+                .eventType(type)
+                .orderStatus(OrderStatus.PENDING)
+                .totalAmount(BigDecimal.TEN)
+                .occurredAt(occurredAt)
+                .build());
+    }
+
+    @Test
+    @DisplayName("findNextBatchForUpdate returns the oldest events in insertion order")
+    void findNextBatchForUpdate_returnsOldestEvents() {
+        var code = UUID.randomUUID();
+        var created = createEvent(code, OrderEventType.CREATED, LocalDateTime.now().minusMinutes(2));
+        var paid = createEvent(code, OrderEventType.PAID, LocalDateTime.now().minusMinutes(1));
+        createEvent(UUID.randomUUID(), OrderEventType.CREATED, LocalDateTime.now());
+
+        var batch = orderOutboxRepository.findNextBatchForUpdate(PageRequest.ofSize(2));
+
+        assertThat(batch).containsExactly(created, paid);
+    }
+
+    @Test
+    @DisplayName("Event ids are taken one at a time from the sequence, not from pooled blocks")
+    void save_idsNotPooled() {
+        var first = createEvent(UUID.randomUUID(), OrderEventType.CREATED, LocalDateTime.now());
+        var second = createEvent(UUID.randomUUID(), OrderEventType.CREATED, LocalDateTime.now());
+
+        assertThat(second.getId()).isEqualTo(first.getId() + 1);
+    }
+
+    @Test
+    @DisplayName("findOldestOccurredAt returns the time of the oldest event")
+    void findOldestOccurredAt_returnsOldest() {
+        var oldest = LocalDateTime.now().minusMinutes(5).withNano(0);
+        createEvent(UUID.randomUUID(), OrderEventType.CREATED, oldest);
+        createEvent(UUID.randomUUID(), OrderEventType.CREATED, LocalDateTime.now());
+
+        assertThat(orderOutboxRepository.findOldestOccurredAt()).contains(oldest);
+    }
+}
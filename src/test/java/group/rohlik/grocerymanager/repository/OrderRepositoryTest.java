@@ -6,6 +6,9 @@ import group.rohlik.grocerymanager.model.Order;
 import group.rohlik.grocerymanager.model.OrderItem;
 import group.rohlik.grocerymanager.model.OrderStatus;
 import group.rohlik.grocerymanager.model.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,6 +34,8 @@ class OrderRepositoryTest {
     private IOrderRepository orderRepository;
     @Autowired
     private IProductRepository productRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
 
 //    @AfterEach
 //    void tearDown() {
@@ -61,6 +67,29 @@ class OrderRepositoryTest {
         return order;
     }
 
+    @Test
+    @DisplayName("saveAndFlush inserts an order with its items without reading generated codes back")
+    void saveAndFlush_orderWithItems_insertsOnly() {
+        final Product product = productRepository.saveAndFlush(Product.builder().code("P1").name("Test Product")
+                .stockQuantity(100).pricePerUnit(BigDecimal.TEN).build());
+        final Order order = Order.builder().status(OrderStatus.PENDING).totalAmount(new BigDecimal("100.00"))
+                .expiresAt(LocalDateTime.now().plusMinutes(30)).items(new ArrayList<>()).build();
+        for (int i = 0; i < 10; i++) {
+            order.getItems().add(OrderItem.builder().order(order).product(product).quantity(1)
+                    .unitPrice(BigDecimal.TEN).totalPrice(BigDecimal.TEN).build());
+        }
+        final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        orderRepository.saveAndFlush(order);
+
+        assertThat(order.getCode()).isNotNull();
+        assertThat(order.getItems()).allSatisfy(item -> assertThat(item.getCode()).isNotNull());
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(11);
+        // one batched insert per table plus at most one pooled sequence call per table, 14 with DB generated codes
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+    }
+
     @Test
     @DisplayName("findByIdsWithItems returns orders with items")
     void findByIdsWithItems_returnsOrdersWithItems() {
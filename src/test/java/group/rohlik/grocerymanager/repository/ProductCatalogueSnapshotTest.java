@@ -0,0 +1,113 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductSnapshotRow;
+import group.rohlik.grocerymanager.event.ProductChangedEvent;
+import group.rohlik.grocerymanager.event.StockChangedEvent;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.property.CatalogueSnapshotProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the ProductCatalogueSnapshot class.
+ *
+ * @author Tomas Kramec
+ */
+class ProductCatalogueSnapshotTest {
+
+    private final IProductRepository productRepository = mock(IProductRepository.class);
+    private final CatalogueSnapshotProperties properties = new CatalogueSnapshotProperties();
+    private ProductCatalogueSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        snapshot = new ProductCatalogueSnapshot(productRepository, properties, new SimpleMeterRegistry());
+        when(productRepository.streamSnapshotRows()).thenReturn(Stream.of(
+                new ProductSnapshotRow("MILK1", "Milk", 100, 0, BigDecimal.TEN, false, 1L),
+                new ProductSnapshotRow("BREAD1", "Bread", 50, 0, BigDecimal.ONE, true, 0L)));
+    }
+
+    @Test
+    void rebuild_disabled_notReady() {
+        properties.setEnabled(false);
+
+        snapshot.rebuild();
+
+        assertThat(snapshot.isReady()).isFalse();
+        assertThat(snapshot.getProduct("MILK1")).isEmpty();
+        assertThat(snapshot.streamRows(false)).isEmpty();
+    }
+
+    @Test
+    void rebuild_servesProductsSortedByName() {
+        snapshot.rebuild();
+
+        assertThat(snapshot.isReady()).isTrue();
+        assertThat(snapshot.getProduct("MILK1")).hasValueSatisfying(product -> {
+            assertThat(product.getStockQuantity()).isEqualTo(100);
+            assertThat(product.getVersion()).isEqualTo(1);
+        });
+        assertThat(snapshot.streamRows(false).toList()).extracting(ProductRow::code).containsExactly("BREAD1", "MILK1");
+        assertThat(snapshot.streamRows(true).toList()).extracting(ProductRow::code).containsExactly("MILK1");
+    }
+
+    @Test
+    void streamRows_readsAllChunksInNameOrder() {
+        when(productRepository.streamSnapshotRows()).thenReturn(IntStream.range(0, 1000)
+                .mapToObj(i -> new ProductSnapshotRow("P" + i, "Product " + (999 - i), i, 0, BigDecimal.ONE, i % 2 == 0, 0L)));
+        snapshot.rebuild();
+
+        try (var rows = snapshot.streamRows(true)) {
+            assertThat(rows.toList()).hasSize(500)
+                    .allSatisfy(row -> assertThat(row.archived()).isFalse())
+                    .isSortedAccordingTo(Comparator.comparing(ProductRow::name));
+        }
+        assertThat(snapshot.streamRows(false).count()).isEqualTo(1000);
+    }
+
+    @Test
+    void onStockChanged_overlaysStock() {
+        snapshot.rebuild();
+
+        snapshot.onStockChanged(new StockChangedEvent("MILK1", -5, 95, 2L));
+        snapshot.onStockChanged(new StockChangedEvent("MILK1", -5, 90, 1L)); // late event of an older version
+
+        assertThat(snapshot.getProduct("MILK1")).hasValueSatisfying(product -> {
+            assertThat(product.getStockQuantity()).isEqualTo(95);
+            assertThat(product.getVersion()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void onProductChanged_reloadsOrRemoves() {
+        snapshot.rebuild();
+        var product = Product.builder().code("MILK1").name("Whole milk").stockQuantity(80)
+                .pricePerUnit(BigDecimal.TWO).build();
+        product.setVersion(3L);
+        when(productRepository.findByCode("MILK1")).thenReturn(Optional.of(product));
+        when(productRepository.findByCode("BREAD1")).thenReturn(Optional.empty());
+
+        snapshot.onProductChanged(new ProductChangedEvent("MILK1"));
+        snapshot.onProductChanged(new ProductChangedEvent("BREAD1"));
+
+        assertThat(snapshot.getProduct("MILK1")).hasValueSatisfying(loaded -> {
+            assertThat(loaded.getName()).isEqualTo("Whole milk");
+            assertThat(loaded.getStockQuantity()).isEqualTo(80);
+            assertThat(loaded.getVersion()).isEqualTo(3);
+        });
+        assertThat(snapshot.getProduct("BREAD1")).isEmpty();
+    }
+}
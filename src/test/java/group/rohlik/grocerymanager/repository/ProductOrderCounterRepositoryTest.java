@@ -0,0 +1,206 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.Application;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.model.ProductOrderCounter;
+import group.rohlik.grocerymanager.service.IProductOrderCounterService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = Application.class)
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@Transactional
+class ProductOrderCounterRepositoryTest {
+
+    @Autowired
+    private IProductOrderCounterRepository productOrderCounterRepository;
+    @Autowired
+    private IOrderRepository orderRepository;
+    @Autowired
+    private IProductRepository productRepository;
+    @Autowired
+    private IProductOrderCounterService productOrderCounterService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManager entityManager;
+
+    private Product createProduct(String code) {
+        final Product product = new Product();
+        product.setName("Test Product");
+        product.setCode(code);
+        product.setArchived(false);
+        product.setPricePerUnit(BigDecimal.TEN);
+        product.setStockQuantity(100);
+        return productRepository.saveAndFlush(product);
+    }
+
+    private Order createOrder(Product product, OrderStatus status, int items) {
+        Order order = new Order();
+        order.setStatus(status);
+        order.setTotalAmount(BigDecimal.TEN.multiply(BigDecimal.valueOf(items)));
+        order.setExpiresAt(LocalDateTime.now().plusMinutes(30));
+        var orderItems = new ArrayList<OrderItem>();
+        for (int i = 0; i < items; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(1);
+            item.setUnitPrice(product.getPricePerUnit());
+            item.setTotalPrice(product.getPricePerUnit());
+            orderItems.add(item);
+        }
+        order.setItems(orderItems);
+        return orderRepository.saveAndFlush(order);
+    }
+
+    @Test
+    @DisplayName("add creates the counter row and then adds the deltas")
+    void add_createsAndUpdatesCounter() {
+        var product = createProduct("C1");
+
+        productOrderCounterRepository.add(product.getId(), 0, 2, 0);
+        productOrderCounterRepository.add(product.getId(), 0, -1, 1);
+        entityManager.clear();
+
+        var counter = productOrderCounterRepository.findByProductCode("C1").orElseThrow();
+        assertThat(counter.getActiveOrderItems()).isEqualTo(1);
+        assertThat(counter.getFinishedOrderItems()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("the counters of a product are read summed over its shards")
+    void findByProductId_sumsShards() {
+        var product = createProduct("C6");
+
+        productOrderCounterRepository.add(product.getId(), 0, 1, 0);
+        productOrderCounterRepository.add(product.getId(), 1, 2, 0);
+        productOrderCounterRepository.add(product.getId(), 3, -1, 1);
+        entityManager.clear();
+
+        var counter = productOrderCounterRepository.findByProductId(product.getId()).orElseThrow();
+        assertThat(counter.getActiveOrderItems()).isEqualTo(2);
+        assertThat(counter.getFinishedOrderItems()).isEqualTo(1);
+        assertThat(productOrderCounterRepository.findByProductCode("C6")).get()
+                .satisfies(byCode -> assertThat(byCode.getActiveOrderItems()).isEqualTo(2));
+    }
+
+    @Test
+    @DisplayName("reconcile corrects the sum of the shards in shard zero and keeps the other shards")
+    void reconcile_shardedCounter_correctsShardZero() {
+        var product = createProduct("C7");
+        createOrder(product, OrderStatus.PENDING, 3);
+        productOrderCounterRepository.add(product.getId(), 0, 1, 0);
+        productOrderCounterRepository.add(product.getId(), 2, 4, 0);
+
+        assertThat(productOrderCounterRepository.reconcile()).isPositive();
+        entityManager.clear();
+
+        var counter = productOrderCounterRepository.findByProductId(product.getId()).orElseThrow();
+        assertThat(counter.getActiveOrderItems()).isEqualTo(3);
+        assertThat(productOrderCounterRepository.findById(new ProductOrderCounter.Key(product.getId(), 2)))
+                .get().satisfies(shard -> assertThat(shard.getActiveOrderItems()).isEqualTo(4));
+        assertThat(productOrderCounterRepository.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("finishPaidOrders moves only the items of paid orders to the finished counter")
+    void finishPaidOrders_movesPaidItems() {
+        var product = createProduct("C2");
+        var paid = createOrder(product, OrderStatus.PAID, 2);
+        var expired = createOrder(product, OrderStatus.EXPIRED, 1);
+        productOrderCounterRepository.add(product.getId(), 0, 2, 1);
+
+        productOrderCounterRepository.finishPaidOrders(List.of(paid.getId(), expired.getId()));
+        entityManager.clear();
+
+        var counter = productOrderCounterRepository.findByProductId(product.getId()).orElseThrow();
+        assertThat(counter.getActiveOrderItems()).isZero();
+        assertThat(counter.getFinishedOrderItems()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("reconcile recounts drifted and missing counters from the orders")
+    void reconcile_correctsDriftedCounters() {
+        var drifted = createProduct("C3");
+        var missing = createProduct("C4");
+        createOrder(drifted, OrderStatus.PENDING, 1);
+        createOrder(drifted, OrderStatus.PAID, 2);
+        createOrder(drifted, OrderStatus.CANCELED, 1);
+        createOrder(missing, OrderStatus.EXPIRED, 2);
+        productOrderCounterRepository.add(drifted.getId(), 0, 7, 0);
+        productOrderCounterRepository.reconcile();
+        entityManager.clear();
+
+        var driftedCounter = productOrderCounterRepository.findByProductId(drifted.getId()).orElseThrow();
+        assertThat(driftedCounter.getActiveOrderItems()).isEqualTo(3);
+        assertThat(driftedCounter.getFinishedOrderItems()).isEqualTo(1);
+        var missingCounter = productOrderCounterRepository.findByProductId(missing.getId()).orElseThrow();
+        assertThat(missingCounter.getActiveOrderItems()).isZero();
+        assertThat(missingCounter.getFinishedOrderItems()).isEqualTo(2);
+
+        assertThat(productOrderCounterRepository.reconcile()).isZero();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("reconcile waits for the counter updates of uncommitted orders instead of overwriting them")
+    void reconcile_concurrentOrder_keepsIncrement() throws Exception {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        var product = transactionTemplate.execute(status -> {
+            var created = createProduct("C5");
+            productOrderCounterRepository.add(created.getId(), 0, 0, 0);
+            return created;
+        });
+        var counted = new CountDownLatch(1);
+        var commit = new CountDownLatch(1);
+        var order = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            createOrder(product, OrderStatus.PENDING, 2);
+            productOrderCounterRepository.add(product.getId(), 0, 2, 0);
+            counted.countDown();
+            awaitQuietly(commit);
+        }));
+        assertThat(counted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        var reconcile = CompletableFuture.supplyAsync(productOrderCounterService::reconcile);
+        Thread.sleep(300); // the reconcile starts while the order is not committed
+        commit.countDown();
+        order.get(10, TimeUnit.SECONDS);
+        reconcile.get(10, TimeUnit.SECONDS);
+
+        var counter = productOrderCounterRepository.findByProductId(product.getId()).orElseThrow();
+        assertThat(counter.getActiveOrderItems()).isEqualTo(2);
+        assertThat(counter.getFinishedOrderItems()).isZero();
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
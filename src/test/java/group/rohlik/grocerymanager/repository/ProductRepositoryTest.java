@@ -2,8 +2,11 @@ package group.rohlik.grocerymanager.repository;
 
 import group.rohlik.grocerymanager.Application;
 import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.dto.ProductIdRow;
+import group.rohlik.grocerymanager.dto.ProductRow;
 import group.rohlik.grocerymanager.model.Product;
 import jakarta.persistence.EntityManager;
+import org.assertj.core.api.recursive.comparison.RecursiveComparisonConfiguration;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,6 +18,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -55,6 +59,23 @@ class ProductRepositoryTest {
         assertThat(found.get().getCode()).isEqualTo("P1");
     }
 
+    @Test
+    @DisplayName("findByIdForUpdate and streamIdRows skip archived products")
+    void findByIdForUpdate_streamIdRows_skipArchived() {
+        Product active = Product.builder().code("ID_1").name("Product 1").stockQuantity(1).pricePerUnit(BigDecimal.TEN).build();
+        Product archived = Product.builder().code("ID_2").name("Product 2").stockQuantity(1).pricePerUnit(BigDecimal.TEN)
+                .archived(true).build();
+        productRepository.save(active);
+        productRepository.save(archived);
+
+        assertThat(productRepository.findByIdForUpdate(active.getId())).map(Product::getCode).hasValue("ID_1");
+        assertThat(productRepository.findByIdForUpdate(archived.getId())).isEmpty();
+        try (var rows = productRepository.streamIdRows()) {
+            assertThat(rows.filter(row -> row.code().startsWith("ID_")))
+                    .containsExactly(new ProductIdRow(active.getId(), "ID_1"));
+        }
+    }
+
     @Test
     @DisplayName("findAllByArchived returns only archived or not archived products")
     void findAllByArchived_returnsCorrectProducts() {
@@ -79,6 +100,32 @@ class ProductRepositoryTest {
                 .extracting(Product::getCode).containsExactly("P2");
     }
 
+    @Test
+    @DisplayName("streamRowsByArchived returns projections sorted by name")
+    void streamRowsByArchived_returnsSortedProjections() {
+        for (var code : List.of("STREAM_3", "STREAM_1", "STREAM_2")) {
+            Product product = new Product();
+            product.setCode(code);
+            product.setName("Streamed " + code);
+            product.setStockQuantity(3);
+            product.setPricePerUnit(new BigDecimal("10.00"));
+            product.setArchived("STREAM_3".equals(code));
+            productRepository.save(product);
+        }
+
+        try (var rows = productRepository.streamRowsByArchived(false)) {
+            assertThat(rows.filter(row -> row.code().startsWith("STREAM_")))
+                    .usingRecursiveFieldByFieldElementComparator(RecursiveComparisonConfiguration.builder()
+                            .withComparatorForType(BigDecimal::compareTo, BigDecimal.class).build())
+                    .containsExactly(new ProductRow("STREAM_1", "Streamed STREAM_1", 3, 0, new BigDecimal("10.00"), false),
+                            new ProductRow("STREAM_2", "Streamed STREAM_2", 3, 0, new BigDecimal("10.00"), false));
+        }
+        try (var rows = productRepository.streamAllRows()) {
+            assertThat(rows.filter(row -> row.code().startsWith("STREAM_")).map(ProductRow::code))
+                    .containsExactly("STREAM_1", "STREAM_2", "STREAM_3");
+        }
+    }
+
     @Test
     @DisplayName("archiveByCode sets archived to true")
     void archiveByCode_setsArchived() {
@@ -95,6 +142,26 @@ class ProductRepositoryTest {
         assertThat(updated.isArchived()).isTrue();
     }
 
+    @Test
+    @DisplayName("version is incremented by updates and by archiveByCode")
+    void version_incrementedOnUpdateAndArchive() {
+        Product product = new Product();
+        product.setCode("P1");
+        product.setName("Product 1");
+        product.setStockQuantity(1);
+        product.setPricePerUnit(BigDecimal.TEN);
+        product = productRepository.saveAndFlush(product);
+        assertThat(product.getVersion()).isZero();
+
+        product.setStockQuantity(2);
+        product = productRepository.saveAndFlush(product);
+        assertThat(product.getVersion()).isEqualTo(1);
+
+        productRepository.archiveByCode("P1");
+        entityManager.detach(product);
+        assertThat(productRepository.findByCode("P1").orElseThrow().getVersion()).isEqualTo(2);
+    }
+
     @Test
     @DisplayName("deleteByCode removes product")
     void deleteByCode_removesProduct() {
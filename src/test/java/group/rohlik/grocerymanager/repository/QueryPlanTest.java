@@ -0,0 +1,467 @@
+package group.rohlik.grocerymanager.repository;
+
+import group.rohlik.grocerymanager.Application;
+import group.rohlik.grocerymanager.RunProfile;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.service.OrderArchiveService;
+import group.rohlik.grocerymanager.service.ProductService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query plan regression tests: every query of the order, product, product stock and reservation hold repositories is run
+ * against a seeded
+ * database, the statements Hibernate sends are recorded with their parameters and explained by H2,
+ * a plan with a table scan fails the test. The database is separate from the other tests and analyzed
+ * after seeding, so H2 chooses the plans by the real selectivity of the indexes.
+ * <p>
+ * Not covered are the reads of whole tables by design: the product streams of all rows, ids and snapshot rows,
+ * the partitioned products read at startup and the hold expiry rows feeding the in-memory indexes, the most ordered products
+ * preloaded at startup, sorted by the counters of all products, the locking and reconciliation of the product order counters
+ * and the outbox, whose relay reads the head of an always drained table by the primary key.
+ *
+ * @author Tomas Kramec
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = Application.class,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:query-plan;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "spring.liquibase.url=jdbc:h2:mem:query-plan;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+        })
+@ActiveProfiles(profiles = {RunProfile.TEST})
+@Import(QueryPlanTest.StatementRecorderConfiguration.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final long FIRST_ID = 10_000_000L;
+    private static final int PRODUCTS = 20_000;
+    private static final int ORDERED_PRODUCTS = 10_000;
+    private static final int ORDERS = 50_000;
+    private static final int ARCHIVED_ORDERS = 10_000;
+    private static final int HOLDS = 20_000;
+    private static final int PARTITIONED_PRODUCTS = 2_500;
+    private static final int STOCK_LOCATIONS = 8;
+
+    private static final ThreadLocal<List<RecordedStatement>> RECORDED = new ThreadLocal<>();
+
+    @Autowired
+    private IProductRepository productRepository;
+    @Autowired
+    private IOrderRepository orderRepository;
+    @Autowired
+    private IExpireOrderRepository expireOrderRepository;
+    @Autowired
+    private IOrderArchiveRepository orderArchiveRepository;
+    @Autowired
+    private IProductOrderCounterRepository productOrderCounterRepository;
+    @Autowired
+    private IReservationHoldRepository reservationHoldRepository;
+    @Autowired
+    private IProductStockRepository productStockRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UUID orderCode;
+    private UUID archivedOrderCode;
+    private UUID holdCode;
+
+    @BeforeAll
+    void seed() throws SQLException {
+        try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+            statement.execute("INSERT INTO GM_PRODUCT (ID, CODE, NAME, STOCK_QUANTITY, UNIT_PRICE, ARCHIVED) "
+                    + "SELECT " + FIRST_ID + " + X, 'QP' || X, 'Product ' || RANDOM_UUID(), 1000, 9.99, MOD(X, 20) = 0 "
+                    + "FROM SYSTEM_RANGE(1, " + PRODUCTS + ")");
+            statement.execute("INSERT INTO GM_ORDER (ID, CODE, STATUS, TOTAL_AMOUNT, EXPIRES_AT) "
+                    + "SELECT " + FIRST_ID + " + X, RANDOM_UUID(), "
+                    + "CASE WHEN MOD(X, 50) = 0 THEN 'PENDING' WHEN MOD(X, 3) = 0 THEN 'PAID' "
+                    + "WHEN MOD(X, 3) = 1 THEN 'EXPIRED' ELSE 'CANCELED' END, 19.98, CURRENT_TIMESTAMP "
+                    + "FROM SYSTEM_RANGE(1, " + ORDERS + ")");
+            statement.execute("INSERT INTO GM_ORDER_ITEM (ID, CODE, ORDER_ID, PRODUCT_ID, QUANTITY, UNIT_PRICE, TOTAL_PRICE) "
+                    + "SELECT " + FIRST_ID + " + X, RANDOM_UUID(), " + FIRST_ID + " + (X + 1) / 2, "
+                    + FIRST_ID + " + MOD(X, " + ORDERED_PRODUCTS + ") + 1, 1, 9.99, 9.99 "
+                    + "FROM SYSTEM_RANGE(1, " + 2 * ORDERS + ")");
+            statement.execute("INSERT INTO GM_ORDER_ARCHIVE (ID, CODE, STATUS, TOTAL_AMOUNT, EXPIRES_AT) "
+                    + "SELECT X, RANDOM_UUID(), 'PAID', 9.99, CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, " + ARCHIVED_ORDERS + ")");
+            statement.execute("INSERT INTO GM_ORDER_ITEM_ARCHIVE (ID, CODE, ORDER_ID, PRODUCT_ID, PRODUCT_CODE, QUANTITY, "
+                    + "UNIT_PRICE, TOTAL_PRICE) SELECT X, RANDOM_UUID(), X, " + FIRST_ID + " + X, 'QP' || X, 1, 9.99, 9.99 "
+                    + "FROM SYSTEM_RANGE(1, " + ARCHIVED_ORDERS + ")");
+            statement.execute("INSERT INTO GM_PRODUCT_ORDER_COUNTER (PRODUCT_ID) SELECT ID FROM GM_PRODUCT");
+            statement.execute("INSERT INTO GM_RESERVATION_HOLD (ID, CODE, PRODUCT_ID, QUANTITY, CREATED_AT, EXPIRES_AT) "
+                    + "SELECT " + FIRST_ID + " + X, RANDOM_UUID(), " + FIRST_ID + " + MOD(X, " + ORDERED_PRODUCTS + ") + 1, 1, "
+                    + "CURRENT_TIMESTAMP, DATEADD('SECOND', X, CURRENT_TIMESTAMP) FROM SYSTEM_RANGE(1, " + HOLDS + ")");
+            statement.execute("UPDATE GM_PRODUCT SET STOCK_PARTITIONED = TRUE WHERE ID <= " + (FIRST_ID + PARTITIONED_PRODUCTS));
+            statement.execute("INSERT INTO GM_PRODUCT_STOCK (ID, PRODUCT_ID, LOCATION_CODE, QUANTITY) "
+                    + "SELECT " + FIRST_ID + " + X, " + FIRST_ID + " + MOD(X, " + PARTITIONED_PRODUCTS + ") + 1, "
+                    + "'L' || (X / " + PARTITIONED_PRODUCTS + "), 100 "
+                    + "FROM SYSTEM_RANGE(0, " + (PARTITIONED_PRODUCTS * STOCK_LOCATIONS - 1) + ")");
+            statement.execute("ANALYZE");
+            try (var resultSet = statement.executeQuery("SELECT CODE FROM GM_ORDER WHERE ID = " + (FIRST_ID + 50))) {
+                resultSet.next();
+                orderCode = resultSet.getObject(1, UUID.class);
+            }
+            try (var resultSet = statement.executeQuery("SELECT CODE FROM GM_ORDER_ARCHIVE WHERE ID = 1")) {
+                resultSet.next();
+                archivedOrderCode = resultSet.getObject(1, UUID.class);
+            }
+            try (var resultSet = statement.executeQuery("SELECT CODE FROM GM_RESERVATION_HOLD WHERE ID = " + (FIRST_ID + 7))) {
+                resultSet.next();
+                holdCode = resultSet.getObject(1, UUID.class);
+            }
+        }
+    }
+
+    @Test
+    void productRepository_findByCodeForUpdate() {
+        assertNoTableScan(() -> productRepository.findByCodeForUpdate("QP7"));
+    }
+
+    @Test
+    void productRepository_findByIdForUpdate() {
+        assertNoTableScan(() -> productRepository.findByIdForUpdate(FIRST_ID + 7));
+    }
+
+    @Test
+    void productRepository_findAllByArchived() {
+        assertNoTableScan(() -> productRepository.findAllByArchived(true, Sort.by("name")));
+    }
+
+    @Test
+    void productRepository_findAllByArchivedLimited() {
+        assertNoTableScan(() -> productRepository.findAllByArchived(false, Sort.by("name"), Limit.of(1000)));
+    }
+
+    @Test
+    void productRepository_streamRowsByArchived() {
+        assertNoTableScan(() -> {
+            try (var rows = productRepository.streamRowsByArchived(true)) {
+                rows.forEach(row -> { });
+            }
+        });
+    }
+
+    @Test
+    void productRepository_findByCode() {
+        assertNoTableScan(() -> productRepository.findByCode("QP7"));
+    }
+
+    @Test
+    void productRepository_archiveByCode() {
+        assertNoTableScan(() -> productRepository.archiveByCode("QP7"));
+    }
+
+    @Test
+    void productRepository_deleteByCode() {
+        assertNoTableScan(() -> {
+            productRepository.deleteByCode("QP" + PRODUCTS);
+            entityManager.flush();
+        });
+    }
+
+    @Test
+    void productRepository_existsByCodeAndArchived() {
+        assertNoTableScan(() -> productRepository.existsByCodeAndArchived("QP7", false));
+    }
+
+    @Test
+    void productRepository_existsByCode() {
+        assertNoTableScan(() -> productRepository.existsByCode("QP7"));
+    }
+
+    @Test
+    void orderRepository_findByIdsWithItems() {
+        assertNoTableScan(() -> orderRepository.findByIdsWithItems(List.of(FIRST_ID + 1, FIRST_ID + 2, FIRST_ID + 3)));
+    }
+
+    @Test
+    void orderRepository_existsByProductCodeAndStatusIn() {
+        assertNoTableScan(() -> orderRepository.existsByProductCodeAndStatusIn("QP7",
+                ProductService.ACTIVE_ORDER_STATUSES));
+    }
+
+    @Test
+    void orderRepository_findByCodeWithItems() {
+        assertNoTableScan(() -> orderRepository.findByCodeWithItems(orderCode));
+    }
+
+    @Test
+    void orderRepository_findStateByCode() {
+        assertNoTableScan(() -> orderRepository.findStateByCode(orderCode));
+    }
+
+    @Test
+    void orderRepository_findStatesByIds() {
+        assertNoTableScan(() -> orderRepository.findStatesByIds(List.of(FIRST_ID + 1, FIRST_ID + 2, FIRST_ID + 3)));
+    }
+
+    @Test
+    void orderRepository_findItemsByOrderIds() {
+        assertNoTableScan(() -> orderRepository.findItemsByOrderIds(List.of(FIRST_ID + 1, FIRST_ID + 2, FIRST_ID + 3)));
+    }
+
+    @Test
+    void orderRepository_findItemTOsByOrderId() {
+        assertNoTableScan(() -> orderRepository.findItemTOsByOrderId(FIRST_ID + 1));
+    }
+
+    @Test
+    void orderRepository_updateStatus() {
+        assertNoTableScan(() -> orderRepository.updateStatus(FIRST_ID + 7, OrderStatus.PENDING, 0L,
+                OrderStatus.PAID, new Date(), "TestUser"));
+    }
+
+    @Test
+    void orderRepository_findIdsToArchive() {
+        assertNoTableScan(() -> orderRepository.findIdsToArchive(OrderArchiveService.ARCHIVED_ORDER_STATUSES,
+                Date.from(Instant.now().minus(30, ChronoUnit.DAYS)), PageRequest.ofSize(500)));
+    }
+
+    @Test
+    void expireOrderRepository_getToExpire() {
+        assertNoTableScan(() -> expireOrderRepository.getToExpire(Date.from(Instant.now()),
+                Date.from(Instant.now().minus(4, ChronoUnit.HOURS)), Set.of(OrderStatus.PENDING), 250, 1000));
+    }
+
+    @Test
+    void orderArchiveRepository_findByCodeWithItems() {
+        assertNoTableScan(() -> orderArchiveRepository.findByCodeWithItems(archivedOrderCode));
+    }
+
+    @Test
+    void orderArchiveRepository_existsByProductCode() {
+        assertNoTableScan(() -> orderArchiveRepository.existsByProductCode("QP7"));
+    }
+
+    @Test
+    void orderArchiveRepository_moveStatements() {
+        var orderIds = List.of(FIRST_ID + 3, FIRST_ID + 6);
+        assertNoTableScan(() -> {
+            orderArchiveRepository.copyOrders(orderIds);
+            orderArchiveRepository.copyOrderItems(orderIds);
+            orderArchiveRepository.deleteOrderItems(orderIds);
+            orderArchiveRepository.deleteOrders(orderIds);
+        });
+    }
+
+    @Test
+    void productOrderCounterRepository_findByProductId() {
+        assertNoTableScan(() -> productOrderCounterRepository.findByProductId(FIRST_ID + 7));
+    }
+
+    @Test
+    void productOrderCounterRepository_findByProductCode() {
+        assertNoTableScan(() -> productOrderCounterRepository.findByProductCode("QP7"));
+    }
+
+    @Test
+    void productOrderCounterRepository_add() {
+        assertNoTableScan(() -> productOrderCounterRepository.add(FIRST_ID + 7, 0, 1, 0));
+    }
+
+    @Test
+    void productOrderCounterRepository_finishPaidOrders() {
+        assertNoTableScan(() -> productOrderCounterRepository.finishPaidOrders(List.of(FIRST_ID + 3, FIRST_ID + 6)));
+    }
+
+    @Test
+    void reservationHoldRepository_findByCodeForUpdate() {
+        assertNoTableScan(() -> reservationHoldRepository.findByCodeForUpdate(holdCode));
+    }
+
+    @Test
+    void reservationHoldRepository_findExpiredByCodesForUpdate() {
+        assertNoTableScan(() -> reservationHoldRepository.findExpiredByCodesForUpdate(List.of(holdCode),
+                LocalDateTime.now().plusHours(1)));
+    }
+
+    @Test
+    void reservationHoldRepository_findExpiredCodes() {
+        assertNoTableScan(() -> reservationHoldRepository.findExpiredCodes(LocalDateTime.now().plusSeconds(10),
+                Limit.of(500)));
+    }
+
+    @Test
+    void reservationHoldRepository_deleteByIds() {
+        assertNoTableScan(() -> reservationHoldRepository.deleteByIds(List.of(FIRST_ID + 3, FIRST_ID + 6)));
+    }
+
+    @Test
+    void reservationHoldRepository_existsLiveByProductCode() {
+        assertNoTableScan(() -> reservationHoldRepository.existsLiveByProductCode("QP7", LocalDateTime.now()));
+    }
+
+    @Test
+    void reservationHoldRepository_deleteExpiredByProductCode() {
+        assertNoTableScan(() -> reservationHoldRepository.deleteExpiredByProductCode("QP7", LocalDateTime.now()));
+    }
+
+    @Test
+    void productRepository_refreshStockQuantities() {
+        assertNoTableScan(() -> productRepository.refreshStockQuantities(List.of(FIRST_ID + 3, FIRST_ID + 6)));
+    }
+
+    @Test
+    void productStockRepository_findRowsByProductId() {
+        assertNoTableScan(() -> productStockRepository.findRowsByProductId(FIRST_ID + 7));
+    }
+
+    @Test
+    void productStockRepository_findByProductIdForUpdate() {
+        assertNoTableScan(() -> productStockRepository.findByProductIdForUpdate(FIRST_ID + 7));
+    }
+
+    @Test
+    void productStockRepository_findByIdForUpdate() {
+        assertNoTableScan(() -> productStockRepository.findByIdForUpdate(FIRST_ID + 7));
+    }
+
+    @Test
+    void productStockRepository_findByIdForUpdateSkipLocked() {
+        assertNoTableScan(() -> productStockRepository.findByIdForUpdateSkipLocked(FIRST_ID + 7));
+    }
+
+    /**
+     * Runs the repository call in a transaction which is rolled back, explains every statement it sent
+     * and fails on a plan which scans a table.
+     */
+    private void assertNoTableScan(final Runnable repositoryCall) {
+        var recorded = new ArrayList<RecordedStatement>();
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            RECORDED.set(recorded);
+            try {
+                repositoryCall.run();
+            } finally {
+                RECORDED.remove();
+                status.setRollbackOnly();
+            }
+        });
+        assertThat(recorded).as("recorded statements").isNotEmpty();
+        for (RecordedStatement statement : recorded) {
+            assertThat(explain(statement)).as("plan of %s", statement.sql()).doesNotContain(".tableScan");
+        }
+    }
+
+    private String explain(final RecordedStatement recordedStatement) {
+        try (var connection = dataSource.getConnection();
+             var statement = connection.prepareStatement("EXPLAIN " + recordedStatement.sql())) {
+            for (Invocation parameter : recordedStatement.parameters()) {
+                parameter.method().invoke(statement, parameter.args());
+            }
+            try (var resultSet = statement.executeQuery()) {
+                var plan = new StringBuilder();
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+                return plan.toString();
+            }
+        } catch (SQLException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot explain " + recordedStatement.sql(), e);
+        }
+    }
+
+    private record Invocation(Method method, Object[] args) {
+    }
+
+    private record RecordedStatement(String sql, List<Invocation> parameters) {
+    }
+
+    /**
+     * Wraps the data source, so the prepared statements executed while {@link #RECORDED} is set
+     * are recorded with their parameters.
+     */
+    @TestConfiguration
+    static class StatementRecorderConfiguration {
+
+        @Bean
+        static BeanPostProcessor statementRecordingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+                    if (bean instanceof DataSource target && !(bean instanceof DelegatingDataSource)) {
+                        return new DelegatingDataSource(target) {
+                            @Override
+                            public Connection getConnection() throws SQLException {
+                                return recordingConnection(super.getConnection());
+                            }
+                        };
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static Connection recordingConnection(final Connection connection) {
+            return (Connection) Proxy.newProxyInstance(QueryPlanTest.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        var result = invoke(connection, method, args);
+                        if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                            return recordingStatement(statement, (String) args[0]);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement recordingStatement(final PreparedStatement statement, final String sql) {
+            var parameters = new ArrayList<Invocation>();
+            return (PreparedStatement) Proxy.newProxyInstance(QueryPlanTest.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        var name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                            parameters.add(new Invocation(method, args.clone()));
+                        } else if (name.equals("clearParameters")) {
+                            parameters.clear();
+                        } else if (name.startsWith("execute") || name.equals("addBatch")) {
+                            var recorded = RECORDED.get();
+                            if (recorded != null) {
+                                recorded.add(new RecordedStatement(sql, List.copyOf(parameters)));
+                            }
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderTO;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.exception.OrderNotFoundException;
+import group.rohlik.grocerymanager.property.AsyncReadProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the AsyncReadService class.
+ *
+ * @author Tomas Kramec
+ */
+class AsyncReadServiceTest {
+
+    private final IProductService productService = mock(IProductService.class);
+    private final IOrderService orderService = mock(IOrderService.class);
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("product");
+    private final AsyncReadProperties asyncReadProperties = new AsyncReadProperties();
+    private AsyncReadService asyncReadService;
+
+    @BeforeEach
+    void setUp() {
+        asyncReadProperties.setMaxConcurrency(1);
+        asyncReadProperties.setTimeout(Duration.ofMillis(500));
+        asyncReadService = new AsyncReadService(productService, orderService, cacheManager, asyncReadProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncReadService.shutdown();
+    }
+
+    @Test
+    void getProductByCode_cached_completedWithoutServiceCall() {
+        var productTO = ProductTO.builder().code("P1").build();
+        cacheManager.getCache("product").put("P1", productTO);
+
+        var future = asyncReadService.getProductByCode("P1");
+
+        assertThat(future).isCompletedWithValue(productTO);
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void getProductByCode_notCached_readsFromService() {
+        var productTO = ProductTO.builder().code("P1").build();
+        when(productService.getProductByCode("P1")).thenReturn(productTO);
+
+        assertThat(asyncReadService.getProductByCode("P1").join()).isEqualTo(productTO);
+        verify(productService).getProductByCode("P1");
+    }
+
+    @Test
+    void getAllProducts_readsFromService() {
+        var products = List.of(ProductTO.builder().code("P1").build());
+        when(productService.getAllProducts(true)).thenReturn(products);
+
+        assertThat(asyncReadService.getAllProducts(true).join()).isEqualTo(products);
+    }
+
+    @Test
+    void getOrderByCode_notFound_completedExceptionally() {
+        var code = UUID.randomUUID();
+        when(orderService.getOrderByCode(code)).thenThrow(new OrderNotFoundException("Order not found"));
+
+        assertThatThrownBy(() -> asyncReadService.getOrderByCode(code).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(OrderNotFoundException.class);
+    }
+
+    @Test
+    void getOrderByCode_readTooSlow_timesOutAndInterruptsRead() throws Exception {
+        var interrupted = new CountDownLatch(1);
+        var code = UUID.randomUUID();
+        when(orderService.getOrderByCode(code)).thenAnswer(invocation -> {
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return null;
+        }).thenReturn(OrderTO.builder().code(code).build());
+
+        assertThatThrownBy(() -> asyncReadService.getOrderByCode(code).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+
+        // the timed out read is interrupted and gives its permit back
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(asyncReadService.getOrderByCode(code).join().getCode()).isEqualTo(code);
+    }
+
+    @Test
+    void getOrderByCode_concurrencyExhausted_timesOut() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var code = UUID.randomUUID();
+        when(orderService.getOrderByCode(code)).thenAnswer(invocation -> {
+            started.countDown();
+            // a read which does not respond to the interrupt keeps its permit
+            while (true) {
+                try {
+                    release.await();
+                    return OrderTO.builder().code(code).build();
+                } catch (InterruptedException e) {
+                    // ignored like by a blocking driver call
+                }
+            }
+        });
+
+        var first = asyncReadService.getOrderByCode(code);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> asyncReadService.getOrderByCode(code).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        verify(orderService, times(1)).getOrderByCode(code);
+
+        // the permit is given back once the blocked read finishes, even though its caller already timed out
+        release.countDown();
+        assertThatThrownBy(first::join).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(asyncReadService.getOrderByCode(code).join().getCode()).isEqualTo(code);
+    }
+}
@@ -0,0 +1,125 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.property.OrderArchiveProperties;
+import group.rohlik.grocerymanager.repository.IOrderArchiveRepository;
+import group.rohlik.grocerymanager.repository.IOrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the OrderArchiveService class.
+ *
+ * @author Tomas Kramec
+ */
+class OrderArchiveServiceTest {
+
+    @Mock
+    private IOrderRepository orderRepository;
+    @Mock
+    private IOrderArchiveRepository orderArchiveRepository;
+    @Mock
+    private IProductOrderCounterService productOrderCounterService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OrderArchiveProperties orderArchiveProperties = new OrderArchiveProperties();
+
+    private OrderArchiveService orderArchiveService;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        orderArchiveProperties.setChunkSize(2);
+        orderArchiveProperties.setMaxChunksPerRun(10);
+        orderArchiveProperties.setThrottle(Duration.ZERO);
+        orderArchiveService = new OrderArchiveService(orderRepository, orderArchiveRepository, productOrderCounterService,
+                orderArchiveProperties, transactionManager, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void archiveNextChunk_nothingToArchive_movesNothing() {
+        when(orderRepository.findIdsToArchive(anyList(), any(Date.class), any(Pageable.class))).thenReturn(List.of());
+
+        int archived = orderArchiveService.archiveNextChunk(new Date());
+
+        assertThat(archived).isZero();
+        verifyNoInteractions(orderArchiveRepository, productOrderCounterService);
+    }
+
+    @Test
+    void archiveNextChunk_copiesBeforeDeleting() {
+        var orderIds = List.of(1L, 2L);
+        when(orderRepository.findIdsToArchive(anyList(), any(Date.class), any(Pageable.class))).thenReturn(orderIds);
+        when(orderArchiveRepository.deleteOrders(orderIds)).thenReturn(2);
+
+        int archived = orderArchiveService.archiveNextChunk(new Date());
+
+        assertThat(archived).isEqualTo(2);
+        InOrder inOrder = inOrder(productOrderCounterService, orderArchiveRepository);
+        inOrder.verify(productOrderCounterService).ordersArchived(orderIds);
+        inOrder.verify(orderArchiveRepository).copyOrders(orderIds);
+        inOrder.verify(orderArchiveRepository).copyOrderItems(orderIds);
+        inOrder.verify(orderArchiveRepository).deleteOrderItems(orderIds);
+        inOrder.verify(orderArchiveRepository).deleteOrders(orderIds);
+        assertThat(meterRegistry.get("gm.order.archive.archived").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void archiveFinishedOrders_movesChunksUntilLastPartialChunk() {
+        when(orderRepository.findIdsToArchive(anyList(), any(Date.class), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+        when(orderArchiveRepository.deleteOrders(anyList())).thenReturn(2, 2, 1);
+
+        int archived = orderArchiveService.archiveFinishedOrders();
+
+        assertThat(archived).isEqualTo(5);
+        verify(orderRepository, times(3)).findIdsToArchive(anyList(), any(Date.class), any(Pageable.class));
+    }
+
+    @Test
+    void archiveFinishedOrders_stopsAtMaxChunksPerRun() {
+        orderArchiveProperties.setMaxChunksPerRun(2);
+        when(orderRepository.findIdsToArchive(anyList(), any(Date.class), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L));
+        when(orderArchiveRepository.deleteOrders(anyList())).thenReturn(2);
+
+        int archived = orderArchiveService.archiveFinishedOrders();
+
+        assertThat(archived).isEqualTo(4);
+        verify(orderRepository, times(2)).findIdsToArchive(anyList(), any(Date.class), any(Pageable.class));
+    }
+
+    @Test
+    void archiveFinishedOrders_disabled_archivesNothing() {
+        orderArchiveProperties.setEnabled(false);
+
+        int archived = orderArchiveService.archiveFinishedOrders();
+
+        assertThat(archived).isZero();
+        verifyNoInteractions(orderRepository, orderArchiveRepository);
+    }
+}
@@ -0,0 +1,141 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.event.IOrderEventSink;
+import group.rohlik.grocerymanager.event.OrderEvent;
+import group.rohlik.grocerymanager.event.OrderEventType;
+import group.rohlik.grocerymanager.model.OrderOutboxEvent;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.property.OrderOutboxProperties;
+import group.rohlik.grocerymanager.repository.IOrderOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the OrderOutboxService class.
+ *
+ * @author Tomas Kramec
+ */
+class OrderOutboxServiceTest {
+
+    @Mock
+    private IOrderOutboxRepository orderOutboxRepository;
+    @Mock
+    private IOrderEventSink orderEventSink;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OrderOutboxProperties orderOutboxProperties = new OrderOutboxProperties();
+
+    private OrderOutboxService orderOutboxService;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        orderOutboxProperties.setBatchSize(2);
+        orderOutboxProperties.setMaxBatchesPerRun(10);
+        orderOutboxService = new OrderOutboxService(orderOutboxRepository, orderEventSink, orderOutboxProperties,
+                transactionManager, meterRegistry);
+        when(orderOutboxRepository.findOldestOccurredAt()).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    private OrderOutboxEvent outboxEvent(long id, UUID orderCode, OrderEventType type) {
+        return OrderOutboxEvent.builder()
+                .id(id)
+                .orderId(1L)
+                .orderCode(orderCode)
+                .eventType(type)
+                .orderStatus(OrderStatus.PENDING)
+                .totalAmount(BigDecimal.TEN)
+                .occurredAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    void publishNextBatch_emptyOutbox_publishesNothing() throws Exception {
+        when(orderOutboxRepository.findNextBatchForUpdate(any(Pageable.class))).thenReturn(List.of());
+
+        int published = orderOutboxService.publishNextBatch();
+
+        assertThat(published).isZero();
+        verify(orderEventSink, never()).publish(anyList());
+    }
+
+    @Test
+    void publishNextBatch_publishesInOrderAndDeletes() throws Exception {
+        var code = UUID.randomUUID();
+        var batch = List.of(outboxEvent(1L, code, OrderEventType.CREATED), outboxEvent(2L, code, OrderEventType.PAID));
+        when(orderOutboxRepository.findNextBatchForUpdate(any(Pageable.class))).thenReturn(batch);
+
+        int published = orderOutboxService.publishNextBatch();
+
+        assertThat(published).isEqualTo(2);
+        verify(orderEventSink).publish(List.of(batch.get(0).toOrderEvent(), batch.get(1).toOrderEvent()));
+        verify(orderOutboxRepository).deleteAllInBatch(batch);
+        assertThat(meterRegistry.get("gm.outbox.relay.published").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void relay_sinkFails_keepsEventsInOutbox() throws Exception {
+        var batch = List.of(outboxEvent(1L, UUID.randomUUID(), OrderEventType.CREATED));
+        when(orderOutboxRepository.findNextBatchForUpdate(any(Pageable.class))).thenReturn(batch);
+        doThrow(new IOException("Sink unavailable")).when(orderEventSink).publish(anyList());
+
+        int published = orderOutboxService.relay();
+
+        assertThat(published).isZero();
+        verify(orderOutboxRepository, never()).deleteAllInBatch(any());
+        assertThat(meterRegistry.get("gm.outbox.relay.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void relay_drainsBatchesUntilOutboxIsEmpty() throws Exception {
+        var code = UUID.randomUUID();
+        var firstBatch = List.of(outboxEvent(1L, code, OrderEventType.CREATED), outboxEvent(2L, code, OrderEventType.PAID));
+        var secondBatch = List.of(outboxEvent(3L, UUID.randomUUID(), OrderEventType.CREATED));
+        when(orderOutboxRepository.findNextBatchForUpdate(any(Pageable.class))).thenReturn(firstBatch, secondBatch);
+        when(orderOutboxRepository.findOldestOccurredAt()).thenReturn(Optional.of(LocalDateTime.now().minusSeconds(5)));
+
+        int published = orderOutboxService.relay();
+
+        assertThat(published).isEqualTo(3);
+        verify(orderEventSink, times(2)).publish(anyList());
+        assertThat(meterRegistry.get("gm.outbox.relay.lag").gauge().value()).isGreaterThanOrEqualTo(5000);
+    }
+
+    @Test
+    void toOrderEvent_mapsAllFields() {
+        var outboxEvent = outboxEvent(1L, UUID.randomUUID(), OrderEventType.EXPIRED);
+
+        OrderEvent event = outboxEvent.toOrderEvent();
+
+        assertThat(event.orderCode()).isEqualTo(outboxEvent.getOrderCode());
+        assertThat(event.type()).isEqualTo(OrderEventType.EXPIRED);
+        assertThat(event.totalAmount()).isEqualTo(BigDecimal.TEN);
+    }
+}
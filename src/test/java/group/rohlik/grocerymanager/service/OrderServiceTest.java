@@ -1,24 +1,35 @@
 package group.rohlik.grocerymanager.service;
 
 import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.OrderStateRow;
 import group.rohlik.grocerymanager.dto.OrderTO;
-import group.rohlik.grocerymanager.exception.InvalidOrderStatusException;
+import group.rohlik.grocerymanager.event.OrderEvent;
+import group.rohlik.grocerymanager.event.OrderEventType;
 import group.rohlik.grocerymanager.exception.OrderExpiredException;
 import group.rohlik.grocerymanager.exception.OrderNotFoundException;
+import group.rohlik.grocerymanager.exception.ProductNotFoundException;
 import group.rohlik.grocerymanager.mapper.IOrderMapper;
+import group.rohlik.grocerymanager.model.ArchivedOrder;
 import group.rohlik.grocerymanager.model.Order;
 import group.rohlik.grocerymanager.model.OrderItem;
 import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.model.OrderTransition;
 import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.model.ReservationHold;
 import group.rohlik.grocerymanager.property.ExpireOrderScheduleProperties;
+import group.rohlik.grocerymanager.property.OrderArchiveProperties;
 import group.rohlik.grocerymanager.repository.IExpireOrderRepository;
+import group.rohlik.grocerymanager.repository.IOrderArchiveRepository;
 import group.rohlik.grocerymanager.repository.IOrderRepository;
+import group.rohlik.grocerymanager.util.UuidUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -31,6 +42,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -45,11 +59,23 @@ class OrderServiceTest {
     @Mock
     private ProductService productService;
     @Mock
+    private IProductOrderCounterService productOrderCounterService;
+    @Mock
     private IOrderMapper orderMapper;
     @Mock
     private IExpireOrderRepository expireOrderRepository;
     @Mock
     private ExpireOrderScheduleProperties expireOrderScheduleProperties;
+    @Mock
+    private IOrderArchiveRepository orderArchiveRepository;
+    @Mock
+    private OrderArchiveProperties orderArchiveProperties;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private IOrderStateMachine orderStateMachine;
+    @Mock
+    private IReservationHoldService reservationHoldService;
 
     @InjectMocks
     private OrderService orderService;
@@ -63,6 +89,8 @@ class OrderServiceTest {
         when(expireOrderScheduleProperties.getBottomThreshold()).thenReturn(java.time.Duration.ofMinutes(10));
         when(expireOrderScheduleProperties.getBatchUpdateSize()).thenReturn(100);
         when(expireOrderScheduleProperties.getMaxSize()).thenReturn(1000);
+        when(orderArchiveProperties.isEnabled()).thenReturn(true);
+        when(orderArchiveProperties.getRetention()).thenReturn(java.time.Duration.ofDays(30));
     }
 
     @AfterEach
@@ -106,7 +134,71 @@ class OrderServiceTest {
         assertThat(result).isNotNull();
         verify(productService).reserveStock("P1", 2);
         verify(orderRepository).saveAndFlush(any(Order.class));
+        verify(productOrderCounterService).orderCreated(order);
         verify(orderMapper).toOrderTO(any(Order.class));
+        verify(eventPublisher).publishEvent(argThat((OrderEvent event) ->
+                event.type() == OrderEventType.CREATED && event.orderCode().equals(order.getCode())));
+    }
+
+    @Test
+    void createOrder_multipleItems_sumsTotals() {
+        OrderItemTO milk = new OrderItemTO();
+        milk.setProductCode("P1");
+        milk.setQuantity(3);
+        OrderItemTO bread = new OrderItemTO();
+        bread.setProductCode("P2");
+        bread.setQuantity(2);
+        when(productService.reserveStock("P1", 3))
+                .thenReturn(Product.builder().code("P1").pricePerUnit(new BigDecimal("10.99")).build());
+        when(productService.reserveStock("P2", 2))
+                .thenReturn(Product.builder().code("P2").pricePerUnit(new BigDecimal("34.5000")).build());
+        when(orderRepository.saveAndFlush(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(orderMapper.toOrderTO(any(Order.class))).thenReturn(new OrderTO());
+
+        OrderTO orderTO = new OrderTO();
+        orderTO.setItems(List.of(milk, bread));
+        orderService.createOrder(orderTO);
+
+        verify(orderRepository).saveAndFlush(argThat((Order order) ->
+                order.getTotalAmount().equals(new BigDecimal("101.97"))
+                        && order.getItems().get(0).getTotalPrice().equals(new BigDecimal("32.97"))
+                        && order.getItems().get(1).getTotalPrice().equals(new BigDecimal("69.00"))));
+    }
+
+    @Test
+    void createOrderFromHold_takesOverHeldStock() {
+        var holdCode = UUID.randomUUID();
+        var milk = Product.builder().code("P1").pricePerUnit(new BigDecimal("10.99")).build();
+        var bread = Product.builder().code("P2").pricePerUnit(new BigDecimal("34.50")).build();
+        when(reservationHoldService.claimHold(holdCode)).thenReturn(List.of(
+                ReservationHold.builder().code(holdCode).product(milk).quantity(3).build(),
+                ReservationHold.builder().code(holdCode).product(bread).quantity(2).build()));
+        when(orderRepository.saveAndFlush(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(orderMapper.toOrderTO(any(Order.class))).thenReturn(new OrderTO());
+
+        orderService.createOrderFromHold(holdCode);
+
+        verify(productService, never()).reserveStock(any(), anyInt());
+        verify(orderRepository).saveAndFlush(argThat((Order order) ->
+                order.getStatus() == OrderStatus.PENDING
+                        && order.getTotalAmount().equals(new BigDecimal("101.97"))
+                        && order.getItems().size() == 2
+                        && order.getItems().get(0).getProduct() == milk
+                        && order.getItems().get(1).getQuantity() == 2));
+        verify(productOrderCounterService).orderCreated(any(Order.class));
+        verify(eventPublisher).publishEvent(argThat((OrderEvent event) -> event.type() == OrderEventType.CREATED));
+    }
+
+    @Test
+    void createOrderFromHold_archivedProduct_throwsException() {
+        var holdCode = UUID.randomUUID();
+        var product = Product.builder().code("P1").pricePerUnit(BigDecimal.TEN).archived(true).build();
+        when(reservationHoldService.claimHold(holdCode)).thenReturn(List.of(
+                ReservationHold.builder().code(holdCode).product(product).quantity(1).build()));
+
+        assertThatThrownBy(() -> orderService.createOrderFromHold(holdCode))
+                .isInstanceOf(ProductNotFoundException.class);
+        verify(orderRepository, never()).saveAndFlush(any(Order.class));
     }
 
     @Test
@@ -123,131 +215,92 @@ class OrderServiceTest {
                 .isInstanceOf(IllegalArgumentException.class);
     }
 
+    private OrderStateRow state(final UUID code, final OrderStatus status, final LocalDateTime expiresAt) {
+        return new OrderStateRow(1L, code, status, 0L, BigDecimal.TEN, expiresAt);
+    }
+
     @Test
     void payOrder_success() {
         UUID code = UUID.randomUUID();
-        Order order = Order.builder()
-                .code(code)
-                .status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().plusMinutes(30))
-                .build();
+        OrderStateRow order = state(code, OrderStatus.PENDING, LocalDateTime.now().plusMinutes(30));
+        OrderStateRow paidOrder = order.withStatus(OrderStatus.PAID);
 
-        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.of(order));
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderMapper.toOrderTO(any(Order.class))).thenReturn(new OrderTO());
+        when(orderRepository.findStateByCode(code)).thenReturn(Optional.of(order));
+        when(orderStateMachine.fire(order, OrderTransition.PAY)).thenReturn(paidOrder);
+        List<OrderItemTO> items = List.of(OrderItemTO.builder().code(UUID.randomUUID()).quantity(2).build());
+        when(orderRepository.findItemTOsByOrderId(1L)).thenReturn(items);
+        when(orderMapper.toOrderTO(paidOrder, items)).thenReturn(OrderTO.builder().items(items).build());
 
         OrderTO result = orderService.payOrder(code);
 
-        assertThat(result).isNotNull();
-        assertThat(order.getStatus()).isEqualTo(OrderStatus.PAID);
-        verify(orderRepository).save(order);
+        assertThat(result.getItems()).isEqualTo(items);
+        verify(orderStateMachine).fire(order, OrderTransition.PAY);
+        verify(orderRepository, never()).findByCodeWithItems(any());
     }
 
     @Test
-    void payOrder_expired_releaseStockAndThrowsException() {
+    void payOrder_expired_expiresOrderAndThrowsException() {
         UUID code = UUID.randomUUID();
-        Order order = Order.builder()
-                .code(code)
-                .items(List.of(
-                        OrderItem.builder().product(Product.builder().code("P1").build()).quantity(2).build()
-                ))
-                .status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().minusMinutes(1))
-                .build();
+        OrderStateRow order = state(code, OrderStatus.PENDING, LocalDateTime.now().minusMinutes(1));
 
-        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.of(order));
+        when(orderRepository.findStateByCode(code)).thenReturn(Optional.of(order));
 
         assertThatThrownBy(() -> orderService.payOrder(code))
                 .isInstanceOf(OrderExpiredException.class);
 
-        verify(productService).releaseStock("P1", 2);
+        verify(orderStateMachine).fire(order, OrderTransition.EXPIRE);
+        verify(orderStateMachine, never()).fire(order, OrderTransition.PAY);
     }
 
     @Test
-    void payOrder_expired_throwsException() {
+    void payOrder_alreadyExpired_throwsException() {
         UUID code = UUID.randomUUID();
-        Order order = Order.builder()
-                .code(code)
-                .items(Collections.emptyList())
-                .status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().minusMinutes(1))
-                .build();
+        OrderStateRow order = state(code, OrderStatus.EXPIRED, LocalDateTime.now().minusMinutes(1));
 
-        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.of(order));
+        when(orderRepository.findStateByCode(code)).thenReturn(Optional.of(order));
 
         assertThatThrownBy(() -> orderService.payOrder(code))
                 .isInstanceOf(OrderExpiredException.class);
+        verify(orderStateMachine, never()).fire(any(), any());
     }
 
     @Test
-    void payOrder_invalidStatus_throwsException() {
+    void payOrder_notFound_throwsException() {
         UUID code = UUID.randomUUID();
-        Order order = Order.builder()
-                .code(code)
-                .status(OrderStatus.PAID)
-                .expiresAt(LocalDateTime.now().plusMinutes(30))
-                .build();
-
-        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.of(order));
+        when(orderRepository.findStateByCode(code)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> orderService.payOrder(code))
-                .isInstanceOf(InvalidOrderStatusException.class);
+                .isInstanceOf(OrderNotFoundException.class);
     }
 
     @Test
     void cancelOrder_success() {
         UUID code = UUID.randomUUID();
-        Product product = Product.builder().code("P1").build();
-        OrderItem item = OrderItem.builder().product(product).quantity(2).build();
-        Order order = Order.builder()
-                .code(code)
-                .status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().plusMinutes(30))
-                .items(List.of(item))
-                .build();
+        OrderStateRow order = state(code, OrderStatus.PENDING, LocalDateTime.now().plusMinutes(30));
+        OrderStateRow canceledOrder = order.withStatus(OrderStatus.CANCELED);
 
-        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.of(order));
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(orderMapper.toOrderTO(any(Order.class))).thenReturn(new OrderTO());
+        when(orderRepository.findStateByCode(code)).thenReturn(Optional.of(order));
+        when(orderStateMachine.fire(order, OrderTransition.CANCEL)).thenReturn(canceledOrder);
+        List<OrderItemTO> items = List.of(OrderItemTO.builder().code(UUID.randomUUID()).quantity(2).build());
+        when(orderRepository.findItemTOsByOrderId(1L)).thenReturn(items);
+        when(orderMapper.toOrderTO(canceledOrder, items)).thenReturn(OrderTO.builder().items(items).build());
 
         OrderTO result = orderService.cancelOrder(code);
 
-        assertThat(result).isNotNull();
-        assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELED);
-        verify(productService).releaseStock("P1", 2);
-        verify(orderRepository).save(order);
+        assertThat(result.getItems()).isEqualTo(items);
+        verify(orderStateMachine).fire(order, OrderTransition.CANCEL);
     }
 
     @Test
     void cancelOrder_expired_throwsException() {
         UUID code = UUID.randomUUID();
-        Order order = Order.builder()
-                .code(code)
-                .status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().minusMinutes(1))
-                .items(List.of())
-                .build();
+        OrderStateRow order = state(code, OrderStatus.PENDING, LocalDateTime.now().minusMinutes(1));
 
-        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.of(order));
+        when(orderRepository.findStateByCode(code)).thenReturn(Optional.of(order));
 
         assertThatThrownBy(() -> orderService.cancelOrder(code))
                 .isInstanceOf(OrderExpiredException.class);
-    }
-
-    @Test
-    void cancelOrder_invalidStatus_throwsException() {
-        UUID code = UUID.randomUUID();
-        Order order = Order.builder()
-                .code(code)
-                .status(OrderStatus.PAID)
-                .expiresAt(LocalDateTime.now().plusMinutes(30))
-                .items(List.of())
-                .build();
-
-        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.of(order));
-
-        assertThatThrownBy(() -> orderService.cancelOrder(code))
-                .isInstanceOf(InvalidOrderStatusException.class);
+        verify(orderStateMachine).fire(order, OrderTransition.EXPIRE);
     }
 
     @Test
@@ -273,39 +326,62 @@ class OrderServiceTest {
                 .isInstanceOf(OrderNotFoundException.class);
     }
 
+    @Test
+    void getOrderByCode_notInHotTables_readsArchive() {
+        UUID code = UuidUtil.timeOrdered();
+        ArchivedOrder archivedOrder = ArchivedOrder.builder().code(code).status(OrderStatus.PAID).build();
+        when(orderRepository.findByCodeWithItems(code)).thenReturn(Optional.empty());
+        when(orderArchiveRepository.findByCodeWithItems(code)).thenReturn(Optional.of(archivedOrder));
+        when(orderMapper.toOrderTO(archivedOrder)).thenReturn(OrderTO.builder().code(code).build());
+
+        OrderTO result = orderService.getOrderByCode(code);
+
+        assertThat(result.getCode()).isEqualTo(code);
+        verify(orderRepository).findByCodeWithItems(code);
+    }
+
+    @Test
+    void getOrderByCode_codeOlderThanRetention_readsArchiveFirst() {
+        var createdAt = System.currentTimeMillis() - java.time.Duration.ofDays(31).toMillis();
+        UUID code = new UUID((createdAt << 16) | 0x7000L, 0x8000000000000001L);
+        ArchivedOrder archivedOrder = ArchivedOrder.builder().code(code).status(OrderStatus.EXPIRED).build();
+        when(orderArchiveRepository.findByCodeWithItems(code)).thenReturn(Optional.of(archivedOrder));
+        when(orderMapper.toOrderTO(archivedOrder)).thenReturn(OrderTO.builder().code(code).build());
+
+        OrderTO result = orderService.getOrderByCode(code);
+
+        assertThat(result.getCode()).isEqualTo(code);
+        verify(orderRepository, never()).findByCodeWithItems(any());
+    }
+
     @Test
     void expirePendingOrders_shouldExpireOrders() {
         List<Long> orderIds = List.of(1L, 2L, 3L);
         when(expireOrderRepository.getToExpire(any(), any(), any(), anyInt(), anyInt()))
                 .thenReturn(orderIds);
 
-        Order order1 = Order.builder().id(1L).status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().minusMinutes(5))
-                .items(List.of(OrderItem.builder().product(Product.builder().code("P1").build()).quantity(1).build()))
-                .build();
-        Order order2 = Order.builder().id(2L).status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().minusMinutes(5))
-                .items(List.of(OrderItem.builder().product(Product.builder().code("P2").build()).quantity(2).build()))
-                .build();
-        Order order3 = Order.builder().id(3L).status(OrderStatus.PENDING)
-                .expiresAt(LocalDateTime.now().minusMinutes(5))
-                .items(List.of(OrderItem.builder().product(Product.builder().code("P3").build()).quantity(3).build()))
-                .build();
-
-        when(orderRepository.findByIdsWithItems(any())).thenReturn(List.of(order1, order2, order3));
-        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        OrderStateRow order1 = new OrderStateRow(1L, UUID.randomUUID(), OrderStatus.PENDING, 0L, BigDecimal.TEN,
+                LocalDateTime.now().minusMinutes(5));
+        OrderStateRow order2 = new OrderStateRow(2L, UUID.randomUUID(), OrderStatus.PENDING, 0L, BigDecimal.TEN,
+                LocalDateTime.now().minusMinutes(5));
+        OrderStateRow paidOrder = new OrderStateRow(3L, UUID.randomUUID(), OrderStatus.PAID, 1L, BigDecimal.TEN,
+                LocalDateTime.now().minusMinutes(5));
+        OrderItem item1 = OrderItem.builder().order(Order.builder().id(1L).build())
+                .product(Product.builder().code("P1").build()).quantity(1).build();
+        OrderItem item2 = OrderItem.builder().order(Order.builder().id(2L).build())
+                .product(Product.builder().code("P2").build()).quantity(2).build();
+
+        when(orderRepository.findStatesByIds(any())).thenReturn(List.of(order1, order2, paidOrder));
+        when(orderRepository.findItemsByOrderIds(any())).thenReturn(List.of(item1, item2));
+        when(orderStateMachine.fire(eq(order1), eq(OrderTransition.EXPIRE), any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Order.class, 1L));
 
         orderService.expirePendingOrders();
 
-        assertThat(order1.getStatus()).isEqualTo(OrderStatus.EXPIRED);
-        verify(productService).releaseStock("P1", 1);
-        verify(orderRepository).save(order1);
-        assertThat(order2.getStatus()).isEqualTo(OrderStatus.EXPIRED);
-        verify(productService).releaseStock("P2", 2);
-        verify(orderRepository).save(order2);
-        assertThat(order3.getStatus()).isEqualTo(OrderStatus.EXPIRED);
-        verify(productService).releaseStock("P3", 3);
-        verify(orderRepository).save(order3);
+        verify(orderStateMachine).fire(order1, OrderTransition.EXPIRE, List.of(item1));
+        verify(orderStateMachine).fire(order2, OrderTransition.EXPIRE, List.of(item2));
+        verify(orderStateMachine, never()).fire(eq(paidOrder), any(), any());
+        verify(orderRepository, never()).findByIdsWithItems(any());
     }
 
 }
@@ -0,0 +1,139 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderStateRow;
+import group.rohlik.grocerymanager.event.OrderEvent;
+import group.rohlik.grocerymanager.event.OrderEventType;
+import group.rohlik.grocerymanager.exception.InvalidOrderStatusException;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.OrderStatus;
+import group.rohlik.grocerymanager.model.OrderTransition;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.repository.IOrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the OrderStateMachine class.
+ *
+ * @author Tomas Kramec
+ */
+class OrderStateMachineTest {
+
+    @Mock
+    private IOrderRepository orderRepository;
+    @Mock
+    private IProductService productService;
+    @Mock
+    private IProductOrderCounterService productOrderCounterService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private ObjectProvider<AuditorAware<String>> auditorAware;
+
+    private OrderStateMachine orderStateMachine;
+
+    private AutoCloseable mocks;
+
+    private final OrderStateRow pendingOrder = new OrderStateRow(1L, UUID.randomUUID(), OrderStatus.PENDING, 3L,
+            BigDecimal.TEN, LocalDateTime.now().plusMinutes(30));
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        when(auditorAware.getIfAvailable()).thenReturn(() -> Optional.of("TestUser"));
+        orderStateMachine = new OrderStateMachine(orderRepository, productService, productOrderCounterService,
+                eventPublisher, auditorAware);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void fire_pay_singleConditionalUpdateWithoutItems() {
+        when(orderRepository.updateStatus(eq(1L), eq(OrderStatus.PENDING), eq(3L), eq(OrderStatus.PAID), any(),
+                eq("TestUser"))).thenReturn(1);
+
+        var paidOrder = orderStateMachine.fire(pendingOrder, OrderTransition.PAY);
+
+        assertThat(paidOrder.status()).isEqualTo(OrderStatus.PAID);
+        assertThat(paidOrder.version()).isEqualTo(4L);
+        verify(orderRepository, never()).findItemsByOrderIds(anyList());
+        verify(productService, never()).releaseStock(anyString(), anyInt());
+        verify(eventPublisher).publishEvent(argThat((OrderEvent event) ->
+                event.type() == OrderEventType.PAID && event.status() == OrderStatus.PAID));
+    }
+
+    @Test
+    void fire_cancel_releasesStockOfLoadedItems() {
+        var item = OrderItem.builder().product(Product.builder().id(5L).code("P1").build()).quantity(2).build();
+        when(orderRepository.updateStatus(any(), any(), any(), eq(OrderStatus.CANCELED), any(), any()))
+                .thenReturn(1);
+        when(orderRepository.findItemsByOrderIds(List.of(1L))).thenReturn(List.of(item));
+
+        var canceledOrder = orderStateMachine.fire(pendingOrder, OrderTransition.CANCEL);
+
+        assertThat(canceledOrder.status()).isEqualTo(OrderStatus.CANCELED);
+        verify(productService).releaseStock("P1", 2);
+        verify(productOrderCounterService).orderFinished(List.of(item));
+        verify(eventPublisher).publishEvent(argThat((OrderEvent event) -> event.type() == OrderEventType.CANCELED));
+    }
+
+    @Test
+    void fire_expireWithPreloadedItems_doesNotLoadItems() {
+        var item = OrderItem.builder().product(Product.builder().id(5L).code("P1").build()).quantity(1).build();
+        when(orderRepository.updateStatus(any(), any(), any(), eq(OrderStatus.EXPIRED), any(), any()))
+                .thenReturn(1);
+
+        orderStateMachine.fire(pendingOrder, OrderTransition.EXPIRE, List.of(item));
+
+        verify(orderRepository, never()).findItemsByOrderIds(anyList());
+        verify(productService).releaseStock("P1", 1);
+    }
+
+    @Test
+    void fire_invalidSourceStatus_throwsException() {
+        var paidOrder = pendingOrder.withStatus(OrderStatus.PAID);
+
+        assertThatThrownBy(() -> orderStateMachine.fire(paidOrder, OrderTransition.CANCEL))
+                .isInstanceOf(InvalidOrderStatusException.class)
+                .hasMessageContaining("cannot be canceled. Current status: PAID");
+        verify(orderRepository, never()).updateStatus(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void fire_changedConcurrently_throwsOptimisticLockingFailure() {
+        when(orderRepository.updateStatus(any(), any(), any(), any(), any(), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> orderStateMachine.fire(pendingOrder, OrderTransition.CANCEL))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(productService, never()).releaseStock(anyString(), anyInt());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+}
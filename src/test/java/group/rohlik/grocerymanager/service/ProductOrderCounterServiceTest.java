@@ -0,0 +1,111 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.model.Order;
+import group.rohlik.grocerymanager.model.OrderItem;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.repository.IProductOrderCounterRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ProductOrderCounterService class.
+ *
+ * @author Tomas Kramec
+ */
+class ProductOrderCounterServiceTest {
+
+    @Mock
+    private IProductOrderCounterRepository productOrderCounterRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ProductOrderCounterService productOrderCounterService;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        productOrderCounterService = new ProductOrderCounterService(productOrderCounterRepository, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    private Order order(long... productIds) {
+        var items = new ArrayList<OrderItem>();
+        for (long productId : productIds) {
+            items.add(OrderItem.builder().product(Product.builder().id(productId).build()).quantity(1).build());
+        }
+        return Order.builder().items(items).build();
+    }
+
+    private Order shardedOrder(long productId, int stockBuckets) {
+        var product = Product.builder().id(productId).stockBuckets(stockBuckets).build();
+        return Order.builder().items(List.of(OrderItem.builder().product(product).quantity(1).build())).build();
+    }
+
+    @Test
+    void orderCreated_countsItemsPerProductInIdOrder() {
+        productOrderCounterService.orderCreated(order(9L, 3L, 9L));
+
+        InOrder inOrder = inOrder(productOrderCounterRepository);
+        inOrder.verify(productOrderCounterRepository).add(3L, 0, 1, 0);
+        inOrder.verify(productOrderCounterRepository).add(9L, 0, 2, 0);
+        verifyNoMoreInteractions(productOrderCounterRepository);
+    }
+
+    @Test
+    void orderFinished_movesItemsFromActiveToFinished() {
+        productOrderCounterService.orderFinished(order(5L, 5L).getItems());
+
+        verify(productOrderCounterRepository).add(5L, 0, -2, 2);
+    }
+
+    @Test
+    void orderCreated_shardedProduct_spreadsOverBucketShards() {
+        for (int i = 0; i < 200; i++) {
+            productOrderCounterService.orderCreated(shardedOrder(4L, 4));
+        }
+
+        var shards = ArgumentCaptor.forClass(Integer.class);
+        verify(productOrderCounterRepository, times(200)).add(eq(4L), shards.capture(), eq(1L), eq(0L));
+        assertThat(shards.getAllValues()).containsOnly(0, 1, 2, 3).contains(0, 1, 2, 3);
+    }
+
+    @Test
+    void ordersArchived_noOrders_doesNothing() {
+        productOrderCounterService.ordersArchived(List.of());
+
+        verify(productOrderCounterRepository, never()).finishPaidOrders(anyList());
+    }
+
+    @Test
+    void reconcile_locksCountersThenCountsCorrected() {
+        when(productOrderCounterRepository.reconcile()).thenReturn(3);
+
+        int corrected = productOrderCounterService.reconcile();
+
+        assertThat(corrected).isEqualTo(3);
+        var inOrder = inOrder(productOrderCounterRepository);
+        inOrder.verify(productOrderCounterRepository).lockAll();
+        inOrder.verify(productOrderCounterRepository).reconcile();
+        assertThat(meterRegistry.get("gm.product.order.counter.corrected").counter().count()).isEqualTo(3);
+    }
+}
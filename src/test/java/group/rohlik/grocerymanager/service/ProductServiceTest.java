@@ -1,33 +1,49 @@
 package group.rohlik.grocerymanager.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductStockTO;
 import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.dto.View;
+import group.rohlik.grocerymanager.event.StockChangedEvent;
 import group.rohlik.grocerymanager.exception.InsufficientStockException;
 import group.rohlik.grocerymanager.exception.ProductAlreadyExistsException;
 import group.rohlik.grocerymanager.exception.ProductDeletionException;
 import group.rohlik.grocerymanager.exception.ProductNotFoundException;
+import group.rohlik.grocerymanager.exception.ProductVersionMismatchException;
+import group.rohlik.grocerymanager.logging.LogSampler;
 import group.rohlik.grocerymanager.mapper.IProductMapper;
-import group.rohlik.grocerymanager.model.OrderStatus;
 import group.rohlik.grocerymanager.model.Product;
-import group.rohlik.grocerymanager.repository.IOrderRepository;
+import group.rohlik.grocerymanager.model.ProductOrderCounter;
+import group.rohlik.grocerymanager.repository.IProductCatalogueSnapshot;
+import group.rohlik.grocerymanager.repository.IProductIdIndex;
+import group.rohlik.grocerymanager.repository.IProductOrderCounterRepository;
 import group.rohlik.grocerymanager.repository.IProductRepository;
+import group.rohlik.grocerymanager.repository.IReservationHoldRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -40,9 +56,23 @@ class ProductServiceTest {
     @Mock
     private IProductRepository productRepository;
     @Mock
-    private IOrderRepository orderRepository;
+    private IProductIdIndex productIdIndex;
+    @Mock
+    private IProductCatalogueSnapshot catalogueSnapshot;
+    @Mock
+    private IProductOrderCounterRepository productOrderCounterRepository;
+    @Mock
+    private IReservationHoldRepository reservationHoldRepository;
     @Mock
     private IProductMapper productMapper;
+    @Mock
+    private IProductStockService productStockService;
+    @Mock
+    private LogSampler stockLogSampler;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private EntityManager entityManager;
 
     @InjectMocks
     private ProductService productService;
@@ -59,6 +89,14 @@ class ProductServiceTest {
         mocks.close();
     }
 
+    private ProductOrderCounter orderCounter(long activeOrderItems, long finishedOrderItems) {
+        return ProductOrderCounter.builder()
+                .productId(1L)
+                .activeOrderItems(activeOrderItems)
+                .finishedOrderItems(finishedOrderItems)
+                .build();
+    }
+
     @Test
     void getAllProducts_onlyActive_true() {
         List<Product> products = List.of(Product.builder().code("P1").build());
@@ -85,6 +123,58 @@ class ProductServiceTest {
         verify(productRepository).findAll(any(Sort.class));
     }
 
+    @Test
+    void writeAllProducts_onlyActive_writesSameJsonAsReadView() throws Exception {
+        var objectMapper = new ObjectMapper();
+        var rows = List.of(
+                new ProductRow("P1", "Apple", 5, 4, new BigDecimal("1.50"), false),
+                new ProductRow("P2", "Pear", 0, 0, new BigDecimal("2.00"), false));
+        when(productRepository.streamRowsByArchived(false)).thenReturn(rows.stream());
+
+        var json = new StringWriter();
+        long count;
+        try (var generator = objectMapper.getFactory().createGenerator(json)) {
+            count = productService.writeAllProducts(true, generator);
+        }
+
+        var expected = objectMapper.writerWithView(View.Read.class).writeValueAsString(List.of(
+                ProductTO.builder().code("P1").name("Apple").stockQuantity(5).stockBuckets(4)
+                        .pricePerUnit(new BigDecimal("1.50")).build(),
+                ProductTO.builder().code("P2").name("Pear").stockQuantity(0).stockBuckets(0)
+                        .pricePerUnit(new BigDecimal("2.00")).build()));
+        assertThat(count).isEqualTo(2);
+        assertThat(json.toString()).isEqualTo(expected);
+        verify(productRepository, never()).streamAllRows();
+        verifyNoInteractions(productMapper);
+    }
+
+    @Test
+    void writeAllProducts_all_writesEmptyArray() throws Exception {
+        when(productRepository.streamAllRows()).thenReturn(Stream.empty());
+
+        var json = new StringWriter();
+        try (var generator = new ObjectMapper().getFactory().createGenerator(json)) {
+            assertThat(productService.writeAllProducts(false, generator)).isZero();
+        }
+
+        assertThat(json.toString()).isEqualTo("[]");
+    }
+
+    @Test
+    void writeAllProducts_snapshotReady_writesSnapshotRows() throws Exception {
+        when(catalogueSnapshot.isReady()).thenReturn(true);
+        when(catalogueSnapshot.streamRows(true)).thenReturn(Stream.of(new ProductRow("P1", "Apple", 5, 0, new BigDecimal("1.50"), false)));
+
+        var json = new StringWriter();
+        try (var generator = new ObjectMapper().getFactory().createGenerator(json)) {
+            assertThat(productService.writeAllProducts(true, generator)).isEqualTo(1);
+        }
+
+        assertThat(json.toString()).isEqualTo("[{\"code\":\"P1\",\"name\":\"Apple\",\"stockQuantity\":5,\"stockBuckets\":0,\"pricePerUnit\":1.50,\"archived\":false}]");
+        verify(productRepository, never()).streamRowsByArchived(true);
+        verify(productRepository, never()).streamRowsByArchived(false);
+    }
+
     @Test
     void getProductByCode_success() {
         Product product = Product.builder().code("P1").build();
@@ -98,6 +188,15 @@ class ProductServiceTest {
         verify(productRepository).findByCode("P1");
     }
 
+    @Test
+    void getProductByCode_inSnapshot_servedWithoutDatabase() {
+        ProductTO productTO = ProductTO.builder().code("P1").version(2L).build();
+        when(catalogueSnapshot.getProduct("P1")).thenReturn(Optional.of(productTO));
+
+        assertThat(productService.getProductByCode("P1")).isSameAs(productTO);
+        verify(productRepository, never()).findByCode(any());
+    }
+
     @Test
     void getProductByCode_notFound() {
         when(productRepository.findByCode("P1")).thenReturn(Optional.empty());
@@ -105,6 +204,16 @@ class ProductServiceTest {
                 .isInstanceOf(ProductNotFoundException.class);
     }
 
+    @Test
+    void createProduct_subCentPrice_throws() {
+        ProductTO productTO = ProductTO.builder().code("P1").name("Milk").stockQuantity(10)
+                .pricePerUnit(new BigDecimal("10.995")).build();
+
+        assertThatThrownBy(() -> productService.createProduct(productTO))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(productRepository, never()).save(any());
+    }
+
     @Test
     void createProduct_success() {
         ProductTO productTO = new ProductTO();
@@ -114,7 +223,7 @@ class ProductServiceTest {
         productTO.setStockQuantity(10);
 
         when(productRepository.existsByCode("P1")).thenReturn(false);
-        Product product = Product.builder().code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10).archived(false).build();
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10).archived(false).build();
         when(productRepository.save(any(Product.class))).thenReturn(product);
         ProductTO mappedTO = new ProductTO();
         when(productMapper.toProductTO(product)).thenReturn(mappedTO);
@@ -123,6 +232,7 @@ class ProductServiceTest {
 
         assertThat(result).isEqualTo(mappedTO);
         verify(productRepository).save(any(Product.class));
+        verify(productOrderCounterRepository).add(1L, 0, 0, 0);
     }
 
     @Test
@@ -147,7 +257,7 @@ class ProductServiceTest {
         productTO.setPricePerUnit(BigDecimal.TEN);
         productTO.setStockQuantity(10);
 
-        Product product = Product.builder().code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10).build();
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10).build();
         when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
         when(productRepository.save(product)).thenReturn(product);
         ProductTO mappedTO = new ProductTO();
@@ -157,6 +267,150 @@ class ProductServiceTest {
 
         assertThat(result).isEqualTo(mappedTO);
         verify(productRepository).save(product);
+        verify(eventPublisher, never()).publishEvent(any(StockChangedEvent.class));
+    }
+
+    @Test
+    void updateProduct_versionMismatch_throws() {
+        ProductTO productTO = new ProductTO();
+        productTO.setCode("P1");
+        productTO.setName("Milk");
+        productTO.setPricePerUnit(BigDecimal.TEN);
+        productTO.setStockQuantity(10);
+        productTO.setVersion(1L);
+
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10).build();
+        product.setVersion(2L);
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+
+        assertThatThrownBy(() -> productService.updateProduct(productTO))
+                .isInstanceOf(ProductVersionMismatchException.class);
+        verify(productRepository, never()).save(any());
+    }
+
+    @Test
+    void updateProduct_stockChanged_publishesStockChange() {
+        ProductTO productTO = new ProductTO();
+        productTO.setCode("P1");
+        productTO.setName("Milk");
+        productTO.setPricePerUnit(BigDecimal.TEN);
+        productTO.setStockQuantity(15);
+
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10).build();
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+        when(productRepository.save(product)).thenReturn(product);
+
+        productService.updateProduct(productTO);
+
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", 5, 15, 0L));
+    }
+
+    @Test
+    void updateProduct_partitionedStock_keepsStockQuantity() {
+        ProductTO productTO = new ProductTO();
+        productTO.setCode("P1");
+        productTO.setName("Milk");
+        productTO.setPricePerUnit(BigDecimal.TEN);
+        productTO.setStockQuantity(15);
+
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10)
+                .stockPartitioned(true).build();
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+        when(productRepository.save(product)).thenReturn(product);
+
+        productService.updateProduct(productTO);
+
+        assertThat(product.getStockQuantity()).isEqualTo(10);
+        verify(eventPublisher, never()).publishEvent(any(StockChangedEvent.class));
+    }
+
+    @Test
+    void updateProduct_stockBuckets_shardsStockIntoBuckets() {
+        ProductTO productTO = new ProductTO();
+        productTO.setCode("P1");
+        productTO.setName("Milk");
+        productTO.setPricePerUnit(BigDecimal.TEN);
+        productTO.setStockQuantity(12);
+        productTO.setStockBuckets(4);
+
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10).build();
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+        when(productRepository.save(product)).thenReturn(product);
+
+        productService.updateProduct(productTO);
+
+        verify(productStockService).replaceBuckets(product, 4, 12);
+        assertThat(product.isStockPartitioned()).isTrue();
+        assertThat(product.getStockBuckets()).isEqualTo(4);
+        assertThat(product.getStockQuantity()).isEqualTo(12);
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", 2, 12, 0L));
+    }
+
+    @Test
+    void updateProduct_stockBucketsOff_mergesBucketsIntoProduct() {
+        ProductTO productTO = new ProductTO();
+        productTO.setCode("P1");
+        productTO.setName("Milk");
+        productTO.setPricePerUnit(BigDecimal.TEN);
+        productTO.setStockQuantity(10);
+        productTO.setStockBuckets(0);
+
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10)
+                .stockPartitioned(true).stockBuckets(4).build();
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+        when(productRepository.save(product)).thenReturn(product);
+        when(productStockService.removeLocations(product)).thenReturn(7);
+
+        productService.updateProduct(productTO);
+
+        assertThat(product.isStockPartitioned()).isFalse();
+        assertThat(product.getStockBuckets()).isZero();
+        assertThat(product.getStockQuantity()).isEqualTo(10);
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", 3, 10, 0L));
+    }
+
+    @Test
+    void updateProduct_stockBucketsOfProductInLocations_throws() {
+        ProductTO productTO = new ProductTO();
+        productTO.setCode("P1");
+        productTO.setName("Milk");
+        productTO.setPricePerUnit(BigDecimal.TEN);
+        productTO.setStockQuantity(10);
+        productTO.setStockBuckets(4);
+
+        Product product = Product.builder().id(1L).code("P1").name("Milk").pricePerUnit(BigDecimal.TEN).stockQuantity(10)
+                .stockPartitioned(true).build();
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+
+        assertThatThrownBy(() -> productService.updateProduct(productTO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("kept per location");
+        verify(productStockService, never()).replaceBuckets(any(), anyInt(), anyInt());
+        verify(productRepository, never()).save(any());
+    }
+
+    @Test
+    void updateStockLocations_partitionsStock() {
+        var locations = List.of(location("BRN", 4), location("PRG", 7));
+        Product product = Product.builder().id(1L).code("P1").stockQuantity(10).build();
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+        when(productRepository.saveAndFlush(product)).thenReturn(product);
+        when(productStockService.replaceLocations(product, locations)).thenReturn(11);
+        when(productStockService.getLocations(product)).thenReturn(locations);
+
+        var result = productService.updateStockLocations("P1", locations);
+
+        assertThat(result).isEqualTo(locations);
+        assertThat(product.isStockPartitioned()).isTrue();
+        assertThat(product.getStockQuantity()).isEqualTo(11);
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", 1, 11, 0L));
+    }
+
+    @Test
+    void updateStockLocations_repeatedLocation_throws() {
+        assertThatThrownBy(() -> productService.updateStockLocations("P1", List.of(location("PRG", 4), location("PRG", 7))))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(productStockService);
     }
 
     @Test
@@ -176,8 +430,7 @@ class ProductServiceTest {
     @Test
     void hasProductActiveOrders_true() {
         when(productRepository.existsByCode("P1")).thenReturn(true);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.PENDING, OrderStatus.PAID))))
-                .thenReturn(true);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(1, 0)));
 
         boolean result = productService.hasProductActiveOrders("P1");
 
@@ -187,14 +440,25 @@ class ProductServiceTest {
     @Test
     void hasProductActiveOrders_false() {
         when(productRepository.existsByCode("P1")).thenReturn(true);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.PENDING, OrderStatus.PAID))))
-                .thenReturn(false);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(0, 0)));
 
         boolean result = productService.hasProductActiveOrders("P1");
 
         assertThat(result).isFalse();
     }
 
+    @Test
+    void hasProductActiveOrders_indexedProduct_readsCounterById() {
+        when(productRepository.existsByCode("P1")).thenReturn(true);
+        when(productIdIndex.getId("P1")).thenReturn(7L);
+        when(productOrderCounterRepository.findByProductId(7L)).thenReturn(Optional.of(orderCounter(2, 0)));
+
+        boolean result = productService.hasProductActiveOrders("P1");
+
+        assertThat(result).isTrue();
+        verify(productOrderCounterRepository, never()).findByProductCode(any());
+    }
+
     @Test
     void hasProductActiveOrders_notFound() {
         when(productRepository.existsByCode("P1")).thenReturn(false);
@@ -206,8 +470,7 @@ class ProductServiceTest {
     @Test
     void hasProductFinishedOrders_true() {
         when(productRepository.existsByCode("P1")).thenReturn(true);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.CANCELED, OrderStatus.EXPIRED))))
-                .thenReturn(true);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(0, 1)));
 
         boolean result = productService.hasProductFinishedOrders("P1");
 
@@ -217,8 +480,7 @@ class ProductServiceTest {
     @Test
     void hasProductFinishedOrders_false() {
         when(productRepository.existsByCode("P1")).thenReturn(true);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.CANCELED, OrderStatus.EXPIRED))))
-                .thenReturn(false);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(0, 0)));
 
         boolean result = productService.hasProductFinishedOrders("P1");
 
@@ -236,21 +498,31 @@ class ProductServiceTest {
     @Test
     void deleteProduct_noActiveOrFinishedOrders_deletes() {
         when(productRepository.existsByCodeAndArchived("P1", false)).thenReturn(true);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.PENDING, OrderStatus.PAID))))
-                .thenReturn(false);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.CANCELED, OrderStatus.EXPIRED))))
-                .thenReturn(false);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(0, 0)));
 
         productService.deleteProduct("P1");
 
+        verify(reservationHoldRepository).deleteExpiredByProductCode(eq("P1"), any());
         verify(productRepository).deleteByCode("P1");
     }
 
+    @Test
+    void deleteProduct_withLiveHolds_throws() {
+        when(productRepository.existsByCodeAndArchived("P1", false)).thenReturn(true);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(0, 0)));
+        when(reservationHoldRepository.existsLiveByProductCode(eq("P1"), any())).thenReturn(true);
+
+        assertThatThrownBy(() -> productService.deleteProduct("P1"))
+                .isInstanceOf(ProductDeletionException.class)
+                .hasMessageContaining("reservation holds");
+        verify(productRepository, never()).deleteByCode(any());
+        verify(productRepository, never()).archiveByCode(any());
+    }
+
     @Test
     void deleteProduct_withActiveOrders_throws() {
         when(productRepository.existsByCodeAndArchived("P1", false)).thenReturn(true);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.PENDING, OrderStatus.PAID))))
-                .thenReturn(true);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(1, 0)));
 
         assertThatThrownBy(() -> productService.deleteProduct("P1"))
                 .isInstanceOf(ProductDeletionException.class);
@@ -259,10 +531,7 @@ class ProductServiceTest {
     @Test
     void deleteProduct_withFinishedOrders_archives() {
         when(productRepository.existsByCodeAndArchived("P1", false)).thenReturn(true);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.PENDING, OrderStatus.PAID))))
-                .thenReturn(false);
-        when(orderRepository.existsByProductCodeAndStatusIn(eq("P1"), eq(Arrays.asList(OrderStatus.CANCELED, OrderStatus.EXPIRED))))
-                .thenReturn(true);
+        when(productOrderCounterRepository.findByProductCode("P1")).thenReturn(Optional.of(orderCounter(0, 1)));
 
         productService.deleteProduct("P1");
 
@@ -279,7 +548,7 @@ class ProductServiceTest {
 
     @Test
     void reserveStock_success() {
-        Product product = Product.builder().code("P1").stockQuantity(10).build();
+        Product product = Product.builder().id(1L).code("P1").stockQuantity(10).build();
         when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
         when(productRepository.saveAndFlush(any(Product.class))).thenReturn(product);
 
@@ -287,6 +556,44 @@ class ProductServiceTest {
 
         assertThat(result.getStockQuantity()).isEqualTo(5);
         verify(productRepository).saveAndFlush(product);
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", -5, 5, 0L));
+    }
+
+    @Test
+    void reserveStock_indexedCode_locksById() {
+        Product product = Product.builder().id(7L).code("P1").stockQuantity(10).build();
+        when(productIdIndex.getId("P1")).thenReturn(7L);
+        when(productRepository.findByIdForUpdate(7L)).thenReturn(Optional.of(product));
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(product);
+
+        Product result = productService.reserveStock("P1", 5);
+
+        assertThat(result.getStockQuantity()).isEqualTo(5);
+        verify(productRepository, never()).findByCodeForUpdate(any());
+    }
+
+    @Test
+    void reserveStock_staleIndexEntry_fallsBackToCode() {
+        Product product = Product.builder().id(8L).code("P1").stockQuantity(10).build();
+        when(productIdIndex.getId("P1")).thenReturn(7L);
+        when(productRepository.findByIdForUpdate(7L)).thenReturn(Optional.empty());
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(product);
+
+        productService.reserveStock("P1", 5);
+
+        verify(productIdIndex).put("P1", 8L);
+    }
+
+    @Test
+    void reserveStock_indexedCodeArchived_removedFromIndex() {
+        when(productIdIndex.getId("P1")).thenReturn(7L);
+        when(productRepository.findByIdForUpdate(7L)).thenReturn(Optional.empty());
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> productService.reserveStock("P1", 5))
+                .isInstanceOf(ProductNotFoundException.class);
+        verify(productIdIndex).remove("P1");
     }
 
     @Test
@@ -299,16 +606,44 @@ class ProductServiceTest {
 
     @Test
     void reserveStock_insufficient() {
-        Product product = Product.builder().code("P1").stockQuantity(2).build();
+        Product product = Product.builder().id(1L).code("P1").stockQuantity(2).build();
         when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
 
         assertThatThrownBy(() -> productService.reserveStock("P1", 5))
                 .isInstanceOf(InsufficientStockException.class);
     }
 
+    @Test
+    void reserveStock_partitionedStock_reservedFromLocationsWithoutProductLock() {
+        Product product = Product.builder().id(1L).code("P1").stockQuantity(10).stockPartitioned(true).build();
+        when(productStockService.isPartitioned("P1")).thenReturn(true);
+        when(productRepository.findByCode("P1")).thenReturn(Optional.of(product));
+        when(productStockService.reserve(product, 5)).thenReturn(6);
+
+        Product result = productService.reserveStock("P1", 5);
+
+        assertThat(result).isSameAs(product);
+        verify(productRepository, never()).findByCodeForUpdate(any());
+        verify(productRepository, never()).saveAndFlush(any());
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", -5, 6, 0L));
+    }
+
+    @Test
+    void releaseStock_partitionedStockUnknown_lockedAndReleasedToLocation() {
+        Product product = Product.builder().id(1L).code("P1").stockQuantity(5).stockPartitioned(true).build();
+        when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
+        when(productStockService.release(product, 3)).thenReturn(8);
+
+        productService.releaseStock("P1", 3);
+
+        assertThat(product.getStockQuantity()).isEqualTo(5);
+        verify(productRepository, never()).saveAndFlush(any());
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", 3, 8, 0L));
+    }
+
     @Test
     void releaseStock_success() {
-        Product product = Product.builder().code("P1").stockQuantity(5).build();
+        Product product = Product.builder().id(1L).code("P1").stockQuantity(5).build();
         when(productRepository.findByCodeForUpdate("P1")).thenReturn(Optional.of(product));
         when(productRepository.saveAndFlush(any(Product.class))).thenReturn(product);
 
@@ -316,6 +651,7 @@ class ProductServiceTest {
 
         assertThat(product.getStockQuantity()).isEqualTo(8);
         verify(productRepository).saveAndFlush(product);
+        verify(eventPublisher).publishEvent(new StockChangedEvent("P1", 3, 8, 0L));
     }
 
     @Test
@@ -325,4 +661,8 @@ class ProductServiceTest {
         assertThatThrownBy(() -> productService.releaseStock("P1", 3))
                 .isInstanceOf(ProductNotFoundException.class);
     }
+
+    private static ProductStockTO location(final String locationCode, final int quantity) {
+        return ProductStockTO.builder().locationCode(locationCode).quantity(quantity).build();
+    }
 }
@@ -0,0 +1,228 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+import group.rohlik.grocerymanager.dto.ProductStockTO;
+import group.rohlik.grocerymanager.event.LocationStockChangedEvent;
+import group.rohlik.grocerymanager.event.ProductChangedEvent;
+import group.rohlik.grocerymanager.exception.InsufficientStockException;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.model.ProductStock;
+import group.rohlik.grocerymanager.repository.IProductRepository;
+import group.rohlik.grocerymanager.repository.IProductStockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ProductStockService class.
+ *
+ * @author Tomas Kramec
+ */
+class ProductStockServiceTest {
+
+    @Mock
+    private IProductStockRepository productStockRepository;
+    @Mock
+    private IProductRepository productRepository;
+    @Mock
+    private CacheManager cacheManager;
+    @Mock
+    private Cache productCache;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ProductStockService productStockService;
+
+    private AutoCloseable mocks;
+
+    private final Product milk = Product.builder().id(1L).code("P1").stockPartitioned(true).build();
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        productStockService = new ProductStockService(productStockRepository, productRepository,
+                new NearestStockLocationStrategy(List.of("PRG", "BRN", "OSR")), cacheManager, eventPublisher,
+                transactionManager, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void reserve_passesOverLockedLocation() {
+        var brno = location(11L, "BRN", 5);
+        var ostrava = location(12L, "OSR", 5);
+        when(productStockRepository.findRowsByProductId(1L)).thenReturn(List.of(
+                row(11L, "BRN", 5), row(12L, "OSR", 5), row(10L, "PRG", 5)));
+        when(productStockRepository.findByIdForUpdateSkipLocked(10L)).thenReturn(Optional.empty());
+        when(productStockRepository.findByIdForUpdateSkipLocked(11L)).thenReturn(Optional.of(brno));
+        when(productStockRepository.findByIdForUpdateSkipLocked(12L)).thenReturn(Optional.of(ostrava));
+
+        assertThat(productStockService.reserve(milk, 7)).isEqualTo(8);
+
+        assertThat(brno.getQuantity()).isZero();
+        assertThat(ostrava.getQuantity()).isEqualTo(3);
+        verify(productStockRepository, never()).findByIdForUpdate(anyLong());
+        verify(eventPublisher).publishEvent(new LocationStockChangedEvent(1L, "P1"));
+        assertThat(productStockService.isPartitioned("P1")).isTrue();
+        assertThat(meterRegistry.get("gm.product.stock.locations.skipped").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void reserve_passedOverLocationsNeeded_waitsForThem() {
+        var prague = location(10L, "PRG", 5);
+        var brno = location(11L, "BRN", 2);
+        when(productStockRepository.findRowsByProductId(1L)).thenReturn(List.of(row(10L, "PRG", 5), row(11L, "BRN", 2)));
+        when(productStockRepository.findByIdForUpdateSkipLocked(10L)).thenReturn(Optional.empty());
+        when(productStockRepository.findByIdForUpdateSkipLocked(11L)).thenReturn(Optional.of(brno));
+        when(productStockRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(prague));
+
+        assertThat(productStockService.reserve(milk, 4)).isEqualTo(3);
+
+        assertThat(brno.getQuantity()).isZero();
+        assertThat(prague.getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void reserve_insufficient_givesStockBack() {
+        var prague = location(10L, "PRG", 2);
+        var brno = location(11L, "BRN", 1);
+        when(productStockRepository.findRowsByProductId(1L)).thenReturn(List.of(row(10L, "PRG", 2), row(11L, "BRN", 0)));
+        when(productStockRepository.findByIdForUpdateSkipLocked(10L)).thenReturn(Optional.of(prague));
+        when(productStockRepository.findByIdForUpdate(11L)).thenReturn(Optional.of(brno));
+
+        assertThatThrownBy(() -> productStockService.reserve(milk, 5))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("Available: 3");
+
+        assertThat(prague.getQuantity()).isEqualTo(2);
+        assertThat(brno.getQuantity()).isEqualTo(1);
+        verify(productStockRepository, never()).findByIdForUpdateSkipLocked(11L);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void release_returnsStockToFirstUnlockedLocation() {
+        var brno = location(11L, "BRN", 4);
+        when(productStockRepository.findRowsByProductId(1L)).thenReturn(List.of(row(11L, "BRN", 4), row(10L, "PRG", 1)));
+        when(productStockRepository.findByIdForUpdateSkipLocked(10L)).thenReturn(Optional.empty());
+        when(productStockRepository.findByIdForUpdateSkipLocked(11L)).thenReturn(Optional.of(brno));
+
+        assertThat(productStockService.release(milk, 3)).isEqualTo(8);
+
+        assertThat(brno.getQuantity()).isEqualTo(7);
+        verify(productStockRepository, never()).findByIdForUpdate(anyLong());
+        verify(eventPublisher).publishEvent(new LocationStockChangedEvent(1L, "P1"));
+    }
+
+    @Test
+    void release_allLocationsLocked_waitsForPreferredLocation() {
+        var prague = location(10L, "PRG", 1);
+        when(productStockRepository.findRowsByProductId(1L)).thenReturn(List.of(row(11L, "BRN", 4), row(10L, "PRG", 1)));
+        when(productStockRepository.findByIdForUpdateSkipLocked(anyLong())).thenReturn(Optional.empty());
+        when(productStockRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(prague));
+
+        assertThat(productStockService.release(milk, 3)).isEqualTo(8);
+
+        assertThat(prague.getQuantity()).isEqualTo(4);
+    }
+
+    @Test
+    void replaceLocations_updatesAddsAndRemovesLocations() {
+        var prague = location(10L, "PRG", 1);
+        var brno = location(11L, "BRN", 4);
+        when(productStockRepository.findByProductIdForUpdate(1L)).thenReturn(List.of(prague, brno));
+
+        var stockQuantity = productStockService.replaceLocations(milk, List.of(
+                ProductStockTO.builder().locationCode("PRG").quantity(3).build(),
+                ProductStockTO.builder().locationCode("OSR").quantity(4).build()));
+
+        assertThat(stockQuantity).isEqualTo(7);
+        assertThat(prague.getQuantity()).isEqualTo(3);
+        verify(productStockRepository).deleteAll(argThat(locations -> locations.iterator().next() == brno));
+        verify(productStockRepository).saveAll(argThat((List<ProductStock> locations) -> locations.size() == 2
+                && locations.get(1).getLocationCode().equals("OSR") && locations.get(1).getProduct() == milk));
+        assertThat(productStockService.isPartitioned("P1")).isTrue();
+    }
+
+    @Test
+    void replaceBuckets_splitsStockEvenly() {
+        when(productStockRepository.findByProductIdForUpdate(1L)).thenReturn(List.of(location(10L, "PRG", 5)));
+
+        assertThat(productStockService.replaceBuckets(milk, 3, 10)).isEqualTo(5);
+
+        verify(productStockRepository).saveAll(argThat((List<ProductStock> buckets) -> buckets.stream()
+                .map(bucket -> bucket.getLocationCode() + "=" + bucket.getQuantity()).toList()
+                .equals(List.of("BUCKET-0=4", "BUCKET-1=3", "BUCKET-2=3"))));
+    }
+
+    @Test
+    void reserve_shardedProductBucketEmpty_rebalancesBuckets() {
+        var sharded = Product.builder().id(2L).code("P2").stockPartitioned(true).stockBuckets(2).build();
+        var empty = ProductStock.builder().id(20L).product(sharded).locationCode("BUCKET-0").quantity(0).build();
+        var full = ProductStock.builder().id(21L).product(sharded).locationCode("BUCKET-1").quantity(10).build();
+        when(productStockRepository.findRowsByProductId(2L)).thenReturn(List.of(row(20L, "BUCKET-0", 0), row(21L, "BUCKET-1", 10)));
+        when(productStockRepository.findByIdForUpdateSkipLocked(20L)).thenReturn(Optional.of(empty));
+        when(productStockRepository.findByIdForUpdateSkipLocked(21L)).thenReturn(Optional.of(full));
+        when(productRepository.findById(2L)).thenReturn(Optional.of(sharded));
+
+        assertThat(productStockService.reserve(sharded, 1)).isEqualTo(9);
+        assertThat(full.getQuantity()).isEqualTo(9);
+
+        assertThat(productStockService.rebalanceBuckets()).isEqualTo(1);
+        assertThat(empty.getQuantity()).isEqualTo(5);
+        assertThat(full.getQuantity()).isEqualTo(4);
+        assertThat(productStockService.rebalanceBuckets()).isZero();
+        assertThat(meterRegistry.get("gm.product.stock.buckets.rebalanced").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void refreshStockQuantities_refreshesEveryChangedProductOnce() {
+        when(cacheManager.getCache("product")).thenReturn(productCache);
+        when(productRepository.refreshStockQuantities(any())).thenReturn(2);
+        productStockService.onLocationStockChanged(new LocationStockChangedEvent(1L, "P1"));
+        productStockService.onLocationStockChanged(new LocationStockChangedEvent(1L, "P1"));
+        productStockService.onLocationStockChanged(new LocationStockChangedEvent(2L, "P2"));
+
+        assertThat(productStockService.refreshStockQuantities()).isEqualTo(2);
+        assertThat(productStockService.refreshStockQuantities()).isZero();
+
+        verify(productRepository).refreshStockQuantities(argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L))));
+        verify(productCache).evict("P1");
+        verify(productCache).evict("P2");
+        verify(eventPublisher).publishEvent(new ProductChangedEvent("P1"));
+        verify(eventPublisher).publishEvent(new ProductChangedEvent("P2"));
+    }
+
+    private ProductStock location(final Long id, final String locationCode, final int quantity) {
+        return ProductStock.builder().id(id).product(milk).locationCode(locationCode).quantity(quantity).build();
+    }
+
+    private static ProductStockRow row(final Long id, final String locationCode, final int quantity) {
+        return new ProductStockRow(id, locationCode, quantity);
+    }
+}
@@ -0,0 +1,191 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.OrderItemTO;
+import group.rohlik.grocerymanager.dto.ReservationHoldTO;
+import group.rohlik.grocerymanager.exception.ReservationHoldNotFoundException;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.model.ReservationHold;
+import group.rohlik.grocerymanager.property.ReservationHoldProperties;
+import group.rohlik.grocerymanager.repository.IReservationHoldIndex;
+import group.rohlik.grocerymanager.repository.IReservationHoldRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ReservationHoldService class.
+ *
+ * @author Tomas Kramec
+ */
+class ReservationHoldServiceTest {
+
+    @Mock
+    private IReservationHoldRepository reservationHoldRepository;
+    @Mock
+    private IReservationHoldIndex reservationHoldIndex;
+    @Mock
+    private IProductService productService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReservationHoldProperties reservationHoldProperties = new ReservationHoldProperties();
+
+    private ReservationHoldService reservationHoldService;
+
+    private AutoCloseable mocks;
+
+    private final Product milk = Product.builder().id(1L).code("P1").build();
+    private final Product bread = Product.builder().id(2L).code("P2").build();
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        reservationHoldProperties.setSweepBatchSize(2);
+        reservationHoldService = new ReservationHoldService(reservationHoldRepository, reservationHoldIndex,
+                productService, reservationHoldProperties, transactionManager, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void createHold_reservesStockAndIndexesHold() {
+        when(productService.reserveStock("P1", 3)).thenReturn(milk);
+        when(productService.reserveStock("P2", 1)).thenReturn(bread);
+
+        var hold = reservationHoldService.createHold(holdOf(null, item("P1", 3), item("P2", 1)));
+
+        assertThat(hold.getCode()).isNotNull();
+        assertThat(hold.getExpiresAt()).isCloseTo(LocalDateTime.now().plusMinutes(5), within(5, ChronoUnit.SECONDS));
+        assertThat(hold.getItems()).extracting(OrderItemTO::getProductCode).containsExactly("P1", "P2");
+        verify(reservationHoldRepository).saveAll(argThat((List<ReservationHold> holds) -> holds.size() == 2
+                && holds.stream().allMatch(row -> row.getCode().equals(hold.getCode())
+                && row.getExpiresAt().equals(hold.getExpiresAt()))));
+        verify(reservationHoldIndex).put(hold.getCode(), hold.getExpiresAt());
+        assertThat(meterRegistry.get("gm.reservation.holds").tag("outcome", "created").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void createHold_ttlOverMaximum_capped() {
+        when(productService.reserveStock("P1", 1)).thenReturn(milk);
+
+        var hold = reservationHoldService.createHold(holdOf(24 * 3600, item("P1", 1)));
+
+        assertThat(hold.getExpiresAt()).isCloseTo(LocalDateTime.now().plusMinutes(30), within(5, ChronoUnit.SECONDS));
+    }
+
+    @Test
+    void dropHold_releasesStockSummedPerProduct() {
+        var code = UUID.randomUUID();
+        when(reservationHoldRepository.findByCodeForUpdate(code)).thenReturn(List.of(
+                hold(10L, code, milk, 2), hold(11L, code, bread, 1), hold(12L, code, milk, 1)));
+
+        reservationHoldService.dropHold(code);
+
+        verify(productService).releaseStock("P1", 3);
+        verify(productService).releaseStock("P2", 1);
+        verify(reservationHoldRepository).deleteByIds(List.of(10L, 11L, 12L));
+        verify(reservationHoldIndex).remove(code);
+    }
+
+    @Test
+    void dropHold_unknownCode_throwsException() {
+        var code = UUID.randomUUID();
+        when(reservationHoldRepository.findByCodeForUpdate(code)).thenReturn(List.of());
+
+        assertThatThrownBy(() -> reservationHoldService.dropHold(code))
+                .isInstanceOf(ReservationHoldNotFoundException.class);
+        verify(reservationHoldRepository, never()).deleteByIds(anyList());
+    }
+
+    @Test
+    void claimHold_deletesHoldWithoutReleasingStock() {
+        var code = UUID.randomUUID();
+        var holds = List.of(hold(10L, code, milk, 2));
+        when(reservationHoldRepository.findByCodeForUpdate(code)).thenReturn(holds);
+
+        assertThat(reservationHoldService.claimHold(code)).isEqualTo(holds);
+
+        verify(reservationHoldRepository).deleteByIds(List.of(10L));
+        verify(reservationHoldIndex).remove(code);
+        verify(productService, never()).releaseStock(any(), anyInt());
+    }
+
+    @Test
+    void claimHold_expired_throwsException() {
+        var code = UUID.randomUUID();
+        var expired = hold(10L, code, milk, 2);
+        expired.setExpiresAt(LocalDateTime.now().minusSeconds(1));
+        when(reservationHoldRepository.findByCodeForUpdate(code)).thenReturn(List.of(expired));
+
+        assertThatThrownBy(() -> reservationHoldService.claimHold(code))
+                .isInstanceOf(ReservationHoldNotFoundException.class)
+                .hasMessageContaining("expired");
+        verify(reservationHoldRepository, never()).deleteByIds(anyList());
+    }
+
+    @Test
+    void sweepExpired_releasesBatchesUntilIndexDrained() {
+        var first = UUID.randomUUID();
+        var second = UUID.randomUUID();
+        var third = UUID.randomUUID();
+        var archived = Product.builder().id(3L).code("P3").archived(true).build();
+        when(reservationHoldIndex.getExpired(any(), eq(2))).thenReturn(List.of(first, second), List.of(third));
+        when(reservationHoldRepository.findExpiredByCodesForUpdate(eq(List.of(first, second)), any()))
+                .thenReturn(List.of(hold(10L, first, milk, 2), hold(11L, second, milk, 1), hold(12L, second, archived, 4)));
+        when(reservationHoldRepository.findExpiredByCodesForUpdate(eq(List.of(third)), any())).thenReturn(List.of());
+
+        int swept = reservationHoldService.sweepExpired();
+
+        assertThat(swept).isEqualTo(2);
+        verify(productService).releaseStock("P1", 3);
+        verify(productService, never()).releaseStock(eq("P3"), anyInt());
+        verify(reservationHoldRepository).deleteByIds(List.of(10L, 11L, 12L));
+        verify(reservationHoldIndex).removeAll(List.of(first, second));
+        verify(reservationHoldIndex).removeAll(List.of(third));
+    }
+
+    @Test
+    void sweepExpired_nothingExpired_doesNotQueryTable() {
+        when(reservationHoldIndex.getExpired(any(), anyInt())).thenReturn(List.of());
+
+        assertThat(reservationHoldService.sweepExpired()).isZero();
+        verifyNoInteractions(reservationHoldRepository, productService);
+    }
+
+    private static ReservationHoldTO holdOf(final Integer ttlSeconds, final OrderItemTO... items) {
+        return ReservationHoldTO.builder().ttlSeconds(ttlSeconds).items(List.of(items)).build();
+    }
+
+    private static OrderItemTO item(final String productCode, final int quantity) {
+        return OrderItemTO.builder().productCode(productCode).quantity(quantity).build();
+    }
+
+    private static ReservationHold hold(final Long id, final UUID code, final Product product, final int quantity) {
+        return ReservationHold.builder().id(id).code(code).product(product).quantity(quantity)
+                .createdAt(LocalDateTime.now()).expiresAt(LocalDateTime.now().plusMinutes(5)).build();
+    }
+}
@@ -0,0 +1,58 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.ProductStockRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the stock location strategies.
+ *
+ * @author Tomas Kramec
+ */
+class StockLocationStrategyTest {
+
+    private final List<ProductStockRow> locations = List.of(
+            new ProductStockRow(1L, "OSR", 8), new ProductStockRow(2L, "PRG", 1),
+            new ProductStockRow(3L, "BRN", 5), new ProductStockRow(4L, "ZLN", 5));
+
+    @Test
+    void nearest_ordersByConfiguredDistance_unknownLocationsLastByCode() {
+        var strategy = new NearestStockLocationStrategy(List.of("PRG", "OSR"));
+
+        assertThat(strategy.orderForReservation(locations)).extracting(ProductStockRow::locationCode)
+                .containsExactly("PRG", "OSR", "BRN", "ZLN");
+        assertThat(strategy.orderForRelease(locations)).extracting(ProductStockRow::locationCode)
+                .containsExactly("PRG", "OSR", "BRN", "ZLN");
+    }
+
+    @Test
+    void mostStock_reservesFromFullestAndReleasesToEmptiest() {
+        var strategy = new MostStockLocationStrategy();
+
+        assertThat(strategy.orderForReservation(locations)).extracting(ProductStockRow::locationCode)
+                .containsExactly("OSR", "BRN", "ZLN", "PRG");
+        assertThat(strategy.orderForRelease(locations)).extracting(ProductStockRow::locationCode)
+                .containsExactly("PRG", "BRN", "ZLN", "OSR");
+    }
+
+    @Test
+    void randomBucket_startsAtAnyBucketAndWrapsAround() {
+        var strategy = new RandomStockBucketStrategy();
+        var first = new HashSet<String>();
+
+        for (int i = 0; i < 200; i++) {
+            var ordered = strategy.orderForReservation(locations);
+            var start = locations.indexOf(ordered.get(0));
+            for (int j = 0; j < locations.size(); j++) {
+                assertThat(ordered.get(j)).isEqualTo(locations.get((start + j) % locations.size()));
+            }
+            first.add(ordered.get(0).locationCode());
+        }
+
+        assertThat(first).containsExactlyInAnyOrder("OSR", "PRG", "BRN", "ZLN");
+    }
+}
@@ -0,0 +1,134 @@
+package group.rohlik.grocerymanager.service;
+
+import group.rohlik.grocerymanager.dto.StockDeltaTO;
+import group.rohlik.grocerymanager.event.StockChangedEvent;
+import group.rohlik.grocerymanager.event.StockSubscription;
+import group.rohlik.grocerymanager.property.StockStreamProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the StockStreamService class.
+ *
+ * @author Tomas Kramec
+ */
+class StockStreamServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StockStreamProperties stockStreamProperties = new StockStreamProperties();
+    private StockStreamService stockStreamService;
+
+    @BeforeEach
+    void setUp() {
+        stockStreamProperties.setBufferSize(4);
+        stockStreamService = new StockStreamService(stockStreamProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockStreamService.shutdown();
+    }
+
+    @Test
+    void flush_coalescesChangesOfProduct() throws Exception {
+        var received = new ArrayList<StockDeltaTO>();
+        var latch = new CountDownLatch(1);
+        stockStreamService.subscribe(Set.of("P1"), deltas -> {
+            received.addAll(deltas);
+            latch.countDown();
+        });
+
+        stockStreamService.onStockChanged(new StockChangedEvent("P1", -2, 8, 1));
+        stockStreamService.onStockChanged(new StockChangedEvent("P1", 5, 10, 3));
+        stockStreamService.onStockChanged(new StockChangedEvent("P1", -3, 13, 2));
+        stockStreamService.onStockChanged(new StockChangedEvent("P2", -1, 1, 1));
+
+        assertThat(stockStreamService.flush()).isEqualTo(1);
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).containsExactly(new StockDeltaTO("P1", 0, 10, 3));
+    }
+
+    @Test
+    void flush_nothingChanged_deliversNothing() {
+        var calls = new AtomicInteger();
+        stockStreamService.subscribe(Set.of("P1"), deltas -> calls.incrementAndGet());
+
+        assertThat(stockStreamService.flush()).isZero();
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void flush_tenThousandSubscribers_allReceiveDelta() throws Exception {
+        var subscribers = 10_000;
+        var latch = new CountDownLatch(subscribers);
+        Map<Integer, List<StockDeltaTO>> received = new ConcurrentHashMap<>();
+        for (int i = 0; i < subscribers; i++) {
+            var subscriber = i;
+            stockStreamService.subscribe(Set.of("HOT", "P" + i), deltas -> {
+                received.put(subscriber, deltas);
+                latch.countDown();
+            });
+        }
+        assertThat(meterRegistry.get("gm.stock.stream.subscriptions").gauge().value()).isEqualTo(subscribers);
+
+        for (int i = 0; i < 1_000; i++) {
+            stockStreamService.onStockChanged(new StockChangedEvent("HOT", -1, 10_000 - i - 1, i + 1));
+        }
+        stockStreamService.flush();
+
+        assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).hasSize(subscribers);
+        assertThat(received.values()).allSatisfy(deltas ->
+                assertThat(deltas).containsExactly(new StockDeltaTO("HOT", -1_000, 9_000, 1_000)));
+    }
+
+    @Test
+    void offer_slowSubscriber_bufferIsBounded() {
+        var subscription = new StockSubscription(Set.of("P1"), deltas -> {
+        }, 2);
+
+        subscription.offer(new StockDeltaTO("P1", -1, 9, 1));
+        subscription.offer(new StockDeltaTO("P1", -1, 8, 2));
+        subscription.offer(new StockDeltaTO("P1", -1, 7, 3));
+
+        assertThat(subscription.getBuffered()).isEqualTo(2);
+        assertThat(subscription.getDropped()).isEqualTo(1);
+    }
+
+    @Test
+    void flush_failingSubscriber_isUnsubscribed() throws Exception {
+        var latch = new CountDownLatch(1);
+        StockSubscription subscription = stockStreamService.subscribe(Set.of("P1"), deltas -> {
+            latch.countDown();
+            throw new IllegalStateException("Connection closed");
+        });
+
+        stockStreamService.onStockChanged(new StockChangedEvent("P1", -1, 9, 1));
+        stockStreamService.flush();
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        assertThat(subscription.isClosed()).isTrue();
+        assertThat(meterRegistry.get("gm.stock.stream.subscriptions").gauge().value()).isZero();
+    }
+
+    @Test
+    void subscribe_noProductCodes_throwsException() {
+        assertThatThrownBy(() -> stockStreamService.subscribe(Set.of(), deltas -> {
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,135 @@
+package group.rohlik.grocerymanager.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import group.rohlik.grocerymanager.converter.CborJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.converter.SmileJackson2HttpMessageConverter;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import group.rohlik.grocerymanager.mapper.IOrderMapperImpl;
+import group.rohlik.grocerymanager.mapper.IProductMapperImpl;
+import group.rohlik.grocerymanager.model.Product;
+import group.rohlik.grocerymanager.property.CacheProperties;
+import group.rohlik.grocerymanager.property.CatalogueSnapshotProperties;
+import group.rohlik.grocerymanager.property.WarmUpProperties;
+import group.rohlik.grocerymanager.repository.IProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the WarmUpService class.
+ *
+ * @author Tomas Kramec
+ */
+class WarmUpServiceTest {
+
+    @Mock
+    private IProductRepository productRepository;
+    @Mock
+    private ObjectProvider<HikariDataSource> dataSources;
+    @Mock
+    private HikariDataSource dataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("product");
+    private final CacheProperties cacheProperties = new CacheProperties();
+    private final CatalogueSnapshotProperties catalogueSnapshotProperties = new CatalogueSnapshotProperties();
+    private final WarmUpProperties warmUpProperties = new WarmUpProperties();
+
+    private WarmUpService warmUpService;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mocks = MockitoAnnotations.openMocks(this);
+        cacheProperties.setMaxSize(2);
+        warmUpProperties.setSyntheticIterations(200);
+        when(dataSources.iterator()).thenAnswer(invocation -> List.of(dataSource).iterator());
+        when(dataSource.getMinimumIdle()).thenReturn(3);
+        when(dataSource.getConnection()).thenReturn(connection);
+        var objectMapperBuilder = new Jackson2ObjectMapperBuilder();
+        warmUpService = new WarmUpService(productRepository, new IProductMapperImpl(), new IOrderMapperImpl(),
+                cacheManager, cacheProperties, catalogueSnapshotProperties, warmUpProperties, dataSources,
+                objectMapperBuilder.build(), new CborJackson2HttpMessageConverter(objectMapperBuilder),
+                new SmileJackson2HttpMessageConverter(objectMapperBuilder), eventPublisher, transactionManager,
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void warmUp_preloadsMostOrderedProductsUpToCacheSize_opensIdleConnections() throws Exception {
+        when(productRepository.findMostOrdered(Limit.of(2))).thenReturn(List.of(product("P2"), product("P1")));
+
+        assertThat(warmUpService.warmUp(Duration.ofMinutes(1))).isEqualTo(3);
+
+        assertThat(cacheManager.getCache("product").get("P2", ProductTO.class))
+                .satisfies(product -> assertThat(product.getVersion()).isEqualTo(3L));
+        assertThat(cacheManager.getCache("product").get("P1")).isNotNull();
+        verify(dataSource, times(3)).getConnection();
+        verify(connection, times(3)).close();
+    }
+
+    @Test
+    void warmUp_productCachedMeanwhile_keepsCachedProduct() {
+        var cached = ProductTO.builder().code("P2").stockQuantity(0).version(4L).build();
+        when(productRepository.findMostOrdered(Limit.of(2))).thenAnswer(invocation -> {
+            cacheManager.getCache("product").put("P2", cached);
+            return List.of(product("P2"), product("P1"));
+        });
+
+        assertThat(warmUpService.warmUp(Duration.ofMinutes(1))).isEqualTo(3);
+
+        assertThat(cacheManager.getCache("product").get("P2", ProductTO.class)).isSameAs(cached);
+        assertThat(cacheManager.getCache("product").get("P1")).isNotNull();
+    }
+
+    @Test
+    void warmUp_catalogueSnapshotEnabled_preloadsNothing() {
+        catalogueSnapshotProperties.setEnabled(true);
+
+        assertThat(warmUpService.warmUp(Duration.ofMinutes(1))).isEqualTo(3);
+
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void warmUp_timeBudgetExhausted_skipsSteps() throws Exception {
+        assertThat(warmUpService.warmUp(Duration.ZERO)).isZero();
+
+        verifyNoInteractions(productRepository);
+        verify(dataSource, never()).getConnection();
+    }
+
+    private static Product product(final String code) {
+        var product = Product.builder().id(1L).code(code).name(code).stockQuantity(1)
+                .pricePerUnit(BigDecimal.ONE).build();
+        product.setVersion(3L);
+        return product;
+    }
+}
@@ -0,0 +1,36 @@
+package group.rohlik.grocerymanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the ETagUtil class.
+ *
+ * @author Tomas Kramec
+ */
+class ETagUtilTest {
+
+    @Test
+    void toETag_quotedStrongTag() {
+        assertThat(ETagUtil.toETag("MILK1", 3)).isEqualTo("\"TUlMSzE.3\"");
+    }
+
+    @Test
+    void toETag_codeWithQuotesAndSpaces_validTag() {
+        assertThat(ETagUtil.toETag("a \"b\", c", 1)).matches("\"[A-Za-z0-9_\\-]+\\.1\"");
+    }
+
+    @Test
+    void parseVersion_matchingTag_returnsVersion() {
+        var ifMatch = ETagUtil.toETag("OTHER", 7) + ", " + ETagUtil.toETag("MILK1", 3);
+        assertThat(ETagUtil.parseVersion(ifMatch, "MILK1")).hasValue(3);
+    }
+
+    @Test
+    void parseVersion_weakOrForeignTag_returnsEmpty() {
+        assertThat(ETagUtil.parseVersion("W/" + ETagUtil.toETag("MILK1", 3), "MILK1")).isEmpty();
+        assertThat(ETagUtil.parseVersion(ETagUtil.toETag("MILK2", 3), "MILK1")).isEmpty();
+        assertThat(ETagUtil.parseVersion("\"TUlMSzE.x\"", "MILK1")).isEmpty();
+    }
+}
@@ -0,0 +1,42 @@
+package group.rohlik.grocerymanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the MoneyUtil class.
+ *
+ * @author Tomas Kramec
+ */
+class MoneyUtilTest {
+
+    @Test
+    void toMinorUnits_anyScale() {
+        assertThat(MoneyUtil.toMinorUnits(new BigDecimal("10.99"))).isEqualTo(1099);
+        assertThat(MoneyUtil.toMinorUnits(new BigDecimal("29.0000"))).isEqualTo(2900);
+        assertThat(MoneyUtil.toMinorUnits(BigDecimal.TEN)).isEqualTo(1000);
+        assertThat(MoneyUtil.toMinorUnits(new BigDecimal("0.005"))).isEqualTo(1);
+    }
+
+    @Test
+    void toBigDecimal_scaleTwo() {
+        assertThat(MoneyUtil.toBigDecimal(2198)).isEqualTo(new BigDecimal("21.98"));
+        assertThat(MoneyUtil.toBigDecimal(2000)).isEqualTo(new BigDecimal("20.00"));
+    }
+
+    @Test
+    void multiply_matchesBigDecimal() {
+        var unitPrice = new BigDecimal("10.99");
+        assertThat(MoneyUtil.toBigDecimal(MoneyUtil.multiply(MoneyUtil.toMinorUnits(unitPrice), 7)))
+                .isEqualTo(unitPrice.multiply(BigDecimal.valueOf(7)));
+    }
+
+    @Test
+    void multiply_overflow_throws() {
+        assertThatThrownBy(() -> MoneyUtil.multiply(Long.MAX_VALUE / 2, 3)).isInstanceOf(ArithmeticException.class);
+    }
+}
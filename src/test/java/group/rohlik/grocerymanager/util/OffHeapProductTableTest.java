@@ -0,0 +1,169 @@
+package group.rohlik.grocerymanager.util;
+
+import group.rohlik.grocerymanager.dto.ProductRow;
+import group.rohlik.grocerymanager.dto.ProductTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the OffHeapProductTable class.
+ *
+ * @author Tomas Kramec
+ */
+class OffHeapProductTableTest {
+
+    @Test
+    void put_get_roundTrip() {
+        var table = new OffHeapProductTable(4);
+        table.put("MILK1", "Mléko plnotučné 1L", new BigDecimal("29.90"), false, 4, 100, 3);
+
+        assertThat(table.get("MILK1")).isEqualTo(ProductTO.builder().code("MILK1").name("Mléko plnotučné 1L")
+                .pricePerUnit(new BigDecimal("29.90")).archived(false).stockQuantity(100).stockBuckets(4).version(3L)
+                .build());
+        assertThat(table.get("BREAD1")).isNull();
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void put_olderVersion_ignored() {
+        var table = new OffHeapProductTable(4);
+        table.put("MILK1", "Milk", BigDecimal.TEN, false, 0, 100, 3);
+
+        assertThat(table.put("MILK1", "Old milk", BigDecimal.ONE, false, 0, 50, 2)).isFalse();
+        assertThat(table.put("MILK1", "New milk", BigDecimal.ONE, true, 0, 50, 4)).isTrue();
+
+        var product = table.get("MILK1");
+        assertThat(product.getName()).isEqualTo("New milk");
+        assertThat(product.isArchived()).isTrue();
+        assertThat(product.getVersion()).isEqualTo(4);
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.garbageBytes()).isPositive();
+    }
+
+    @Test
+    void updateStock_overlaysNewerVersionsOnly() {
+        var table = new OffHeapProductTable(4);
+        table.put("MILK1", "Milk", BigDecimal.TEN, false, 0, 100, 3);
+
+        assertThat(table.updateStock("MILK1", 90, 4)).isTrue();
+        assertThat(table.updateStock("MILK1", 95, 4)).isFalse();
+        assertThat(table.updateStock("BREAD1", 5, 1)).isFalse();
+
+        assertThat(table.get("MILK1").getStockQuantity()).isEqualTo(90);
+        assertThat(table.get("MILK1").getVersion()).isEqualTo(4);
+        assertThat(table.garbageBytes()).isZero();
+    }
+
+    @Test
+    void remove_forEach() {
+        var table = new OffHeapProductTable(4);
+        table.put("MILK1", "Milk", BigDecimal.TEN, false, 0, 100, 0);
+        table.put("BREAD1", "Bread", BigDecimal.ONE, true, 8, 5, 0);
+
+        assertThat(table.remove("MILK1")).isTrue();
+        assertThat(table.remove("MILK1")).isFalse();
+
+        var rows = new ArrayList<ProductRow>();
+        table.forEach(rows::add);
+        assertThat(rows).containsExactly(new ProductRow("BREAD1", "Bread", 5, 8, BigDecimal.ONE, true));
+    }
+
+    @Test
+    void forEachByName_pagesSortedByNameThenCode() {
+        var table = new OffHeapProductTable(4);
+        table.put("MILK2", "Milk", BigDecimal.TEN, false, 0, 100, 0);
+        table.put("MILK1", "Milk", BigDecimal.TEN, false, 0, 100, 0);
+        table.put("BREAD1", "Bread", BigDecimal.ONE, false, 0, 5, 0);
+        table.put("APPLE1", "Zucchini", BigDecimal.ONE, false, 0, 5, 0);
+        table.put("APPLE1", "Apple", BigDecimal.ONE, false, 0, 5, 1);
+        table.put("EGG1", "Eggs", BigDecimal.ONE, false, 0, 5, 0);
+        table.remove("EGG1");
+
+        var firstPage = new ArrayList<ProductRow>();
+        assertThat(table.forEachByName(null, null, 2, firstPage::add)).isEqualTo(2);
+        assertThat(firstPage).extracting(ProductRow::code).containsExactly("APPLE1", "BREAD1");
+
+        var nextPage = new ArrayList<ProductRow>();
+        assertThat(table.forEachByName("Bread", "BREAD1", 10, nextPage::add)).isEqualTo(2);
+        assertThat(nextPage).extracting(ProductRow::code).containsExactly("MILK1", "MILK2");
+
+        var afterRemoved = new ArrayList<ProductRow>();
+        table.forEachByName("Eggs", "EGG1", 10, afterRemoved::add);
+        assertThat(afterRemoved).extracting(ProductRow::code).containsExactly("MILK1", "MILK2");
+    }
+
+    @Test
+    void bulkLoad_shuffledRows_sortedOnceFinished() {
+        var table = new OffHeapProductTable(4);
+        var codes = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            codes.add("P" + i);
+        }
+        Collections.shuffle(codes, new Random(7));
+        table.startBulkLoad();
+        codes.forEach(code -> table.put(code, "Product " + code, BigDecimal.ONE, false, 0, 1, 0));
+        table.put("P5", "A renamed product", BigDecimal.ONE, false, 0, 1, 1);
+        table.remove("P7");
+        assertThatThrownBy(() -> table.forEachByName(null, null, 10, row -> { }))
+                .isInstanceOf(IllegalStateException.class);
+
+        table.finishBulkLoad();
+
+        var sorted = new ArrayList<ProductRow>();
+        table.forEachByName(null, null, Integer.MAX_VALUE, sorted::add);
+        assertThat(sorted).hasSize(999)
+                .isSortedAccordingTo(Comparator.comparing(ProductRow::name).thenComparing(ProductRow::code));
+        assertThat(sorted.get(0).code()).isEqualTo("P5");
+        assertThat(sorted).extracting(ProductRow::code).doesNotContain("P7");
+    }
+
+    @Test
+    void randomOperations_growAndCompact_matchHashMap() {
+        var random = new Random(42);
+        var table = new OffHeapProductTable(8);
+        var expected = new HashMap<String, Integer>();
+        for (int i = 0; i < 200_000; i++) {
+            var code = "P" + random.nextInt(2000);
+            switch (random.nextInt(4)) {
+                case 0 -> assertThat(table.remove(code)).isEqualTo(expected.remove(code) != null);
+                case 1 -> {
+                    if (table.updateStock(code, i, i)) {
+                        expected.put(code, i);
+                    }
+                }
+                default -> {
+                    table.put(code, "Product " + (i % 7) + " " + code, BigDecimal.valueOf(i, 2), false, 0, i, i);
+                    expected.put(code, i);
+                }
+            }
+        }
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        for (int i = 0; i < 2000; i++) {
+            var code = "P" + i;
+            var product = table.get(code);
+            if (expected.containsKey(code)) {
+                assertThat(product.getStockQuantity()).isEqualTo(expected.get(code));
+                assertThat(product.getCode()).isEqualTo(code);
+            } else {
+                assertThat(product).isNull();
+            }
+        }
+        assertThat(table.garbageBytes()).isLessThan(1 << 21);
+
+        var sorted = new ArrayList<ProductRow>();
+        table.forEachByName(null, null, Integer.MAX_VALUE, sorted::add);
+        assertThat(sorted).hasSize(expected.size())
+                .allSatisfy(row -> assertThat(row.stockQuantity()).isEqualTo(expected.get(row.code())))
+                .isSortedAccordingTo(Comparator.comparing(ProductRow::name).thenComparing(ProductRow::code));
+    }
+}
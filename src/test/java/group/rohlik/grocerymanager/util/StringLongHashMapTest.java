@@ -0,0 +1,84 @@
+package group.rohlik.grocerymanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the StringLongHashMap class.
+ *
+ * @author Tomas Kramec
+ */
+class StringLongHashMapTest {
+
+    @Test
+    void put_get_remove() {
+        var map = new StringLongHashMap(4);
+        map.put("MILK1", 1);
+        map.put("BREAD1", 51);
+
+        assertThat(map.get("MILK1", -1)).isEqualTo(1);
+        assertThat(map.get(new String("BREAD1".toCharArray()), -1)).isEqualTo(51);
+        assertThat(map.get("EGGS12", -1)).isEqualTo(-1);
+
+        map.put("MILK1", 101);
+        assertThat(map.get("MILK1", -1)).isEqualTo(101);
+        assertThat(map.size()).isEqualTo(2);
+
+        assertThat(map.remove("MILK1")).isTrue();
+        assertThat(map.remove("MILK1")).isFalse();
+        assertThat(map.get("MILK1", -1)).isEqualTo(-1);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void put_internsKeys() {
+        var map = new StringLongHashMap(4);
+        var code = new String("MILK1".toCharArray());
+        map.put(code, 1);
+
+        assertThat(map.get("MILK1", -1)).isEqualTo(1);
+        assertThat(code.intern()).isSameAs("MILK1");
+    }
+
+    @Test
+    void put_beyondExpectedSize_resizesAtHalfLoad() {
+        var map = new StringLongHashMap(8);
+        assertThat(map.capacity()).isEqualTo(16);
+        for (int i = 0; i < 1000; i++) {
+            map.put("PRODUCT" + i, i);
+        }
+
+        assertThat(map.size()).isEqualTo(1000);
+        assertThat(map.capacity()).isEqualTo(2048);
+        assertThat(map.tableBytes()).isEqualTo(2 * 16 + 2048 * 4 + 2048 * 8);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(map.get("PRODUCT" + i, -1)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void randomOperations_matchHashMap() {
+        var random = new Random(42);
+        var map = new StringLongHashMap(16);
+        var expected = new HashMap<String, Long>();
+        for (int i = 0; i < 100_000; i++) {
+            var key = "P" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key) != null);
+            } else {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (int i = 0; i < 500; i++) {
+            var key = "P" + i;
+            assertThat(map.get(key, -1)).isEqualTo(expected.getOrDefault(key, -1L));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package group.rohlik.grocerymanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the UuidUtil class.
+ *
+ * @author Tomas Kramec
+ */
+class UuidUtilTest {
+
+    @Test
+    void timeOrdered_version7WithTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UuidUtil.timeOrdered();
+        long after = System.currentTimeMillis();
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(uuid.getMostSignificantBits() >>> 16).isBetween(before, after);
+    }
+
+    @Test
+    void timeOrdered_orderedAcrossMillisecondsAndUnique() throws InterruptedException {
+        var first = UuidUtil.timeOrdered();
+        Thread.sleep(2);
+        var second = UuidUtil.timeOrdered();
+        assertThat(first.getMostSignificantBits()).isLessThan(second.getMostSignificantBits());
+
+        var uuids = new HashSet<UUID>();
+        for (int i = 0; i < 100_000; i++) {
+            uuids.add(UuidUtil.timeOrdered());
+        }
+        assertThat(uuids).hasSize(100_000);
+    }
+
+    @Test
+    void timestampOf_readsVersion7OnlyTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UuidUtil.timeOrdered();
+
+        assertThat(UuidUtil.timestampOf(uuid)).hasValueSatisfying(
+                timestamp -> assertThat(timestamp.toEpochMilli()).isBetween(before, System.currentTimeMillis()));
+        assertThat(UuidUtil.timestampOf(UUID.randomUUID())).isEmpty();
+    }
+}